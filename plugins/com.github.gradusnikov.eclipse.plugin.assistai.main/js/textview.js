@@ -74,6 +74,11 @@ let isUserScrolling = false;
 let scrollTimeout = null;
 
 window.addEventListener('scroll', function() {
+    // Page in older messages of a restored session when the top is reached
+    if (window.scrollY < 200 && typeof eclipseLoadOlderMessages !== 'undefined') {
+        eclipseLoadOlderMessages();
+    }
+    
     // Check if user is near the bottom (within 100px)
     const isNearBottom = (window.innerHeight + window.scrollY) >= (document.body.scrollHeight - 100);
     
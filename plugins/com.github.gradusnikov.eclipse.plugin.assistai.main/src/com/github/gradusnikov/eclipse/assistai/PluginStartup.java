@@ -7,6 +7,7 @@ import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PlatformUI;
 
 import com.github.gradusnikov.eclipse.assistai.mcp.http.HttpMcpServerRegistry;
+import com.github.gradusnikov.eclipse.assistai.search.WorkspaceTextIndex;
 
 public class PluginStartup implements IStartup
 {
@@ -25,6 +26,8 @@ public class PluginStartup implements IStartup
                 ILog logger = Activator.getDefault().getLog();
                 logger.info("Initializing HTTP MCP Server Registry on UI thread");
                 Activator.getDefault().make(HttpMcpServerRegistry.class);
+                // catches up with workspace changes in the background, if enabled
+                Activator.getDefault().make(WorkspaceTextIndex.class);
             } else {
                 // Window exists but not active yet, retry
                 Display.getDefault().timerExec(500, this::waitForWorkbench);
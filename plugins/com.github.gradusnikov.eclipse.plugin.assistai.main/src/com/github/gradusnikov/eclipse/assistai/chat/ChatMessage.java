@@ -25,6 +25,12 @@ public class ChatMessage
 
     private final List<Attachment> attachments;
     
+    /** Set on summary messages replacing compacted history */
+    private String           archiveId;
+    
+    /** Set when the body was moved to the {@link MessageContentStore}, the buffer is empty then */
+    private volatile SpilledContent spilled;
+    
     /**
      * Constructs a ChatMessage with the given ID and role.
      * 
@@ -56,6 +62,7 @@ public class ChatMessage
      */
     public void append( String msg )
     {
+        unspill();
         this.content.append( msg );
     }
 
@@ -66,7 +73,47 @@ public class ChatMessage
      */
     public String getContent()
     {
-        return content.toString();
+        var spilledContent = spilled;
+        return spilledContent != null ? spilledContent.load() : content.toString();
+    }
+    
+    /**
+     * Retrieves the beginning of the message content without loading a
+     * spilled body.
+     * 
+     * @param maxLength
+     *            The maximal length of the preview
+     * @return The beginning of the message content
+     */
+    public String getContentPreview( int maxLength )
+    {
+        var spilledContent = spilled;
+        String text = spilledContent != null ? spilledContent.preview() : content.substring( 0, Math.min( maxLength, content.length() ) );
+        return text.length() > maxLength ? text.substring( 0, maxLength ) : text;
+    }
+    
+    /**
+     * Replaces the in-memory body with a handle to its stored copy.
+     */
+    void spill( SpilledContent spilledContent )
+    {
+        this.spilled = spilledContent;
+        this.content = new StringBuffer();
+    }
+    
+    public boolean isSpilled()
+    {
+        return spilled != null;
+    }
+    
+    private void unspill()
+    {
+        var spilledContent = spilled;
+        if ( spilledContent != null )
+        {
+            this.content = new StringBuffer( spilledContent.load() );
+            this.spilled = null;
+        }
     }
 
     public FunctionCall getFunctionCall()
@@ -87,6 +134,7 @@ public class ChatMessage
      */
     public void setContent( String message )
     {
+        this.spilled = null;
         this.content.setLength( 0 );
         this.content.append( message );
     }
@@ -127,9 +175,31 @@ public class ChatMessage
         return name;
     }
     
+    /**
+     * Retrieves the id of the archive holding the messages this message
+     * summarizes.
+     * 
+     * @return The archive id, or <code>null</code> if this is not a summary of
+     *         compacted history
+     */
+    public String getArchiveId()
+    {
+        return archiveId;
+    }
+
+    public void setArchiveId( String archiveId )
+    {
+        this.archiveId = archiveId;
+    }
+    
+    public boolean isCompactionSummary()
+    {
+        return archiveId != null;
+    }
+    
     public boolean isEmpty()
     {
-        return StringUtils.isAllBlank(content) && attachments.isEmpty() && Objects.isNull( functionCall );
+        return Objects.isNull( spilled ) && StringUtils.isAllBlank(content) && attachments.isEmpty() && Objects.isNull( functionCall );
     }
 
 }
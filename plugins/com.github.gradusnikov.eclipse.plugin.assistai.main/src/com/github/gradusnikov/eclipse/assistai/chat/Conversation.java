@@ -2,8 +2,11 @@ package com.github.gradusnikov.eclipse.assistai.chat;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
+import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.e4.core.di.annotations.Creatable;
 
 import jakarta.inject.Singleton;
@@ -14,47 +17,187 @@ public class Conversation
 {
     public List<ChatMessage> conversation = new LinkedList<>();
     
+    /** Cleared when the user restores compacted history, reset by {@link #clear()} */
+    private volatile boolean autoCompaction = true;
+    
+    private final ListenerList<IConversationListener> listeners = new ListenerList<>();
+    
     public int size()
     {
         return conversation.size();
     }
     
-    public void clear()
+    public synchronized void clear()
     {
         conversation.clear();
+        autoCompaction = true;
+        fireEvent( ConversationEvent.Type.CLEARED, null, null, null );
     }
     
     public synchronized void add(ChatMessage message)
     {
         conversation.add(message);
+        fireEvent( ConversationEvent.Type.ADDED, message, null, null );
+    }
+    
+    /**
+     * Notifies listeners that the content of a message is complete, e.g. when
+     * a streamed reply has finished.
+     */
+    public synchronized void messageUpdated( ChatMessage message )
+    {
+        if ( conversation.contains( message ) )
+        {
+            fireEvent( ConversationEvent.Type.UPDATED, message, null, null );
+        }
     }
     
+    /**
+     * Puts the messages of an earlier session in front of the current ones.
+     */
+    public synchronized void restore( List<ChatMessage> messages )
+    {
+        conversation.addAll( 0, messages );
+        fireEvent( ConversationEvent.Type.RESTORED, null, null, messages );
+    }
+    
+    /**
+     * Returns a copy of the messages, like {@link #snapshot()}.
+     */
     public List<ChatMessage> messages()
     {
-        return conversation;
+        return snapshot();
+    }
+    
+    /**
+     * Returns a copy of the messages that is safe to iterate while jobs add
+     * or compact messages.
+     */
+    public synchronized List<ChatMessage> snapshot()
+    {
+        return List.copyOf( conversation );
+    }
+    
+    public boolean isAutoCompaction()
+    {
+        return autoCompaction;
+    }
+    
+    public void setAutoCompaction( boolean autoCompaction )
+    {
+        this.autoCompaction = autoCompaction;
     }
     
-    public void removeMessageById( String messageId )
+    /**
+     * Replaces a range of messages with a single summary message. The range is
+     * identified by its messages, so the replacement is skipped when the
+     * conversation was modified (cleared, messages removed) in the meantime.
+     * 
+     * @param from the index of the first replaced message
+     * @param replaced the messages expected at <code>from</code>
+     * @param summary the message inserted in their place
+     * @return <code>true</code> if the messages were replaced
+     */
+    public synchronized boolean compact( int from, List<ChatMessage> replaced, ChatMessage summary )
+    {
+        if ( !containsAt( from, replaced ) )
+        {
+            return false;
+        }
+        conversation.subList( from, from + replaced.size() ).clear();
+        conversation.add( from, Objects.requireNonNull( summary ) );
+        replaced.forEach( message -> fireEvent( ConversationEvent.Type.REMOVED, message, null, null ) );
+        var next = from + 1 < conversation.size() ? conversation.get( from + 1 ) : null;
+        fireEvent( ConversationEvent.Type.ADDED, summary, next, null );
+        return true;
+    }
+    
+    /**
+     * Puts the archived messages back in place of their summary.
+     * 
+     * @return <code>true</code> if the summary was still part of the conversation
+     */
+    public synchronized boolean expand( ChatMessage summary, List<ChatMessage> archived )
+    {
+        int index = conversation.indexOf( summary );
+        if ( index < 0 )
+        {
+            return false;
+        }
+        conversation.remove( index );
+        conversation.addAll( index, archived );
+        var next = index + archived.size() < conversation.size() ? conversation.get( index + archived.size() ) : null;
+        archived.forEach( message -> fireEvent( ConversationEvent.Type.ADDED, message, next, null ) );
+        fireEvent( ConversationEvent.Type.REMOVED, summary, null, null );
+        return true;
+    }
+    
+    private boolean containsAt( int from, List<ChatMessage> messages )
+    {
+        if ( from < 0 || from + messages.size() > conversation.size() )
+        {
+            return false;
+        }
+        var iterator = conversation.listIterator( from );
+        for ( ChatMessage message : messages )
+        {
+            if ( iterator.next() != message )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public synchronized void removeMessageById( String messageId )
     {
         conversation.stream()
                     .filter( message -> messageId.equals( message.getId() ) )
                     .findFirst()
-                    .ifPresent( messageToRemove -> conversation.remove( messageToRemove ) );
+                    .ifPresent( messageToRemove -> {
+                        conversation.remove( messageToRemove );
+                        fireEvent( ConversationEvent.Type.REMOVED, messageToRemove, null, null );
+                    } );
         
     }
     
-    public Optional<ChatMessage> removeLastMessage()
+    public synchronized Optional<ChatMessage> removeLastMessage()
     {
         ChatMessage removed = !conversation.isEmpty() ? conversation.remove( conversation.size() - 1 ) : null;
+        if ( removed != null )
+        {
+            fireEvent( ConversationEvent.Type.REMOVED, removed, null, null );
+        }
         return Optional.ofNullable( removed );
     }
     
-    public Optional<ChatMessage> lastMessage()
+    public synchronized Optional<ChatMessage> lastMessage()
     {
     	return conversation.isEmpty() 
     			? Optional.empty() 
     			: Optional.of( conversation.get( conversation.size() - 1) );
     }
     
+    public void addConversationListener( IConversationListener listener )
+    {
+        listeners.add( listener );
+    }
+    
+    public void removeConversationListener( IConversationListener listener )
+    {
+        listeners.remove( listener );
+    }
     
+    private void fireEvent( ConversationEvent.Type type, ChatMessage message, ChatMessage before, List<ChatMessage> messages )
+    {
+        if ( listeners.isEmpty() )
+        {
+            return;
+        }
+        var event = new ConversationEvent( this, type, message, before, messages );
+        for ( IConversationListener listener : listeners )
+        {
+            SafeRunner.run( () -> listener.conversationChanged( event ) );
+        }
+    }
 }
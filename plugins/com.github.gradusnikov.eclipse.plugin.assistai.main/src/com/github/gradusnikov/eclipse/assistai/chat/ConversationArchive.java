@@ -0,0 +1,123 @@
+package com.github.gradusnikov.eclipse.assistai.chat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.e4.core.di.annotations.Creatable;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gradusnikov.eclipse.assistai.Activator;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Keeps compacted conversation messages on disk, in the plug-in state
+ * location, so they can be restored on request.
+ */
+@Creatable
+@Singleton
+public class ConversationArchive
+{
+    private static final String ARCHIVE_FOLDER = "conversation-archive";
+
+    private final ILog logger;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path folder;
+
+    @Inject
+    public ConversationArchive( ILog logger )
+    {
+        this( logger, Activator.getDefault().getStateLocation().append( ARCHIVE_FOLDER ).toPath() );
+    }
+
+    public ConversationArchive( ILog logger, Path folder )
+    {
+        this.logger = Objects.requireNonNull( logger );
+        this.folder = Objects.requireNonNull( folder );
+    }
+
+    /**
+     * Writes the messages to a new archive.
+     *
+     * @return the id of the archive
+     */
+    public String store( List<ChatMessage> messages ) throws IOException
+    {
+        String archiveId = UUID.randomUUID().toString();
+        var archived = messages.stream().map( StoredMessage::of ).collect( Collectors.toList() );
+        Files.createDirectories( folder );
+        objectMapper.writeValue( fileOf( archiveId ).toFile(), archived );
+        return archiveId;
+    }
+
+    /**
+     * Reads the messages of an archive.
+     */
+    public List<ChatMessage> load( String archiveId ) throws IOException
+    {
+        List<StoredMessage> archived = objectMapper.readValue( fileOf( archiveId ).toFile(),
+                new TypeReference<List<StoredMessage>>() {} );
+        return archived.stream().map( StoredMessage::toChatMessage ).collect( Collectors.toList() );
+    }
+
+    public void delete( String archiveId )
+    {
+        try
+        {
+            Files.deleteIfExists( fileOf( archiveId ) );
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Could not delete conversation archive " + archiveId, e );
+        }
+    }
+
+    /**
+     * Removes all archives.
+     */
+    public void clear()
+    {
+        if ( !Files.isDirectory( folder ) )
+        {
+            return;
+        }
+        try ( Stream<Path> files = Files.list( folder ) )
+        {
+            files.forEach( file -> {
+                try
+                {
+                    Files.deleteIfExists( file );
+                }
+                catch ( IOException e )
+                {
+                    logger.warn( "Could not delete conversation archive " + file, e );
+                }
+            } );
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Could not list conversation archives in " + folder, e );
+        }
+    }
+
+    private Path fileOf( String archiveId )
+    {
+        // archive ids are generated UUIDs, never paths
+        if ( !archiveId.matches( "[0-9a-fA-F\\-]+" ) )
+        {
+            throw new IllegalArgumentException( "Invalid archive id: " + archiveId );
+        }
+        return folder.resolve( archiveId + ".json" );
+    }
+}
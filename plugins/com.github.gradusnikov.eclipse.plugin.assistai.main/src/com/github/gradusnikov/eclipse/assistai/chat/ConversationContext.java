@@ -5,6 +5,8 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
+
 /**
  * Wraps a Conversation and provides context-specific configuration and continuation control.
  * This allows different use cases (ChatView, code completion) to configure tool access
@@ -15,12 +17,14 @@ public class ConversationContext
     private final String contextId;
     private final Conversation conversation;
     private final Set<String> allowedTools;
+    private final ResourceCache resourceCache;
     
     private ConversationContext(Builder builder)
     {
         this.contextId = builder.contextId != null ? builder.contextId : UUID.randomUUID().toString();
         this.conversation = Objects.requireNonNull(builder.conversation, "Conversation cannot be null");
         this.allowedTools = builder.allowedTools != null ? Set.copyOf(builder.allowedTools) : null;
+        this.resourceCache = builder.resourceCache;
     }
     
     /**
@@ -39,6 +43,15 @@ public class ConversationContext
         return conversation;
     }
     
+    /**
+     * Returns the resources cached for this context, or null if the shared
+     * resource cache is used.
+     */
+    public ResourceCache getResourceCache()
+    {
+        return resourceCache;
+    }
+    
     /**
      * Adds a message to the wrapped conversation.
      */
@@ -87,6 +100,7 @@ public class ConversationContext
         private String contextId;
         private Conversation conversation;
         private Set<String> allowedTools;
+        private ResourceCache resourceCache;
         
         /**
          * Sets the context ID. If not set, a random UUID will be generated.
@@ -116,6 +130,16 @@ public class ConversationContext
             return this;
         }
         
+        /**
+         * Sets the resource cache of this context.
+         * If null or not set, the shared resource cache is used.
+         */
+        public Builder resourceCache(ResourceCache resourceCache)
+        {
+            this.resourceCache = resourceCache;
+            return this;
+        }
+        
         /**
          * Builds the ConversationContext.
          */
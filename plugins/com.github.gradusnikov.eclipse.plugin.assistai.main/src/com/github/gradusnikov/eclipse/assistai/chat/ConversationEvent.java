@@ -0,0 +1,52 @@
+package com.github.gradusnikov.eclipse.assistai.chat;
+
+import java.util.EventObject;
+import java.util.List;
+
+/**
+ * Event fired when messages are added to or removed from a conversation.
+ */
+public class ConversationEvent extends EventObject {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public enum Type {
+        /** A message was inserted before {@link #getBefore()}, or appended when it is null */
+        ADDED,
+        /** The content of a message was completed, e.g. a streamed reply */
+        UPDATED,
+        REMOVED,
+        CLEARED,
+        /** Messages of an earlier session were put back */
+        RESTORED
+    }
+    
+    private final Type type;
+    private final ChatMessage message;  // null for CLEARED and RESTORED
+    private final ChatMessage before;   // only for ADDED, null when appended
+    private final List<ChatMessage> messages; // only for RESTORED
+    
+    public ConversationEvent(Object source, Type type, ChatMessage message, ChatMessage before, List<ChatMessage> messages) {
+        super(source);
+        this.type = type;
+        this.message = message;
+        this.before = before;
+        this.messages = messages;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public ChatMessage getMessage() {
+        return message;
+    }
+    
+    public ChatMessage getBefore() {
+        return before;
+    }
+    
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.gradusnikov.eclipse.assistai.chat;
+
+/**
+ * Listener for conversation changes (messages added, updated or removed).
+ */
+public interface IConversationListener {
+    
+    /**
+     * Called when the conversation changes. Listeners are notified while
+     * the conversation is locked and must return quickly.
+     * 
+     * @param event The conversation event
+     */
+    void conversationChanged(ConversationEvent event);
+}
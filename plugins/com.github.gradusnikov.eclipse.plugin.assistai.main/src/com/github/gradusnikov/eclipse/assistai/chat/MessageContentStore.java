@@ -0,0 +1,400 @@
+package com.github.gradusnikov.eclipse.assistai.chat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.e4.core.di.annotations.Creatable;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Moves large message bodies out of the heap into append-only spill files.
+ * The message keeps a {@link SpilledContent} handle with a short preview;
+ * the full text is read back from a memory mapping of the file when a
+ * request is assembled or the message is rendered.
+ * <p>
+ * Each chat session writes to a segment file of its own. Resetting a session
+ * retires its segment: bodies still referenced by a message stay readable,
+ * and the file is deleted once the last handle into it is garbage collected.
+ * Files live in the plug-in state location; all of them are deleted when the
+ * store is disposed.
+ * <p>
+ * Bodies kept in a file written by someone else, like the conversation
+ * journal, can be {@link #attach(ChatMessage, Path, long, int, int, String) attached}
+ * to a message and are read the same way; such files are never deleted here.
+ */
+@Creatable
+@Singleton
+public class MessageContentStore
+{
+    /** Bodies with at least this many characters are spilled */
+    public static final int SPILL_THRESHOLD = 32 * 1024;
+
+    private static final int PREVIEW_LENGTH = 512;
+
+    private static final String SPILL_FOLDER = "message-spill";
+
+    /** Smallest mapping of a segment, larger mappings double */
+    private static final int MIN_MAPPING = 1024 * 1024;
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final ILog logger;
+
+    private final Path folder;
+
+    /** Segments written to, by session id */
+    private final Map<String, Segment> segments = new HashMap<>();
+
+    /** Segments of attached files, closed once no handle references them */
+    private final Map<Path, Segment> attached = new HashMap<>();
+
+    private boolean staleFilesDeleted;
+
+    @Inject
+    public MessageContentStore( ILog logger )
+    {
+        this( logger, Activator.getDefault().getStateLocation().append( SPILL_FOLDER ).toPath() );
+    }
+
+    public MessageContentStore( ILog logger, Path folder )
+    {
+        this.logger = Objects.requireNonNull( logger );
+        this.folder = Objects.requireNonNull( folder );
+    }
+
+    /**
+     * Spills the message body into the segment of the given session when it
+     * is larger than {@link #SPILL_THRESHOLD}. Messages with a small body are
+     * left untouched; when writing fails, the body stays in memory.
+     */
+    public void offload( String sessionId, ChatMessage message )
+    {
+        if ( message.isSpilled() || message.content.length() < SPILL_THRESHOLD )
+        {
+            return;
+        }
+        String text = message.content.toString();
+        try
+        {
+            message.spill( write( sessionId, text ) );
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Could not spill message body to disk, keeping it in memory: " + e.getMessage(), e );
+        }
+    }
+
+    SpilledContent write( String sessionId, String text ) throws IOException
+    {
+        Segment segment;
+        synchronized ( this )
+        {
+            segment = segments.get( sessionId );
+            if ( segment == null )
+            {
+                segment = Segment.create( logger, createFile() );
+                segments.put( sessionId, segment );
+            }
+        }
+        byte[] bytes = text.getBytes( StandardCharsets.UTF_8 );
+        String preview = text.length() > PREVIEW_LENGTH ? text.substring( 0, PREVIEW_LENGTH ) : text;
+        var handle = new SpilledContent( segment, segment.append( bytes ), bytes.length, text.length(), preview );
+        CLEANER.register( handle, segment::release );
+        return handle;
+    }
+
+    /**
+     * Gives the message a body stored in a file written elsewhere, read when
+     * the content is needed.
+     *
+     * @param message the message, its in-memory body is dropped
+     * @param file the file holding the body, it must not be truncated while the message lives
+     * @param offset the position of the body in the file
+     * @param byteLength the length of the UTF-8 encoded body
+     * @param length the length of the body in characters
+     * @param preview the beginning of the body
+     */
+    public void attach( ChatMessage message, Path file, long offset, int byteLength, int length, String preview ) throws IOException
+    {
+        if ( offset < 0 || offset + byteLength > Files.size( file ) )
+        {
+            throw new IOException( "Message body at " + offset + " is not within " + file );
+        }
+        Segment segment;
+        synchronized ( this )
+        {
+            segment = attached.get( file );
+            if ( segment == null || !segment.acquire() )
+            {
+                segment = Segment.open( logger, file );
+                attached.put( file, segment );
+            }
+        }
+        var handle = new SpilledContent( segment, offset, byteLength, length, preview );
+        CLEANER.register( handle, segment::release );
+        message.spill( handle );
+    }
+
+    private Path createFile() throws IOException
+    {
+        Files.createDirectories( folder );
+        if ( !staleFilesDeleted )
+        {
+            deleteStaleFiles();
+            staleFilesDeleted = true;
+        }
+        return folder.resolve( UUID.randomUUID() + ".bin" );
+    }
+
+    /**
+     * Removes files left behind by sessions that did not shut down cleanly.
+     */
+    private void deleteStaleFiles() throws IOException
+    {
+        try ( var files = Files.list( folder ) )
+        {
+            files.forEach( stale -> {
+                try
+                {
+                    Files.deleteIfExists( stale );
+                }
+                catch ( IOException e )
+                {
+                    // on Windows a file stays locked while a mapping of it is reachable
+                }
+            } );
+        }
+    }
+
+    /**
+     * Retires the segment of a session, called when its conversation is
+     * cleared or the session is closed. Bodies of messages still holding a
+     * handle remain readable until the handle is released.
+     */
+    public void reset( String sessionId )
+    {
+        Segment segment;
+        synchronized ( this )
+        {
+            segment = segments.remove( sessionId );
+        }
+        if ( segment != null )
+        {
+            segment.retire();
+        }
+    }
+
+    /**
+     * Closes and deletes all segments. Bodies of spilled messages are not
+     * readable afterwards.
+     */
+    @PreDestroy
+    public void dispose()
+    {
+        ArrayList<Segment> open;
+        synchronized ( this )
+        {
+            open = new ArrayList<>( segments.values() );
+            open.addAll( attached.values() );
+            segments.clear();
+            attached.clear();
+        }
+        open.forEach( Segment::close );
+    }
+
+    /**
+     * A spill file, open while it is written to or referenced by a handle.
+     */
+    static final class Segment
+    {
+        private final ILog logger;
+
+        private final Path file;
+
+        /** Written and deleted by the store, rather than attached */
+        private final boolean owned;
+
+        private FileChannel channel;
+
+        private MappedByteBuffer mapped;
+
+        /** End of the written bytes; the file may be longer where it is mapped */
+        private long size;
+
+        private int handles;
+
+        private boolean retired;
+
+        private boolean closed;
+
+        private Segment( ILog logger, Path file, boolean owned, FileChannel channel )
+        {
+            this.logger = logger;
+            this.file = file;
+            this.owned = owned;
+            this.channel = channel;
+            // an attached file is only read, it closes with its last handle
+            this.retired = !owned;
+            this.handles = owned ? 0 : 1;
+        }
+
+        static Segment create( ILog logger, Path file ) throws IOException
+        {
+            return new Segment( logger, file, true,
+                    FileChannel.open( file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE ) );
+        }
+
+        static Segment open( ILog logger, Path file ) throws IOException
+        {
+            return new Segment( logger, file, false, FileChannel.open( file, StandardOpenOption.READ ) );
+        }
+
+        /**
+         * Adds a handle, unless the segment was closed already.
+         */
+        synchronized boolean acquire()
+        {
+            if ( closed )
+            {
+                return false;
+            }
+            handles++;
+            return true;
+        }
+
+        synchronized long append( byte[] bytes ) throws IOException
+        {
+            if ( closed )
+            {
+                throw new IOException( "Spill file " + file + " is closed" );
+            }
+            long offset = size;
+            var buffer = ByteBuffer.wrap( bytes );
+            while ( buffer.hasRemaining() )
+            {
+                channel.write( buffer, offset + buffer.position() );
+            }
+            size += bytes.length;
+            handles++;
+            return offset;
+        }
+
+        /**
+         * Reads a body back.
+         *
+         * @throws IllegalStateException if the store was disposed
+         */
+        synchronized String read( SpilledContent content )
+        {
+            if ( closed )
+            {
+                throw new IllegalStateException( "Spilled message body is no longer available, the message store was disposed" );
+            }
+            try
+            {
+                long end = content.offset() + content.byteLength();
+                byte[] bytes = new byte[content.byteLength()];
+                if ( end > Integer.MAX_VALUE )
+                {
+                    // beyond what a single mapping can address
+                    var buffer = ByteBuffer.wrap( bytes );
+                    while ( buffer.hasRemaining() )
+                    {
+                        if ( channel.read( buffer, content.offset() + buffer.position() ) < 0 )
+                        {
+                            break;
+                        }
+                    }
+                }
+                else
+                {
+                    if ( mapped == null || mapped.capacity() < end )
+                    {
+                        mapped = owned ? mapGrown( end ) : channel.map( FileChannel.MapMode.READ_ONLY, 0, Math.min( channel.size(), Integer.MAX_VALUE ) );
+                    }
+                    mapped.get( (int) content.offset(), bytes );
+                }
+                return new String( bytes, StandardCharsets.UTF_8 );
+            }
+            catch ( IOException e )
+            {
+                throw new UncheckedIOException( "Could not read spilled message body", e );
+            }
+        }
+
+        /**
+         * Maps the file geometrically grown, so appending while reading does
+         * not remap on every read. A read-write mapping may extend past the
+         * written bytes.
+         */
+        private MappedByteBuffer mapGrown( long end ) throws IOException
+        {
+            long capacity = Math.max( end, mapped == null ? MIN_MAPPING : 2L * mapped.capacity() );
+            return channel.map( FileChannel.MapMode.READ_WRITE, 0, Math.min( capacity, Integer.MAX_VALUE ) );
+        }
+
+        /**
+         * Called by the cleaner when a handle into this segment became
+         * unreachable.
+         */
+        synchronized void release()
+        {
+            handles--;
+            if ( retired && handles <= 0 )
+            {
+                close();
+            }
+        }
+
+        synchronized void retire()
+        {
+            retired = true;
+            if ( handles <= 0 )
+            {
+                close();
+            }
+        }
+
+        synchronized void close()
+        {
+            if ( closed )
+            {
+                return;
+            }
+            closed = true;
+            mapped = null;
+            try
+            {
+                channel.close();
+                if ( owned )
+                {
+                    Files.deleteIfExists( file );
+                }
+            }
+            catch ( IOException e )
+            {
+                logger.warn( "Could not delete message spill file " + file, e );
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.gradusnikov.eclipse.assistai.chat;
+
+/**
+ * Handle to a message body kept in the {@link MessageContentStore}. The
+ * segment holding the body stays readable while the handle is reachable.
+ *
+ * @param segment the spill file holding the body
+ * @param offset the position of the body in the spill file
+ * @param byteLength the length of the UTF-8 encoded body
+ * @param length the length of the body in characters
+ * @param preview the beginning of the body, kept in memory
+ */
+public record SpilledContent( MessageContentStore.Segment segment, long offset, int byteLength, int length, String preview )
+{
+    /**
+     * Reads the full body.
+     *
+     * @throws IllegalStateException if the store was disposed
+     */
+    public String load()
+    {
+        return segment.read( this );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SpilledContent[offset=" + offset + ", length=" + length + "]";
+    }
+}
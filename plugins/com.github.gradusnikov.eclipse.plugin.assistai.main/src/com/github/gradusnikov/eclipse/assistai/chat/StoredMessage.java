@@ -0,0 +1,97 @@
+package com.github.gradusnikov.eclipse.assistai.chat;
+
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.ImageLoader;
+
+import com.github.gradusnikov.eclipse.assistai.chat.Attachment.FileContentAttachment;
+import com.github.gradusnikov.eclipse.assistai.chat.Attachment.ImageAttachment;
+import com.github.gradusnikov.eclipse.assistai.tools.ImageUtilities;
+
+/**
+ * Serializable form of a {@link ChatMessage}, used to keep messages on disk.
+ */
+public record StoredMessage( String id, 
+                             String role, 
+                             String name, 
+                             String content, 
+                             FunctionCall functionCall, 
+                             String archiveId, 
+                             List<StoredAttachment> attachments )
+{
+    /**
+     * Serializable form of an {@link Attachment}. Images are stored as
+     * Base64 encoded JPEG.
+     */
+    public record StoredAttachment( String filePath, int lineNumberStart, int lineNumberEnd, String content, String image )
+    {
+        static StoredAttachment of( Attachment attachment )
+        {
+            if ( attachment instanceof FileContentAttachment file )
+            {
+                return new StoredAttachment( file.getFileName(), file.getLineNumberStart(), file.getLineNumberEnd(), file.getSelectedContent(), null );
+            }
+            if ( attachment.getImageData() != null )
+            {
+                return new StoredAttachment( null, 0, 0, null, ImageUtilities.toBase64Jpeg( attachment.getImageData() ) );
+            }
+            return null;
+        }
+
+        Attachment toAttachment()
+        {
+            if ( image != null )
+            {
+                ImageData[] images = new ImageLoader().load( new ByteArrayInputStream( Base64.getDecoder().decode( image ) ) );
+                return images.length > 0 ? new ImageAttachment( images[0], ImageUtilities.createPreview( images[0] ) ) : null;
+            }
+            return new FileContentAttachment( filePath, lineNumberStart, lineNumberEnd, content );
+        }
+    }
+
+    public static StoredMessage of( ChatMessage message )
+    {
+        var attachments = message.getAttachments()
+                                 .stream()
+                                 .map( StoredAttachment::of )
+                                 .filter( Objects::nonNull )
+                                 .collect( Collectors.toList() );
+        return new StoredMessage( message.getId(), 
+                                  message.getRole(), 
+                                  message.getName(), 
+                                  message.getContent(), 
+                                  message.getFunctionCall(), 
+                                  message.getArchiveId(), 
+                                  attachments );
+    }
+
+    /**
+     * Returns this message with the given content, e.g. without it when the
+     * body is stored separately.
+     */
+    public StoredMessage withContent( String content )
+    {
+        return new StoredMessage( id, role, name, content, functionCall, archiveId, attachments );
+    }
+
+    public ChatMessage toChatMessage()
+    {
+        var message = new ChatMessage( id, name, role );
+        message.setContent( Objects.requireNonNullElse( content, "" ) );
+        message.setFunctionCall( functionCall );
+        message.setArchiveId( archiveId );
+        if ( attachments != null )
+        {
+            message.setAttachments( attachments.stream()
+                                               .map( StoredAttachment::toAttachment )
+                                               .filter( Objects::nonNull )
+                                               .collect( Collectors.toList() ) );
+        }
+        return message;
+    }
+}
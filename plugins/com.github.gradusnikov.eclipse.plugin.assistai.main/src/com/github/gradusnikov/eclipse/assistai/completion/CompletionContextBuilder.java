@@ -16,6 +16,7 @@ import org.eclipse.ui.texteditor.ITextEditor;
 import com.github.gradusnikov.eclipse.assistai.mcp.services.EditorService;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceToolResult;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSessionManager;
 
 import jakarta.inject.Inject;
 
@@ -36,7 +37,7 @@ public class CompletionContextBuilder
     private EditorService editorService;
     
     @Inject
-    private ResourceCache resourceCache;
+    private ChatSessionManager sessionManager;
     
     /**
      * Builds completion context from JDT ContentAssistInvocationContext.
@@ -215,10 +216,11 @@ public class CompletionContextBuilder
     }
     
     /**
-     * Ensures the file content is in ResourceCache for full context.
+     * Ensures the file content is in the ResourceCache of the active chat session for full context.
      */
     private void ensureFileInCache(IFile file) 
     {
+        ResourceCache resourceCache = sessionManager.getActiveSession().getResourceCache();
         if (!resourceCache.get(file).isPresent()) 
         {
             ResourceToolResult result = editorService.getCurrentlyOpenedFileContentWithResource();
@@ -0,0 +1,346 @@
+package com.github.gradusnikov.eclipse.assistai.context;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.e4.core.di.annotations.Creatable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
+import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
+import com.github.gradusnikov.eclipse.assistai.models.ModelLimits;
+import com.github.gradusnikov.eclipse.assistai.resources.CachedResource;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounter;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
+
+import io.modelcontextprotocol.spec.McpSchema.Tool;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Fits a request into the context window of the selected model.
+ * <p>
+ * The system prompt, the tool schemas and the model's output reservation are
+ * always included. The remaining budget is shared between cached resources
+ * and the conversation history. When both do not fit, the least recently used
+ * resources and the oldest messages are dropped; dropped messages are replaced
+ * by a short extractive note so the model knows that earlier context existed.
+ * Large Java resources are sliced by the {@link JavaResourceSlicer} first.
+ */
+@Creatable
+@Singleton
+public class ContextBudgetPlanner
+{
+    /** Share of the context window kept free for estimation errors and request framing */
+    private static final double SAFETY_MARGIN = 0.05;
+    
+    /** Minimal share of the remaining budget given to resources when history competes for space */
+    private static final double MIN_RESOURCE_SHARE = 0.4;
+    
+    /** Approximate cost of an image attachment */
+    private static final int IMAGE_TOKENS = 1_000;
+    
+    /** Approximate per-message framing overhead (role, separators) */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    
+    /** Approximate cost of the &lt;resource&gt; element wrapping each cached resource */
+    private static final int RESOURCE_OVERHEAD_TOKENS = 40;
+    
+    /** Number of dropped user requests quoted in the omission note */
+    private static final int MAX_SUMMARIZED_REQUESTS = 10;
+    
+    private static final int MAX_SUMMARY_LINE_LENGTH = 200;
+    
+    private final ILog logger;
+    
+    private final TokenCounterRegistry tokenCounters;
+    
+    private final JavaResourceSlicer javaResourceSlicer;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    public ContextBudgetPlanner( ILog logger, TokenCounterRegistry tokenCounters )
+    {
+        this( logger, tokenCounters, new JavaResourceSlicer( logger, tokenCounters ) );
+    }
+    
+    @Inject
+    public ContextBudgetPlanner( ILog logger, TokenCounterRegistry tokenCounters, JavaResourceSlicer javaResourceSlicer )
+    {
+        this.logger = Objects.requireNonNull( logger );
+        this.tokenCounters = Objects.requireNonNull( tokenCounters );
+        this.javaResourceSlicer = Objects.requireNonNull( javaResourceSlicer );
+    }
+    
+    /**
+     * Plans the content of a single request.
+     * 
+     * @param model the model the request is sent to
+     * @param systemPrompt the system prompt, without resources
+     * @param resources the cached resources, least recently used first
+     * @param tools the available tool schemas (empty when function calling is disabled)
+     * @param history the conversation messages, oldest first
+     * @return the plan describing what to send
+     */
+    public ContextPlan plan( ModelApiDescriptor model, 
+                             String systemPrompt, 
+                             Collection<CachedResource> resources, 
+                             Map<String, Tool> tools, 
+                             List<ChatMessage> history )
+    {
+        return plan( model, systemPrompt, resources, ResourceCache::toContextBlock, tools, history );
+    }
+    
+    /**
+     * Plans the content of a single request with the resources of the given
+     * cache, reusing the cache's memoized resources block. Large Java
+     * resources are sliced to the members referenced in the recent history.
+     * 
+     * @param model the model the request is sent to
+     * @param systemPrompt the system prompt, without resources
+     * @param resourceCache the cache holding the resources
+     * @param tools the available tool schemas (empty when function calling is disabled)
+     * @param history the conversation messages, oldest first
+     * @return the plan describing what to send
+     */
+    public ContextPlan plan( ModelApiDescriptor model, 
+                             String systemPrompt, 
+                             ResourceCache resourceCache, 
+                             Map<String, Tool> tools, 
+                             List<ChatMessage> history )
+    {
+        var resources = javaResourceSlicer.slice( resourceCache.getAll().values(), history );
+        return plan( model, systemPrompt, resources, resourceCache::renderContextBlock, tools, history );
+    }
+    
+    private ContextPlan plan( ModelApiDescriptor model, 
+                              String systemPrompt, 
+                              Collection<CachedResource> resources, 
+                              Function<List<CachedResource>, String> resourcesRenderer,
+                              Map<String, Tool> tools, 
+                              List<ChatMessage> history )
+    {
+        var limits = ModelLimits.of( model );
+        var counter = tokenCounters.forModel( model );
+        var prompt = Objects.requireNonNullElse( systemPrompt, "" );
+        var messages = List.copyOf( history );
+        
+        int inputWindow = limits.contextWindow() - limits.maxOutputTokens() - (int) ( limits.contextWindow() * SAFETY_MARGIN );
+        int systemTokens = counter.count( prompt );
+        int toolTokens = tools.entrySet().stream().mapToInt( entry -> estimateTool( counter, entry.getKey(), entry.getValue() ) ).sum();
+        int available = Math.max( 0, inputWindow - systemTokens - toolTokens );
+        
+        int[] messageTokens = messages.stream().mapToInt( message -> estimateMessage( counter, message ) ).toArray();
+        int historyTokens = sum( messageTokens );
+        int resourceTokens = resources.stream().mapToInt( ContextBudgetPlanner::estimateResource ).sum();
+        
+        if ( systemTokens + toolTokens > inputWindow )
+        {
+            logger.warn( String.format( "Context plan for %s: system prompt (~%d) and tool schemas (~%d) alone exceed the input window (%d tokens)",
+                    model.modelName(), systemTokens, toolTokens, inputWindow ) );
+        }
+        
+        List<CachedResource> selectedResources;
+        List<ChatMessage> selectedMessages;
+        if ( historyTokens + resourceTokens <= available )
+        {
+            selectedResources = List.copyOf( resources );
+            selectedMessages = messages;
+        }
+        else
+        {
+            int resourceBudget = Math.max( available - historyTokens, (int) ( available * MIN_RESOURCE_SHARE ) );
+            selectedResources = selectResources( resources, resourceBudget );
+            int resourcesUsed = selectedResources.stream().mapToInt( ContextBudgetPlanner::estimateResource ).sum();
+            selectedMessages = selectMessages( messages, messageTokens, available - resourcesUsed );
+        }
+        
+        var resourcesBlock = resourcesRenderer.apply( selectedResources );
+        var plannedSystemPrompt = resourcesBlock.isEmpty() ? prompt : resourcesBlock + "\n\n" + prompt;
+        
+        int plannedResourceTokens = selectedResources.stream().mapToInt( ContextBudgetPlanner::estimateResource ).sum();
+        int plannedHistoryTokens = selectedMessages.stream().mapToInt( message -> estimateMessage( counter, message ) ).sum();
+        // a trimmed history starts with the omission note
+        int keptMessages = selectedMessages == messages ? messages.size() : selectedMessages.size() - 1;
+        int droppedMessages = messages.size() - keptMessages;
+        int droppedResources = resources.size() - selectedResources.size();
+        
+        var plan = new ContextPlan( 
+                plannedSystemPrompt, 
+                selectedMessages, 
+                tools, 
+                limits.maxOutputTokens(), 
+                systemTokens + toolTokens + plannedResourceTokens + plannedHistoryTokens,
+                droppedMessages, 
+                droppedResources );
+        
+        logger.info( String.format( 
+                "Context plan for %s (%s): window=%d, output=%d, system=~%d, tools=%d (~%d), resources=%d/%d (~%d/~%d), history=%d/%d (~%d/~%d), total=~%d",
+                model.modelName(), counter.name(), limits.contextWindow(), limits.maxOutputTokens(), 
+                systemTokens, tools.size(), toolTokens,
+                selectedResources.size(), resources.size(), plannedResourceTokens, resourceTokens,
+                keptMessages, messages.size(), plannedHistoryTokens, historyTokens,
+                plan.estimatedInputTokens() ) );
+        
+        return plan;
+    }
+    
+    /**
+     * Selects the most recently used resources that fit into the budget, 
+     * preserving the cache order.
+     */
+    private List<CachedResource> selectResources( Collection<CachedResource> resources, int budget )
+    {
+        var mostRecentFirst = new ArrayList<>( resources );
+        Collections.reverse( mostRecentFirst );
+        
+        var selected = new ArrayList<CachedResource>();
+        int used = 0;
+        for ( CachedResource resource : mostRecentFirst )
+        {
+            int tokens = estimateResource( resource );
+            if ( used + tokens <= budget )
+            {
+                selected.add( resource );
+                used += tokens;
+            }
+            else
+            {
+                logger.info( "Context plan: leaving out resource " + resource.descriptor().uri() + " (~" + tokens + " tokens)" );
+            }
+        }
+        Collections.reverse( selected );
+        return selected;
+    }
+    
+    /**
+     * Keeps the newest messages that fit into the budget. The last message is
+     * always kept. A tool result is never separated from the call that produced
+     * it, and the omitted prefix is replaced by a single note message.
+     */
+    private List<ChatMessage> selectMessages( List<ChatMessage> messages, int[] messageTokens, int budget )
+    {
+        if ( messages.isEmpty() )
+        {
+            return messages;
+        }
+        // reserve room for the omission note
+        int remaining = budget - MESSAGE_OVERHEAD_TOKENS - MAX_SUMMARIZED_REQUESTS * MAX_SUMMARY_LINE_LENGTH / 4;
+        int cut = messages.size() - 1;
+        remaining -= messageTokens[cut];
+        while ( cut > 0 && remaining - messageTokens[cut - 1] >= 0 )
+        {
+            cut--;
+            remaining -= messageTokens[cut];
+        }
+        // do not start with an orphaned tool result
+        while ( cut < messages.size() - 1 && "function".equals( messages.get( cut ).getRole() ) )
+        {
+            cut++;
+        }
+        // ...unless it is the last message, then its call has to be kept as well
+        while ( cut > 0 && "function".equals( messages.get( cut ).getRole() ) )
+        {
+            cut--;
+        }
+        if ( cut == 0 )
+        {
+            return messages;
+        }
+        var selected = new ArrayList<ChatMessage>( messages.size() - cut + 1 );
+        selected.add( createOmissionNote( messages.subList( 0, cut ) ) );
+        selected.addAll( messages.subList( cut, messages.size() ) );
+        return selected;
+    }
+    
+    /**
+     * Creates a user message summarizing the omitted part of the conversation
+     * by quoting the most recent of the dropped user requests.
+     */
+    private ChatMessage createOmissionNote( List<ChatMessage> omitted )
+    {
+        var requests = omitted.stream()
+                              .filter( message -> "user".equals( message.getRole() ) )
+                              .map( ChatMessage::getContent )
+                              .filter( StringUtils::isNotBlank )
+                              .map( content -> StringUtils.abbreviate( content.strip().replaceAll( "\\s+", " " ), MAX_SUMMARY_LINE_LENGTH ) )
+                              .collect( Collectors.toList() );
+        var recentRequests = requests.subList( Math.max( 0, requests.size() - MAX_SUMMARIZED_REQUESTS ), requests.size() );
+        
+        var note = new StringBuilder();
+        note.append( "[Context note: " ).append( omitted.size() )
+            .append( " earlier messages were omitted to fit the model's context window." );
+        if ( !recentRequests.isEmpty() )
+        {
+            note.append( " Earlier user requests included:\n" );
+            recentRequests.forEach( request -> note.append( "- " ).append( request ).append( "\n" ) );
+        }
+        note.append( "]" );
+        
+        var message = new ChatMessage( UUID.randomUUID().toString(), "user" );
+        message.setContent( note.toString() );
+        return message;
+    }
+    
+    /**
+     * Estimates the tokens a message takes in a request, including its
+     * attachments and function call arguments.
+     */
+    public static int estimateMessage( TokenCounter counter, ChatMessage message )
+    {
+        int tokens = MESSAGE_OVERHEAD_TOKENS + counter.count( message.getContent() );
+        for ( Attachment attachment : message.getAttachments() )
+        {
+            tokens += counter.count( attachment.toChatMessageContent() );
+            if ( attachment.getImageData() != null )
+            {
+                tokens += IMAGE_TOKENS;
+            }
+        }
+        if ( message.getFunctionCall() != null )
+        {
+            tokens += counter.count( String.valueOf( message.getFunctionCall().arguments() ) );
+        }
+        return tokens;
+    }
+    
+    private int estimateTool( TokenCounter counter, String toolName, Tool tool )
+    {
+        String schema;
+        try
+        {
+            schema = objectMapper.writeValueAsString( tool.inputSchema() );
+        }
+        catch ( Exception e )
+        {
+            schema = String.valueOf( tool.inputSchema() );
+        }
+        return counter.count( toolName ) + counter.count( tool.description() ) + counter.count( schema );
+    }
+    
+    private static int estimateResource( CachedResource resource )
+    {
+        return RESOURCE_OVERHEAD_TOKENS + resource.estimateTokens();
+    }
+    
+    private static int sum( int[] values )
+    {
+        int sum = 0;
+        for ( int value : values )
+        {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.gradusnikov.eclipse.assistai.context;
+
+import java.util.List;
+import java.util.Map;
+
+import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
+
+import io.modelcontextprotocol.spec.McpSchema.Tool;
+
+/**
+ * The result of fitting a request into a model's context window.
+ * Language model clients build their request body from the plan
+ * instead of the raw conversation and resource cache.
+ * 
+ * @param systemPrompt the system prompt, with the selected resources block prepended
+ * @param messages the conversation messages to send, oldest first
+ * @param tools the tool schemas to advertise
+ * @param maxOutputTokens the number of tokens reserved for the model's answer
+ * @param estimatedInputTokens the estimated size of the planned input
+ * @param droppedMessages number of conversation messages left out of the request
+ * @param droppedResources number of cached resources left out of the request
+ */
+public record ContextPlan(
+        String systemPrompt,
+        List<ChatMessage> messages,
+        Map<String, Tool> tools,
+        int maxOutputTokens,
+        int estimatedInputTokens,
+        int droppedMessages,
+        int droppedResources )
+{
+    /**
+     * Returns true if anything had to be left out to fit the context window.
+     */
+    public boolean isTrimmed()
+    {
+        return droppedMessages > 0 || droppedResources > 0;
+    }
+}
@@ -0,0 +1,255 @@
+package com.github.gradusnikov.eclipse.assistai.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.e4.core.di.annotations.Creatable;
+
+import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
+import com.github.gradusnikov.eclipse.assistai.models.ModelLimits;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Decides when and how much of a conversation is compacted, and renders the
+ * extractive summary that replaces the compacted messages.
+ * <p>
+ * Compaction starts once the uncompacted history exceeds a share of the
+ * model's input window. The newest messages are kept verbatim, everything
+ * between the existing summaries and the kept tail is replaced by one new
+ * summary. Existing summaries are never rewritten, so the beginning of the
+ * request stays byte-identical between compactions and provider side prompt
+ * caches keep matching.
+ */
+@Creatable
+@Singleton
+public class ConversationCompactor
+{
+    /** Share of the input window the uncompacted history may take before it is compacted */
+    private static final double COMPACTION_THRESHOLD = 0.6;
+
+    /** Share of the input window kept verbatim at the end of the conversation */
+    private static final double KEEP_RECENT_SHARE = 0.2;
+
+    /** Smaller ranges are not worth a summary */
+    private static final int MIN_COMPACTED_MESSAGES = 4;
+
+    private static final int MAX_SUMMARY_LENGTH = 12_000;
+
+    private static final int MAX_USER_LINE_LENGTH = 400;
+
+    private static final int MAX_LINE_LENGTH = 200;
+
+    /**
+     * A range of messages selected for compaction.
+     *
+     * @param from index of the first compacted message
+     * @param messages the compacted messages
+     * @param tokens the estimated tokens of the compacted messages
+     */
+    public record Compaction( int from, List<ChatMessage> messages, int tokens ) {}
+
+    private final TokenCounterRegistry tokenCounters;
+
+    @Inject
+    public ConversationCompactor( TokenCounterRegistry tokenCounters )
+    {
+        this.tokenCounters = Objects.requireNonNull( tokenCounters );
+    }
+
+    /**
+     * Selects the messages to compact.
+     *
+     * @param model the model the conversation is sent to
+     * @param messages the conversation, oldest first
+     * @return the range to compact, or empty when the history is small enough
+     */
+    public Optional<Compaction> select( ModelApiDescriptor model, List<ChatMessage> messages )
+    {
+        var limits = ModelLimits.of( model );
+        var counter = tokenCounters.forModel( model );
+        int inputWindow = limits.contextWindow() - limits.maxOutputTokens();
+
+        // summaries of earlier compactions form a stable prefix
+        int from = 0;
+        while ( from < messages.size() && messages.get( from ).isCompactionSummary() )
+        {
+            from++;
+        }
+
+        int[] tokens = new int[messages.size()];
+        int total = 0;
+        for ( int i = from; i < messages.size(); i++ )
+        {
+            tokens[i] = ContextBudgetPlanner.estimateMessage( counter, messages.get( i ) );
+            total += tokens[i];
+        }
+        if ( total <= inputWindow * COMPACTION_THRESHOLD )
+        {
+            return Optional.empty();
+        }
+
+        // keep the newest messages within the tail budget, at least the last one
+        int keep = (int) ( inputWindow * KEEP_RECENT_SHARE );
+        int cut = messages.size() - 1;
+        int kept = tokens[cut];
+        while ( cut > from && kept + tokens[cut - 1] <= keep )
+        {
+            cut--;
+            kept += tokens[cut];
+        }
+
+        int boundary = alignBoundary( messages, from, cut );
+        if ( boundary - from < MIN_COMPACTED_MESSAGES )
+        {
+            return Optional.empty();
+        }
+        int compactedTokens = 0;
+        for ( int i = from; i < boundary; i++ )
+        {
+            compactedTokens += tokens[i];
+        }
+        return Optional.of( new Compaction( from, List.copyOf( messages.subList( from, boundary ) ), compactedTokens ) );
+    }
+
+    /**
+     * Moves the boundary back to the start of the user turn containing it, so
+     * whole turns are compacted. When the kept tail is a single long agent
+     * turn, the boundary is only moved so that no tool result is separated
+     * from its call.
+     */
+    private int alignBoundary( List<ChatMessage> messages, int from, int cut )
+    {
+        for ( int i = cut; i > from; i-- )
+        {
+            if ( isUserRequest( messages.get( i ) ) )
+            {
+                // do not give up more than half of the compactable range
+                if ( i - from >= ( cut - from ) / 2 )
+                {
+                    return i;
+                }
+                break;
+            }
+        }
+        int boundary = cut;
+        while ( boundary > from && "function".equals( messages.get( boundary ).getRole() ) )
+        {
+            boundary--;
+        }
+        return boundary;
+    }
+
+    /**
+     * Renders an extractive summary of the compacted messages: user requests,
+     * the beginning of assistant replies, and one line per tool call with the
+     * beginning of its result.
+     */
+    public ChatMessage createSummary( Compaction compaction, String archiveId )
+    {
+        var entries = new ArrayList<String>();
+        var userRequests = new ArrayList<Boolean>();
+        for ( ChatMessage message : compaction.messages() )
+        {
+            String entry = summarize( message );
+            if ( entry != null )
+            {
+                entries.add( entry );
+                userRequests.add( isUserRequest( message ) );
+            }
+        }
+
+        // user requests are always listed, other entries while there is room
+        int length = 0;
+        for ( int i = 0; i < entries.size(); i++ )
+        {
+            if ( userRequests.get( i ) )
+            {
+                length += entries.get( i ).length() + 1;
+            }
+        }
+        var included = new boolean[entries.size()];
+        int omitted = 0;
+        for ( int i = entries.size() - 1; i >= 0; i-- )
+        {
+            if ( userRequests.get( i ) )
+            {
+                included[i] = true;
+            }
+            else if ( length + entries.get( i ).length() + 1 <= MAX_SUMMARY_LENGTH )
+            {
+                included[i] = true;
+                length += entries.get( i ).length() + 1;
+            }
+            else
+            {
+                omitted++;
+            }
+        }
+
+        var summary = new StringBuilder();
+        summary.append( String.format( "[Compacted history: %d earlier messages (~%d tokens) are summarized below. "
+                + "Tool results are abbreviated; repeat a tool call if its full output is needed.]\n",
+                compaction.messages().size(), compaction.tokens() ) );
+        for ( int i = 0; i < entries.size(); i++ )
+        {
+            if ( included[i] )
+            {
+                summary.append( entries.get( i ) ).append( "\n" );
+            }
+        }
+        if ( omitted > 0 )
+        {
+            summary.append( "(" ).append( omitted ).append( " older steps not listed)\n" );
+        }
+
+        // a system note, so the kept user turn after it stays the only user turn
+        var message = new ChatMessage( UUID.randomUUID().toString(), "system" );
+        message.setContent( summary.toString() );
+        message.setArchiveId( archiveId );
+        return message;
+    }
+
+    private String summarize( ChatMessage message )
+    {
+        String content = oneLine( message.getContent() );
+        if ( message.isCompactionSummary() )
+        {
+            return "- Earlier summary: " + StringUtils.abbreviate( content, MAX_USER_LINE_LENGTH );
+        }
+        return switch ( Objects.requireNonNullElse( message.getRole(), "" ) )
+        {
+            case "user" -> "- User: " + StringUtils.abbreviate( content, MAX_USER_LINE_LENGTH );
+            case "assistant" -> {
+                var call = message.getFunctionCall();
+                if ( call != null )
+                {
+                    yield "- Called " + call.name() + " " + StringUtils.abbreviate( oneLine( String.valueOf( call.arguments() ) ), MAX_LINE_LENGTH );
+                }
+                yield content.isEmpty() ? null : "- Assistant: " + StringUtils.abbreviate( content, MAX_LINE_LENGTH );
+            }
+            case "function" -> {
+                int lines = message.getContent().isEmpty() ? 0 : (int) message.getContent().lines().count();
+                yield "  -> " + StringUtils.abbreviate( content, MAX_LINE_LENGTH ) + " (" + lines + " lines)";
+            }
+            default -> null;
+        };
+    }
+
+    private static boolean isUserRequest( ChatMessage message )
+    {
+        return "user".equals( message.getRole() ) && !message.isCompactionSummary();
+    }
+
+    private static String oneLine( String text )
+    {
+        return Objects.requireNonNullElse( text, "" ).strip().replaceAll( "\\s+", " " );
+    }
+}
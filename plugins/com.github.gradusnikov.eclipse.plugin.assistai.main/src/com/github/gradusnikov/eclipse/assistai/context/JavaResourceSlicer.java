@@ -0,0 +1,384 @@
+package com.github.gradusnikov.eclipse.assistai.context;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+
+import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
+import com.github.gradusnikov.eclipse.assistai.resources.CachedResource;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor.ResourceType;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Shortens large Java resources for the context window. The package, imports,
+ * fields and all type and member signatures are kept; bodies of methods that
+ * are not referenced in the recent conversation are elided. The model can
+ * read an elided member with the {@code getJavaMember} tool.
+ * <p>
+ * Slices are memoized per resource version and set of expanded members, so
+ * the resources block stays the same between requests that touch the same
+ * members.
+ */
+@Creatable
+@Singleton
+public class JavaResourceSlicer
+{
+    /** Java resources shorter than this are sent in full */
+    private static final int    MIN_SLICED_CHARS = 12_000;
+
+    /** Recent messages scanned for referenced member names */
+    private static final int    RECENT_MESSAGES  = 8;
+
+    private static final int    MAX_MEMOIZED     = 64;
+
+    private static final Pattern IDENTIFIER      = Pattern.compile( "[A-Za-z_$][A-Za-z0-9_$]*" );
+
+    /** Fenced code blocks and inline code of a markdown message */
+    private static final Pattern CODE_SPAN       = Pattern.compile( "```.*?```|`[^`\\n]+`", Pattern.DOTALL );
+
+    /** Members of Object and names too common to tell which member is meant */
+    private static final Set<String> COMMON_NAMES = Set.of( "equals", "hashCode", "toString", "getClass", "clone", "finalize",
+            "notify", "notifyAll", "wait", "compareTo", "get", "set", "is", "of", "valueOf", "values", "run", "call", "apply",
+            "accept", "test", "main", "init", "close", "size", "length", "iterator" );
+
+    private final ILog          logger;
+
+    private final TokenCounterRegistry tokenCounters;
+
+    private final Map<URI, Slice> slices = Collections.synchronizedMap( new LinkedHashMap<>( 16, 0.75f, true )
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<URI, Slice> eldest )
+        {
+            return size() > MAX_MEMOIZED;
+        }
+    } );
+
+    /**
+     * A resource version with the member names it declares and its slice for
+     * the given expanded members.
+     */
+    private record Slice( CachedResource source, Set<String> memberNames, Set<String> expanded, CachedResource sliced )
+    {
+    }
+
+    /**
+     * A member of a Java source, with its 1-based line range.
+     */
+    public record Member( String name, int startLine, int endLine, String source )
+    {
+    }
+
+    @Inject
+    public JavaResourceSlicer( ILog logger, TokenCounterRegistry tokenCounters )
+    {
+        this.logger = Objects.requireNonNull( logger );
+        this.tokenCounters = Objects.requireNonNull( tokenCounters );
+    }
+
+    /**
+     * Returns the resources with large Java sources sliced, in the same order.
+     *
+     * @param resources the cached resources
+     * @param history the conversation, oldest first; its recent messages decide which members are expanded
+     */
+    public List<CachedResource> slice( Collection<CachedResource> resources, List<ChatMessage> history )
+    {
+        Set<String> referenced = null;
+        List<CachedResource> result = new ArrayList<>( resources.size() );
+        for ( CachedResource resource : resources )
+        {
+            if ( !isSliceable( resource ) )
+            {
+                result.add( resource );
+                continue;
+            }
+            if ( referenced == null )
+            {
+                referenced = referencedNames( history );
+            }
+            result.add( slice( resource, referenced ) );
+        }
+        return result;
+    }
+
+    private boolean isSliceable( CachedResource resource )
+    {
+        var type = resource.descriptor().type();
+        return ( type == ResourceType.WORKSPACE_FILE || type == ResourceType.JAVA_TYPE )
+                && resource.descriptor().displayName().endsWith( ".java" )
+                && resource.content() != null
+                && resource.content().length() >= MIN_SLICED_CHARS
+                // a resource in delta mode has to keep its base stable
+                && resource.deltas() == null;
+    }
+
+    private CachedResource slice( CachedResource resource, Set<String> referenced )
+    {
+        URI uri = resource.descriptor().uri();
+        Slice memo = slices.get( uri );
+        if ( memo != null && memo.source() == resource )
+        {
+            Set<String> expanded = intersection( memo.memberNames(), referenced );
+            if ( expanded.equals( memo.expanded() ) )
+            {
+                return memo.sliced();
+            }
+        }
+        try
+        {
+            CompilationUnit unit = parse( resource.content() );
+            Set<String> memberNames = new HashSet<>();
+            List<MethodDeclaration> methods = new ArrayList<>();
+            unit.accept( new ASTVisitor()
+            {
+                @Override
+                public boolean visit( MethodDeclaration node )
+                {
+                    memberNames.add( node.getName().getIdentifier() );
+                    if ( node.getBody() != null )
+                    {
+                        methods.add( node );
+                    }
+                    return false;
+                }
+            } );
+            Set<String> expanded = intersection( memberNames, referenced );
+            String content = elideBodies( resource.content(), unit, methods, expanded );
+            CachedResource sliced = content == null ? resource
+                    : CachedResource.create( resource.descriptor(), content, resource.version(),
+                            tokenCounters.forChatModel().count( content ), resource.modificationStamp() );
+            slices.put( uri, new Slice( resource, memberNames, expanded, sliced ) );
+            return sliced;
+        }
+        catch ( RuntimeException e )
+        {
+            logger.warn( "Could not slice " + uri + ", sending it in full: " + e.getMessage() );
+            return resource;
+        }
+    }
+
+    /**
+     * Replaces the bodies of the not expanded methods by a short note.
+     *
+     * @return the sliced source, or null if nothing was elided
+     */
+    private String elideBodies( String source, CompilationUnit unit, List<MethodDeclaration> methods, Set<String> expanded )
+    {
+        StringBuilder sb = new StringBuilder( source.length() / 4 );
+        sb.append( "// Sliced: bodies of methods not referenced in the conversation are elided.\n" )
+          .append( "// Read them with the getJavaMember tool, passing this resource's uri and the method name.\n" );
+        int position = 0;
+        int elided = 0;
+        for ( MethodDeclaration method : methods )
+        {
+            Block body = method.getBody();
+            if ( expanded.contains( method.getName().getIdentifier() ) || body.getStartPosition() < position )
+            {
+                continue;
+            }
+            int end = body.getStartPosition() + body.getLength();
+            int lines = unit.getLineNumber( end - 1 ) - unit.getLineNumber( body.getStartPosition() ) + 1;
+            sb.append( source, position, body.getStartPosition() )
+              .append( "{ /* " ).append( lines ).append( " lines elided */ }" );
+            position = end;
+            elided++;
+        }
+        if ( elided == 0 )
+        {
+            return null;
+        }
+        sb.append( source, position, source.length() );
+        return sb.toString();
+    }
+
+    /**
+     * Collects the identifiers used in the recent user and assistant messages
+     * and in the arguments of recent tool calls, e.g. the method passed to
+     * {@code getMethodCallHierarchy}. Tool results are not scanned, they
+     * usually contain whole files. Outside of code spans only identifiers
+     * that look like code count, so plain words do not expand every member
+     * that happens to share their name; {@link #COMMON_NAMES} never count.
+     */
+    static Set<String> referencedNames( List<ChatMessage> history )
+    {
+        Set<String> names = new HashSet<>();
+        for ( int i = Math.max( 0, history.size() - RECENT_MESSAGES ); i < history.size(); i++ )
+        {
+            ChatMessage message = history.get( i );
+            if ( "user".equals( message.getRole() ) || "assistant".equals( message.getRole() ) )
+            {
+                addReferences( message.getContent(), names );
+            }
+            if ( message.getFunctionCall() != null && message.getFunctionCall().arguments() != null )
+            {
+                message.getFunctionCall().arguments().values().forEach( value -> addIdentifiers( String.valueOf( value ), names ) );
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Adds all identifiers of the code spans of a message, and the code-like
+     * identifiers of its prose.
+     */
+    private static void addReferences( String text, Set<String> names )
+    {
+        if ( text == null )
+        {
+            return;
+        }
+        Matcher code = CODE_SPAN.matcher( text );
+        int prose = 0;
+        while ( code.find() )
+        {
+            addCodeLikeIdentifiers( text.substring( prose, code.start() ), names );
+            addIdentifiers( code.group(), names );
+            prose = code.end();
+        }
+        addCodeLikeIdentifiers( text.substring( prose ), names );
+    }
+
+    private static void addIdentifiers( String text, Set<String> names )
+    {
+        if ( text == null )
+        {
+            return;
+        }
+        Matcher matcher = IDENTIFIER.matcher( text );
+        while ( matcher.find() )
+        {
+            if ( !COMMON_NAMES.contains( matcher.group() ) )
+            {
+                names.add( matcher.group() );
+            }
+        }
+    }
+
+    /**
+     * Adds the identifiers of prose that are written like code: camel case,
+     * with digits or underscores, qualified ({@code Type.member}) or called
+     * ({@code member(}).
+     */
+    private static void addCodeLikeIdentifiers( String text, Set<String> names )
+    {
+        Matcher matcher = IDENTIFIER.matcher( text );
+        while ( matcher.find() )
+        {
+            String name = matcher.group();
+            if ( name.length() < 2 || COMMON_NAMES.contains( name ) )
+            {
+                continue;
+            }
+            boolean qualified = ( matcher.start() > 0 && text.charAt( matcher.start() - 1 ) == '.' )
+                    || ( matcher.end() + 1 < text.length() && text.charAt( matcher.end() ) == '.'
+                            && Character.isJavaIdentifierStart( text.charAt( matcher.end() + 1 ) ) );
+            boolean called = matcher.end() < text.length() && text.charAt( matcher.end() ) == '(';
+            if ( qualified || called || name.substring( 1 ).chars()
+                    .anyMatch( c -> Character.isUpperCase( c ) || Character.isDigit( c ) || c == '_' || c == '$' ) )
+            {
+                names.add( name );
+            }
+        }
+    }
+
+    private static Set<String> intersection( Set<String> memberNames, Set<String> referenced )
+    {
+        Set<String> expanded = new HashSet<>( memberNames );
+        expanded.retainAll( referenced );
+        return expanded;
+    }
+
+    /**
+     * Finds the members with the given name (all overloads of a method, a
+     * field or a nested type) in a Java source.
+     */
+    public static List<Member> findMembers( String source, String memberName )
+    {
+        CompilationUnit unit = parse( source );
+        List<Member> members = new ArrayList<>();
+        unit.accept( new ASTVisitor()
+        {
+            @Override
+            public boolean visit( MethodDeclaration node )
+            {
+                if ( node.getName().getIdentifier().equals( memberName ) )
+                {
+                    add( node );
+                }
+                return true;
+            }
+
+            @Override
+            public boolean visit( FieldDeclaration node )
+            {
+                for ( Object fragment : node.fragments() )
+                {
+                    if ( ( (VariableDeclarationFragment) fragment ).getName().getIdentifier().equals( memberName ) )
+                    {
+                        add( node );
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void postVisit( ASTNode node )
+            {
+                if ( node instanceof AbstractTypeDeclaration type && type.getName().getIdentifier().equals( memberName )
+                        && type.getParent() != unit )
+                {
+                    add( node );
+                }
+            }
+
+            private void add( ASTNode node )
+            {
+                int start = node.getStartPosition();
+                int end = start + node.getLength();
+                members.add( new Member( memberName, unit.getLineNumber( start ), unit.getLineNumber( end - 1 ),
+                        source.substring( start, end ) ) );
+            }
+        } );
+        return members;
+    }
+
+    private static CompilationUnit parse( String source )
+    {
+        ASTParser parser = ASTParser.newParser( AST.getJLSLatest() );
+        parser.setKind( ASTParser.K_COMPILATION_UNIT );
+        Map<String, String> options = JavaCore.getOptions();
+        JavaCore.setComplianceOptions( JavaCore.latestSupportedJavaVersion(), options );
+        parser.setCompilerOptions( options );
+        parser.setSource( source.toCharArray() );
+        return (CompilationUnit) parser.createAST( null );
+    }
+}
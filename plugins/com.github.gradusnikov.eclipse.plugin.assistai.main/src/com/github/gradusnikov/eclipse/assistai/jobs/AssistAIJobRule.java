@@ -1,19 +1,40 @@
 package com.github.gradusnikov.eclipse.assistai.jobs;
 
+import java.util.Objects;
+
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 
-// Create a shared rule class
+/**
+ * Serializes the jobs of one conversation: a request and the function calls
+ * it triggers run one after another. Rules of different conversations do not
+ * conflict, so chat sessions work in parallel.
+ */
 public class AssistAIJobRule implements ISchedulingRule {
-	
+
+    private final String key;
+
+    /**
+     * @param key the conversation context id the jobs belong to
+     */
+    public AssistAIJobRule( String key )
+    {
+        this.key = Objects.requireNonNull( key );
+    }
+
+    public String getKey()
+    {
+        return key;
+    }
+
     @Override
     public boolean contains(ISchedulingRule rule)
     {
-        return rule == this;
+        return isConflicting( rule );
     }
-    
+
     @Override
-    public boolean isConflicting(ISchedulingRule rule) 
+    public boolean isConflicting(ISchedulingRule rule)
     {
-        return rule == this;
+        return rule instanceof AssistAIJobRule other && key.equals( other.key );
     }
-}
\ No newline at end of file
+}
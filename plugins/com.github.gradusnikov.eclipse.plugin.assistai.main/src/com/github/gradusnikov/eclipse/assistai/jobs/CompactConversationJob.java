@@ -0,0 +1,108 @@
+package com.github.gradusnikov.eclipse.assistai.jobs;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.core.di.annotations.Creatable;
+
+import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
+import com.github.gradusnikov.eclipse.assistai.chat.ConversationArchive;
+import com.github.gradusnikov.eclipse.assistai.context.ConversationCompactor;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptorRepository;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSession;
+import com.github.gradusnikov.eclipse.assistai.view.ChatViewPresenter;
+
+import jakarta.inject.Inject;
+
+/**
+ * Replaces older turns of the chat conversation with an extractive summary
+ * once the history grows past the compaction threshold. The compacted
+ * messages are archived on disk and can be restored from the chat view.
+ */
+@Creatable
+public class CompactConversationJob extends Job
+{
+    @Inject
+    private ILog                         logger;
+
+    @Inject
+    private ConversationCompactor        compactor;
+
+    @Inject
+    private ConversationArchive          archive;
+
+    @Inject
+    private ModelApiDescriptorRepository modelRepository;
+
+    @Inject
+    private ChatViewPresenter            presenter;
+
+    private ChatSession                  session;
+
+    public CompactConversationJob()
+    {
+        super( AssistAIJobConstants.JOB_PREFIX + " compacting conversation" );
+        setSystem( true );
+        setPriority( Job.DECORATE );
+    }
+
+    /**
+     * Sets the chat session to compact. The job runs under the session's
+     * scheduling rule, so it does not change the conversation while a request
+     * or a function call of the session is running.
+     */
+    public void setSession( ChatSession session )
+    {
+        this.session = session;
+        setRule( session.getSchedulingRule() );
+    }
+
+    /**
+     * Compactions belong to the family of their session, like its other
+     * jobs, so closing the session cancels them.
+     */
+    @Override
+    public boolean belongsTo( Object family )
+    {
+        return family != null && family == session;
+    }
+
+    @Override
+    protected IStatus run( IProgressMonitor monitor )
+    {
+        Conversation conversation = session.getConversation();
+        if ( !conversation.isAutoCompaction() )
+        {
+            return Status.OK_STATUS;
+        }
+        var model = modelRepository.getChatModel( session.getModelUid() );
+        var compaction = compactor.select( model, conversation.snapshot() );
+        if ( compaction.isEmpty() || monitor.isCanceled() )
+        {
+            return Status.OK_STATUS;
+        }
+        try
+        {
+            var selected = compaction.get();
+            String archiveId = archive.store( selected.messages() );
+            var summary = compactor.createSummary( selected, archiveId );
+            if ( monitor.isCanceled() || !conversation.compact( selected.from(), selected.messages(), summary ) )
+            {
+                // the conversation changed meanwhile, try again after the next turn
+                archive.delete( archiveId );
+                return Status.OK_STATUS;
+            }
+            logger.info( String.format( "Compacted %d messages (~%d tokens) into archive %s",
+                    selected.messages().size(), selected.tokens(), archiveId ) );
+            presenter.onConversationCompacted( session, summary, selected.messages().size(), selected.tokens() );
+            return Status.OK_STATUS;
+        }
+        catch ( Exception e )
+        {
+            logger.error( "Error compacting conversation: " + e.getMessage(), e );
+            return Status.error( e.getMessage(), e );
+        }
+    }
+}
@@ -19,11 +19,13 @@ import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
 import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
 import com.github.gradusnikov.eclipse.assistai.chat.ConversationContext;
 import com.github.gradusnikov.eclipse.assistai.chat.FunctionCall;
+import com.github.gradusnikov.eclipse.assistai.chat.MessageContentStore;
 import com.github.gradusnikov.eclipse.assistai.mcp.local.InMemoryMcpClientRetistry;
 import com.github.gradusnikov.eclipse.assistai.resources.CachedResource;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceResultSerializer;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceToolResult;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSession;
 
 import io.modelcontextprotocol.spec.McpSchema;
 import io.modelcontextprotocol.spec.McpSchema.CallToolRequest;
@@ -46,6 +48,9 @@ public class ExecuteFunctionCallJob extends Job
     @Inject
     private ResourceCache                 resourceCache;
 
+    @Inject
+    private MessageContentStore           contentStore;
+
     private FunctionCall                  functionCall;
     
     private ConversationContext           conversationContext;
@@ -53,11 +58,8 @@ public class ExecuteFunctionCallJob extends Job
     private Runnable                      onContinue;
 
 
-	// In ExecuteFunctionCallJob.java, add a job rule in the constructor
 	public ExecuteFunctionCallJob() {
 	    super(JOB_NAME);
-	    // Add a mutual exclusion rule for both SendConversationJob and ExecuteFunctionCallJob
-	    super.setRule(new AssistAIJobRule());
 	}
 	
 	@Override
@@ -85,8 +87,21 @@ public class ExecuteFunctionCallJob extends Job
     public void setConversationContext( ConversationContext context )
     {
         this.conversationContext = context;
+        // mutually exclusive with the other jobs of the same conversation
+        setRule( new AssistAIJobRule( context.getContextId() ) );
     }
     
+    /**
+     * Function calls belong to the family of the chat session they were
+     * requested by, so closing the session cancels them.
+     */
+    @Override
+    public boolean belongsTo( Object family )
+    {
+        return family instanceof ChatSession session && conversationContext != null
+                && session.getId().equals( conversationContext.getContextId() );
+    }
+
     public void setOnContinue( Runnable onContinue )
     {
         this.onContinue = onContinue;
@@ -211,6 +226,8 @@ public class ExecuteFunctionCallJob extends Job
         resultMessage.setAttachments( attachments );
         resultMessage.setContent( textContent.toString() );
         resultMessage.setFunctionCall( functionCall );
+        // large results (console output, builds, searches) are kept on disk
+        contentStore.offload( conversationContext.getContextId(), resultMessage );
 
         return resultMessage;
     }
@@ -236,7 +253,9 @@ public class ExecuteFunctionCallJob extends Job
         }
         
         // Cache the resource
-        CachedResource cached = resourceCache.put( resourceResult );
+        CachedResource cached = Optional.ofNullable( conversationContext.getResourceCache() )
+                                        .orElse( resourceCache )
+                                        .put( resourceResult );
         
         if ( cached != null )
         {
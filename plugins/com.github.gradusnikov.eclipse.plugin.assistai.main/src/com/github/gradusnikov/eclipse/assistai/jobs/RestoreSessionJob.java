@@ -0,0 +1,111 @@
+package com.github.gradusnikov.eclipse.assistai.jobs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.core.di.annotations.Creatable;
+
+import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
+import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
+import com.github.gradusnikov.eclipse.assistai.chat.MessageContentStore;
+import com.github.gradusnikov.eclipse.assistai.chat.StoredMessage;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
+import com.github.gradusnikov.eclipse.assistai.session.ConversationJournal;
+import com.github.gradusnikov.eclipse.assistai.session.StoredBody;
+import com.github.gradusnikov.eclipse.assistai.session.StoredResource;
+import com.github.gradusnikov.eclipse.assistai.view.ChatViewPresenter;
+
+import jakarta.inject.Inject;
+
+/**
+ * Restores the chat session of the previous workbench run from the
+ * {@link ConversationJournal}, in the background. Large message bodies are
+ * not read: they stay in the journal's bodies file and are read when a
+ * message is rendered or sent. The chat view renders only the newest messages.
+ */
+@Creatable
+public class RestoreSessionJob extends Job
+{
+    @Inject
+    private ILog                logger;
+
+    @Inject
+    private ConversationJournal journal;
+
+    @Inject
+    private Conversation        conversation;
+
+    @Inject
+    private ResourceCache       resourceCache;
+
+    @Inject
+    private MessageContentStore contentStore;
+
+    @Inject
+    private ChatViewPresenter   presenter;
+
+    public RestoreSessionJob()
+    {
+        // not prefixed, stopping the chat must not cancel the restore
+        super( "Restoring AI assistant chat session" );
+        setSystem( true );
+    }
+
+    @Override
+    protected IStatus run( IProgressMonitor monitor )
+    {
+        try
+        {
+            var session = journal.load();
+            var messages = new ArrayList<ChatMessage>( session.messages().size() );
+            for ( StoredMessage stored : session.messages() )
+            {
+                ChatMessage message = stored.toChatMessage();
+                StoredBody body = session.bodies().get( stored.id() );
+                if ( body != null )
+                {
+                    attach( message, body );
+                }
+                messages.add( message );
+            }
+            for ( StoredResource resource : session.resources() )
+            {
+                resourceCache.restore( resource.toDescriptor(), resource.content(), resource.version(), resource.tokenCount(), resource.modificationStamp() );
+            }
+            if ( !messages.isEmpty() )
+            {
+                conversation.restore( messages );
+                presenter.onSessionRestored( messages );
+            }
+            logger.info( "Restored chat session: " + messages.size() + " messages, " + session.resources().size() + " resources" );
+            return Status.OK_STATUS;
+        }
+        catch ( Exception e )
+        {
+            logger.error( "Error restoring chat session: " + e.getMessage(), e );
+            return Status.error( e.getMessage(), e );
+        }
+        finally
+        {
+            journal.markRestored();
+        }
+    }
+
+    private void attach( ChatMessage message, StoredBody body )
+    {
+        try
+        {
+            contentStore.attach( message, journal.resolve( body ), body.offset(), body.byteLength(), body.length(), body.preview() );
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Could not restore message body, keeping its beginning: " + e.getMessage() );
+            message.setContent( body.preview() );
+        }
+    }
+}
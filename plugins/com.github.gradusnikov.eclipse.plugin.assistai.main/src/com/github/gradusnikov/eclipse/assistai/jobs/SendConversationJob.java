@@ -1,5 +1,8 @@
 package com.github.gradusnikov.eclipse.assistai.jobs;
 
+import java.util.Arrays;
+import java.util.Objects;
+
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -7,9 +10,9 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.e4.core.di.annotations.Creatable;
 
-import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
 import com.github.gradusnikov.eclipse.assistai.chat.ConversationContext;
 import com.github.gradusnikov.eclipse.assistai.network.clients.ChatLanguageModelHttpClientProvider;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSession;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Provider;
@@ -24,36 +27,55 @@ public class SendConversationJob extends Job
     private ChatLanguageModelHttpClientProvider clientProvider;
     
     @Inject
-    private Conversation conversation;
+    private Provider<SendConversationJob> selfProvider;
     
     @Inject
-    private Provider<SendConversationJob> selfProvider;
+    private Provider<CompactConversationJob> compactConversationJobProvider;
+    
+    private ChatSession session;
     
     public SendConversationJob()
     {
         super( AssistAIJobConstants.JOB_PREFIX + " is working." );
-        setRule(new AssistAIJobRule());
+    }
+    
+    /**
+     * Sets the chat session to send. Requests of one session, and the function
+     * calls they trigger, are serialized by the session's rule.
+     */
+    public void setSession( ChatSession session )
+    {
+        this.session = session;
+        setRule( session.getSchedulingRule() );
+    }
+
+    /**
+     * Requests belong to the family of their session, so closing the session
+     * cancels them.
+     */
+    @Override
+    public boolean belongsTo( Object family )
+    {
+        return family != null && family == session;
     }
 	
 
 	@Override
 	protected IStatus run(IProgressMonitor progressMonitor) 
 	{
-	    // Create a conversation context for the ChatView
-	    ConversationContext context = ConversationContext.builder()
-	            .contextId( "chat-view" )
-	            .conversation( conversation )
-	            // No tool restrictions for ChatView - all tools allowed
-	            .allowedTools( null )
-	            .build();
+	    Objects.requireNonNull( session, "Chat session cannot be null" );
+	    // Create a conversation context for the session
+	    ConversationContext context = session.createContext();
 	    
 	    // Create continuation callback that schedules another job
 	    Runnable onContinue = () -> {
 	        // Schedule another job to continue the conversation
-	        selfProvider.get().schedule();
+	        var next = selfProvider.get();
+	        next.setSession( session );
+	        next.schedule();
 	    };
 	    
-	    var aiClient = clientProvider.get( context, onContinue );
+	    var aiClient = clientProvider.get( session, context, onContinue );
 	    aiClient.setCancelProvider(() -> progressMonitor.isCanceled()); 
 	    
         // Get the runnable from the client
@@ -71,7 +93,22 @@ public class SendConversationJob extends Job
         {
         	return Status.CANCEL_STATUS;
         }
+        scheduleCompaction();
         return Status.OK_STATUS;
 	}
 
+    /**
+     * Compacts the history in the background, so the next turn is sent with
+     * fewer tokens. The job decides itself whether compaction is needed.
+     */
+    private void scheduleCompaction()
+    {
+        if ( session.getConversation().isAutoCompaction()
+                && Arrays.stream( Job.getJobManager().find( session ) ).noneMatch( CompactConversationJob.class::isInstance ) )
+        {
+            var job = compactConversationJobProvider.get();
+            job.setSession( session );
+            job.schedule();
+        }
+    }
 }
@@ -3,6 +3,7 @@ package com.github.gradusnikov.eclipse.assistai.mcp.servers;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.eclipse.e4.core.di.annotations.Creatable;
 
@@ -82,6 +83,14 @@ public class EclipseIntegrationsMcpServer
         return ResourceResultSerializer.serialize(result);
     }
 
+    @Tool(name = "getJavaMember", description = "Reads members of a Java resource whose bodies were elided in the <resources> context block. Returns the full source of all methods, fields or nested types with the given name.", type = "object")
+    public String getJavaMember(
+            @ToolParam(name = "resourceUri", description = "The uri attribute of the resource, e.g. workspace:///Project/src/com/example/Foo.java or jdt:///com.example.Foo", required = true) String resourceUri,
+            @ToolParam(name = "memberName", description = "The simple name of the method, field or nested type", required = true) String memberName)
+    {
+        return codeAnalysisService.getJavaMember(resourceUri, memberName);
+    }
+
     @Tool(name = "getProjectProperties", description = "Retrieves the properties and configuration of a specified project.", type = "object")
     public String getProjectProperties(
             @ToolParam(name = "projectName", description = "The name of the project to analyze", required = true) String projectName)
@@ -89,12 +98,26 @@ public class EclipseIntegrationsMcpServer
         return projectService.getProjectProperties(projectName);
     }
 
-    @Tool(name = "getProjectLayout", description = "Get the file and folder structure of a specified project in a hierarchical format suitable for LLM processing.", type = "object")
+    @Tool(name = "getProjectLayout", description = "Get the file and folder structure of a specified project in a hierarchical format suitable for LLM processing. Build output, dependency and VCS folders are not listed, and large folders are collapsed into file counts.", type = "object")
     public String getProjectLayout(
-            @ToolParam(name = "projectName", description = "The name of the project to analyze", required = true) String projectName)
+            @ToolParam(name = "projectName", description = "The name of the project to analyze", required = true) String projectName,
+            @ToolParam(name = "maxDepth", description = "Maximum number of folder levels to list (default: 8)", required = false) String maxDepth,
+            @ToolParam(name = "maxEntries", description = "Maximum number of files and folders to list (default: 400)", required = false) String maxEntries)
     {
+        Integer depth;
+        Integer entries;
+        try
+        {
+            depth = parseWholeNumber("maxDepth", maxDepth);
+            entries = parseWholeNumber("maxEntries", maxEntries);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
         // Use resource-aware method and serialize for caching
-        ResourceToolResult result = projectService.getProjectLayoutWithResource(projectName);
+        ResourceToolResult result = projectService.getProjectLayoutWithResource(projectName,
+                depth != null ? depth : 0, entries != null ? entries : 0);
         return ResourceResultSerializer.serialize(result);
     }
 
@@ -113,10 +136,19 @@ public class EclipseIntegrationsMcpServer
     public String getCompilationErrors(
             @ToolParam(name = "projectName", description = "The name of the specific project to check (optional, leave empty for all projects)", required = false) String projectName,
             @ToolParam(name = "severity", description = "Filter by severity level: 'ERROR', 'WARNING', or 'ALL' (default)", required = false) String severity,
-            @ToolParam(name = "maxResults", description = "Maximum number of problems to return (default: 50)", required = false) String maxResults)
+            @ToolParam(name = "maxResults", description = "Maximum number of problems to return (default: 50)", required = false) String maxResults,
+            @ToolParam(name = "sinceToken", description = "The change token returned by an earlier call (optional); when given, only problems that appeared or were resolved since that call are listed", required = false) String sinceToken)
     {
-        return codeAnalysisService.getCompilationErrors(projectName, severity,
-                Optional.ofNullable(maxResults).map(Integer::parseInt).orElse(0));
+        Integer limit;
+        try
+        {
+            limit = parseWholeNumber("maxResults", maxResults);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
+        return codeAnalysisService.getCompilationErrors(projectName, severity, limit != null ? limit : 0, sinceToken);
     }
 
     @Tool(name = "readProjectResource", description = "Read the content of a text resource from a specified project.", type = "object")
@@ -166,19 +198,62 @@ public class EclipseIntegrationsMcpServer
     @Tool(name = "runAllTests", description = "Runs all tests in a specified project and returns the results.", type = "object")
     public String runAllTests(
             @ToolParam(name = "projectName", description = "The name of the project containing the tests", required = true) String projectName,
-            @ToolParam(name = "timeout", description = "Maximum time in seconds to wait for test completion (default: 60)", required = false) String timeout)
+            @ToolParam(name = "timeout", description = "Maximum time in seconds to wait for test completion (default: 60)", required = false) String timeout,
+            @ToolParam(name = "shards", description = "Number of concurrent JUnit launches to split the test classes across, 0 for half the available cores (default: half the available cores)", required = false) String shards)
     {
-        return unitTestService.runAllTests(projectName, Optional.ofNullable(timeout).map(Integer::parseInt).orElse(60));
+        Integer timeoutSeconds;
+        Integer shardCount;
+        try
+        {
+            timeoutSeconds = parseWholeNumber("timeout", timeout);
+            shardCount = parseWholeNumber("shards", shards);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
+        return unitTestService.runAllTests(projectName, timeoutSeconds, shardCount, null);
+    }
+
+    @Tool(name = "runAffectedTests", description = "Runs only the tests affected by the classes changed since the last green test run of a project, found through the references between types, together with the tests that failed in the last run. Runs all tests when no green run is known.", type = "object")
+    public String runAffectedTests(
+            @ToolParam(name = "projectName", description = "The name of the project containing the tests", required = true) String projectName,
+            @ToolParam(name = "timeout", description = "Maximum time in seconds to wait for test completion (default: 60)", required = false) String timeout,
+            @ToolParam(name = "shards", description = "Number of concurrent JUnit launches to split the test classes across, 0 for half the available cores (default: half the available cores)", required = false) String shards)
+    {
+        Integer timeoutSeconds;
+        Integer shardCount;
+        try
+        {
+            timeoutSeconds = parseWholeNumber("timeout", timeout);
+            shardCount = parseWholeNumber("shards", shards);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
+        return unitTestService.runAffectedTests(projectName, timeoutSeconds, shardCount, null);
     }
 
     @Tool(name = "runPackageTests", description = "Runs tests in a specific package and returns the results.", type = "object")
     public String runPackageTests(
             @ToolParam(name = "projectName", description = "The name of the project containing the tests", required = true) String projectName,
             @ToolParam(name = "packageName", description = "The fully qualified package name containing the tests", required = true) String packageName,
-            @ToolParam(name = "timeout", description = "Maximum time in seconds to wait for test completion (default: 60)", required = false) String timeout)
+            @ToolParam(name = "timeout", description = "Maximum time in seconds to wait for test completion (default: 60)", required = false) String timeout,
+            @ToolParam(name = "shards", description = "Number of concurrent JUnit launches to split the test classes across, 0 for half the available cores (default: half the available cores)", required = false) String shards)
     {
-        return unitTestService.runPackageTests(projectName, packageName,
-                Optional.ofNullable(timeout).map(Integer::parseInt).orElse(60));
+        Integer timeoutSeconds;
+        Integer shardCount;
+        try
+        {
+            timeoutSeconds = parseWholeNumber("timeout", timeout);
+            shardCount = parseWholeNumber("shards", shards);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
+        return unitTestService.runPackageTests(projectName, packageName, timeoutSeconds, shardCount);
     }
 
     @Tool(name = "runClassTests", description = "Runs tests for a specific class and returns the results.", type = "object")
@@ -187,8 +262,16 @@ public class EclipseIntegrationsMcpServer
             @ToolParam(name = "className", description = "The fully qualified name of the test class", required = true) String className,
             @ToolParam(name = "timeout", description = "Maximum time in seconds to wait for test completion (default: 60)", required = false) String timeout)
     {
-        return unitTestService.runClassTests(projectName, className,
-                Optional.ofNullable(timeout).map(Integer::parseInt).orElse(60));
+        Integer timeoutSeconds;
+        try
+        {
+            timeoutSeconds = parseWholeNumber("timeout", timeout);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
+        return unitTestService.runClassTests(projectName, className, timeoutSeconds);
     }
 
     @Tool(name = "runTestMethod", description = "Runs a specific test method and returns the results.", type = "object")
@@ -198,8 +281,16 @@ public class EclipseIntegrationsMcpServer
             @ToolParam(name = "methodName", description = "The name of the test method to run", required = true) String methodName,
             @ToolParam(name = "timeout", description = "Maximum time in seconds to wait for test completion (default: 60)", required = false) String timeout)
     {
-        return unitTestService.runTestMethod(projectName, className, methodName,
-                Optional.ofNullable(timeout).map(Integer::parseInt).orElse(60));
+        Integer timeoutSeconds;
+        try
+        {
+            timeoutSeconds = parseWholeNumber("timeout", timeout);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
+        return unitTestService.runTestMethod(projectName, className, methodName, timeoutSeconds);
     }
 
     @Tool(name = "findTestClasses", description = "Finds all test classes in a project.", type = "object")
@@ -211,7 +302,7 @@ public class EclipseIntegrationsMcpServer
 
     // Maven Service Tools
 
-    @Tool(name = "runMavenBuild", description = "Runs a Maven build with the specified goals on a project.", type = "object")
+    @Tool(name = "runMavenBuild", description = "Runs a Maven build with the specified goals on a project and returns the status and time of each module, compiler errors and failed tests.", type = "object")
     public String runMavenBuild(
             @ToolParam(name = "projectName", description = "The name of the project to build", required = true) String projectName,
             @ToolParam(name = "goals", description = "The Maven goals to execute (e.g., \"clean install\")", required = true) String goals,
@@ -247,19 +338,39 @@ public class EclipseIntegrationsMcpServer
     @Tool(name = "fileSearch", description = "Searches for a plain substring in workspace files using Eclipse's text search engine.", type = "object")
     public String fileSearch(
             @ToolParam(name = "containingText", description = "Text that must be contained in a line (plain substring, not regex)", required = true) String containingText,
-            @ToolParam(name = "fileNamePatterns", description = "Optional file name patterns. Accepts either an array (e.g. [\"*.java\", \"*.xml\"]) or a string (e.g. \"*.java,*.xml\"). If omitted, all files are searched.", required = false) Object fileNamePatterns)
+            @ToolParam(name = "fileNamePatterns", description = "Optional file name patterns. Accepts either an array (e.g. [\"*.java\", \"*.xml\"]) or a string (e.g. \"*.java,*.xml\"). If omitted, all files are searched.", required = false) Object fileNamePatterns,
+            @ToolParam(name = "maxResults", description = "Maximum number of matching lines to return (default: 200)", required = false) String maxResults)
     {
         String[] patterns = normalizeFileNamePatterns(fileNamePatterns);
-        return searchService.fileSearch(containingText, patterns).toString();
+        Integer limit;
+        try
+        {
+            limit = parseWholeNumber("maxResults", maxResults);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
+        return searchService.fileSearch(containingText, limit, patterns).toString();
     }
 
     @Tool(name = "fileSearchRegExp", description = "Searches workspace files using a Java regular expression via Eclipse's text search engine.", type = "object")
     public String fileSearchRegExp(
             @ToolParam(name = "pattern", description = "Java regular expression", required = true) String pattern,
-            @ToolParam(name = "fileNamePatterns", description = "Optional file name patterns. Accepts either an array (e.g. [\"*.java\", \"*.xml\"]) or a string (e.g. \"*.java,*.xml\"). If omitted, all files are searched.", required = false) Object fileNamePatterns)
+            @ToolParam(name = "fileNamePatterns", description = "Optional file name patterns. Accepts either an array (e.g. [\"*.java\", \"*.xml\"]) or a string (e.g. \"*.java,*.xml\"). If omitted, all files are searched.", required = false) Object fileNamePatterns,
+            @ToolParam(name = "maxResults", description = "Maximum number of matching lines to return (default: 200)", required = false) String maxResults)
     {
         String[] patterns = normalizeFileNamePatterns(fileNamePatterns);
-        return searchService.fileSearchRegExp(pattern, patterns).toString();
+        Integer limit;
+        try
+        {
+            limit = parseWholeNumber("maxResults", maxResults);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
+        return searchService.fileSearchRegExp(pattern, limit, patterns).toString();
     }
 
     @Tool(name = "findFiles", description = "Finds workspace files matching the given glob patterns.", type = "object")
@@ -268,18 +379,55 @@ public class EclipseIntegrationsMcpServer
             @ToolParam(name = "maxResults", description = "Maximum number of results to return (default: 200)", required = false) String maxResults)
     {
         String[] patterns = normalizeFileNamePatterns(fileNamePatterns);
-        int limit = Optional.ofNullable(maxResults).map(Integer::parseInt).orElse(0);
-        return resourceService.findFiles(patterns, limit).toString();
+        Integer limit;
+        try
+        {
+            limit = parseWholeNumber("maxResults", maxResults);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
+        return resourceService.findFiles(patterns, limit != null ? limit : 0).toString();
     }
 
-    @Tool(name = "searchAndReplace", description = "Search and replace across multiple files in the workspace using Eclipse's text search engine.", type = "object")
+    @Tool(name = "searchAndReplace", description = "Search and replace across multiple files in the workspace using Eclipse's text search engine. All files are changed in one undoable operation; returns the number of replacements per file.", type = "object")
     public String searchAndReplace(
             @ToolParam(name = "containingText", description = "Plain text to find (not regex)", required = true) String containingText,
             @ToolParam(name = "replacementText", description = "Replacement text (can be empty)", required = true) String replacementText,
-            @ToolParam(name = "fileNamePatterns", description = "Optional file name patterns. Accepts either an array (e.g. [\"*.java\", \"*.xml\"]) or a string (e.g. \"*.java,*.xml\"). If omitted, all files are searched.", required = false) Object fileNamePatterns)
+            @ToolParam(name = "fileNamePatterns", description = "Optional file name patterns. Accepts either an array (e.g. [\"*.java\", \"*.xml\"]) or a string (e.g. \"*.java,*.xml\"). If omitted, all files are searched.", required = false) Object fileNamePatterns,
+            @ToolParam(name = "includeDiff", description = "Whether to return a unified diff of every changed file (default: false)", required = false) Boolean includeDiff)
     {
         String[] patterns = normalizeFileNamePatterns(fileNamePatterns);
-        return searchService.searchAndReplace(containingText, replacementText, patterns).toString();
+        var results = searchService.searchAndReplace(containingText, replacementText, Boolean.TRUE.equals(includeDiff), patterns);
+        if (results.isEmpty())
+        {
+            return "No occurrences of '" + containingText + "' found.";
+        }
+        return results.stream().map(String::valueOf).collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Parses an optional numeric tool parameter, such as maxResults or timeout.
+     *
+     * @param name the parameter name, for the error message
+     * @return the value, or null if not given
+     * @throws IllegalArgumentException with a message for the model if the value is not a whole number
+     */
+    private static Integer parseWholeNumber(String name, String value)
+    {
+        if (value == null || value.isBlank())
+        {
+            return null;
+        }
+        try
+        {
+            return Integer.valueOf(value.strip());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Error: " + name + " must be a whole number, got '" + value + "'.");
+        }
     }
 
     private static String[] normalizeFileNamePatterns(Object fileNamePatterns)
@@ -0,0 +1,529 @@
+package com.github.gradusnikov.eclipse.assistai.mcp.services;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.Signature;
+import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchy;
+import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Computes method call hierarchies, remembering the direct callers and callees
+ * of each method between requests.
+ * <p>
+ * The hierarchy is expanded level by level: the methods of one level whose
+ * callers are not known yet are searched in parallel, and expansion stops at
+ * the depth limit, at the node budget or when the monitor is canceled. Direct
+ * callers and callees are kept per method handle and rendered hierarchies per
+ * method handle and depth. Java element deltas drop what a change of a
+ * compilation unit may affect: the entries of methods declared in the unit,
+ * the entries listing a caller or callee declared in it, and the callers of
+ * methods whose name appears in the unit's source, which may be a new call.
+ * Classpath and project changes drop everything.
+ */
+@Creatable
+@Singleton
+public class CallHierarchyService implements IElementChangedListener
+{
+    public static final int DEFAULT_MAX_NODES = 300;
+
+    private static final int THREADS = Math.max( 2, Math.min( 4, Runtime.getRuntime().availableProcessors() ) );
+
+    private final ILog logger;
+
+    private final Map<String, List<IMethod>> callers = new ConcurrentHashMap<>();
+
+    private final Map<String, List<IMethod>> callees = new ConcurrentHashMap<>();
+
+    private final Map<String, Hierarchy> hierarchies = new ConcurrentHashMap<>();
+
+    private final Map<String, IMethod> methods = new ConcurrentHashMap<>();
+
+    /** Bumped on every invalidation, so searches started before it are not remembered */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ExecutorService executor;
+
+    /**
+     * A rendered hierarchy, with the compilation units of the methods it lists
+     * and the names of the methods whose callers it lists.
+     */
+    private record Hierarchy( String text, Set<ICompilationUnit> units, Set<String> names )
+    {
+    }
+
+    /**
+     * A method in the caller tree.
+     */
+    private record Node( IMethod method, Node parent, List<Node> children )
+    {
+        Node( IMethod method, Node parent )
+        {
+            this( method, parent, new ArrayList<>() );
+        }
+
+        boolean isRecursive()
+        {
+            for ( Node ancestor = parent; ancestor != null; ancestor = ancestor.parent )
+            {
+                if ( ancestor.method.equals( method ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    @Inject
+    public CallHierarchyService( ILog logger )
+    {
+        this.logger = Objects.requireNonNull( logger );
+        this.executor = Executors.newFixedThreadPool( THREADS, runnable -> {
+            Thread thread = new Thread( runnable, "AssistAI call hierarchy" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        JavaCore.addElementChangedListener( this, ElementChangedEvent.POST_CHANGE );
+    }
+
+    @PreDestroy
+    public void dispose()
+    {
+        JavaCore.removeElementChangedListener( this );
+        executor.shutdownNow();
+        invalidateAll();
+    }
+
+    /**
+     * Finds a method in the open Java projects.
+     *
+     * @param methodSignature comma separated parameter type signatures, or null or empty for the first method with the name
+     * @return the method, or null if there is none
+     */
+    public IMethod findMethod( String fullyQualifiedClassName, String methodName, String methodSignature ) throws JavaModelException
+    {
+        String key = fullyQualifiedClassName + "#" + methodName + "#" + Objects.toString( methodSignature, "" );
+        IMethod cached = methods.get( key );
+        if ( cached != null && cached.exists() )
+        {
+            return cached;
+        }
+        for ( IJavaProject project : JavaCore.create( ResourcesPlugin.getWorkspace().getRoot() ).getJavaProjects() )
+        {
+            IType type = project.findType( fullyQualifiedClassName );
+            if ( type == null )
+            {
+                continue;
+            }
+            IMethod found = null;
+            if ( methodSignature != null && !methodSignature.isEmpty() )
+            {
+                found = type.getMethod( methodName, methodSignature.split( "," ) );
+            }
+            else
+            {
+                for ( IMethod method : type.getMethods() )
+                {
+                    if ( method.getElementName().equals( methodName ) )
+                    {
+                        found = method;
+                        break;
+                    }
+                }
+            }
+            if ( found != null && found.exists() )
+            {
+                methods.put( key, found );
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Renders the callers of a method, as a tree of {@code maxDepth} levels
+     * including the method itself, followed by the methods it calls.
+     *
+     * @param maxNodes most callers to list, 0 or less for {@link #DEFAULT_MAX_NODES}
+     * @param monitor cancels the search; a canceled search returns what was found so far
+     */
+    public String getCallHierarchy( IMethod method, int maxDepth, int maxNodes, IProgressMonitor monitor )
+    {
+        int nodeBudget = maxNodes > 0 ? maxNodes : DEFAULT_MAX_NODES;
+        String key = method.getHandleIdentifier() + "#" + maxDepth + "#" + nodeBudget;
+        Hierarchy cached = hierarchies.get( key );
+        if ( cached != null )
+        {
+            return cached.text();
+        }
+        long startGeneration = generation.get();
+
+        Node root = new Node( method, null );
+        List<Node> level = List.of( root );
+        int nodes = 0;
+        boolean truncated = false;
+        for ( int depth = 1; depth < maxDepth && !level.isEmpty() && !truncated; depth++ )
+        {
+            if ( monitor.isCanceled() )
+            {
+                truncated = true;
+                break;
+            }
+            loadCallers( level, monitor );
+            List<Node> next = new ArrayList<>();
+            for ( Node node : level )
+            {
+                for ( IMethod caller : callers.getOrDefault( node.method().getHandleIdentifier(), List.of() ) )
+                {
+                    if ( nodes >= nodeBudget )
+                    {
+                        truncated = true;
+                        break;
+                    }
+                    Node child = new Node( caller, node );
+                    node.children().add( child );
+                    nodes++;
+                    if ( !child.isRecursive() )
+                    {
+                        next.add( child );
+                    }
+                }
+            }
+            level = next;
+        }
+
+        StringBuilder result = new StringBuilder();
+        if ( root.children().isEmpty() && !truncated )
+        {
+            result.append( "No callers found for this method.\n" );
+        }
+        else
+        {
+            result.append( "## Callers:\n\n" );
+            appendTree( root, 0, result );
+            if ( truncated )
+            {
+                result.append( monitor.isCanceled()
+                        ? "- ... (search canceled, the hierarchy is incomplete)\n"
+                        : "- ... (limited to " + nodeBudget + " callers)\n" );
+            }
+        }
+
+        List<IMethod> calledMethods = monitor.isCanceled() ? List.of() : calleesOf( method, monitor );
+        if ( !calledMethods.isEmpty() )
+        {
+            result.append( "\n## Methods Called By " ).append( method.getElementName() ).append( ":\n\n" );
+            for ( IMethod callee : calledMethods )
+            {
+                result.append( describe( callee, false ) ).append( "\n" );
+            }
+        }
+
+        String hierarchy = result.toString();
+        if ( !monitor.isCanceled() && generation.get() == startGeneration )
+        {
+            Set<ICompilationUnit> units = new HashSet<>();
+            Set<String> names = new HashSet<>();
+            collect( root, units, names );
+            calledMethods.forEach( callee -> addUnit( callee, units ) );
+            hierarchies.put( key, new Hierarchy( hierarchy, units, names ) );
+        }
+        return hierarchy;
+    }
+
+    private static void collect( Node node, Set<ICompilationUnit> units, Set<String> names )
+    {
+        addUnit( node.method(), units );
+        names.add( node.method().getElementName() );
+        for ( Node child : node.children() )
+        {
+            collect( child, units, names );
+        }
+    }
+
+    private static void addUnit( IMethod method, Set<ICompilationUnit> units )
+    {
+        ICompilationUnit unit = method.getCompilationUnit();
+        if ( unit != null )
+        {
+            units.add( unit.getPrimary() );
+        }
+    }
+
+    /**
+     * Searches, in parallel, the callers of the methods whose callers are not
+     * known yet.
+     */
+    private void loadCallers( List<Node> level, IProgressMonitor monitor )
+    {
+        long startGeneration = generation.get();
+        List<CompletableFuture<Void>> searches = new ArrayList<>();
+        for ( Node node : level )
+        {
+            IMethod method = node.method();
+            String handle = method.getHandleIdentifier();
+            if ( callers.containsKey( handle ) )
+            {
+                continue;
+            }
+            searches.add( CompletableFuture.runAsync( () -> {
+                MethodWrapper[] roots = CallHierarchy.getDefault().getCallerRoots( new IMethod[] { method } );
+                List<IMethod> found = methodsOf( roots[0].getCalls( cancelableBy( monitor ) ) );
+                if ( generation.get() == startGeneration && !monitor.isCanceled() )
+                {
+                    callers.put( handle, found );
+                }
+            }, executor ) );
+        }
+        try
+        {
+            CompletableFuture.allOf( searches.toArray( CompletableFuture[]::new ) ).join();
+        }
+        catch ( CompletionException e )
+        {
+            if ( !( e.getCause() instanceof OperationCanceledException ) )
+            {
+                logger.error( e.getMessage(), e );
+                throw new RuntimeException( "Error retrieving callers: " + ExceptionUtils.getRootCauseMessage( e ), e );
+            }
+        }
+    }
+
+    private List<IMethod> calleesOf( IMethod method, IProgressMonitor monitor )
+    {
+        String handle = method.getHandleIdentifier();
+        List<IMethod> cached = callees.get( handle );
+        if ( cached != null )
+        {
+            return cached;
+        }
+        long startGeneration = generation.get();
+        MethodWrapper[] roots = CallHierarchy.getDefault().getCalleeRoots( new IMethod[] { method } );
+        List<IMethod> found = methodsOf( roots[0].getCalls( cancelableBy( monitor ) ) );
+        if ( generation.get() == startGeneration && !monitor.isCanceled() )
+        {
+            callees.put( handle, found );
+        }
+        return found;
+    }
+
+    private static List<IMethod> methodsOf( MethodWrapper[] wrappers )
+    {
+        List<IMethod> methods = new ArrayList<>( wrappers.length );
+        for ( MethodWrapper wrapper : wrappers )
+        {
+            if ( wrapper.getMember() instanceof IMethod method )
+            {
+                methods.add( method );
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Returns a monitor for one search thread that only reports the
+     * cancellation of the shared monitor, which is not thread safe.
+     */
+    private static IProgressMonitor cancelableBy( IProgressMonitor monitor )
+    {
+        return new NullProgressMonitor()
+        {
+            @Override
+            public boolean isCanceled()
+            {
+                return monitor.isCanceled();
+            }
+        };
+    }
+
+    private void appendTree( Node node, int level, StringBuilder result )
+    {
+        result.append( "  ".repeat( level ) ).append( describe( node.method(), true ) );
+        if ( node.isRecursive() )
+        {
+            result.append( " (recursive)" );
+        }
+        result.append( "\n" );
+        for ( Node child : node.children() )
+        {
+            appendTree( child, level + 1, result );
+        }
+    }
+
+    private String describe( IMethod method, boolean withCompilationUnit )
+    {
+        StringBuilder line = new StringBuilder();
+        try
+        {
+            // Add the method with its declaring type
+            line.append( "- **" ).append( method.getElementName() ).append( "**" );
+            line.append( " in `" ).append( method.getDeclaringType().getFullyQualifiedName() ).append( "`" );
+
+            // Add method parameters for clarity
+            String[] parameterTypes = method.getParameterTypes();
+            if ( parameterTypes.length > 0 )
+            {
+                line.append( " (" );
+                for ( int i = 0; i < parameterTypes.length; i++ )
+                {
+                    if ( i > 0 )
+                    {
+                        line.append( ", " );
+                    }
+                    line.append( Signature.toString( parameterTypes[i] ) );
+                }
+                line.append( ")" );
+            }
+
+            // Add source location information
+            ICompilationUnit cu = method.getCompilationUnit();
+            if ( withCompilationUnit && cu != null )
+            {
+                line.append( " - " ).append( cu.getElementName() );
+            }
+        }
+        catch ( Exception e )
+        {
+            logger.error( e.getMessage(), e );
+            line.append( " [Error retrieving method details]" );
+        }
+        return line.toString();
+    }
+
+    private void invalidateAll()
+    {
+        generation.incrementAndGet();
+        callers.clear();
+        callees.clear();
+        hierarchies.clear();
+        methods.clear();
+    }
+
+    @Override
+    public void elementChanged( ElementChangedEvent event )
+    {
+        List<ICompilationUnit> changedUnits = new ArrayList<>();
+        if ( !collectChangedUnits( event.getDelta(), changedUnits ) )
+        {
+            invalidateAll();
+            return;
+        }
+        if ( changedUnits.isEmpty() || ( callers.isEmpty() && callees.isEmpty() && hierarchies.isEmpty() ) )
+        {
+            return;
+        }
+        generation.incrementAndGet();
+        Set<ICompilationUnit> units = new HashSet<>();
+        List<String> sources = new ArrayList<>();
+        for ( ICompilationUnit unit : changedUnits )
+        {
+            units.add( unit.getPrimary() );
+            if ( unit.exists() )
+            {
+                try
+                {
+                    sources.add( unit.getSource() );
+                }
+                catch ( JavaModelException e )
+                {
+                    // without the source, calls added by the change cannot be told apart
+                    invalidateAll();
+                    return;
+                }
+            }
+        }
+        callers.entrySet().removeIf( entry -> {
+            IMethod method = methodOf( entry.getKey() );
+            return method == null || declaredIn( method, units ) || mentioned( method.getElementName(), sources )
+                    || entry.getValue().stream().anyMatch( caller -> declaredIn( caller, units ) );
+        } );
+        callees.entrySet().removeIf( entry -> {
+            IMethod method = methodOf( entry.getKey() );
+            return method == null || declaredIn( method, units )
+                    || entry.getValue().stream().anyMatch( callee -> declaredIn( callee, units ) );
+        } );
+        hierarchies.values().removeIf( hierarchy -> hierarchy.units().stream().anyMatch( units::contains )
+                || hierarchy.names().stream().anyMatch( name -> mentioned( name, sources ) ) );
+    }
+
+    private static IMethod methodOf( String handle )
+    {
+        return JavaCore.create( handle ) instanceof IMethod method ? method : null;
+    }
+
+    private static boolean declaredIn( IMethod method, Set<ICompilationUnit> units )
+    {
+        ICompilationUnit unit = method.getCompilationUnit();
+        return unit != null && units.contains( unit.getPrimary() );
+    }
+
+    /**
+     * Tells whether a call of a method with the given name may appear in one
+     * of the sources.
+     */
+    private static boolean mentioned( String name, List<String> sources )
+    {
+        return sources.stream().anyMatch( source -> source.contains( name ) );
+    }
+
+    /**
+     * Collects the compilation units changed by a delta.
+     *
+     * @return false if the change is wider, e.g. a classpath or project change
+     */
+    private static boolean collectChangedUnits( IJavaElementDelta delta, List<ICompilationUnit> changedUnits )
+    {
+        IJavaElement element = delta.getElement();
+        if ( element.getElementType() == IJavaElement.COMPILATION_UNIT )
+        {
+            changedUnits.add( (ICompilationUnit) element );
+            return true;
+        }
+        if ( ( delta.getFlags() & ( IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+                | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED | IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED ) ) != 0
+                || ( element.getElementType() < IJavaElement.COMPILATION_UNIT && delta.getKind() != IJavaElementDelta.CHANGED ) )
+        {
+            return false;
+        }
+        for ( IJavaElementDelta child : delta.getAffectedChildren() )
+        {
+            if ( !collectChangedUnits( child, changedUnits ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
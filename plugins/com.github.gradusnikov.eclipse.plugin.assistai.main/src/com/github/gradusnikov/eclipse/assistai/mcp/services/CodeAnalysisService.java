@@ -4,10 +4,14 @@ package com.github.gradusnikov.eclipse.assistai.mcp.services;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.eclipse.core.resources.IFile;
@@ -17,19 +21,23 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
-import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.e4.core.di.annotations.Creatable;
-import org.eclipse.jdt.core.ICompilationUnit;
-import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaModelMarker;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.ISourceReference;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
-import org.eclipse.jdt.core.Signature;
-import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchy;
-import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
+
+import com.github.gradusnikov.eclipse.assistai.context.JavaResourceSlicer;
+import com.github.gradusnikov.eclipse.assistai.jobs.AssistAIJobConstants;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.ProblemMarkerIndex.Problem;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
@@ -46,8 +54,15 @@ public class CodeAnalysisService
     @Inject
     ILog logger;
     
+    @Inject
+    ProblemMarkerIndex problemMarkerIndex;
+    
+    @Inject
+    CallHierarchyService callHierarchyService;
+    
     /**
-     * Retrieves the call hierarchy for a specified method.
+     * Retrieves the call hierarchy for a specified method. The search runs in an
+     * AssistAI job, so the Stop action of the chat view cancels it.
      * 
      * @param fullyQualifiedClassName The fully qualified name of the class containing the method
      * @param methodName The name of the method to analyze
@@ -59,6 +74,57 @@ public class CodeAnalysisService
                                   String methodName, 
                                   String methodSignature, 
                                   Integer maxDepth)
+    {
+        CompletableFuture<String> hierarchy = new CompletableFuture<>();
+        Job job = new Job(AssistAIJobConstants.JOB_PREFIX + " call hierarchy of " + methodName)
+        {
+            @Override
+            protected IStatus run(IProgressMonitor monitor)
+            {
+                try
+                {
+                    hierarchy.complete(getMethodCallHierarchy(fullyQualifiedClassName, methodName, methodSignature, maxDepth, monitor));
+                }
+                catch (RuntimeException e)
+                {
+                    hierarchy.completeExceptionally(e);
+                }
+                return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+            }
+        };
+        job.schedule();
+        try
+        {
+            job.join();
+            return hierarchy.join();
+        }
+        catch (InterruptedException e)
+        {
+            job.cancel();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrieving the call hierarchy", e);
+        }
+        catch (CompletionException e)
+        {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+    
+    /**
+     * Retrieves the call hierarchy for a specified method, see {@link CallHierarchyService}.
+     * 
+     * @param fullyQualifiedClassName The fully qualified name of the class containing the method
+     * @param methodName The name of the method to analyze
+     * @param methodSignature The signature of the method (optional)
+     * @param maxDepth Maximum depth of the call hierarchy to retrieve
+     * @param monitor Cancels the search, the hierarchy found so far is returned
+     * @return A formatted string containing the call hierarchy
+     */
+    public String getMethodCallHierarchy(String fullyQualifiedClassName, 
+                                  String methodName, 
+                                  String methodSignature, 
+                                  Integer maxDepth,
+                                  IProgressMonitor monitor)
     {
         if (maxDepth == null || maxDepth < 1) 
         {
@@ -71,80 +137,20 @@ public class CodeAnalysisService
         try 
         {
             // Find the method in available Java projects
-            IMethod targetMethod = null;
-            
-            for (IJavaProject project : getAvailableJavaProjects()) 
-            {
-                IType type = project.findType(fullyQualifiedClassName);
-                if (type == null) 
-                {
-                    continue;
-                }
-                
-                // If method signature is provided, use it to find the exact method
-                if (methodSignature != null && !methodSignature.isEmpty()) 
-                {
-                    targetMethod = type.getMethod(methodName, methodSignature.split(","));
-                    if (targetMethod != null && targetMethod.exists()) 
-                    {
-                        break;
-                    }
-                } 
-                else 
-                {
-                    // Try to find the method without signature
-                    IMethod[] methods = type.getMethods();
-                    for (IMethod method : methods) {
-                        if (method.getElementName().equals(methodName)) 
-                        {
-                            targetMethod = method;
-                            break;
-                        }
-                    }
-                    if (targetMethod != null) 
-                    {
-                        break;
-                    }
-                }
-            }
-            
-            if (targetMethod == null || !targetMethod.exists()) 
+            IMethod targetMethod = callHierarchyService.findMethod(fullyQualifiedClassName, methodName, methodSignature);
+            if (targetMethod == null) 
             {
                 return "Method '" + methodName + "' not found in class '" + fullyQualifiedClassName + "'.";
             }
             
-            // Get the call hierarchy
-            CallHierarchy callHierarchy = CallHierarchy.getDefault();
-            MethodWrapper[] callerRoots = callHierarchy.getCallerRoots(new IMethod[] {targetMethod});
-            
-            if (callerRoots == null || callerRoots.length == 0) 
-            {
-                result.append("No callers found for this method.\n");
-            }
-            else 
-            {
-                result.append("## Callers:\n\n");
-                collectCallHierarchy(callerRoots, 0, maxDepth, result);
-            }
-            
-            // Also get callees (methods called by this method)
-            MethodWrapper[] calleeRoots = callHierarchy.getCalleeRoots(new IMethod[] {targetMethod});
-            
-            if (calleeRoots != null && calleeRoots.length > 0) 
-            {
-                result.append("\n## Methods Called By ").append(methodName).append(":\n\n");
-                collectCalleeHierarchy(calleeRoots, 0, 1, result); // Only go one level deep for callees
-            }
-            
+            result.append(callHierarchyService.getCallHierarchy(targetMethod, maxDepth, 0, monitor));
             return result.toString();
-            
         }
         catch (JavaModelException e) 
         {
             logger.error(e.getMessage(), e);
             throw new RuntimeException( "Error retrieving call hierarchy: " + ExceptionUtils.getRootCauseMessage( e ) );
         }
-
     }
     
     /**
@@ -157,212 +163,217 @@ public class CodeAnalysisService
      */
     public String getCompilationErrors(String projectName, String severity, Integer maxResults)
     {
-        try 
+        return getCompilationErrors(projectName, severity, maxResults, null);
+    }
+    
+    /**
+     * Retrieves compilation errors and problems from the workspace or a specific project.
+     * The problems come from the {@link ProblemMarkerIndex}, and the result ends with a
+     * change token; passing it back as {@code sinceToken} lists only the problems that
+     * appeared or were resolved in between.
+     * 
+     * @param projectName The name of the project to check (optional)
+     * @param severity Filter by severity level: 'ERROR', 'WARNING', or 'ALL'
+     * @param maxResults Maximum number of problems to return
+     * @param sinceToken The change token of an earlier call (optional)
+     * @return A formatted string containing compilation errors
+     */
+    public String getCompilationErrors(String projectName, String severity, Integer maxResults, String sinceToken)
+    {
+        // Set default values
+        if (severity == null || severity.isBlank())
         {
-            // Set default values
-            if (severity == null || severity.isBlank())
-            {
-                severity = "ALL";
-            }
-            else 
+            severity = "ALL";
+        }
+        
+        if (maxResults == null || maxResults < 1) 
+        {
+            maxResults = 50;
+        }
+        
+        // Define severity filter
+        int severityFilter = switch ( severity.toUpperCase() ) {
+            case "ERROR" -> IMarker.SEVERITY_ERROR;
+            case "WARNING" -> IMarker.SEVERITY_WARNING;
+            default -> ProblemMarkerIndex.ANY_SEVERITY;
+        };
+        
+        StringBuilder result = new StringBuilder();
+        result.append("# Compilation Problems\n\n");
+        
+        // Limit to a specific project, if given
+        String projectFilter = null;
+        if (projectName != null && !projectName.isBlank() ) 
+        {
+            IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
+            if (project == null || !project.exists()) 
             {
-                severity = severity.toUpperCase();
+                throw new RuntimeException( "Project '" + projectName + "' not found." );
             }
             
-            if (maxResults == null || maxResults < 1) 
+            if (!project.isOpen()) 
             {
-                maxResults = 50;
+                throw new RuntimeException( "Project '" + projectName + "' is closed." );
             }
             
-            // Define severity filter
-            int severityFilter = switch ( severity.toUpperCase() ) {
-                case "ERROR" -> IMarker.SEVERITY_ERROR;
-                case "WARNING" -> IMarker.SEVERITY_WARNING;
-                default -> -1;
-            };
-            
-            StringBuilder result = new StringBuilder();
-            result.append("# Compilation Problems\n\n");
-            
-            // Get markers from workspace or specific project
-            IMarker[] markers;
-            if (projectName != null && !projectName.isBlank() ) 
+            result.append("Project: ").append(projectName).append("\n\n");
+            projectFilter = projectName;
+        } 
+        else 
+        {
+            result.append("Scope: All Projects\n\n");
+        }
+        
+        result.append("Totals: ").append(problemMarkerIndex.count(projectFilter, IMarker.SEVERITY_ERROR)).append(" errors, ")
+              .append(problemMarkerIndex.count(projectFilter, IMarker.SEVERITY_WARNING)).append(" warnings, ")
+              .append(problemMarkerIndex.count(projectFilter, IMarker.SEVERITY_INFO)).append(" infos.\n\n");
+        
+        Map<IFile, String[]> fileLines = new HashMap<>();
+        if (sinceToken != null && !sinceToken.isBlank()) 
+        {
+            ProblemMarkerIndex.Changes changes = problemMarkerIndex.changesSince(sinceToken, projectFilter, severityFilter);
+            if (changes != null) 
             {
-                IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
-                if (project == null || !project.exists()) 
-                {
-                    throw new RuntimeException( "Project '" + projectName + "' not found." );
-                }
-                
-                if (!project.isOpen()) 
+                result.append("## New Problems (").append(changes.added().size()).append(")\n\n");
+                for (Problem problem : changes.added().subList(0, Math.min(maxResults, changes.added().size()))) 
                 {
-                    throw new RuntimeException( "Project '" + projectName + "' is closed." );
+                    appendProblem(problem, true, fileLines, result);
                 }
-                
-                result.append("Project: ").append(projectName).append("\n\n");
-                markers = project.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_INFINITE);
-            } 
-            else 
-            {
-                result.append("Scope: All Projects\n\n");
-                markers = ResourcesPlugin.getWorkspace().getRoot().findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_INFINITE);
-            }
-            
-            // Filter and sort markers
-            List<IMarker> filteredMarkers = new ArrayList<>();
-            for (IMarker marker : markers) 
-            {
-                Integer severityValue = (Integer) marker.getAttribute(IMarker.SEVERITY);
-                if (severityFilter == -1 || (severityValue != null && severityValue.intValue() == severityFilter)) 
+                result.append("\n## Resolved Problems (").append(changes.resolved().size()).append(")\n\n");
+                for (Problem problem : changes.resolved().subList(0, Math.min(maxResults, changes.resolved().size()))) 
                 {
-                    filteredMarkers.add(marker);
+                    appendProblem(problem, true, null, result);
                 }
+                appendChangeToken(changes.token(), result);
+                return result.toString();
             }
-            
-            // Sort by severity (errors first, then warnings)
-            filteredMarkers.sort((m1, m2) -> {
-                try {
-                    Integer sev1 = (Integer) m1.getAttribute(IMarker.SEVERITY);
-                    Integer sev2 = (Integer) m2.getAttribute(IMarker.SEVERITY);
-                    return sev2.compareTo(sev1); // Higher severity first
-                } catch (CoreException e) {
-                    return 0;
-                }
-            });
-            
-            // Limit the number of results
-            if (filteredMarkers.size() > maxResults) 
-            {
-                result.append("Showing ").append(maxResults).append(" of ").append(filteredMarkers.size())
-                      .append(" problems found.\n\n");
-                filteredMarkers = filteredMarkers.subList(0, maxResults);
-            }
-            else 
-            {
-                result.append("Found ").append(filteredMarkers.size()).append(" problems.\n\n");
-            }
-            
-            if (filteredMarkers.isEmpty()) 
+            result.append("The change token has expired, listing all problems.\n\n");
+        }
+        
+        // Take the token first, so changes made while listing are reported again rather than lost
+        String token = problemMarkerIndex.token();
+        List<Problem> problems = problemMarkerIndex.problems(projectFilter, severityFilter);
+        
+        // Limit the number of results
+        if (problems.size() > maxResults) 
+        {
+            result.append("Showing ").append(maxResults).append(" of ").append(problems.size())
+                  .append(" problems found.\n\n");
+            problems = problems.subList(0, maxResults);
+        }
+        else 
+        {
+            result.append("Found ").append(problems.size()).append(" problems.\n\n");
+        }
+        
+        if (problems.isEmpty()) 
+        {
+            result.append("No compilation problems found with the specified criteria.\n");
+            appendChangeToken(token, result);
+            return result.toString();
+        }
+        
+        // Group by resource, keeping the files with the most severe problems first
+        Map<String, List<Problem>> problemsByResource = new LinkedHashMap<>();
+        for (Problem problem : problems) 
+        {
+            problemsByResource.computeIfAbsent(problem.path(), key -> new ArrayList<>()).add(problem);
+        }
+        
+        // Output problems grouped by resource
+        for (Map.Entry<String, List<Problem>> entry : problemsByResource.entrySet()) 
+        {
+            result.append("## ").append(entry.getKey()).append("\n\n");
+            for (Problem problem : entry.getValue()) 
             {
-                result.append("No compilation problems found with the specified criteria.");
-                return result.toString();
+                appendProblem(problem, false, fileLines, result);
             }
-            
-            // Group by resource
-            Map<String, List<IMarker>> markersByResource = new HashMap<>();
-            for (IMarker marker : filteredMarkers) 
+            result.append("\n");
+        }
+        appendChangeToken(token, result);
+        
+        return result.toString();
+    }
+    
+    /**
+     * Appends one problem, with the source lines around it for Java problems.
+     * 
+     * @param withPath Whether to name the resource, for lists that are not grouped by resource
+     * @param fileLines Lines of the files read so far, or null to skip the source context
+     */
+    private void appendProblem(Problem problem, boolean withPath, Map<IFile, String[]> fileLines, StringBuilder result)
+    {
+        String severityText = switch (problem.severity()) {
+            case IMarker.SEVERITY_ERROR -> "ERROR";
+            case IMarker.SEVERITY_WARNING -> "WARNING";
+            case IMarker.SEVERITY_INFO -> "INFO";
+            default -> "UNKNOWN";
+        };
+        int lineNumber = problem.line();
+        String lineStr = lineNumber > 0 ? "Line " + lineNumber : "Unknown location";
+        String message = problem.message() != null ? problem.message() : "No message provided";
+        
+        result.append("- **").append(severityText).append("** at ");
+        if (withPath) 
+        {
+            result.append(problem.path()).append(", ");
+        }
+        result.append(lineStr).append(": ").append(message).append("\n");
+        
+        // If this is a Java problem, try to get more context
+        if (!IJavaModelMarker.JAVA_MODEL_PROBLEM_MARKER.equals(problem.type())) 
+        {
+            return;
+        }
+        if (problem.problemId() != null) 
+        {
+            result.append("  - Problem ID: ").append(problem.problemId()).append("\n");
+        }
+        
+        // Try to get source code snippet if line number is available
+        if (fileLines != null && lineNumber > 0 && problem.resource() instanceof IFile file) 
+        {
+            try 
             {
-                IResource resource = marker.getResource();
-                String resourcePath = resource.getFullPath().toString();
-                if (!markersByResource.containsKey(resourcePath)) 
+                String[] lines = fileLines.get(file);
+                if (lines == null) 
                 {
-                    markersByResource.put(resourcePath, new ArrayList<>());
+                    lines = readFileContent(file).split("\n");
+                    fileLines.put(file, lines);
                 }
-                markersByResource.get(resourcePath).add(marker);
-            }
-            
-            // Output problems grouped by resource
-            for (Map.Entry<String, List<IMarker>> entry : markersByResource.entrySet()) 
-            {
-                String resourcePath = entry.getKey();
-                List<IMarker> resourceMarkers = entry.getValue();
-                
-                result.append("## ").append(resourcePath).append("\n\n");
                 
-                for (IMarker marker : resourceMarkers) {
-                    Integer severityValue = (Integer) marker.getAttribute(IMarker.SEVERITY);
-                    String severityText;
-                    
-                    if (severityValue != null) {
-                        switch (severityValue.intValue()) {
-                            case IMarker.SEVERITY_ERROR:
-                                severityText = "ERROR";
-                                break;
-                            case IMarker.SEVERITY_WARNING:
-                                severityText = "WARNING";
-                                break;
-                            case IMarker.SEVERITY_INFO:
-                                severityText = "INFO";
-                                break;
-                            default:
-                                severityText = "UNKNOWN";
-                        }
-                    } else {
-                        severityText = "UNKNOWN";
-                    }
-                    
-                    // Get line number
-                    Integer lineNumber = (Integer) marker.getAttribute(IMarker.LINE_NUMBER);
-                    String lineStr = lineNumber != null ? "Line " + lineNumber : "Unknown location";
-                    
-                    // Get message
-                    String message = (String) marker.getAttribute(IMarker.MESSAGE);
-                    if (message == null) {
-                        message = "No message provided";
-                    }
-                    
-                    result.append("- **").append(severityText).append("** at ").append(lineStr).append(": ")
-                          .append(message).append("\n");
+                if (lineNumber <= lines.length) 
+                {
+                    int startLine = Math.max(1, lineNumber - 1);
+                    int endLine = Math.min(lines.length, lineNumber + 1);
                     
-                    // If this is a Java problem, try to get more context
-                    if (marker.getType().equals(IJavaModelMarker.JAVA_MODEL_PROBLEM_MARKER)) 
+                    result.append("  - Context:\n```java\n");
+                    for (int i = startLine - 1; i < endLine; i++) 
                     {
-                        var sourceId = marker.getAttribute(IJavaModelMarker.ID);
-                        if (sourceId != null) 
+                        if (i == lineNumber - 1) 
                         {
-                            result.append("  - Problem ID: ").append(sourceId).append("\n");
+                            result.append("> "); // Highlight the error line
                         }
-                        
-                        // Try to get source code snippet if line number is available
-                        if (lineNumber != null && marker.getResource() instanceof IFile) 
+                        else 
                         {
-                            try 
-                            {
-                                IFile file = (IFile) marker.getResource();
-                                String fileContent = readFileContent(file);
-                                String[] lines = fileContent.split("\n");
-                                
-                                if (lineNumber > 0 && lineNumber <= lines.length) 
-                                {
-                                    int startLine = Math.max(1, lineNumber - 1);
-                                    int endLine = Math.min(lines.length, lineNumber + 1);
-                                    
-                                    result.append("  - Context:\n```java\n");
-                                    for (int i = startLine - 1; i < endLine; i++) 
-                                    {
-                                        if (i == lineNumber - 1) 
-                                        {
-                                            result.append("> "); // Highlight the error line
-                                        }
-                                        else 
-                                        {
-                                            result.append("  ");
-                                        }
-                                        result.append(lines[i]).append("\n");
-                                    }
-                                    result.append("```\n");
-                                }
-                            } 
-                            catch (Exception e) 
-                            {
-                                // Skip context if we can't read the file
-                            }
+                            result.append("  ");
                         }
+                        result.append(lines[i]).append("\n");
                     }
+                    result.append("```\n");
                 }
-                
-                result.append("\n");
+            } 
+            catch (Exception e) 
+            {
+                // Skip context if we can't read the file
             }
-            
-            return result.toString();
-            
         }
-        catch (CoreException e) 
-        {
-            logger.error(e.getMessage(), e);
-            throw new RuntimeException( "Error retrieving compilation problems: " + ExceptionUtils.getStackTrace(  e )  );
-        }
-
+    }
+    
+    private void appendChangeToken(String token, StringBuilder result)
+    {
+        result.append("\nChange token: ").append(token)
+              .append(" (pass it as sinceToken to list only the problems that appeared or were resolved since this call)\n");
     }
     
     /**
@@ -383,111 +394,67 @@ public class CodeAnalysisService
         }
     }    
     
-    private void collectCallHierarchy(MethodWrapper[] callers, int level, int maxDepth, StringBuilder result) {
-       
-        if (level >= maxDepth) 
-        {
-            return;
-        }
-        
-        for (MethodWrapper caller : callers) 
+    /**
+     * Reads members of a Java resource, e.g. the ones elided when the resource
+     * was sliced for the context window.
+     * 
+     * @param resourceUri The resource uri, workspace:///... or jdt:///...
+     * @param memberName The simple name of the method, field or nested type
+     * @return The source of all members with the given name, with their line ranges
+     */
+    public String getJavaMember(String resourceUri, String memberName)
+    {
+        try 
         {
-            IJavaElement member = caller.getMember();
-            if (member instanceof IMethod) {
-                IMethod method = (IMethod) member;
-                
-                // Indent based on level
-                for (int i = 0; i < level; i++) {
-                    result.append("  ");
-                }
-                
-                try {
-                    // Add the method with its declaring type
-                    result.append("- **").append(method.getElementName()).append("**");
-                    result.append(" in `").append(method.getDeclaringType().getFullyQualifiedName()).append("`");
-                    
-                    // Add method parameters for clarity
-                    String[] parameterTypes = method.getParameterTypes();
-                    if (parameterTypes.length > 0) {
-                        result.append(" (");
-                        for (int i = 0; i < parameterTypes.length; i++) {
-                            if (i > 0) {
-                                result.append(", ");
-                            }
-                            result.append(Signature.toString(parameterTypes[i]));
-                        }
-                        result.append(")");
-                    }
-                    
-                    // Add source location information
-                    ICompilationUnit cu = method.getCompilationUnit();
-                    if (cu != null) {
-                        result.append(" - ").append(cu.getElementName());
-                    }
-                    
-                    result.append("\n");
-                    
-                    // Recurse to next level
-                    MethodWrapper[] nestedCallers = caller.getCalls(new NullProgressMonitor());
-                    collectCallHierarchy(nestedCallers, level + 1, maxDepth, result);
-                    
-                } 
-                catch (Exception e) 
+            URI uri = URI.create(resourceUri);
+            String source = null;
+            if ("workspace".equals(uri.getScheme()))
+            {
+                IResource resource = ResourcesPlugin.getWorkspace().getRoot().findMember(IPath.fromPortableString(uri.getPath()));
+                if (resource instanceof IFile file && file.exists())
                 {
-                    logger.error(e.getMessage(), e);
-                    result.append(" [Error retrieving method details]\n");
+                    try (InputStream in = file.getContents())
+                    {
+                        source = new String(in.readAllBytes(), file.getCharset());
+                    }
                 }
             }
-        }
-    }
-    
-    private void collectCalleeHierarchy(MethodWrapper[] callees, int level, int maxDepth, StringBuilder result) {
-        if (level >= maxDepth) 
-        {
-            return;
-        }
-        
-        for (MethodWrapper callee : callees) {
-            IJavaElement member = callee.getMember();
-            if (member instanceof IMethod) {
-                IMethod method = (IMethod) member;
-                
-                // Indent based on level
-                for (int i = 0; i < level; i++) {
-                    result.append("  ");
-                }
-                
-                try {
-                    // Add the method with its declaring type
-                    result.append("- **").append(method.getElementName()).append("**");
-                    result.append(" in `").append(method.getDeclaringType().getFullyQualifiedName()).append("`");
-                    
-                    // Add method parameters for clarity
-                    String[] parameterTypes = method.getParameterTypes();
-                    if (parameterTypes.length > 0) {
-                        result.append(" (");
-                        for (int i = 0; i < parameterTypes.length; i++) {
-                            if (i > 0) {
-                                result.append(", ");
-                            }
-                            result.append(Signature.toString(parameterTypes[i]));
-                        }
-                        result.append(")");
-                    }
-                    
-                    result.append("\n");
-                    
-                    // Recurse to next level if needed
-                    if (level + 1 < maxDepth) {
-                        MethodWrapper[] nestedCallees = callee.getCalls(new NullProgressMonitor());
-                        collectCalleeHierarchy(nestedCallees, level + 1, maxDepth, result);
+            else if ("jdt".equals(uri.getScheme()))
+            {
+                String fullyQualifiedClassName = uri.getPath().replaceFirst("^/", "");
+                for (IJavaProject project : getAvailableJavaProjects())
+                {
+                    IType type = project.findType(fullyQualifiedClassName);
+                    if (type != null && type.getOpenable() instanceof ISourceReference sourceReference)
+                    {
+                        source = sourceReference.getSource();
+                        break;
                     }
-                    
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
-                    result.append(" [Error retrieving method details]\n");
                 }
             }
+            if (source == null)
+            {
+                return "Error: Resource " + resourceUri + " not found or has no source.";
+            }
+            
+            List<JavaResourceSlicer.Member> members = JavaResourceSlicer.findMembers(source, memberName);
+            if (members.isEmpty())
+            {
+                return "No member named '" + memberName + "' found in " + resourceUri + ".";
+            }
+            StringBuilder result = new StringBuilder();
+            for (JavaResourceSlicer.Member member : members)
+            {
+                result.append("// ").append(memberName)
+                      .append(" (lines ").append(member.startLine()).append('-').append(member.endLine()).append(")\n")
+                      .append(member.source()).append("\n\n");
+            }
+            return result.toString();
+        }
+        catch (Exception e)
+        {
+            logger.error(e.getMessage(), e);
+            throw new RuntimeException("Error reading member '" + memberName + "' of " + resourceUri + ": " + ExceptionUtils.getRootCauseMessage(e));
         }
     }
     
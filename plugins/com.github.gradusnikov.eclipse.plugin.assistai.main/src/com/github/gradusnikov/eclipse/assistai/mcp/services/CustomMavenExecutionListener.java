@@ -1,17 +1,28 @@
 package com.github.gradusnikov.eclipse.assistai.mcp.services;
 
+import java.io.File;
+
 import org.apache.maven.execution.ExecutionEvent;
 import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.m2e.core.embedder.MonitorExecutionListener;
 
 /**
  * Custom Maven execution listener that captures Maven build output and redirects it to the console.
+ * Module results, compiler errors and test failures are collected into a {@link MavenBuildResult}
+ * as the build runs.
  */
 public class CustomMavenExecutionListener extends MonitorExecutionListener {
     
+    private static final String COMPILER_PLUGIN = "maven-compiler-plugin";
+    private static final String SUREFIRE_PLUGIN = "maven-surefire-plugin";
+    private static final String FAILSAFE_PLUGIN = "maven-failsafe-plugin";
+    
     private final String consoleName;
     private ConsoleService consoleService;
+    private final MavenBuildResult buildResult;
     
     /**
      * Creates a new Maven execution listener that redirects output to the specified console.
@@ -19,13 +30,14 @@ public class CustomMavenExecutionListener extends MonitorExecutionListener {
      * @param monitor The progress monitor
      * @param consoleName The name of the console to write output to
      * @param consoleService The console service to use for output
-     * @param sync The UI synchronization service
+     * @param buildResult The result to collect the outcome of the build into
      */
     public CustomMavenExecutionListener(IProgressMonitor monitor, String consoleName, 
-                                        ConsoleService consoleService) {
+                                        ConsoleService consoleService, MavenBuildResult buildResult) {
         super(monitor);
         this.consoleService = consoleService;
         this.consoleName = consoleName;
+        this.buildResult = buildResult;
     }
     
     @Override
@@ -56,18 +68,32 @@ public class CustomMavenExecutionListener extends MonitorExecutionListener {
     public void projectStarted(ExecutionEvent event) {
         super.projectStarted(event);
         writeToConsole("Building " + event.getProject().getName() + " " + event.getProject().getVersion());
+        buildResult.moduleStarted(event.getProject().getId(), moduleName(event.getProject()));
     }
     
     @Override
     public void projectSucceeded(ExecutionEvent event) {
         super.projectSucceeded(event);
         writeToConsole("Project " + event.getProject().getName() + " built successfully");
+        buildResult.moduleFinished(event.getProject().getId(), moduleName(event.getProject()),
+                MavenBuildResult.Status.SUCCESS, null);
     }
     
     @Override
     public void projectFailed(ExecutionEvent event) {
         super.projectFailed(event);
         writeToConsole("Project " + event.getProject().getName() + " build FAILED");
+        String reason = event.getException() != null ? event.getException().getMessage() : null;
+        buildResult.moduleFinished(event.getProject().getId(), moduleName(event.getProject()),
+                MavenBuildResult.Status.FAILED, reason);
+    }
+    
+    @Override
+    public void projectSkipped(ExecutionEvent event) {
+        super.projectSkipped(event);
+        writeToConsole("Project " + event.getProject().getName() + " SKIPPED");
+        buildResult.moduleFinished(event.getProject().getId(), moduleName(event.getProject()),
+                MavenBuildResult.Status.SKIPPED, null);
     }
     
     @Override
@@ -87,17 +113,61 @@ public class CustomMavenExecutionListener extends MonitorExecutionListener {
         if (event.getException() != null) {
             writeToConsole("Reason: " + event.getException().getMessage());
         }
+        MavenProject project = event.getProject();
+        if (COMPILER_PLUGIN.equals(mojo.getArtifactId()) && event.getException() != null) {
+            buildResult.addCompilerMessages(moduleName(project), project.getBasedir(), compilerOutput(event.getException()));
+        }
+        collectTestReports(event);
     }
     
     @Override
     public void mojoSucceeded(ExecutionEvent event) {
         super.mojoSucceeded(event);
+        collectTestReports(event);
         // Uncomment if you want to see success messages for each mojo
         // MojoExecution mojo = event.getMojoExecution();
         // writeToConsole("SUCCESS: " + mojo.getGroupId() + ":" + mojo.getArtifactId() + ":" + 
         //               mojo.getVersion() + ":" + mojo.getGoal());
     }
     
+    /**
+     * Reads the reports of a finished Surefire or Failsafe execution from their default location.
+     */
+    private void collectTestReports(ExecutionEvent event) {
+        String plugin = event.getMojoExecution().getArtifactId();
+        String reports = SUREFIRE_PLUGIN.equals(plugin) ? "surefire-reports"
+                       : FAILSAFE_PLUGIN.equals(plugin) ? "failsafe-reports"
+                       : null;
+        if (reports == null || event.getProject().getBuild().getDirectory() == null) {
+            return;
+        }
+        File directory = new File(event.getProject().getBuild().getDirectory(), reports);
+        if (!buildResult.addTestReports(moduleName(event.getProject()), directory)) {
+            writeToConsole("Could not read all test reports in " + directory);
+        }
+    }
+    
+    /**
+     * Returns the compiler messages carried by a failed compilation. The long message of
+     * the compiler plugin's failure lists every error, the plain message only the first.
+     */
+    private static String compilerOutput(Throwable exception) {
+        StringBuilder output = new StringBuilder();
+        for (Throwable t = exception; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof MojoFailureException failure && failure.getLongMessage() != null) {
+                output.append(failure.getLongMessage()).append('\n');
+            }
+            if (t.getMessage() != null) {
+                output.append(t.getMessage()).append('\n');
+            }
+        }
+        return output.toString();
+    }
+    
+    private static String moduleName(MavenProject project) {
+        return project.getName() != null ? project.getName() : project.getArtifactId();
+    }
+    
     /**
      * Writes a message to the console.
      * 
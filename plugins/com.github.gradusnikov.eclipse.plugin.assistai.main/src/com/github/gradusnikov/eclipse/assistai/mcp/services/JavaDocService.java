@@ -1,9 +1,13 @@
 package com.github.gradusnikov.eclipse.assistai.mcp.services;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.function.Predicate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -12,32 +16,71 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.jdt.core.ElementChangedEvent;
 import org.eclipse.jdt.core.IBuffer;
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
 import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.ISourceRange;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
-import org.eclipse.jface.text.Document;
-import org.eclipse.ui.editors.text.TextFileDocumentProvider;
 
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceToolResult;
+import com.github.gradusnikov.eclipse.assistai.tools.ResourceUtilities;
 import com.vladsch.flexmark.html2md.converter.FlexmarkHtmlConverter;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
 
 /**
  * Service for retrieving JavaDoc and source code information from Java projects.
+ * <p>
+ * Resolved types are remembered by fully qualified name, and projects that
+ * resolved a type before are asked first. The JavaDoc rendered as markdown is
+ * remembered per type, together with a stamp of the file or archive the type
+ * comes from, so attached JavaDoc of JDK and library types is read once.
+ * Classpath changes drop both caches.
  */
 @Creatable
-public class JavaDocService {
+@Singleton
+public class JavaDocService implements IElementChangedListener {
+    
+    private static final FlexmarkHtmlConverter CONVERTER = FlexmarkHtmlConverter.builder().build();
     
     @Inject
     private ILog logger;
     
+    /** Fully qualified name -> resolved type */
+    private final Map<String, IType> types = new ConcurrentHashMap<>();
+    
+    /** Type handle -> stamp and rendered markdown */
+    private final Map<String, RenderedJavaDoc> javaDocs = new ConcurrentHashMap<>();
+    
+    /** Project name -> order of its latest successful lookup */
+    private final Map<String, Long> projectHits = new ConcurrentHashMap<>();
+    
+    private final AtomicLong lookups = new AtomicLong();
+    
+    private record RenderedJavaDoc(String stamp, String markdown) {}
+    
+    @PostConstruct
+    public void init() {
+        JavaCore.addElementChangedListener(this, ElementChangedEvent.POST_CHANGE);
+    }
+    
+    @PreDestroy
+    public void dispose() {
+        JavaCore.removeElementChangedListener(this);
+        clearCaches();
+    }
+    
     /**
      * Retrieves the attached JavaDoc documentation for a given class within the available Java projects.
      * It searches all projects for the JavaDoc and if found, it returns the JavaDoc content. If no JavaDoc
@@ -47,12 +90,34 @@ public class JavaDocService {
      * @return The JavaDoc string if available; otherwise, a message indicating it is not available.
      */
     public String getJavaDoc(String fullyQualifiedClassName) {
-        return getAvailableJavaProjects().stream()
-                .map(project -> getAttachedJavadoc(fullyQualifiedClassName, project))
-                .filter(Objects::nonNull)
-                .filter(Predicate.not(String::isBlank))
-                .findAny()
-                .orElse("JavaDoc is not available for " + fullyQualifiedClassName);
+        IType cached = types.get(fullyQualifiedClassName);
+        try {
+            if (cached != null && cached.exists()) {
+                String markdown = getAttachedJavadoc(cached);
+                if (!markdown.isBlank()) {
+                    return markdown;
+                }
+            }
+        } catch (JavaModelException e) {
+            logger.error(e.getMessage(), e);
+        }
+        // projects are asked in the order of findType(), the next one when a project has no JavaDoc
+        for (IJavaProject project : projectsByRecentHits()) {
+            try {
+                IType type = project.findType(fullyQualifiedClassName);
+                if (type == null || type.equals(cached)) {
+                    continue;
+                }
+                String markdown = getAttachedJavadoc(type);
+                if (!markdown.isBlank()) {
+                    remember(fullyQualifiedClassName, type, project);
+                    return markdown;
+                }
+            } catch (JavaModelException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        return "JavaDoc is not available for " + fullyQualifiedClassName;
     }
     
     /**
@@ -64,12 +129,7 @@ public class JavaDocService {
      * @return The source code string if available; otherwise, a message indicating it is not available.
      */
     public String getSource(String fullyQualifiedClassName) {
-        return getAvailableJavaProjects().stream()
-                .map(project -> getAttachedSource(fullyQualifiedClassName, project))
-                .filter(Objects::nonNull)
-                .filter(Predicate.not(String::isBlank))
-                .findAny()
-                .orElse("Source is not available for " + fullyQualifiedClassName);
+        return getSourceWithResource(fullyQualifiedClassName).getContent();
     }
     
     /**
@@ -102,34 +162,94 @@ public class JavaDocService {
     }
     
     /**
-     * Gathers and returns JavaDoc information for a specified class within a given Java project. It retrieves the JavaDoc
-     * by looking up the type corresponding to the fully qualified class name and extracting its documentation, as well as
-     * the documentation of its children elements.
+     * Finds a type in the available Java projects, asking first the projects
+     * that resolved a type most recently.
      *
-     * @param fullyQualifiedClassName The fully qualified name of the class for which to retrieve JavaDoc.
-     * @param javaProject The Java project within which to search for the class.
-     * @return A string containing the JavaDoc for the class and its children, or an empty string if not found.
+     * @param fullyQualifiedClassName The fully qualified name of the type.
+     * @return The type, or null if no project can resolve it.
+     * @throws JavaModelException if a project cannot be searched.
      */
-    private String getAttachedJavadoc(String fullyQualifiedClassName, IJavaProject javaProject) {
-        String javaDoc = "";
-        try {
-            IType type = javaProject.findType(fullyQualifiedClassName);
-            if (Objects.nonNull(type)) {
-                javaDoc += getMemberJavaDoc((IMember) type);
-                
-                for (IJavaElement child : type.getChildren()) {
-                    javaDoc += getMemberJavaDoc((IMember) child);
-                }
+    public IType findType(String fullyQualifiedClassName) throws JavaModelException {
+        IType cached = types.get(fullyQualifiedClassName);
+        if (cached != null && cached.exists()) {
+            return cached;
+        }
+        for (IJavaProject project : projectsByRecentHits()) {
+            IType type = project.findType(fullyQualifiedClassName);
+            if (type != null) {
+                remember(fullyQualifiedClassName, type, project);
+                return type;
             }
-        } catch (JavaModelException e) {
-            logger.error(e.getMessage(), e);
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the available Java projects, the ones that resolved a type most recently first.
+     */
+    private List<IJavaProject> projectsByRecentHits() {
+        List<IJavaProject> projects = getAvailableJavaProjects();
+        projects.sort(Comparator.comparingLong((IJavaProject project) -> projectHits.getOrDefault(project.getElementName(), 0L)).reversed());
+        return projects;
+    }
+    
+    private void remember(String fullyQualifiedClassName, IType type, IJavaProject project) {
+        types.put(fullyQualifiedClassName, type);
+        projectHits.put(project.getElementName(), lookups.incrementAndGet());
+    }
+    
+    /**
+     * Gathers and returns JavaDoc information for a type, including the documentation of its
+     * children elements, converted to markdown. The result is reused while the file or archive
+     * the type comes from is unchanged.
+     *
+     * @param type The type for which to retrieve JavaDoc.
+     * @return A string containing the JavaDoc for the class and its children, or an empty string if there is none.
+     * @throws JavaModelException if the JavaDoc cannot be read.
+     */
+    private String getAttachedJavadoc(IType type) throws JavaModelException {
+        String stamp = stampOf(type);
+        RenderedJavaDoc rendered = javaDocs.get(type.getHandleIdentifier());
+        if (stamp != null && rendered != null && rendered.stamp().equals(stamp)) {
+            return rendered.markdown();
         }
         
-        var converter = FlexmarkHtmlConverter.builder().build();
-        String markdown = converter.convert(javaDoc);
+        StringBuilder javaDoc = new StringBuilder();
+        javaDoc.append(getMemberJavaDoc(type));
+        for (IJavaElement child : type.getChildren()) {
+            if (child instanceof IMember member) {
+                javaDoc.append(getMemberJavaDoc(member));
+            }
+        }
+        
+        String markdown = CONVERTER.convert(javaDoc.toString());
+        if (stamp != null) {
+            javaDocs.put(type.getHandleIdentifier(), new RenderedJavaDoc(stamp, markdown));
+        }
         return markdown;
     }
     
+    /**
+     * Returns a stamp that changes when the source or binary of a type changes,
+     * or null if the type has unsaved changes and must not be cached.
+     */
+    private static String stampOf(IType type) throws JavaModelException {
+        ICompilationUnit unit = type.getCompilationUnit();
+        if (unit != null && unit.hasUnsavedChanges()) {
+            return null;
+        }
+        IResource resource = type.getResource();
+        if (resource != null) {
+            return resource.getFullPath() + "@" + resource.getModificationStamp();
+        }
+        IPackageFragmentRoot root = (IPackageFragmentRoot) type.getAncestor(IJavaElement.PACKAGE_FRAGMENT_ROOT);
+        if (root != null && root.getPath() != null) {
+            File file = root.getPath().toFile();
+            return root.getPath() + "@" + file.lastModified() + ":" + file.length();
+        }
+        return "";
+    }
+    
     /**
      * Retrieves the JavaDoc documentation for a given member of a Java project.
      * This method extracts the JavaDoc directly if it is attached to the member, or from the source buffer
@@ -161,52 +281,6 @@ public class JavaDocService {
         return javaDoc;
     }
     
-    /**
-     * Extracts the source code for a specified class from the given Java project's associated resources.
-     * If the class is found, the source code is retrieved from the corresponding file. If not found,
-     * or if any errors occur during retrieval, a message is returned indicating the source is unavailable.
-     *
-     * @param fullyQualifiedClassName The fully qualified name of the class whose source code is to be retrieved.
-     * @param javaProject The Java project to which the class belongs.
-     * @return The source code of the class, or a message indicating that the source is not available.
-     */
-    private String getAttachedSource(String fullyQualifiedClassName, IJavaProject javaProject) {
-        try {
-            // Find the type for the fully qualified class name
-            IType type = javaProject.findType(fullyQualifiedClassName);
-            if (type == null) 
-            {
-                return null;      
-            }
-            // Get the attached Javadoc
-            IResource resource = type.getCorrespondingResource();
-            if (resource == null) {
-                resource = type.getResource();
-            }
-            if (resource == null) {
-                resource = type.getUnderlyingResource();
-            }
-            // Check if the resource is a file
-            if (resource instanceof IFile) 
-            {
-                IFile file = (IFile) resource;
-                TextFileDocumentProvider provider = new TextFileDocumentProvider();
-                provider.connect(file);
-                Document document = (Document) provider.getDocument(file);
-                String content = document.get();
-                provider.disconnect(file);
-
-                return content;
-            }
-        } 
-        catch (Exception e) 
-        {
-            logger.error(e.getMessage(), e);
-            return null;
-        }
-        return null;
-    }
-    
     /**
      * Retrieves the source code with resource metadata for caching.
      * Returns a ResourceToolResult containing both the source and its descriptor.
@@ -218,38 +292,15 @@ public class JavaDocService {
     public ResourceToolResult getSourceWithResource(String fullyQualifiedClassName) {
         final String toolName = "getSource";
         
-        for (IJavaProject javaProject : getAvailableJavaProjects()) {
-            try {
-                IType type = javaProject.findType(fullyQualifiedClassName);
-                if (type == null) {
-                    continue;
-                }
-                
-                // Get the resource (file) for this type
-                IResource resource = type.getCorrespondingResource();
-                if (resource == null) {
-                    resource = type.getResource();
-                }
-                if (resource == null) {
-                    resource = type.getUnderlyingResource();
-                }
-                
-                // Check if the resource is a file
-                if (resource instanceof IFile file) {
-                    TextFileDocumentProvider provider = new TextFileDocumentProvider();
-                    provider.connect(file);
-                    Document document = (Document) provider.getDocument(file);
-                    String content = document.get();
-                    provider.disconnect(file);
-                    
-                    if (content != null && !content.isBlank()) {
-                        // Create resource-aware result with IType info
-                        return ResourceToolResult.fromJavaType(type, content, toolName);
-                    }
-                }
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
+        try {
+            IType type = findType(fullyQualifiedClassName);
+            String content = type != null ? getWorkspaceSource(type) : null;
+            if (content != null && !content.isBlank()) {
+                // Create resource-aware result with IType info
+                return ResourceToolResult.fromJavaType(type, content, toolName);
             }
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
         }
         
         // Source not available - return transient (non-cacheable) result
@@ -258,4 +309,65 @@ public class JavaDocService {
             toolName
         );
     }
+    
+    /**
+     * Reads the source of a type defined in a workspace file. Compilation units are read
+     * from their JDT buffer, which holds the editor content when the file is open.
+     *
+     * @return The source, or null if the type does not come from a workspace file.
+     */
+    private String getWorkspaceSource(IType type) throws Exception {
+        ICompilationUnit unit = type.getCompilationUnit();
+        if (unit != null && unit.getResource() instanceof IFile) {
+            return unit.getSource();
+        }
+        IResource resource = type.getCorrespondingResource();
+        if (resource == null) {
+            resource = type.getResource();
+        }
+        if (resource == null) {
+            resource = type.getUnderlyingResource();
+        }
+        return resource instanceof IFile file ? ResourceUtilities.readFileContent(file) : null;
+    }
+    
+    private void clearCaches() {
+        types.clear();
+        javaDocs.clear();
+        projectHits.clear();
+    }
+    
+    /**
+     * Drops the caches when a classpath, an archive or a project changes.
+     * Changes inside source files are caught by the type stamps instead.
+     */
+    @Override
+    public void elementChanged(ElementChangedEvent event) {
+        if (affectsClasspath(event.getDelta())) {
+            clearCaches();
+        }
+    }
+    
+    private static boolean affectsClasspath(IJavaElementDelta delta) {
+        int flags = IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+                | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED | IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED;
+        if ((delta.getFlags() & flags) != 0) {
+            return true;
+        }
+        int type = delta.getElement().getElementType();
+        if (type == IJavaElement.JAVA_PROJECT || type == IJavaElement.PACKAGE_FRAGMENT_ROOT) {
+            if (delta.getKind() != IJavaElementDelta.CHANGED) {
+                return true;
+            }
+        }
+        if (type >= IJavaElement.PACKAGE_FRAGMENT_ROOT) {
+            return false;
+        }
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            if (affectsClasspath(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
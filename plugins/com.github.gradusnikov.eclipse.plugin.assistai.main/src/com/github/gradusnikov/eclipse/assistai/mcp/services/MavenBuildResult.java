@@ -0,0 +1,397 @@
+package com.github.gradusnikov.eclipse.assistai.mcp.services;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Structured results of a Maven build, collected by the
+ * {@link CustomMavenExecutionListener} while the build runs: the status and
+ * time of each module, the compiler errors with their file and line, and the
+ * failed tests read from the Surefire and Failsafe reports.
+ * <p>
+ * The results can be read while the build is still running, so a build that
+ * outlives its timeout reports the modules finished so far.
+ */
+public class MavenBuildResult
+{
+    /** Compiler errors and test failures listed in the summary, the rest are counted */
+    public static final int MAX_LISTED = 25;
+
+    /** Lines of a message kept in the summary */
+    private static final int MAX_MESSAGE_LINES = 3;
+
+    // e.g. "[ERROR] /home/user/app/src/main/java/App.java:[12,5] cannot find symbol"
+    private static final Pattern COMPILER_MESSAGE = Pattern.compile( "^(?:\\[ERROR\\]\\s*)?(\\S.*?\\.java):\\[(\\d+)(?:,(\\d+))?\\]\\s*(.*)$" );
+
+    public enum Status
+    {
+        RUNNING, SUCCESS, FAILED, SKIPPED
+    }
+
+    public record ModuleResult( String name, Status status, long millis, String failure )
+    {
+    }
+
+    public record CompilerError( String module, String file, int line, int column, String message )
+    {
+    }
+
+    public record TestFailure( String module, String testClass, String testName, boolean error, String message )
+    {
+    }
+
+    private final long start = System.currentTimeMillis();
+
+    // guarded by this; module id -> result, in build order
+    private final Map<String, ModuleResult> modules = new LinkedHashMap<>();
+
+    // guarded by this; module id -> start time of a running module
+    private final Map<String, Long> moduleStarts = new LinkedHashMap<>();
+
+    private final List<CompilerError> compilerErrors = new ArrayList<>();
+
+    private final List<TestFailure> testFailures = new ArrayList<>();
+
+    private final List<String> errors = new ArrayList<>();
+
+    // guarded by this; reports directory -> report file name -> modification time when it was read
+    private final Map<File, Map<String, Long>> readReports = new HashMap<>();
+
+    private int testsRun;
+
+    private int testsSkipped;
+
+    private long end;
+
+    public synchronized void moduleStarted( String id, String name )
+    {
+        moduleStarts.put( id, System.currentTimeMillis() );
+        modules.put( id, new ModuleResult( name, Status.RUNNING, 0, null ) );
+    }
+
+    public synchronized void moduleFinished( String id, String name, Status status, String failure )
+    {
+        Long moduleStart = moduleStarts.remove( id );
+        long millis = moduleStart != null ? System.currentTimeMillis() - moduleStart : 0;
+        modules.put( id, new ModuleResult( name, status, millis, failure ) );
+    }
+
+    /**
+     * Records an error that is not tied to a module, like a failure to
+     * resolve the projects of the build.
+     */
+    public synchronized void addError( String message )
+    {
+        if ( message != null && !errors.contains( message ) )
+        {
+            errors.add( message );
+        }
+    }
+
+    public synchronized void finished()
+    {
+        end = System.currentTimeMillis();
+    }
+
+    public synchronized boolean isFinished()
+    {
+        return end > 0;
+    }
+
+    /**
+     * Returns true if the build finished without a failed module or error.
+     */
+    public synchronized boolean isSuccessful()
+    {
+        return isFinished() && errors.isEmpty() && modules.values().stream().noneMatch( module -> module.status() == Status.FAILED );
+    }
+
+    public synchronized List<ModuleResult> getModules()
+    {
+        return List.copyOf( modules.values() );
+    }
+
+    public synchronized List<CompilerError> getCompilerErrors()
+    {
+        return List.copyOf( compilerErrors );
+    }
+
+    public synchronized List<TestFailure> getTestFailures()
+    {
+        return List.copyOf( testFailures );
+    }
+
+    /**
+     * Parses the compiler messages of a failed compilation, like the long
+     * message of the compiler plugin's {@code CompilationFailureException}.
+     * Indented lines continue the message before them.
+     *
+     * @param module the module being compiled
+     * @param baseDirectory the base directory of the module, file paths are shown relative to it; may be null
+     * @param text the compiler output
+     */
+    public synchronized void addCompilerMessages( String module, File baseDirectory, String text )
+    {
+        if ( text == null )
+        {
+            return;
+        }
+        String basePath = baseDirectory != null ? baseDirectory.getAbsolutePath() + File.separator : null;
+        CompilerError previous = null;
+        for ( String line : text.split( "\\R" ) )
+        {
+            Matcher matcher = COMPILER_MESSAGE.matcher( line.strip() );
+            if ( matcher.matches() )
+            {
+                String file = matcher.group( 1 );
+                if ( basePath != null && file.startsWith( basePath ) )
+                {
+                    file = file.substring( basePath.length() );
+                }
+                int column = matcher.group( 3 ) != null ? Integer.parseInt( matcher.group( 3 ) ) : -1;
+                CompilerError error = new CompilerError( module, file, Integer.parseInt( matcher.group( 2 ) ), column, matcher.group( 4 ) );
+                // the same error is reported by the long and the short message of the failure
+                if ( compilerErrors.stream().noneMatch( known -> sameError( known, error ) ) )
+                {
+                    compilerErrors.add( error );
+                    previous = error;
+                }
+                else
+                {
+                    previous = null;
+                }
+            }
+            else if ( previous != null && !line.isBlank() && Character.isWhitespace( line.charAt( 0 ) ) )
+            {
+                CompilerError continued = new CompilerError( previous.module(), previous.file(), previous.line(), previous.column(),
+                        previous.message() + "\n" + line.strip() );
+                compilerErrors.set( compilerErrors.size() - 1, continued );
+                previous = continued;
+            }
+            else
+            {
+                previous = null;
+            }
+        }
+    }
+
+    private static boolean sameError( CompilerError known, CompilerError error )
+    {
+        return known.module().equals( error.module() ) && known.file().equals( error.file() ) && known.line() == error.line()
+                && known.column() == error.column() && known.message().startsWith( error.message() );
+    }
+
+    /**
+     * Reads the test counts and the failed tests from the XML reports of
+     * Surefire or Failsafe written since the build started. Reports read by
+     * an earlier call, e.g. after another execution in the same module, are
+     * skipped unless they were written again since. A report that cannot be
+     * read is recorded as an error of the build.
+     *
+     * @param module the module that ran the tests
+     * @param reportsDirectory the directory with the {@code TEST-*.xml} reports
+     * @return false if a report could not be read
+     */
+    public boolean addTestReports( String module, File reportsDirectory )
+    {
+        File[] reports = reportsDirectory.listFiles( ( directory, name ) -> name.startsWith( "TEST-" ) && name.endsWith( ".xml" ) );
+        if ( reports == null )
+        {
+            return true;
+        }
+        boolean complete = true;
+        for ( File report : reports )
+        {
+            long lastModified = report.lastModified();
+            // reports of earlier builds are left over until the next clean
+            if ( lastModified < start || !markRead( reportsDirectory, report.getName(), lastModified ) )
+            {
+                continue;
+            }
+            try
+            {
+                addTestReport( module, parse( report ) );
+            }
+            catch ( Exception e )
+            {
+                addError( "Could not read test report " + report + ": " + e.getMessage() );
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Records that a report is read.
+     *
+     * @return false if the report was read before and has not changed since
+     */
+    private synchronized boolean markRead( File reportsDirectory, String name, long lastModified )
+    {
+        Long read = readReports.computeIfAbsent( reportsDirectory.getAbsoluteFile(), directory -> new HashMap<>() ).put( name, lastModified );
+        return read == null || read != lastModified;
+    }
+
+    private static Document parse( File report ) throws Exception
+    {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature( "http://apache.org/xml/features/disallow-doctype-decl", true );
+        factory.setExpandEntityReferences( false );
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        return builder.parse( report );
+    }
+
+    private synchronized void addTestReport( String module, Document document )
+    {
+        Element suite = document.getDocumentElement();
+        testsRun += intAttribute( suite, "tests" );
+        testsSkipped += intAttribute( suite, "skipped" );
+        NodeList testCases = suite.getElementsByTagName( "testcase" );
+        for ( int i = 0; i < testCases.getLength(); i++ )
+        {
+            Element testCase = (Element) testCases.item( i );
+            for ( Node child = testCase.getFirstChild(); child != null; child = child.getNextSibling() )
+            {
+                if ( child instanceof Element problem && ( "failure".equals( problem.getTagName() ) || "error".equals( problem.getTagName() ) ) )
+                {
+                    String message = problem.getAttribute( "message" );
+                    if ( message.isEmpty() )
+                    {
+                        message = problem.getAttribute( "type" );
+                    }
+                    testFailures.add( new TestFailure( module, testCase.getAttribute( "classname" ), testCase.getAttribute( "name" ),
+                            "error".equals( problem.getTagName() ), message ) );
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int intAttribute( Element element, String name )
+    {
+        try
+        {
+            return Integer.parseInt( element.getAttribute( name ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns a compact summary of the build for the model.
+     */
+    @Override
+    public synchronized String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        long millis = ( end > 0 ? end : System.currentTimeMillis() ) - start;
+        sb.append( "Result: " ).append( !isFinished() ? "RUNNING" : isSuccessful() ? "SUCCESS" : "FAILED" )
+          .append( " (" ).append( seconds( millis ) ).append( ")\n" );
+
+        if ( !modules.isEmpty() )
+        {
+            sb.append( "\nModules:\n" );
+            for ( ModuleResult module : modules.values() )
+            {
+                sb.append( "- " ).append( module.name() ).append( ": " ).append( module.status() );
+                if ( module.status() != Status.RUNNING && module.status() != Status.SKIPPED )
+                {
+                    sb.append( " (" ).append( seconds( module.millis() ) ).append( ")" );
+                }
+                if ( module.failure() != null )
+                {
+                    sb.append( " - " ).append( firstLine( module.failure() ) );
+                }
+                sb.append( "\n" );
+            }
+        }
+
+        if ( !errors.isEmpty() )
+        {
+            sb.append( "\nErrors:\n" );
+            errors.forEach( error -> sb.append( "- " ).append( abbreviate( error ) ).append( "\n" ) );
+        }
+
+        if ( !compilerErrors.isEmpty() )
+        {
+            sb.append( "\nCompiler errors (" ).append( compilerErrors.size() ).append( "):\n" );
+            compilerErrors.stream().limit( MAX_LISTED ).forEach( error -> {
+                sb.append( "- " ).append( error.file() ).append( ":" ).append( error.line() );
+                if ( error.column() > 0 )
+                {
+                    sb.append( ":" ).append( error.column() );
+                }
+                sb.append( " " ).append( abbreviate( error.message() ) ).append( "\n" );
+            } );
+            appendMore( sb, compilerErrors.size() );
+        }
+
+        if ( testsRun > 0 || !testFailures.isEmpty() )
+        {
+            long errorCount = testFailures.stream().filter( TestFailure::error ).count();
+            sb.append( "\nTests: " ).append( testsRun ).append( " run, " )
+              .append( testFailures.size() - errorCount ).append( " failed, " )
+              .append( errorCount ).append( " errors, " )
+              .append( testsSkipped ).append( " skipped\n" );
+        }
+        if ( !testFailures.isEmpty() )
+        {
+            sb.append( "\nTest failures (" ).append( testFailures.size() ).append( "):\n" );
+            testFailures.stream().limit( MAX_LISTED ).forEach( failure -> sb.append( "- " )
+                    .append( failure.testClass() ).append( "#" ).append( failure.testName() )
+                    .append( failure.error() ? " [error] " : " [failure] " )
+                    .append( abbreviate( failure.message() ) ).append( "\n" ) );
+            appendMore( sb, testFailures.size() );
+        }
+        return sb.toString();
+    }
+
+    private static void appendMore( StringBuilder sb, int size )
+    {
+        if ( size > MAX_LISTED )
+        {
+            sb.append( "- …and " ).append( size - MAX_LISTED ).append( " more\n" );
+        }
+    }
+
+    private static String seconds( long millis )
+    {
+        return String.format( "%.1fs", millis / 1000.0 );
+    }
+
+    private static String firstLine( String text )
+    {
+        String[] lines = text.strip().split( "\\R", 2 );
+        return lines[0];
+    }
+
+    private static String abbreviate( String text )
+    {
+        if ( text == null )
+        {
+            return "";
+        }
+        String[] lines = text.strip().split( "\\R" );
+        if ( lines.length <= MAX_MESSAGE_LINES )
+        {
+            return String.join( "\n  ", lines );
+        }
+        return String.join( "\n  ", List.of( lines ).subList( 0, MAX_MESSAGE_LINES ) ) + "\n  …";
+    }
+}
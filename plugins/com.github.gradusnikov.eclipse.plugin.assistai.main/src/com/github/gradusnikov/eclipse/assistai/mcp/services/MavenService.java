@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenExecutionResult;
 import org.apache.maven.project.MavenProject;
@@ -15,6 +16,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.e4.core.di.annotations.Creatable;
 import org.eclipse.e4.ui.di.UISynchronize;
@@ -33,6 +35,8 @@ import jakarta.inject.Inject;
 public class MavenService
 {
 
+    public static final String CONSOLE_NAME = "Maven Console";
+
     @Inject
     ILog           logger;
 
@@ -54,7 +58,9 @@ public class MavenService
      * @param timeout
      *            Maximum time in seconds to wait for build completion (0 for no
      *            timeout)
-     * @return A status message indicating the build has started
+     * @return A summary of the build: the status and time of each module,
+     *         compiler errors and failed tests; the modules finished so far if
+     *         the build is still running after the timeout
      */
     public String runMavenBuild( String projectName, String goals, String profiles, Integer timeout )
     {
@@ -113,13 +119,14 @@ public class MavenService
                 throw new RuntimeException( "Error: Could not find Maven configuration for project '" + projectName + "'." );
             }
 
-            // Start the build in a separate thread
-            final String consoleOutput = "Maven Console";
-
-            // Clear console before starting the build
-            sync.syncExec( () -> {
-                consoleService.clear( consoleOutput );
-            } );
+            // Builds of other projects run alongside, so only clear the console if it is not in use
+            if ( Job.getJobManager().find( MavenService.class ).length == 0 )
+            {
+                sync.syncExec( () -> {
+                    consoleService.clear( CONSOLE_NAME );
+                } );
+            }
+            final MavenBuildResult buildResult = new MavenBuildResult();
             Job job = new Job( "Maven Build: " + goals + " on " + projectName )
             {
                 @Override
@@ -127,29 +134,41 @@ public class MavenService
                 {
                     try
                     {
-                        executeMavenBuild( facade, goalList, profileList, monitor );
+                        executeMavenBuild( facade, goalList, profileList, buildResult, monitor );
                         return org.eclipse.core.runtime.Status.OK_STATUS;
                     }
                     catch ( Exception e )
                     {
                         logger.error( "Error executing Maven build", e );
+                        buildResult.addError( ExceptionUtils.getRootCauseMessage( e ) );
                         return org.eclipse.core.runtime.Status.error( "Error executing Maven build", e );
                     }
+                    finally
+                    {
+                        buildResult.finished();
+                    }
+                }
+
+                @Override
+                public boolean belongsTo( Object family )
+                {
+                    return family == MavenService.class;
                 }
             };
 
             job.schedule();
-            job.join( TimeUnit.MINUTES.toMillis( timeout ), new NullProgressMonitor() );
-
-            // If timeout is specified, wait for completion
-            String timeoutMessage = "";
+            boolean finished = job.join( TimeUnit.SECONDS.toMillis( timeout ), new NullProgressMonitor() );
 
-            // Return a message with instructions on how to get the console
-            // output
-            return "Maven build started for project '" + projectName + "' with goals: " + goals
-                    + ( profiles != null && !profiles.isEmpty() ? " and profiles: " + profiles : "" ) + timeoutMessage
-                    + "\n\nTo view build output, use the getConsoleOutput tool with consoleName=\"Maven Console\""
-                    + "\nExample: getConsoleOutput(consoleName=\"Maven Console\", maxLines=200)";
+            StringBuilder summary = new StringBuilder();
+            summary.append( "Maven build " ).append( finished ? "finished" : "still running after " + timeout + " seconds" )
+                   .append( " for project '" ).append( projectName ).append( "' with goals: " ).append( goals );
+            if ( profiles != null && !profiles.isEmpty() )
+            {
+                summary.append( " and profiles: " ).append( profiles );
+            }
+            summary.append( "\n" ).append( buildResult );
+            summary.append( "\nTo view build output, use the getConsoleOutput tool with consoleName=\"" ).append( CONSOLE_NAME ).append( "\"" );
+            return summary.toString();
 
         }
         catch ( CoreException | InterruptedException e )
@@ -159,9 +178,11 @@ public class MavenService
     }
 
     /**
-     * Executes a Maven build with the specified goals and profiles.
+     * Executes a Maven build with the specified goals and profiles. Builds of
+     * the same project wait for each other, builds of other projects run
+     * concurrently.
      */
-    private void executeMavenBuild( IMavenProjectFacade facade, List<String> goals, List<String> profiles, IProgressMonitor monitor ) throws CoreException
+    private void executeMavenBuild( IMavenProjectFacade facade, List<String> goals, List<String> profiles, MavenBuildResult buildResult, IProgressMonitor monitor ) throws CoreException
     {
         if ( monitor == null )
         {
@@ -179,20 +200,37 @@ public class MavenService
         request.setGoals( goals );
         
         // Create a custom execution listener that forwards output to the console
-        final String consoleOutput = "Maven Console";
-        CustomMavenExecutionListener listener = new CustomMavenExecutionListener(monitor, consoleOutput, consoleService );
+        CustomMavenExecutionListener listener = new CustomMavenExecutionListener( monitor, CONSOLE_NAME, consoleService, buildResult );
         request.setExecutionListener( listener );
         
         request.setBaseDirectory( facade.getMavenProject().getBasedir() );
         request.setPom( facade.getPomFile() );
-        MavenExecutionResult result = context.execute( request );
+
+        // Only held around the Maven execution; the configuration update
+        // below acquires workspace rules of its own
+        ISchedulingRule rule = new ProjectBuildRule( facade.getProject().getName() );
+        MavenExecutionResult result;
+        Job.getJobManager().beginRule( rule, monitor );
+        try
+        {
+            result = context.execute( request );
+        }
+        finally
+        {
+            Job.getJobManager().endRule( rule );
+        }
 
         if ( !result.getExceptions().isEmpty() )
         {
+            // Module failures are already in the build result, the rest are
+            // errors like unresolvable projects
+            result.getExceptions().stream()
+                  .filter( e -> buildResult.getModules().stream().noneMatch( module -> Objects.equals( module.failure(), e.getMessage() ) ) )
+                  .forEach( e -> buildResult.addError( e.getMessage() ) );
             // Write exception to console
             final String errorMessage = "Maven build failed: " + result.getExceptions().getFirst().getMessage();
-            sync.asyncExec(() -> consoleService.println(consoleOutput, errorMessage));
-            throw new RuntimeException( result.getExceptions().getFirst() );
+            sync.asyncExec(() -> consoleService.println(CONSOLE_NAME, errorMessage));
+            return;
         }
         
         // Update Maven project configuration if needed
@@ -446,6 +484,32 @@ public class MavenService
         }
     }
 
+    /**
+     * Scheduling rule of a Maven build, conflicting with builds of the same
+     * project only.
+     */
+    private static class ProjectBuildRule implements ISchedulingRule
+    {
+        private final String projectName;
+
+        ProjectBuildRule( String projectName )
+        {
+            this.projectName = projectName;
+        }
+
+        @Override
+        public boolean contains( ISchedulingRule rule )
+        {
+            return isConflicting( rule );
+        }
+
+        @Override
+        public boolean isConflicting( ISchedulingRule rule )
+        {
+            return rule instanceof ProjectBuildRule other && projectName.equals( other.projectName );
+        }
+    }
+
     /**
      * Parses Maven goals from a space-separated string.
      */
@@ -0,0 +1,398 @@
+package com.github.gradusnikov.eclipse.assistai.mcp.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IMarkerDelta;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.jdt.core.IJavaModelMarker;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Index of the problem markers in the workspace, kept up to date from marker
+ * deltas.
+ * <p>
+ * The markers are read once, on the first query, and their attributes are
+ * copied into {@link Problem} records, so queries neither walk the workspace
+ * nor read marker attributes. Problem counts per project and severity are
+ * kept with the index. Every change is recorded in a bounded journal, and
+ * {@link #token()} marks a point in it: {@link #changesSince(String, String, int)}
+ * returns the problems that appeared or were resolved after that point.
+ */
+@Creatable
+@Singleton
+public class ProblemMarkerIndex implements IResourceChangeListener
+{
+    /** Changes kept for {@link #changesSince(String, String, int)}; older tokens expire */
+    public static final int MAX_JOURNAL_SIZE = 10_000;
+
+    /** Matches problems of any severity */
+    public static final int ANY_SEVERITY = -1;
+
+    private static final Comparator<Problem> BY_SEVERITY_AND_LOCATION = Comparator.comparingInt( Problem::severity ).reversed()
+            .thenComparing( Problem::path )
+            .thenComparingInt( Problem::line );
+
+    private final ILog logger;
+
+    // guarded by this; marker id -> problem
+    private final Map<Long, Problem> problems = new HashMap<>();
+
+    // guarded by this; project name -> problem counts indexed by severity (info, warning, error)
+    private final Map<String, int[]> counts = new HashMap<>();
+
+    private final Deque<Change> journal = new ArrayDeque<>();
+
+    /** Distinguishes the tokens of this index from tokens of an earlier session or build */
+    private long epoch;
+
+    private long version;
+
+    /** Tokens older than this version have lost part of their journal */
+    private long journalStart;
+
+    private boolean built;
+
+    private boolean listenerRegistered;
+
+    /**
+     * A problem marker, with the attributes read when it was added or changed.
+     *
+     * @param severity one of the {@code IMarker.SEVERITY_*} constants, or -1 if not set
+     * @param line the 1-based line number, or -1 if not set
+     * @param problemId the Java problem id, or null for other markers
+     */
+    public record Problem( long id, IResource resource, String path, String project, String type, int severity, int line,
+            String message, Object problemId )
+    {
+        static Problem of( IMarker marker ) throws CoreException
+        {
+            Map<String, Object> attributes = marker.getAttributes();
+            IResource resource = marker.getResource();
+            return new Problem( marker.getId(),
+                    resource,
+                    resource.getFullPath().toString(),
+                    resource.getProject() != null ? resource.getProject().getName() : "",
+                    marker.getType(),
+                    attributes.get( IMarker.SEVERITY ) instanceof Integer severity ? severity : -1,
+                    attributes.get( IMarker.LINE_NUMBER ) instanceof Integer line ? line : -1,
+                    attributes.get( IMarker.MESSAGE ) instanceof String message ? message : null,
+                    attributes.get( IJavaModelMarker.ID ) );
+        }
+
+        boolean matches( String projectName, int severityFilter )
+        {
+            return ( projectName == null || projectName.equals( project ) )
+                    && ( severityFilter == ANY_SEVERITY || severityFilter == severity );
+        }
+    }
+
+    /**
+     * Problems that appeared and problems that were resolved since a token.
+     *
+     * @param token the token to pass on the next call
+     */
+    public record Changes( List<Problem> added, List<Problem> resolved, String token )
+    {
+    }
+
+    private record Change( long version, boolean added, Problem problem )
+    {
+    }
+
+    @Inject
+    public ProblemMarkerIndex( ILog logger )
+    {
+        this.logger = Objects.requireNonNull( logger );
+    }
+
+    @PreDestroy
+    public synchronized void dispose()
+    {
+        if ( listenerRegistered )
+        {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener( this );
+            listenerRegistered = false;
+        }
+        clear();
+    }
+
+    /**
+     * Returns the problems of a project, or of the workspace, errors first and
+     * then by location.
+     *
+     * @param projectName the project, or null for all projects
+     * @param severity one of the {@code IMarker.SEVERITY_*} constants, or {@link #ANY_SEVERITY}
+     */
+    public synchronized List<Problem> problems( String projectName, int severity )
+    {
+        ensureBuilt();
+        return problems.values().stream()
+                .filter( problem -> problem.matches( projectName, severity ) )
+                .sorted( BY_SEVERITY_AND_LOCATION )
+                .toList();
+    }
+
+    /**
+     * Returns the number of problems with the given severity.
+     *
+     * @param projectName the project, or null for all projects
+     * @param severity one of {@code IMarker.SEVERITY_ERROR}, {@code SEVERITY_WARNING} or {@code SEVERITY_INFO}
+     */
+    public synchronized int count( String projectName, int severity )
+    {
+        ensureBuilt();
+        if ( severity < IMarker.SEVERITY_INFO || severity > IMarker.SEVERITY_ERROR )
+        {
+            return 0;
+        }
+        if ( projectName != null )
+        {
+            int[] projectCounts = counts.get( projectName );
+            return projectCounts != null ? projectCounts[severity] : 0;
+        }
+        return counts.values().stream().mapToInt( projectCounts -> projectCounts[severity] ).sum();
+    }
+
+    /**
+     * Returns a token marking the current state of the index.
+     */
+    public synchronized String token()
+    {
+        ensureBuilt();
+        return epoch + "-" + version;
+    }
+
+    /**
+     * Returns the problems that appeared or were resolved since the token was
+     * taken. A problem whose message, severity or line changed is reported as
+     * resolved and as added.
+     *
+     * @param token a token from {@link #token()} or from earlier changes
+     * @param projectName the project, or null for all projects
+     * @param severity one of the {@code IMarker.SEVERITY_*} constants, or {@link #ANY_SEVERITY}
+     * @return the changes, or null if the token is unknown or has expired
+     */
+    public synchronized Changes changesSince( String token, String projectName, int severity )
+    {
+        ensureBuilt();
+        long since = parseToken( token );
+        if ( since < journalStart || since > version )
+        {
+            return null;
+        }
+        // the state before the token is given by the first change of each problem
+        Map<Long, Problem> before = new LinkedHashMap<>();
+        for ( Change change : journal )
+        {
+            if ( change.version() > since && !before.containsKey( change.problem().id() ) )
+            {
+                before.put( change.problem().id(), change.added() ? null : change.problem() );
+            }
+        }
+        List<Problem> added = new ArrayList<>();
+        List<Problem> resolved = new ArrayList<>();
+        for ( Map.Entry<Long, Problem> entry : before.entrySet() )
+        {
+            Problem previous = entry.getValue();
+            Problem current = problems.get( entry.getKey() );
+            if ( Objects.equals( previous, current ) )
+            {
+                continue;
+            }
+            if ( previous != null && previous.matches( projectName, severity ) )
+            {
+                resolved.add( previous );
+            }
+            if ( current != null && current.matches( projectName, severity ) )
+            {
+                added.add( current );
+            }
+        }
+        added.sort( BY_SEVERITY_AND_LOCATION );
+        resolved.sort( BY_SEVERITY_AND_LOCATION );
+        return new Changes( added, resolved, token() );
+    }
+
+    private long parseToken( String token )
+    {
+        String prefix = epoch + "-";
+        if ( token == null || !token.startsWith( prefix ) )
+        {
+            return -1;
+        }
+        try
+        {
+            return Long.parseLong( token.substring( prefix.length() ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
+
+    private void ensureBuilt()
+    {
+        if ( built )
+        {
+            return;
+        }
+        if ( !listenerRegistered )
+        {
+            ResourcesPlugin.getWorkspace().addResourceChangeListener( this, IResourceChangeEvent.POST_CHANGE );
+            listenerRegistered = true;
+        }
+        clear();
+        long start = System.currentTimeMillis();
+        try
+        {
+            for ( IMarker marker : ResourcesPlugin.getWorkspace().getRoot().findMarkers( IMarker.PROBLEM, true, IResource.DEPTH_INFINITE ) )
+            {
+                put( Problem.of( marker ) );
+            }
+        }
+        catch ( CoreException e )
+        {
+            logger.error( e.getMessage(), e );
+            clear();
+            throw new RuntimeException( "Error indexing problem markers: " + ExceptionUtils.getRootCauseMessage( e ), e );
+        }
+        // the initial markers are the baseline, not changes
+        journal.clear();
+        journalStart = version;
+        built = true;
+        logger.info( "ProblemMarkerIndex: Indexed " + problems.size() + " problems in " + ( System.currentTimeMillis() - start ) + " ms" );
+    }
+
+    private void clear()
+    {
+        problems.clear();
+        counts.clear();
+        journal.clear();
+        epoch = System.currentTimeMillis();
+        version = 0;
+        journalStart = 0;
+        built = false;
+    }
+
+    private void put( Problem problem )
+    {
+        Problem previous = problems.get( problem.id() );
+        if ( problem.equals( previous ) )
+        {
+            return;
+        }
+        if ( previous != null )
+        {
+            remove( previous.id() );
+        }
+        problems.put( problem.id(), problem );
+        addToCounts( problem, 1 );
+        record( true, problem );
+    }
+
+    private void remove( long id )
+    {
+        Problem previous = problems.remove( id );
+        if ( previous != null )
+        {
+            addToCounts( previous, -1 );
+            record( false, previous );
+        }
+    }
+
+    private void addToCounts( Problem problem, int delta )
+    {
+        if ( problem.severity() >= IMarker.SEVERITY_INFO && problem.severity() <= IMarker.SEVERITY_ERROR )
+        {
+            counts.computeIfAbsent( problem.project(), key -> new int[3] )[problem.severity()] += delta;
+        }
+    }
+
+    private void record( boolean added, Problem problem )
+    {
+        journal.add( new Change( ++version, added, problem ) );
+        if ( journal.size() > MAX_JOURNAL_SIZE )
+        {
+            journalStart = journal.poll().version();
+        }
+    }
+
+    /**
+     * Applies the marker deltas. Markers of projects that are opened, closed
+     * or removed are read again, since those do not always come with marker
+     * deltas.
+     */
+    @Override
+    public synchronized void resourceChanged( IResourceChangeEvent event )
+    {
+        if ( !built || event.getDelta() == null )
+        {
+            return;
+        }
+        try
+        {
+            for ( IResourceDelta projectDelta : event.getDelta().getAffectedChildren() )
+            {
+                if ( projectDelta.getKind() == IResourceDelta.REMOVED
+                        || ( projectDelta.getFlags() & IResourceDelta.OPEN ) != 0 )
+                {
+                    reindex( (IProject) projectDelta.getResource() );
+                }
+            }
+            for ( IMarkerDelta markerDelta : event.findMarkerDeltas( IMarker.PROBLEM, true ) )
+            {
+                if ( markerDelta.getKind() == IResourceDelta.REMOVED || !markerDelta.getMarker().exists() )
+                {
+                    remove( markerDelta.getId() );
+                }
+                else
+                {
+                    put( Problem.of( markerDelta.getMarker() ) );
+                }
+            }
+        }
+        catch ( CoreException e )
+        {
+            logger.error( "ProblemMarkerIndex: Error processing resource change", e );
+            clear();
+        }
+    }
+
+    private void reindex( IProject project ) throws CoreException
+    {
+        String projectName = project.getName();
+        problems.values().stream()
+                .filter( problem -> problem.project().equals( projectName ) )
+                .map( Problem::id )
+                .toList()
+                .forEach( this::remove );
+        if ( project.isAccessible() )
+        {
+            for ( IMarker marker : project.findMarkers( IMarker.PROBLEM, true, IResource.DEPTH_INFINITE ) )
+            {
+                put( Problem.of( marker ) );
+            }
+        }
+    }
+}
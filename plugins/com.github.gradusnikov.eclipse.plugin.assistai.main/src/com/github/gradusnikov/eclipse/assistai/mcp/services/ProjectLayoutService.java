@@ -0,0 +1,529 @@
+package com.github.gradusnikov.eclipse.assistai.mcp.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounter;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Keeps the file and folder tree of the projects asked for and renders it
+ * within a depth, entry and token budget.
+ * <p>
+ * The tree of a project is read with a proxy visitor on the first request and
+ * then patched from resource deltas. Derived folders and well known build,
+ * dependency and VCS folders ({@code target}, {@code bin},
+ * {@code node_modules}, {@code .git}, ...) are shown but never listed. Names
+ * are only ignored at the top of the project and outside Java source folders,
+ * so a package named {@code build} is listed. The
+ * budget is spent breadth first, so the top of the project is always present;
+ * what does not fit is collapsed into counts such as
+ * "…and 340 more files". Rendered layouts are kept until the project changes.
+ */
+@Creatable
+@Singleton
+public class ProjectLayoutService implements IResourceChangeListener
+{
+    public static final int DEFAULT_MAX_DEPTH = 8;
+
+    public static final int DEFAULT_MAX_ENTRIES = 400;
+
+    public static final int DEFAULT_MAX_TOKENS = 6_000;
+
+    /** Children listed for one folder before the rest is summarized */
+    public static final int MAX_ENTRIES_PER_FOLDER = 50;
+
+    private static final Set<String> IGNORED_FOLDERS = Set.of( "target", "bin", "build", "out", "node_modules", ".git",
+            ".svn", ".hg", ".gradle", ".idea", ".settings", "__pycache__" );
+
+    /** Changing the classpath moves the source folders, so the tree is read again */
+    private static final IPath CLASSPATH_FILE = IPath.fromPortableString( ".classpath" );
+
+    private final ILog logger;
+
+    // guarded by this; project name -> cached tree and rendered layouts
+    private final Map<String, Layout> layouts = new HashMap<>();
+
+    private boolean listenerRegistered;
+
+    @Inject
+    public ProjectLayoutService( ILog logger )
+    {
+        this.logger = Objects.requireNonNull( logger );
+    }
+
+    @PreDestroy
+    public synchronized void dispose()
+    {
+        if ( listenerRegistered )
+        {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener( this );
+            listenerRegistered = false;
+        }
+        layouts.clear();
+    }
+
+    /**
+     * Renders the layout of an open project as a markdown list.
+     *
+     * @param project the project
+     * @param maxDepth levels below the project root to list, 0 or less for the default
+     * @param maxEntries files and folders to list, 0 or less for the default
+     * @param maxTokens tokens to spend on the listing, 0 or less for the default
+     * @param tokenCounter counts the tokens of each line
+     */
+    public synchronized String getLayout( IProject project, int maxDepth, int maxEntries, int maxTokens, TokenCounter tokenCounter )
+    {
+        if ( !listenerRegistered )
+        {
+            ResourcesPlugin.getWorkspace().addResourceChangeListener( this, IResourceChangeEvent.POST_CHANGE );
+            listenerRegistered = true;
+        }
+        Budget budget = new Budget( maxDepth > 0 ? maxDepth : DEFAULT_MAX_DEPTH,
+                maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES,
+                maxTokens > 0 ? maxTokens : DEFAULT_MAX_TOKENS,
+                tokenCounter.name() );
+        Layout layout = layouts.get( project.getName() );
+        if ( layout == null )
+        {
+            layout = build( project );
+            layouts.put( project.getName(), layout );
+        }
+        Node root = layout.root;
+        return layout.rendered.computeIfAbsent( budget, key -> render( project.getName(), root, key, tokenCounter ) );
+    }
+
+    private Layout build( IProject project )
+    {
+        long start = System.currentTimeMillis();
+        Node root = new Node( project.getName(), true, false, false );
+        Map<IPath, Node> folders = new HashMap<>();
+        folders.put( project.getFullPath(), root );
+        List<IPath> sourceFolders;
+        try
+        {
+            sourceFolders = sourceFolders( project );
+            project.accept( proxy -> {
+                if ( proxy.getType() == IResource.PROJECT )
+                {
+                    return true;
+                }
+                IPath path = proxy.requestFullPath();
+                Node parent = folders.get( path.removeLastSegments( 1 ) );
+                if ( parent == null )
+                {
+                    return false;
+                }
+                Node node = parent.add( proxy.getName(), proxy.getType() != IResource.FILE, proxy.isDerived(),
+                        mayIgnoreByName( sourceFolders, path.removeFirstSegments( 1 ) ) );
+                if ( node.isExpandable() )
+                {
+                    folders.put( path, node );
+                    return true;
+                }
+                return false;
+            }, IResource.NONE );
+        }
+        catch ( CoreException e )
+        {
+            logger.error( e.getMessage(), e );
+            throw new RuntimeException( "Error reading project layout: " + ExceptionUtils.getRootCauseMessage( e ), e );
+        }
+        logger.info( "ProjectLayoutService: Read " + folders.size() + " folders of " + project.getName() + " in "
+                + ( System.currentTimeMillis() - start ) + " ms" );
+        return new Layout( root, sourceFolders );
+    }
+
+    /**
+     * @return the project relative paths of the source folders of a Java project, empty for other projects
+     */
+    private static List<IPath> sourceFolders( IProject project ) throws CoreException
+    {
+        if ( !project.hasNature( JavaCore.NATURE_ID ) )
+        {
+            return List.of();
+        }
+        IJavaProject javaProject = JavaCore.create( project );
+        List<IPath> sourceFolders = new ArrayList<>();
+        for ( IClasspathEntry entry : javaProject.getRawClasspath() )
+        {
+            if ( entry.getEntryKind() == IClasspathEntry.CPE_SOURCE && project.getFullPath().isPrefixOf( entry.getPath() ) )
+            {
+                sourceFolders.add( entry.getPath().removeFirstSegments( 1 ) );
+            }
+        }
+        return sourceFolders;
+    }
+
+    /**
+     * Folders are ignored by name at the top of the project and outside
+     * source folders; inside a source folder they are packages.
+     */
+    private static boolean mayIgnoreByName( List<IPath> sourceFolders, IPath relativePath )
+    {
+        for ( IPath sourceFolder : sourceFolders )
+        {
+            // a source folder at the project root still ignores its top level folders
+            boolean topOfProject = sourceFolder.isEmpty() && relativePath.segmentCount() == 1;
+            if ( sourceFolder.isPrefixOf( relativePath ) && !topOfProject )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Picks the entries breadth first until a budget runs out, then writes
+     * them depth first.
+     */
+    private static String render( String projectName, Node root, Budget budget, TokenCounter tokenCounter )
+    {
+        Map<Node, Counts> counts = new IdentityHashMap<>();
+        counts( root, counts );
+
+        Set<Node> shown = Collections.newSetFromMap( new IdentityHashMap<>() );
+        Deque<Node> queue = new ArrayDeque<>();
+        Map<Node, Integer> depths = new IdentityHashMap<>();
+        depths.put( root, 0 );
+        enqueueChildren( root, queue, depths, 1 );
+        int tokens = 0;
+        boolean truncated = false;
+        while ( !queue.isEmpty() )
+        {
+            Node node = queue.poll();
+            int depth = depths.get( node );
+            int lineTokens = tokenCounter.count( line( node, depth, counts, false ) );
+            if ( shown.size() >= budget.maxEntries() || tokens + lineTokens > budget.maxTokens() )
+            {
+                truncated = true;
+                break;
+            }
+            shown.add( node );
+            tokens += lineTokens;
+            if ( depth < budget.maxDepth() )
+            {
+                enqueueChildren( node, queue, depths, depth + 1 );
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append( "# Project Structure: " ).append( projectName ).append( "\n\n" );
+        sb.append( "- " ).append( projectName ).append( "/\n" );
+        write( root, 1, shown, counts, sb );
+        if ( truncated )
+        {
+            sb.append( "\nThe layout was shortened to fit " ).append( budget.maxEntries() ).append( " entries and ~" )
+              .append( budget.maxTokens() ).append( " tokens; collapsed folders show their file counts.\n" );
+        }
+        return sb.toString();
+    }
+
+    private static void enqueueChildren( Node folder, Deque<Node> queue, Map<Node, Integer> depths, int depth )
+    {
+        List<Node> children = folder.sortedChildren();
+        for ( Node child : children.subList( 0, Math.min( children.size(), MAX_ENTRIES_PER_FOLDER ) ) )
+        {
+            depths.put( child, depth );
+            queue.add( child );
+        }
+    }
+
+    private static void write( Node folder, int depth, Set<Node> shown, Map<Node, Counts> counts, StringBuilder sb )
+    {
+        int hiddenFolders = 0;
+        int hiddenFiles = 0;
+        for ( Node child : folder.sortedChildren() )
+        {
+            if ( !shown.contains( child ) )
+            {
+                if ( child.folder )
+                {
+                    hiddenFolders++;
+                }
+                else
+                {
+                    hiddenFiles++;
+                }
+                continue;
+            }
+            boolean expanded = child.isExpandable() && child.children.values().stream().anyMatch( shown::contains );
+            sb.append( line( child, depth, counts, expanded ) ).append( '\n' );
+            if ( expanded )
+            {
+                write( child, depth + 1, shown, counts, sb );
+            }
+        }
+        if ( hiddenFolders + hiddenFiles > 0 )
+        {
+            sb.append( "  ".repeat( depth ) ).append( "- …and " ).append( describe( hiddenFolders, hiddenFiles, " more" ) ).append( '\n' );
+        }
+    }
+
+    private static String line( Node node, int depth, Map<Node, Counts> counts, boolean expanded )
+    {
+        String indent = "  ".repeat( depth );
+        if ( !node.folder )
+        {
+            return indent + "- " + node.name;
+        }
+        if ( node.pruned )
+        {
+            return indent + "- " + node.name + "/ (" + ( node.derived ? "derived" : "ignored" ) + ", not listed)";
+        }
+        Counts c = counts.get( node );
+        if ( expanded || c.folders() + c.files() == 0 )
+        {
+            return indent + "- " + node.name + "/";
+        }
+        return indent + "- " + node.name + "/ (" + describe( c.folders(), c.files(), "" ) + ")";
+    }
+
+    private static String describe( int folders, int files, String more )
+    {
+        List<String> parts = new ArrayList<>( 2 );
+        if ( folders > 0 )
+        {
+            parts.add( folders + more + ( folders == 1 ? " folder" : " folders" ) );
+        }
+        if ( files > 0 || folders == 0 )
+        {
+            parts.add( files + more + ( files == 1 ? " file" : " files" ) );
+        }
+        return String.join( " and ", parts );
+    }
+
+    private static Counts counts( Node node, Map<Node, Counts> counts )
+    {
+        int folders = 0;
+        int files = 0;
+        if ( node.isExpandable() )
+        {
+            for ( Node child : node.children.values() )
+            {
+                if ( child.folder )
+                {
+                    Counts nested = counts( child, counts );
+                    folders += 1 + nested.folders();
+                    files += nested.files();
+                }
+                else
+                {
+                    files++;
+                }
+            }
+        }
+        Counts result = new Counts( folders, files );
+        counts.put( node, result );
+        return result;
+    }
+
+    /**
+     * Adds and removes entries of the cached projects. Opening, closing or
+     * removing a project, or changing a derived flag, drops the cached tree of
+     * that project; it is read again on the next request.
+     */
+    @Override
+    public synchronized void resourceChanged( IResourceChangeEvent event )
+    {
+        if ( layouts.isEmpty() || event.getDelta() == null )
+        {
+            return;
+        }
+        for ( IResourceDelta projectDelta : event.getDelta().getAffectedChildren() )
+        {
+            String projectName = projectDelta.getResource().getName();
+            Layout layout = layouts.get( projectName );
+            if ( layout == null )
+            {
+                continue;
+            }
+            try
+            {
+                if ( !patch( layout, projectDelta ) )
+                {
+                    layouts.remove( projectName );
+                }
+            }
+            catch ( CoreException e )
+            {
+                logger.error( "ProjectLayoutService: Error processing resource change", e );
+                layouts.remove( projectName );
+            }
+        }
+    }
+
+    /**
+     * @return false if the tree cannot be patched and must be read again
+     */
+    private static boolean patch( Layout layout, IResourceDelta projectDelta ) throws CoreException
+    {
+        if ( projectDelta.getKind() != IResourceDelta.CHANGED
+                || ( projectDelta.getFlags() & IResourceDelta.OPEN ) != 0 )
+        {
+            return false;
+        }
+        boolean[] valid = { true };
+        projectDelta.accept( delta -> {
+            IResource resource = delta.getResource();
+            if ( !valid[0] )
+            {
+                return false;
+            }
+            if ( resource.getType() == IResource.PROJECT )
+            {
+                return true;
+            }
+            if ( ( delta.getFlags() & IResourceDelta.DERIVED_CHANGED ) != 0
+                    || resource.getProjectRelativePath().equals( CLASSPATH_FILE ) )
+            {
+                valid[0] = false;
+                return false;
+            }
+            Node parent = layout.root.find( resource.getProjectRelativePath().removeLastSegments( 1 ) );
+            if ( parent == null || !parent.isExpandable() )
+            {
+                return false;
+            }
+            switch ( delta.getKind() )
+            {
+                case IResourceDelta.ADDED -> {
+                    layout.rendered.clear();
+                    Node node = parent.add( resource.getName(), resource.getType() != IResource.FILE, resource.isDerived(),
+                            mayIgnoreByName( layout.sourceFolders, resource.getProjectRelativePath() ) );
+                    return node.isExpandable();
+                }
+                case IResourceDelta.REMOVED -> {
+                    layout.rendered.clear();
+                    parent.children.remove( resource.getName() );
+                    return false;
+                }
+                default -> {
+                    return true;
+                }
+            }
+        } );
+        return valid[0];
+    }
+
+    private record Budget( int maxDepth, int maxEntries, int maxTokens, String tokenCounter )
+    {
+    }
+
+    private record Counts( int folders, int files )
+    {
+    }
+
+    private static final class Layout
+    {
+        final Node root;
+
+        /** Project relative paths of the Java source folders */
+        final List<IPath> sourceFolders;
+
+        final Map<Budget, String> rendered = new HashMap<>();
+
+        Layout( Node root, List<IPath> sourceFolders )
+        {
+            this.root = root;
+            this.sourceFolders = sourceFolders;
+        }
+    }
+
+    private static final class Node
+    {
+        final String name;
+
+        final boolean folder;
+
+        final boolean derived;
+
+        /** Derived or ignored folders are kept without their content */
+        final boolean pruned;
+
+        /** Children by name; null for files and pruned folders */
+        final NavigableMap<String, Node> children;
+
+        Node( String name, boolean folder, boolean derived, boolean pruned )
+        {
+            this.name = name;
+            this.folder = folder;
+            this.derived = derived;
+            this.pruned = pruned;
+            this.children = folder && !pruned ? new TreeMap<>() : null;
+        }
+
+        boolean isExpandable()
+        {
+            return children != null;
+        }
+
+        Node add( String childName, boolean childFolder, boolean childDerived, boolean mayIgnoreByName )
+        {
+            boolean childPruned = childFolder
+                    && ( childDerived || mayIgnoreByName && IGNORED_FOLDERS.contains( childName ) );
+            Node child = new Node( childName, childFolder, childDerived, childPruned );
+            children.put( childName, child );
+            return child;
+        }
+
+        Node find( IPath relativePath )
+        {
+            Node node = this;
+            for ( String segment : relativePath.segments() )
+            {
+                if ( !node.isExpandable() )
+                {
+                    return null;
+                }
+                node = node.children.get( segment );
+                if ( node == null )
+                {
+                    return null;
+                }
+            }
+            return node;
+        }
+
+        /** Folders first, then files, each by name */
+        List<Node> sortedChildren()
+        {
+            if ( children == null )
+            {
+                return List.of();
+            }
+            List<Node> sorted = new ArrayList<>( children.size() );
+            children.values().stream().filter( child -> child.folder ).forEach( sorted::add );
+            children.values().stream().filter( child -> !child.folder ).forEach( sorted::add );
+            return sorted;
+        }
+    }
+}
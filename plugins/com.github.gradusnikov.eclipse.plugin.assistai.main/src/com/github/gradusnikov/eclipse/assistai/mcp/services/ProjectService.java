@@ -27,6 +27,7 @@ import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceToolResult;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
 
 import jakarta.inject.Inject;
 
@@ -40,6 +41,12 @@ public class ProjectService {
     @Inject
     ILog logger;
     
+    @Inject
+    ProjectLayoutService projectLayoutService;
+    
+    @Inject
+    TokenCounterRegistry tokenCounterRegistry;
+    
     /**
      * Lists all available projects in the workspace with their detected natures.
      * 
@@ -156,29 +163,13 @@ public class ProjectService {
      * Gets the file and folder structure of a specified project.
      * 
      * @param projectName The name of the project to analyze
+     * @param maxDepth Levels below the project root to list, 0 for the default
+     * @param maxEntries Files and folders to list, 0 for the default
      * @return A hierarchical representation of the project structure
      */
-    public String getProjectLayout(String projectName) 
+    public String getProjectLayout(String projectName, int maxDepth, int maxEntries) 
     {
-        IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
-        if (project == null || !project.exists()) 
-        {
-            return "Project '" + projectName + "' not found.";
-        }
-        
-        StringBuilder result = new StringBuilder();
-        try 
-        {
-            result.append("# Project Structure: ").append(projectName).append("\n\n");
-            collectResourcesForLLM(project, 0, result); // Start with the project root
-        } 
-        catch (CoreException e)
-        {
-            logger.error(e.getMessage(), e);
-            return "Error retrieving project layout: " + e.getMessage();
-        }
-        
-        return result.toString();
+        return getProjectLayoutWithResource(projectName, maxDepth, maxEntries).getContent();
     }
     
     /**
@@ -244,49 +235,6 @@ public class ProjectService {
         }
     }
     
-    /**
-     * Collects resources in a hierarchical structure for display.
-     * 
-     * @param resource The starting resource
-     * @param depth The current depth in the hierarchy
-     * @param result The StringBuilder to append results to
-     * @throws CoreException if an error occurs
-     */
-    private void collectResourcesForLLM(IResource resource, int depth, StringBuilder result) throws CoreException {
-        // Use proper indentation with markdown list formatting
-        String indent = "";
-        for (int i = 0; i < depth; i++) 
-        {
-            indent += "  ";
-        }
-        
-        // Append the current resource with markdown list item
-        String prefix = depth > 0 ? indent + "- " : "- ";
-        result.append(prefix).append(resource.getName());
-        
-        // Add type indicator for better context
-        String type = switch ( resource.getType() ) {
-            case IResource.FOLDER -> "(Directory)";
-            case IResource.FILE -> "(File)";
-            case IResource.PROJECT -> "(Project)";
-            default -> "";
-        };
-        result.append( " ");
-        result.append( type );
-        result.append("\n");
-    
-        // If the resource is a container, list its children
-        if (resource instanceof IContainer) 
-        {
-            IContainer container = (IContainer) resource;
-            IResource[] members = container.members();
-            for (IResource member : members) 
-            {
-                collectResourcesForLLM(member, depth + 1, result);
-            }
-        }
-    }
-
     /**
      * Appends Java project specific properties to the result.
      * 
@@ -701,12 +649,15 @@ public class ProjectService {
     
     /**
      * Gets the project layout with resource metadata for caching.
+     * The layout is bounded by depth, entry count and tokens, see {@link ProjectLayoutService}.
      * 
      * @param projectName The name of the project to analyze
+     * @param maxDepth Levels below the project root to list, 0 for the default
+     * @param maxEntries Files and folders to list, 0 for the default
      * @return ResourceToolResult with layout content and cacheable descriptor,
      *         or a transient result if there was an error
      */
-    public ResourceToolResult getProjectLayoutWithResource(String projectName) {
+    public ResourceToolResult getProjectLayoutWithResource(String projectName, int maxDepth, int maxEntries) {
         final String toolName = "getProjectLayout";
         
         IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
@@ -725,15 +676,12 @@ public class ProjectService {
         }
         
         try {
-            StringBuilder result = new StringBuilder();
-            result.append("# Project Structure: ").append(projectName).append("\n\n");
-            collectResourcesForLLM(project, 0, result);
+            String layout = projectLayoutService.getLayout(project, maxDepth, maxEntries, 0, tokenCounterRegistry.forChatModel());
             
             // Return cacheable result for project layout
-            return ResourceToolResult.forProjectLayout(projectName, result.toString(), toolName);
+            return ResourceToolResult.forProjectLayout(projectName, layout, toolName);
             
-        } catch (CoreException e) {
-            logger.error(e.getMessage(), e);
+        } catch (RuntimeException e) {
             return ResourceToolResult.transientResult(
                 "Error retrieving project layout: " + e.getMessage(), 
                 toolName
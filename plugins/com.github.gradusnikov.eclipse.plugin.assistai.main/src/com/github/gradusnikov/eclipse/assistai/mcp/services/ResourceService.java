@@ -3,25 +3,18 @@ package com.github.gradusnikov.eclipse.assistai.mcp.services;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.e4.core.di.annotations.Creatable;
-import org.eclipse.search.core.text.TextSearchEngine;
-import org.eclipse.search.core.text.TextSearchMatchAccess;
-import org.eclipse.search.core.text.TextSearchRequestor;
-import org.eclipse.search.core.text.TextSearchScope;
 
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceToolResult;
+import com.github.gradusnikov.eclipse.assistai.search.WorkspaceFileIndex;
 import com.github.gradusnikov.eclipse.assistai.tools.ResourceUtilities;
 
 import jakarta.inject.Inject;
@@ -39,6 +32,9 @@ public class ResourceService
     @Inject
     ILog logger;
 
+    @Inject
+    WorkspaceFileIndex fileIndex;
+
     /**
      * Finds workspace files matching the given glob patterns.
      *
@@ -48,78 +44,10 @@ public class ResourceService
      */
     public List<String> findFiles(String[] fileNamePatterns, Integer maxResults)
     {
-        Pattern fileNamePattern = ResourceUtilities.globPatternsToRegex(fileNamePatterns);
-
         int limit = (maxResults == null || maxResults <= 0) ? 200 : maxResults.intValue();
 
-        IResource[] roots = getOpenProjectsAsRoots();
-        if (roots.length == 0)
-        {
-            return List.of();
-        }
-
-        TextSearchScope scope = TextSearchScope.newSearchScope(roots, fileNamePattern, true);
-        TextSearchEngine engine = TextSearchEngine.createDefault();
-
-        List<String> matches = new ArrayList<>();
-
-        TextSearchRequestor requestor = new TextSearchRequestor()
-        {
-            @Override
-            public boolean acceptFile(IFile file) throws CoreException
-            {
-                if (matches.size() >= limit)
-                {
-                    return false; // stop accepting more files
-                }
-
-                return file != null && file.isAccessible();
-            }
-
-            @Override
-            public boolean acceptPatternMatch(TextSearchMatchAccess matchAccess) throws CoreException
-            {
-                // We only need the file, not match positions.
-                IFile file = matchAccess.getFile();
-                if (file != null)
-                {
-                    String path = file.getFullPath().toString();
-                    if (!matches.contains(path))
-                    {
-                        matches.add(path);
-                    }
-                }
-
-                return matches.size() < limit;
-            }
-        };
-
-        try
-        {
-            // Search for a pattern that matches at least one char, to force the engine to scan.
-            // (We only care about file enumeration, the fileNamePattern already limits the scope.)
-            engine.search(scope, requestor, Pattern.compile("."), null);
-            return matches;
-        }
-        catch (Exception e)
-        {
-            logger.error("Error finding files: " + e.getMessage(), e);
-            throw new RuntimeException("Error finding files: " + ExceptionUtils.getRootCauseMessage(e), e);
-        }
-    }
-
-    private static IResource[] getOpenProjectsAsRoots()
-    {
-        IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
-        List<IResource> roots = new ArrayList<>();
-        for (IProject project : projects)
-        {
-            if (project != null && project.exists() && project.isOpen())
-            {
-                roots.add(project);
-            }
-        }
-        return roots.toArray(IResource[]::new);
+        // Names only: no file is opened, derived and team private files are skipped.
+        return fileIndex.find(fileNamePatterns, limit);
     }
 
     /**
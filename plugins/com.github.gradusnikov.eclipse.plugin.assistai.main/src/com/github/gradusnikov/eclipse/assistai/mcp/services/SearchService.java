@@ -1,13 +1,17 @@
 package com.github.gradusnikov.eclipse.assistai.mcp.services;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.nio.charset.Charset;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -18,13 +22,25 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.PerformChangeOperation;
+import org.eclipse.ltk.core.refactoring.RefactoringCore;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.TextFileChange;
 import org.eclipse.search.core.text.TextSearchEngine;
 import org.eclipse.search.core.text.TextSearchMatchAccess;
 import org.eclipse.search.core.text.TextSearchRequestor;
 import org.eclipse.search.core.text.TextSearchScope;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
 
+import com.github.gradusnikov.eclipse.assistai.resources.UnifiedDiff;
+import com.github.gradusnikov.eclipse.assistai.search.TrigramIndex;
+import com.github.gradusnikov.eclipse.assistai.search.WorkspaceTextIndex;
 import com.github.gradusnikov.eclipse.assistai.tools.ResourceUtilities;
 
 import jakarta.inject.Inject;
@@ -32,53 +48,128 @@ import jakarta.inject.Singleton;
 
 /**
  * Workspace file search based on Eclipse's {@link TextSearchEngine}.
+ * <p>
+ * When the {@link WorkspaceTextIndex} is enabled, the engine only scans the
+ * files the index reports as possible matches.
  */
 @Creatable
 @Singleton
 public class SearchService
 {
+    /** Results returned when the caller does not set a limit */
+    public static final int DEFAULT_MAX_RESULTS = 200;
+
     private final ILog logger;
 
+    private final WorkspaceTextIndex textIndex;
+
     public record SearchResult(IFile file, int lineNumber, String lineContent)
     {
 
     }
 
-    public record SearchAndReplaceResult(IFile file, int matchesFound, int replacementsMade)
+    /**
+     * The matching lines of a search, and whether the search stopped at the
+     * result limit. The text form ends with a note when it did, so the
+     * caller knows there may be more matches.
+     */
+    public static final class SearchResults extends AbstractList<SearchResult>
     {
+        private final List<SearchResult> results;
+
+        private final int limit;
+
+        private final boolean limited;
+
+        SearchResults(List<SearchResult> results, int limit, boolean limited)
+        {
+            this.results = List.copyOf(results);
+            this.limit = limit;
+            this.limited = limited;
+        }
+
+        @Override
+        public SearchResult get(int index)
+        {
+            return results.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return results.size();
+        }
+
+        /**
+         * Returns true if the search stopped at the limit, more lines may match.
+         */
+        public boolean isLimited()
+        {
+            return limited;
+        }
 
+        public int getLimit()
+        {
+            return limit;
+        }
+
+        @Override
+        public String toString()
+        {
+            return limited ? super.toString() + "\n(results limited to " + limit + ")" : super.toString();
+        }
+    }
+
+    /**
+     * Summary of the replacements in one file.
+     *
+     * @param diff Unified diff of the file, or null if not requested
+     */
+    public record SearchAndReplaceResult(IFile file, int matchesFound, int replacementsMade, String diff)
+    {
+        @Override
+        public String toString()
+        {
+            String summary = file.getFullPath() + ": " + replacementsMade + " replacement" + (replacementsMade == 1 ? "" : "s");
+            return diff == null ? summary : summary + "\n" + diff;
+        }
     }
 
     @Inject
-    public SearchService(ILog logger)
+    public SearchService(ILog logger, WorkspaceTextIndex textIndex)
     {
         this.logger = logger;
+        this.textIndex = textIndex;
     }
 
     /**
      * Plain substring search (not regex).
+     *
+     * @param maxResults Maximum number of matching lines; null or non-positive for {@link #DEFAULT_MAX_RESULTS}
      */
-    public List<SearchResult> fileSearch(String containingText, String... fileNamePatterns)
+    public SearchResults fileSearch(String containingText, Integer maxResults, String... fileNamePatterns)
     {
         if (containingText == null || containingText.isBlank())
         {
             throw new IllegalArgumentException("containingText must not be null/blank");
         }
 
-        return search(Pattern.compile(Pattern.quote(containingText)), fileNamePatterns);
+        return search(Pattern.compile(Pattern.quote(containingText)), List.of(containingText), maxResults, fileNamePatterns);
     }
 
     /**
      * Regex search using Java {@link Pattern} syntax.
+     *
+     * @param maxResults Maximum number of matching lines; null or non-positive for {@link #DEFAULT_MAX_RESULTS}
      */
-    public List<SearchResult> fileSearchRegExp(String pattern, String... fileNamePatterns)
+    public SearchResults fileSearchRegExp(String pattern, Integer maxResults, String... fileNamePatterns)
     {
         if (pattern == null || pattern.isBlank())
         {
             throw new IllegalArgumentException("pattern must not be null/blank");
         }
 
-        return search(Pattern.compile(pattern), fileNamePatterns);
+        return search(Pattern.compile(pattern), TrigramIndex.literals(pattern), maxResults, fileNamePatterns);
     }
 
     /**
@@ -88,15 +179,22 @@ public class SearchService
      * <ul>
      * <li>searches only in open projects</li>
      * <li>matches by plain substring (not regex)</li>
-     * <li>replaces every occurrence in each matched line</li>
+     * <li>computes the edits of all files first, then applies them as one
+     * refactoring change in a single workspace operation, so there is one
+     * resource delta and one build</li>
+     * <li>edits files through their file buffers: a file open in an editor
+     * with unsaved changes is changed in the editor and left unsaved</li>
+     * <li>undoes the files already changed if one of them fails</li>
      * </ul>
+     * The change can be undone with Edit &gt; Undo.
      *
      * @param containingText Plain text to find
      * @param replacementText Replacement (can be empty but not null)
+     * @param includeDiff Whether to return a unified diff per file
      * @param fileNamePatterns Optional glob patterns like "*.java" (empty => all files)
      */
     public List<SearchAndReplaceResult> searchAndReplace(String containingText, String replacementText,
-            String... fileNamePatterns)
+            boolean includeDiff, String... fileNamePatterns)
     {
         if (containingText == null || containingText.isBlank())
         {
@@ -107,70 +205,57 @@ public class SearchService
             throw new IllegalArgumentException("replacementText must not be null");
         }
 
-        Pattern matchPattern = Pattern.compile(Pattern.quote(containingText));
-
-        IResource[] roots = getOpenProjectsAsRoots();
-        if (roots.length == 0)
-        {
-            return List.of();
-        }
-
-        Pattern fileNamePattern = ResourceUtilities.globPatternsToRegex(fileNamePatterns);
-        TextSearchScope scope = TextSearchScope.newSearchScope(roots, fileNamePattern, true);
-        TextSearchEngine engine = TextSearchEngine.createDefault();
-
-        // Collect all matches first: TextSearchRequestor may be called concurrently.
-        Map<IFile, List<LineMatch>> matchesByFile = new LinkedHashMap<>();
-
-        TextSearchRequestor requestor = new TextSearchRequestor()
+        IProgressMonitor monitor = new NullProgressMonitor();
+        try
         {
-            @Override
-            public boolean acceptFile(IFile file) throws CoreException
+            List<IFile> files = findFilesContaining(containingText, fileNamePatterns);
+            if (files.isEmpty())
             {
-                return file != null && file.isAccessible();
+                return List.of();
             }
 
-            @Override
-            public boolean acceptPatternMatch(TextSearchMatchAccess matchAccess) throws CoreException
+            CompositeChange change = new CompositeChange("Replace '" + containingText + "' with '" + replacementText + "'");
+            List<SearchAndReplaceResult> results = new ArrayList<>();
+            for (IFile file : files)
             {
-                IFile file = matchAccess.getFile();
-                int offset = matchAccess.getMatchOffset();
-                int length = matchAccess.getMatchLength();
+                TextFileChange fileChange = new TextFileChange(file.getName(), file);
+                fileChange.setSaveMode(TextFileChange.KEEP_SAVE_STATE);
+                String content = fileChange.getCurrentContent(monitor);
 
-                LineInfo lineInfo = getLineInfo(file, offset);
-                synchronized (matchesByFile)
+                MultiTextEdit edit = new MultiTextEdit();
+                for (int offset = content.indexOf(containingText); offset >= 0;
+                        offset = content.indexOf(containingText, offset + containingText.length()))
+                {
+                    edit.addChild(new ReplaceEdit(offset, containingText.length(), replacementText));
+                }
+                if (!edit.hasChildren())
                 {
-                    matchesByFile.computeIfAbsent(file, f -> new ArrayList<>())
-                            .add(new LineMatch(lineInfo.lineNumber, offset, length));
+                    continue;
                 }
+                fileChange.setEdit(edit);
+                change.add(fileChange);
 
-                return true;
+                int replacements = edit.getChildrenSize();
+                String diff = includeDiff ? UnifiedDiff.diff(content, fileChange.getPreviewContent(monitor), 1) : null;
+                results.add(new SearchAndReplaceResult(file, replacements, replacements, diff));
             }
-        };
-
-        IProgressMonitor monitor = new NullProgressMonitor();
-
-        try
-        {
-            engine.search(scope, requestor, matchPattern, monitor);
-
-            if (matchesByFile.isEmpty())
+            if (results.isEmpty())
             {
                 return List.of();
             }
 
-            List<SearchAndReplaceResult> results = new ArrayList<>();
-            for (Map.Entry<IFile, List<LineMatch>> entry : matchesByFile.entrySet())
+            change.initializeValidationData(monitor);
+            PerformChangeOperation operation = new PerformChangeOperation(change);
+            operation.setUndoManager(RefactoringCore.getUndoManager(), change.getName());
+            ResourcesPlugin.getWorkspace().run(operation, monitor);
+            if (operation.getValidationStatus() != null && operation.getValidationStatus().hasFatalError())
             {
-                IFile file = entry.getKey();
-
-                // ensure deterministic
-                int matchesFound = entry.getValue().size();
-                int replacements = replaceInFile(file, containingText, replacementText);
-
-                results.add(new SearchAndReplaceResult(file, matchesFound, replacements));
+                throw new IllegalStateException(operation.getValidationStatus().getMessageMatchingSeverity(RefactoringStatus.FATAL));
+            }
+            if (operation.changeExecutionFailed())
+            {
+                throw new IllegalStateException("The replacement failed, changed files were restored");
             }
-
             return results;
         }
         catch (Exception e)
@@ -180,64 +265,62 @@ public class SearchService
         }
     }
 
-    private static int replaceInFile(IFile file, String containingText, String replacementText)
-            throws CoreException, IOException
+    /**
+     * Returns the files with at least one occurrence of the text. The engine
+     * moves to the next file after the first match.
+     */
+    private List<IFile> findFilesContaining(String containingText, String... fileNamePatterns) throws CoreException
     {
-        if (file == null || !file.exists())
+        IResource[] roots = getSearchRoots(List.of(containingText));
+        if (roots.length == 0)
         {
-            return 0;
+            return List.of();
         }
 
-        Charset charset = Charset.forName(file.getCharset());
-        String original = ResourceUtilities.readFileContent(file);
-
-        int replacements = countOccurrences(original, containingText);
-        if (replacements == 0)
-        {
-            return 0;
-        }
+        Pattern fileNamePattern = ResourceUtilities.globPatternsToRegex(fileNamePatterns);
+        TextSearchScope scope = TextSearchScope.newSearchScope(roots, fileNamePattern, true);
 
-        String modified = original.replace(containingText, replacementText);
-        byte[] bytes = modified.getBytes(charset);
-        try (ByteArrayInputStream in = new ByteArrayInputStream(bytes))
+        // TextSearchRequestor may be called concurrently.
+        Set<IFile> files = ConcurrentHashMap.newKeySet();
+        TextSearchRequestor requestor = new TextSearchRequestor()
         {
-            file.setContents(in, IResource.FORCE, null);
-        }
-
-        file.refreshLocal(IResource.DEPTH_ZERO, null);
-        return replacements;
-    }
+            @Override
+            public boolean acceptFile(IFile file) throws CoreException
+            {
+                return file != null && file.isAccessible();
+            }
 
-    private static int countOccurrences(String text, String needle)
-    {
-        if (text == null || text.isEmpty() || needle == null || needle.isEmpty())
-        {
-            return 0;
-        }
+            @Override
+            public boolean acceptPatternMatch(TextSearchMatchAccess matchAccess) throws CoreException
+            {
+                files.add(matchAccess.getFile());
+                return false;
+            }
+        };
 
-        int count = 0;
-        int idx = 0;
-        while ((idx = text.indexOf(needle, idx)) >= 0)
+        IStatus status = TextSearchEngine.createDefault().search(scope, requestor,
+                Pattern.compile(Pattern.quote(containingText)), new NullProgressMonitor());
+        if (status.getSeverity() == IStatus.ERROR)
         {
-            count++;
-            idx += needle.length();
+            throw new CoreException(status);
         }
-        return count;
-    }
-
-    private record LineMatch(int lineNumber, int offset, int length)
-    {
-
+        return files.stream().sorted(Comparator.comparing(file -> file.getFullPath().toString())).toList();
     }
 
-    private List<SearchResult> search(Pattern pattern, String... fileNamePatterns)
+    /**
+     * Searches the files, stopping the engine as soon as the limit is reached.
+     *
+     * @param literals Strings every match contains, used to narrow the searched files
+     */
+    private SearchResults search(Pattern pattern, Collection<String> literals, Integer maxResults, String... fileNamePatterns)
     {
         Objects.requireNonNull(pattern, "pattern");
+        int limit = (maxResults == null || maxResults <= 0) ? DEFAULT_MAX_RESULTS : maxResults.intValue();
 
-        IResource[] roots = getOpenProjectsAsRoots();
+        IResource[] roots = getSearchRoots(literals);
         if (roots.length == 0)
         {
-            return List.of();
+            return new SearchResults(List.of(), limit, false);
         }
 
         // Use core TextSearchScope to avoid UI bundle dependency.
@@ -246,41 +329,57 @@ public class SearchService
         TextSearchScope scope = TextSearchScope.newSearchScope(roots, fileNamePattern, true);
         TextSearchEngine engine = TextSearchEngine.createDefault();
 
-        List<SearchResult> results = new ArrayList<>();
+        // TextSearchRequestor may be called concurrently.
+        List<SearchResult> results = Collections.synchronizedList(new ArrayList<>());
+        Map<IFile, LineTable> lineTables = new ConcurrentHashMap<>();
+        IProgressMonitor monitor = new NullProgressMonitor();
+        // set when a match beyond the limit cancels the engine
+        AtomicBoolean limitReached = new AtomicBoolean();
 
         TextSearchRequestor requestor = new TextSearchRequestor()
         {
             @Override
             public boolean acceptFile(IFile file) throws CoreException
             {
-                return file != null && file.isAccessible();
+                return results.size() < limit && file != null && file.isAccessible();
             }
 
             @Override
             public boolean acceptPatternMatch(TextSearchMatchAccess matchAccess) throws CoreException
             {
-                IFile file = matchAccess.getFile();
-
-                // Convert offset -> line number/content by reading the file.
-                int matchOffset = matchAccess.getMatchOffset();
-
-                LineInfo lineInfo = getLineInfo(file, matchOffset);
-                results.add(new SearchResult(file, lineInfo.lineNumber, lineInfo.lineContent));
+                LineInfo lineInfo = getLineInfo(matchAccess, lineTables);
+                synchronized (results)
+                {
+                    if (results.size() >= limit)
+                    {
+                        // stop the engine, not just this file
+                        limitReached.set(true);
+                        monitor.setCanceled(true);
+                        return false;
+                    }
+                    results.add(new SearchResult(matchAccess.getFile(), lineInfo.lineNumber, lineInfo.lineContent));
+                }
                 return true;
             }
         };
 
-        IProgressMonitor monitor = new NullProgressMonitor();
-
         try
         {
             engine.search(scope, requestor, pattern, monitor);
-            return results;
         }
         catch (Exception e)
         {
-            logger.error(e.getMessage(), e);
-            throw new RuntimeException("Error searching files: " + ExceptionUtils.getRootCauseMessage(e), e);
+            // the engine reports our own cancellation at the limit as an OperationCanceledException, possibly wrapped
+            if (!limitReached.get() || ExceptionUtils.indexOfType(e, OperationCanceledException.class) < 0)
+            {
+                logger.error(e.getMessage(), e);
+                throw new RuntimeException("Error searching files: " + ExceptionUtils.getRootCauseMessage(e), e);
+            }
+        }
+        synchronized (results)
+        {
+            // files are skipped once the limit is reached, so a full result may hide further matches
+            return new SearchResults(results, limit, limitReached.get() || results.size() >= limit);
         }
     }
 
@@ -289,38 +388,74 @@ public class SearchService
 
     }
 
-    private static LineInfo getLineInfo(IFile file, int offset)
+    /**
+     * Returns the line of a match. The line offsets of a file are computed once
+     * per search from the text the engine already loaded, so a file with many
+     * matches is not read again for each of them.
+     */
+    private static LineInfo getLineInfo(TextSearchMatchAccess matchAccess, Map<IFile, LineTable> lineTables)
     {
-        if (file == null)
+        int length = matchAccess.getFileContentLength();
+        LineTable table = lineTables.computeIfAbsent(matchAccess.getFile(),
+                file -> LineTable.of(matchAccess.getFileContent(0, length)));
+
+        int line = table.lineIndex(matchAccess.getMatchOffset());
+        int start = table.starts()[line];
+        int end = line + 1 < table.starts().length ? table.starts()[line + 1] : length;
+        String content = matchAccess.getFileContent(start, end - start);
+        int contentEnd = content.length();
+        while (contentEnd > 0 && (content.charAt(contentEnd - 1) == '\n' || content.charAt(contentEnd - 1) == '\r'))
         {
-            return new LineInfo(-1, "");
+            contentEnd--;
         }
+        return new LineInfo(line + 1, content.substring(0, contentEnd));
+    }
 
-        try
+    /**
+     * Start offsets of the lines of a text, for "\n", "\r\n" and "\r" line ends.
+     */
+    private record LineTable(int[] starts)
+    {
+        static LineTable of(CharSequence text)
         {
-            List<String> lines = ResourceUtilities.readFileLines(file);
-
-            // Compute line number from offset by walking through lines and accounting for '\n'.
-            int charCount = 0;
-            for (int i = 0; i < lines.size(); i++)
+            int[] starts = new int[64];
+            int count = 1;
+            for (int i = 0; i < text.length(); i++)
             {
-                String line = lines.get(i);
-                int nextCharCount = charCount + line.length() + 1;
-                if (offset < nextCharCount)
+                char c = text.charAt(i);
+                if (c == '\n' || (c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n')))
                 {
-                    return new LineInfo(i + 1, line);
+                    if (count == starts.length)
+                    {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = i + 1;
                 }
-                charCount = nextCharCount;
             }
-
-            return new LineInfo(-1, "");
+            return new LineTable(Arrays.copyOf(starts, count));
         }
-        catch (CoreException | IOException e)
+
+        /**
+         * Returns the 0-based line containing the offset.
+         */
+        int lineIndex(int offset)
         {
-            return new LineInfo(-1, "");
+            int index = Arrays.binarySearch(starts, offset);
+            return index >= 0 ? index : -index - 2;
         }
     }
 
+    /**
+     * Returns the candidate files from the text index, or the open projects
+     * if the index is disabled, not built yet, or the literals are too short.
+     */
+    private IResource[] getSearchRoots(Collection<String> literals)
+    {
+        return textIndex.candidates(literals)
+                .map(files -> files.toArray(IResource[]::new))
+                .orElseGet(SearchService::getOpenProjectsAsRoots);
+    }
+
     private static IResource[] getOpenProjectsAsRoots()
     {
         IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
@@ -0,0 +1,347 @@
+package com.github.gradusnikov.eclipse.assistai.mcp.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchParticipant;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.SearchRequestor;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Index of the JUnit test classes of Java projects, found through the JDT
+ * search index instead of opening every compilation unit.
+ * <p>
+ * A test class declares a method annotated with a JUnit 4 or JUnit 5 test
+ * annotation, or extends {@code junit.framework.TestCase} or another test
+ * class. The classes of a project are found on its first query and kept
+ * until Java element deltas change them: changed compilation units are
+ * searched again on the next query, and the whole project is searched
+ * again when the test classes of a unit change, since other classes may
+ * extend them, or when its classpath changes.
+ */
+@Creatable
+@Singleton
+public class TestClassIndex implements IElementChangedListener
+{
+    /** Annotations marking test methods */
+    public static final List<String> TEST_ANNOTATIONS = List.of( "org.junit.Test",
+            "org.junit.jupiter.api.Test",
+            "org.junit.jupiter.api.RepeatedTest",
+            "org.junit.jupiter.api.TestFactory",
+            "org.junit.jupiter.api.TestTemplate",
+            "org.junit.jupiter.params.ParameterizedTest" );
+
+    /** Superclass of JUnit 3 test classes */
+    public static final String TEST_CASE = "junit.framework.TestCase";
+
+    private final ILog logger;
+
+    // guarded by this; project name -> test classes of the project
+    private final Map<String, ProjectTests> projects = new HashMap<>();
+
+    /**
+     * The test classes of a project, by the compilation unit declaring them.
+     */
+    private static class ProjectTests
+    {
+        /** Compilation unit handle -> test classes declared in the unit, abstract ones included */
+        private final Map<String, Set<TestClass>> classesByUnit = new HashMap<>();
+
+        /** Compilation units changed since the last query */
+        private final Set<ICompilationUnit> changedUnits = new LinkedHashSet<>();
+
+        /** Types whose subclasses are test classes */
+        Set<String> superclasses()
+        {
+            Set<String> superclasses = new HashSet<>();
+            superclasses.add( TEST_CASE );
+            classesByUnit.values().forEach( classes -> classes.forEach( testClass -> superclasses.add( testClass.name() ) ) );
+            return superclasses;
+        }
+    }
+
+    private record TestClass( String name, boolean runnable )
+    {
+    }
+
+    @Inject
+    public TestClassIndex( ILog logger )
+    {
+        this.logger = Objects.requireNonNull( logger );
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        JavaCore.addElementChangedListener( this, ElementChangedEvent.POST_CHANGE );
+    }
+
+    @PreDestroy
+    public synchronized void dispose()
+    {
+        JavaCore.removeElementChangedListener( this );
+        projects.clear();
+    }
+
+    /**
+     * Returns the fully qualified names of the test classes of a project that
+     * can be run, sorted by name. Abstract classes and interfaces are left out.
+     */
+    public synchronized List<String> testClasses( IJavaProject javaProject )
+    {
+        ProjectTests tests = projectTests( javaProject );
+        Set<String> names = new TreeSet<>();
+        tests.classesByUnit.values().forEach( classes -> classes.stream()
+                .filter( TestClass::runnable )
+                .forEach( testClass -> names.add( testClass.name() ) ) );
+        return new ArrayList<>( names );
+    }
+
+    private ProjectTests projectTests( IJavaProject javaProject )
+    {
+        String projectName = javaProject.getElementName();
+        try
+        {
+            ProjectTests tests = projects.get( projectName );
+            if ( tests != null && !tests.changedUnits.isEmpty() && !update( javaProject, tests ) )
+            {
+                tests = null;
+            }
+            if ( tests == null )
+            {
+                tests = build( javaProject );
+                projects.put( projectName, tests );
+            }
+            return tests;
+        }
+        catch ( CoreException e )
+        {
+            logger.error( e.getMessage(), e );
+            projects.remove( projectName );
+            throw new RuntimeException( "Error finding test classes: " + ExceptionUtils.getRootCauseMessage( e ), e );
+        }
+    }
+
+    /**
+     * Searches the sources of a project for test classes: the classes with a
+     * test method or extending {@code TestCase}, and then the classes that
+     * extend those, one level at a time.
+     */
+    private ProjectTests build( IJavaProject javaProject ) throws CoreException
+    {
+        long start = System.currentTimeMillis();
+        IJavaSearchScope scope = SearchEngine.createJavaSearchScope( new IJavaElement[] { javaProject }, IJavaSearchScope.SOURCES );
+        ProjectTests tests = new ProjectTests();
+        Set<String> found = new HashSet<>();
+
+        Collection<IType> level = search( testPattern( Set.of( TEST_CASE ) ), scope, javaProject );
+        while ( !level.isEmpty() )
+        {
+            Set<String> extended = new HashSet<>();
+            for ( IType type : level )
+            {
+                String name = type.getFullyQualifiedName();
+                if ( found.add( name ) )
+                {
+                    add( tests, type );
+                    extended.add( name );
+                }
+            }
+            level = extended.isEmpty() ? List.of() : search( subclassPattern( extended ), scope, javaProject );
+        }
+        logger.info( "TestClassIndex: Found " + found.size() + " test classes in " + javaProject.getElementName() + " in "
+                + ( System.currentTimeMillis() - start ) + " ms" );
+        return tests;
+    }
+
+    /**
+     * Searches the changed compilation units again. Returns false if their
+     * test classes changed, so the project has to be searched again.
+     */
+    private boolean update( IJavaProject javaProject, ProjectTests tests ) throws CoreException
+    {
+        List<ICompilationUnit> units = new ArrayList<>( tests.changedUnits );
+        tests.changedUnits.clear();
+
+        Map<String, Set<TestClass>> before = new HashMap<>();
+        for ( ICompilationUnit unit : units )
+        {
+            before.put( unit.getHandleIdentifier(), tests.classesByUnit.getOrDefault( unit.getHandleIdentifier(), Set.of() ) );
+        }
+
+        Map<String, Set<TestClass>> after = new HashMap<>();
+        ICompilationUnit[] existing = units.stream().filter( ICompilationUnit::exists ).toArray( ICompilationUnit[]::new );
+        if ( existing.length > 0 )
+        {
+            IJavaSearchScope scope = SearchEngine.createJavaSearchScope( existing );
+            for ( IType type : search( testPattern( tests.superclasses() ), scope, javaProject ) )
+            {
+                after.computeIfAbsent( type.getCompilationUnit().getHandleIdentifier(), key -> new HashSet<>() ).add( testClass( type ) );
+            }
+        }
+
+        for ( Map.Entry<String, Set<TestClass>> entry : before.entrySet() )
+        {
+            Set<TestClass> classes = after.getOrDefault( entry.getKey(), Set.of() );
+            if ( !classes.equals( entry.getValue() ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void add( ProjectTests tests, IType type ) throws CoreException
+    {
+        tests.classesByUnit.computeIfAbsent( type.getCompilationUnit().getHandleIdentifier(), key -> new HashSet<>() ).add( testClass( type ) );
+    }
+
+    private static TestClass testClass( IType type ) throws CoreException
+    {
+        boolean runnable = type.isClass() && !Flags.isAbstract( type.getFlags() );
+        return new TestClass( type.getFullyQualifiedName(), runnable );
+    }
+
+    /**
+     * Matches methods annotated with a test annotation and classes extending
+     * one of the given classes.
+     */
+    private static SearchPattern testPattern( Set<String> superclasses )
+    {
+        SearchPattern pattern = subclassPattern( superclasses );
+        for ( String annotation : TEST_ANNOTATIONS )
+        {
+            pattern = or( pattern, SearchPattern.createPattern( annotation, IJavaSearchConstants.ANNOTATION_TYPE,
+                    IJavaSearchConstants.ANNOTATION_TYPE_REFERENCE, SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE ) );
+        }
+        return pattern;
+    }
+
+    private static SearchPattern subclassPattern( Set<String> superclasses )
+    {
+        SearchPattern pattern = null;
+        for ( String superclass : superclasses )
+        {
+            pattern = or( pattern, SearchPattern.createPattern( superclass, IJavaSearchConstants.CLASS,
+                    IJavaSearchConstants.IMPLEMENTORS, SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE ) );
+        }
+        return pattern;
+    }
+
+    private static SearchPattern or( SearchPattern left, SearchPattern right )
+    {
+        if ( left == null || right == null )
+        {
+            return left != null ? left : right;
+        }
+        return SearchPattern.createOrPattern( left, right );
+    }
+
+    /**
+     * Returns the top level source types of the project enclosing the matches.
+     */
+    private static Collection<IType> search( SearchPattern pattern, IJavaSearchScope scope, IJavaProject javaProject ) throws CoreException
+    {
+        Set<IType> types = new LinkedHashSet<>();
+        if ( pattern == null )
+        {
+            return types;
+        }
+        new SearchEngine().search( pattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() }, scope,
+                new SearchRequestor()
+                {
+                    @Override
+                    public void acceptSearchMatch( SearchMatch match )
+                    {
+                        // import declarations are no test methods
+                        if ( !( match.getElement() instanceof IMember member ) )
+                        {
+                            return;
+                        }
+                        IType type = member instanceof IType memberType ? memberType : member.getDeclaringType();
+                        while ( type != null && type.getDeclaringType() != null )
+                        {
+                            type = type.getDeclaringType();
+                        }
+                        if ( type != null && !type.isBinary() && javaProject.equals( type.getJavaProject() ) )
+                        {
+                            types.add( type );
+                        }
+                    }
+                }, null );
+        return types;
+    }
+
+    /**
+     * Marks the compilation units whose content changed, and drops the
+     * projects whose classpath changed, that were opened, closed or removed,
+     * or that gained or lost a package.
+     */
+    @Override
+    public synchronized void elementChanged( ElementChangedEvent event )
+    {
+        if ( !projects.isEmpty() )
+        {
+            visit( event.getDelta() );
+        }
+    }
+
+    private void visit( IJavaElementDelta delta )
+    {
+        IJavaElement element = delta.getElement();
+        int flags = IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+                | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED | IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED;
+        if ( element.getElementType() > IJavaElement.JAVA_MODEL && ( ( delta.getFlags() & flags ) != 0
+                || ( element.getElementType() <= IJavaElement.PACKAGE_FRAGMENT && delta.getKind() != IJavaElementDelta.CHANGED ) ) )
+        {
+            projects.remove( element.getJavaProject().getElementName() );
+            return;
+        }
+        if ( element instanceof ICompilationUnit unit )
+        {
+            boolean contentChanged = delta.getKind() != IJavaElementDelta.CHANGED
+                    || ( delta.getFlags() & ( IJavaElementDelta.F_CONTENT | IJavaElementDelta.F_PRIMARY_RESOURCE ) ) != 0;
+            ProjectTests tests = projects.get( unit.getJavaProject().getElementName() );
+            if ( contentChanged && tests != null && unit.getPrimary() == unit )
+            {
+                tests.changedUnits.add( unit );
+            }
+            return;
+        }
+        for ( IJavaElementDelta child : delta.getAffectedChildren() )
+        {
+            visit( child );
+        }
+    }
+}
@@ -1,44 +1,102 @@
 package com.github.gradusnikov.eclipse.assistai.mcp.services;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.DebugPlugin;
+import org.eclipse.debug.core.ILaunch;
 import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.debug.core.ILaunchConfigurationType;
 import org.eclipse.debug.core.ILaunchConfigurationWorkingCopy;
 import org.eclipse.debug.core.ILaunchManager;
+import org.eclipse.debug.core.Launch;
 import org.eclipse.e4.core.di.annotations.Creatable;
 import org.eclipse.e4.ui.di.UISynchronize;
-import org.eclipse.jdt.core.IAnnotation;
+import org.eclipse.jdt.core.ElementChangedEvent;
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
 import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMember;
 import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchParticipant;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.SearchRequestor;
 import org.eclipse.jdt.junit.JUnitCore;
 import org.eclipse.jdt.junit.TestRunListener;
+import org.eclipse.jdt.junit.launcher.JUnitLaunchConfigurationDelegate;
 import org.eclipse.jdt.junit.model.ITestCaseElement;
 import org.eclipse.jdt.junit.model.ITestElement.Result;
 import org.eclipse.jdt.junit.model.ITestRunSession;
 import org.eclipse.jdt.launching.IJavaLaunchConfigurationConstants;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
 
+/**
+ * Service for finding and running JUnit tests.
+ * <p>
+ * Each project is launched through one launch configuration that is kept in
+ * memory and reused, never saved to the workspace. The service follows Java
+ * element deltas and remembers the types changed since the last green run of
+ * a project, so {@link #runAffectedTests(String, Integer)} can run only the
+ * test classes that reach a changed type through the references indexed by
+ * JDT search.
+ * <p>
+ * Suites can be split into shards that run as concurrent JUnit launches,
+ * each in its own JVM. The run time of each test class is remembered to
+ * balance the shards of later runs.
+ */
 @Creatable
-public class UnitTestService {
+@Singleton
+public class UnitTestService implements IElementChangedListener {
+    
+    /** Changed types, or types reached from them, before falling back to the whole suite */
+    public static final int MAX_AFFECTED_TYPES = 2000;
+    
+    private static final String JUNIT_LAUNCH_CONFIGURATION_TYPE = "org.eclipse.jdt.junit.launchconfig";
+    
+    /** Shards used for parallel runs when no count is given */
+    public static final int DEFAULT_SHARDS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    
+    private static final String LAUNCH_CONFIGURATION_PREFIX = "UnitTestService-";
     
     @Inject
     ILog logger;
@@ -46,11 +104,150 @@ public class UnitTestService {
     @Inject
     UISynchronize sync;
     
+    @Inject
+    TestClassIndex testClassIndex;
+    
+    /** Launch configuration name -> configuration reused for every run */
+    private final Map<String, ILaunchConfigurationWorkingCopy> launchConfigurations = new HashMap<>();
+    
+    /** Guarded by this; project name -> changes since its last green run */
+    private final Map<String, Baseline> baselines = new HashMap<>();
+    
+    /** Test class name -> seconds its tests took in the last run */
+    private final Map<String, Double> classTimes = new ConcurrentHashMap<>();
+    
+    private final ExecutorService shardExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "AssistAI test shard");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * What changed since the last green run of a project. A project without a
+     * green run, or with more changes than can be followed, has no baseline and
+     * runs its whole suite.
+     */
+    private static class Baseline {
+        private boolean green;
+        private long resets;
+        private final Set<String> changedTypes = new HashSet<>();
+        private final Set<String> failedClasses = new HashSet<>();
+        
+        void typesChanged(Collection<String> types) {
+            changedTypes.addAll(types);
+            if (changedTypes.size() > MAX_AFFECTED_TYPES) {
+                reset();
+            }
+        }
+        
+        void reset() {
+            green = false;
+            resets++;
+            changedTypes.clear();
+        }
+    }
+    
+    /**
+     * What a launch runs: a container, a class or one of its methods, or a
+     * list of classes.
+     */
+    private record TestTarget(IJavaElement container, IType testClass, String methodName, List<IType> testClasses) {
+        
+        static TestTarget of(IJavaElement container) {
+            return new TestTarget(container, null, null, null);
+        }
+        
+        static TestTarget of(IType testClass, String methodName) {
+            return new TestTarget(null, testClass, methodName, null);
+        }
+        
+        static TestTarget of(List<IType> testClasses) {
+            return new TestTarget(null, null, null, List.copyOf(testClasses));
+        }
+    }
+    
+    /**
+     * The results of a launch.
+     * 
+     * @param started false if no test session started within the timeout
+     * @param completed false if the session did not finish within the timeout
+     */
+    private record TestRunOutcome(TestRunResult result, boolean started, boolean completed, String shardReport) {
+        
+        TestRunOutcome(TestRunResult result, boolean started, boolean completed) {
+            this(result, started, completed, null);
+        }
+    }
+    
+    /**
+     * The results of one shard of a run.
+     * 
+     * @param classCount the number of test classes of the shard
+     * @param started false if no test session started within the timeout
+     * @param completed false if the session did not finish within the timeout
+     * @param wallTime seconds the shard took
+     */
+    public record ShardOutcome(int classCount, TestRunResult result, boolean started, boolean completed, double wallTime) {}
+    
+    /**
+     * Runs the given test classes, or the tests selected by the launch
+     * configuration when no classes are given. The JUnit launcher writes
+     * several classes to a test name file for the remote test runner.
+     */
+    private static class SelectedTestsLaunchDelegate extends JUnitLaunchConfigurationDelegate {
+        
+        private final List<IType> testClasses;
+        
+        SelectedTestsLaunchDelegate(List<IType> testClasses) {
+            this.testClasses = testClasses;
+        }
+        
+        /**
+         * Returns the tests that the configuration selects, found the same way
+         * as when it is launched.
+         */
+        IMember[] findTests(ILaunchConfiguration configuration, IProgressMonitor monitor) throws CoreException {
+            return super.evaluateTests(configuration, monitor);
+        }
+        
+        @Override
+        protected IMember[] evaluateTests(ILaunchConfiguration configuration, IProgressMonitor monitor) throws CoreException {
+            if (testClasses == null) {
+                return super.evaluateTests(configuration, monitor);
+            }
+            return testClasses.toArray(IMember[]::new);
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        JavaCore.addElementChangedListener(this, ElementChangedEvent.POST_CHANGE);
+    }
+    
+    @PreDestroy
+    public void dispose() {
+        JavaCore.removeElementChangedListener(this);
+        shardExecutor.shutdownNow();
+        synchronized (this) {
+            baselines.clear();
+        }
+        synchronized (launchConfigurations) {
+            launchConfigurations.clear();
+        }
+    }
+    
     /**
      * Represents a test result with details about the test execution
      */
     public record TestResult (String className, String testName, String status, String message, double executionTime) {
         
+        /**
+         * Returns true if the test failed or ended with an error.
+         */
+        public boolean isFailure() {
+            return Result.FAILURE.toString().equals(status) || Result.ERROR.toString().equals(status);
+        }
+        
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
@@ -90,7 +287,7 @@ public class UnitTestService {
             this.totalTime = 0.0;
         }
         
-        public void addTestResult(TestResult result) {
+        public synchronized void addTestResult(TestResult result) {
             testResults.add(result);
             totalCount++;
             
@@ -106,8 +303,50 @@ public class UnitTestService {
             totalTime += result.executionTime;
         }
         
+        /**
+         * Adds the results of another run, like a shard of this run.
+         */
+        public synchronized void addAll(TestRunResult other) {
+            List<TestResult> results;
+            synchronized (other) {
+                results = new ArrayList<>(other.testResults);
+            }
+            results.forEach(this::addTestResult);
+        }
+        
+        /**
+         * Returns the seconds taken by the tests of each class.
+         */
+        public synchronized Map<String, Double> getClassTimes() {
+            Map<String, Double> classTimes = new HashMap<>();
+            testResults.forEach(r -> classTimes.merge(r.className(), r.executionTime(), Double::sum));
+            return classTimes;
+        }
+        
+        /**
+         * Returns true if no test failed or ended with an error.
+         */
+        public synchronized boolean isGreen() {
+            return failedCount == 0 && errorCount == 0;
+        }
+        
+        public synchronized int getTotalCount() {
+            return totalCount;
+        }
+        
+        /**
+         * Returns the names of the classes with a failed test.
+         */
+        public synchronized Set<String> getFailedClassNames() {
+            Set<String> classNames = new LinkedHashSet<>();
+            testResults.stream()
+                .filter(TestResult::isFailure)
+                .forEach(r -> classNames.add(r.className()));
+            return classNames;
+        }
+        
         @Override
-        public String toString() {
+        public synchronized String toString() {
             StringBuilder sb = new StringBuilder();
             sb.append("Test Run: ").append(testRunName).append("\n");
             sb.append("Summary: Total: ").append(totalCount)
@@ -120,7 +359,7 @@ public class UnitTestService {
             if (failedCount > 0 || errorCount > 0) {
                 sb.append("Failed Tests:\n");
                 testResults.stream()
-                    .filter(r -> "FAILED".equals(r.status) || "ERROR".equals(r.status))
+                    .filter(TestResult::isFailure)
                     .forEach(r -> sb.append("  ").append(r.toString()).append("\n"));
                 sb.append("\n");
             }
@@ -133,13 +372,28 @@ public class UnitTestService {
     }
     
     /**
-     * Runs all tests in a specific project.
+     * Runs all tests in a specific project, split into {@link #DEFAULT_SHARDS} launches.
      * 
      * @param projectName The name of the project containing the tests
      * @param timeout Maximum time in seconds to wait for test completion
      * @return A formatted string with test results
      */
     public String runAllTests(String projectName, Integer timeout) {
+        return runAllTests(projectName, timeout, null, null);
+    }
+    
+    /**
+     * Runs all tests in a specific project, passing each test result to the
+     * consumer as soon as the test finishes. A green run becomes the baseline
+     * for {@link #runAffectedTests(String, Integer)}.
+     * 
+     * @param projectName The name of the project containing the tests
+     * @param timeout Maximum time in seconds to wait for test completion
+     * @param shards Number of concurrent launches to split the test classes across, null or 0 for {@link #DEFAULT_SHARDS}
+     * @param onResult Receives the result of each test as it finishes, from several threads when sharded, may be null
+     * @return A formatted string with test results
+     */
+    public String runAllTests(String projectName, Integer timeout, Integer shards, Consumer<TestResult> onResult) {
         Objects.requireNonNull(projectName, "Project name cannot be null");
         
         if (projectName.isEmpty()) {
@@ -154,7 +408,7 @@ public class UnitTestService {
             IJavaProject javaProject = getJavaProject( projectName );
             
             // Run the tests
-            return launchJUnitTests(javaProject, null, null, timeout);
+            return runSuite(javaProject, null, timeout, shardCount(shards), onResult);
             
         } catch (CoreException e) {
             throw new RuntimeException("Error running tests: " + e.getMessage(), e);
@@ -162,7 +416,87 @@ public class UnitTestService {
     }
     
     /**
-     * Runs tests in a specific package.
+     * Runs the tests affected by the changes since the last green run of a
+     * project: the test classes that reference a changed type, directly or
+     * through other types, and the classes that failed in the last run. Runs
+     * all tests when the project had no green run yet. The tests are split
+     * into {@link #DEFAULT_SHARDS} launches.
+     * 
+     * @param projectName The name of the project containing the tests
+     * @param timeout Maximum time in seconds to wait for test completion
+     * @return A formatted string with test results
+     */
+    public String runAffectedTests(String projectName, Integer timeout) {
+        return runAffectedTests(projectName, timeout, null, null);
+    }
+    
+    /**
+     * Runs the tests affected by the changes since the last green run of a
+     * project, passing each test result to the consumer as soon as the test
+     * finishes.
+     * 
+     * @param projectName The name of the project containing the tests
+     * @param timeout Maximum time in seconds to wait for test completion
+     * @param shards Number of concurrent launches to split the test classes across, null or 0 for {@link #DEFAULT_SHARDS}
+     * @param onResult Receives the result of each test as it finishes, from several threads when sharded, may be null
+     * @return A formatted string with test results
+     */
+    public String runAffectedTests(String projectName, Integer timeout, Integer shards, Consumer<TestResult> onResult) {
+        Objects.requireNonNull(projectName, "Project name cannot be null");
+        
+        if (projectName.isEmpty()) {
+            throw new IllegalArgumentException("Error: Project name cannot be empty.");
+        }
+        
+        if (timeout == null || timeout <= 0) {
+            timeout = 60; // Default timeout of 60 seconds
+        }
+        
+        try {
+            IJavaProject javaProject = getJavaProject( projectName );
+            
+            Set<String> changedTypes;
+            Set<String> failedClasses;
+            synchronized (this) {
+                Baseline baseline = baselines.get(projectName);
+                if (baseline == null || !baseline.green) {
+                    return "No green test run of project '" + projectName + "' is known, running all tests.\n\n"
+                            + runSuite(javaProject, null, timeout, shardCount(shards), onResult);
+                }
+                changedTypes = new HashSet<>(baseline.changedTypes);
+                failedClasses = new HashSet<>(baseline.failedClasses);
+            }
+            
+            List<IType> testClasses = findAffectedTestClasses(javaProject, changedTypes);
+            if (testClasses == null) {
+                return "More than " + MAX_AFFECTED_TYPES + " types are affected by the changes, running all tests.\n\n"
+                        + runSuite(javaProject, null, timeout, shardCount(shards), onResult);
+            }
+            
+            // Tests that failed in the last run are run again until they pass
+            for (String className : failedClasses) {
+                IType type = javaProject.findType(className);
+                if (type != null && !testClasses.contains(type)) {
+                    testClasses.add(type);
+                }
+            }
+            
+            if (testClasses.isEmpty()) {
+                return "No tests are affected by the " + changedTypes.size() 
+                        + " types changed since the last green run of project '" + projectName + "'.";
+            }
+            
+            return "Running " + testClasses.size() + " test classes affected by the " + changedTypes.size() 
+                    + " types changed since the last green run.\n\n"
+                    + runSuite(javaProject, testClasses, timeout, shardCount(shards), onResult);
+            
+        } catch (CoreException e) {
+            throw new RuntimeException("Error running tests: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Runs tests in a specific package, split into {@link #DEFAULT_SHARDS} launches.
      * 
      * @param projectName The name of the project containing the tests
      * @param packageName The fully qualified package name containing the tests
@@ -170,6 +504,19 @@ public class UnitTestService {
      * @return A formatted string with test results
      */
     public String runPackageTests(String projectName, String packageName, Integer timeout) {
+        return runPackageTests(projectName, packageName, timeout, null);
+    }
+    
+    /**
+     * Runs tests in a specific package, split into shards that run concurrently.
+     * 
+     * @param projectName The name of the project containing the tests
+     * @param packageName The fully qualified package name containing the tests
+     * @param timeout Maximum time in seconds to wait for test completion
+     * @param shards Number of concurrent launches to split the test classes across, null or 0 for {@link #DEFAULT_SHARDS}
+     * @return A formatted string with test results
+     */
+    public String runPackageTests(String projectName, String packageName, Integer timeout, Integer shards) {
         Objects.requireNonNull(projectName, "Project name cannot be null");
         Objects.requireNonNull(packageName, "Package name cannot be null");
         
@@ -195,7 +542,7 @@ public class UnitTestService {
             }
             
             // Run the tests
-            return launchJUnitTests(javaProject, pkg, null, timeout);
+            return launchJUnitTests(javaProject, TestTarget.of(pkg), timeout, shardCount(shards));
             
         } catch (CoreException e) {
             throw new RuntimeException("Error running tests: " + e.getMessage(), e);
@@ -236,7 +583,7 @@ public class UnitTestService {
             }
             
             // Run the tests
-            return launchJUnitTests(javaProject, null, type, timeout);
+            return launchJUnitTests(javaProject, TestTarget.of(type, null), timeout, 1);
             
         } catch (CoreException e) {
             throw new RuntimeException("Error running tests: " + e.getMessage(), e);
@@ -292,7 +639,7 @@ public class UnitTestService {
             String testName = className + "." + methodName;
             
             // Run the tests
-            return launchJUnitTests(javaProject, null, type, timeout, methodName);
+            return launchJUnitTests(javaProject, TestTarget.of(type, methodName), timeout, 1);
             
         } catch (CoreException e) {
             throw new RuntimeException("Error running tests: " + e.getMessage(), e);
@@ -329,124 +676,577 @@ public class UnitTestService {
     /**
      * Launches JUnit tests using Eclipse's JUnit infrastructure.
      */
-    private String launchJUnitTests(IJavaProject javaProject, IPackageFragment packageFragment, 
-                                    IType testClass, int timeout) {
-        return launchJUnitTests(javaProject, packageFragment, testClass, timeout, null);
+    private String launchJUnitTests(IJavaProject javaProject, TestTarget target, int timeout, int shards) {
+        try {
+            return format(runJUnitTests(javaProject, target, timeout, shards, null), timeout);
+        } catch (Exception e) {
+            logger.error("Error running tests", e);
+            return "Error running tests: " + e.getMessage();
+        }
     }
     
     /**
-     * Launches JUnit tests using Eclipse's JUnit infrastructure with optional method filtering.
+     * Runs all tests of a project, or the given test classes, and updates
+     * the baseline of the project from the results.
      */
-    private String launchJUnitTests(IJavaProject javaProject, IPackageFragment packageFragment, 
-                                   IType testClass, int timeout, String methodName) {
-        final CountDownLatch latch = new CountDownLatch(1);
-        final TestRunResult[] testRunResults = new TestRunResult[1];
+    private String runSuite(IJavaProject javaProject, List<IType> testClasses, int timeout, int shards, 
+                            Consumer<TestResult> onResult) {
+        String projectName = javaProject.getElementName();
+        Set<String> changedTypes;
+        long resets;
+        synchronized (this) {
+            Baseline baseline = baselines.computeIfAbsent(projectName, key -> new Baseline());
+            changedTypes = new HashSet<>(baseline.changedTypes);
+            resets = baseline.resets;
+        }
         
+        TestRunOutcome outcome;
         try {
-            // Register a test run listener to collect results
-            TestRunListener listener = new TestRunListener() {
-                private TestRunResult currentRun = null;
-                
-                @Override
-                public void sessionStarted(ITestRunSession session) {
-                    currentRun = new TestRunResult(session.getTestRunName());
+            TestTarget target = testClasses != null ? TestTarget.of(testClasses) : TestTarget.of(javaProject);
+            outcome = runJUnitTests(javaProject, target, timeout, shards, onResult);
+        } catch (Exception e) {
+            logger.error("Error running tests", e);
+            return "Error running tests: " + e.getMessage();
+        }
+        
+        if (outcome.completed()) {
+            synchronized (this) {
+                Baseline baseline = baselines.computeIfAbsent(projectName, key -> new Baseline());
+                if (testClasses == null) {
+                    baseline.failedClasses.clear();
+                } else {
+                    testClasses.forEach(type -> baseline.failedClasses.remove(type.getFullyQualifiedName()));
                 }
+                baseline.failedClasses.addAll(outcome.result().getFailedClassNames());
                 
-                @Override
-                public void sessionFinished(ITestRunSession session) {
-                    testRunResults[0] = currentRun;
-                    latch.countDown();
+                // Changes made while the tests ran are kept for the next run
+                boolean covered = testClasses == null || baseline.green;
+                if (outcome.result().isGreen() && covered && baseline.resets == resets) {
+                    baseline.green = true;
+                    baseline.changedTypes.removeAll(changedTypes);
                 }
-                
-                @Override
-                public void testCaseFinished(ITestCaseElement testCaseElement) {
-                    if (currentRun != null) {
-                        String className = testCaseElement.getTestClassName();
-                        String testName = testCaseElement.getTestMethodName();
-                        String status = testCaseElement.getTestResult(true).toString();
-                        String message = testCaseElement.getFailureTrace() != null ? 
-                                         testCaseElement.getFailureTrace().getTrace() : "";
-                        double time = testCaseElement.getElapsedTimeInSeconds();
-                        
-                        currentRun.addTestResult(new TestResult(className, testName, status, message, time));
-                    }
+            }
+        }
+        return format(outcome, timeout);
+    }
+    
+    private static String format(TestRunOutcome outcome, int timeout) {
+        if (!outcome.started() && outcome.result().getTotalCount() == 0) {
+            return "Error: Test execution timed out after " + timeout + " seconds.";
+        }
+        String shardReport = outcome.shardReport() != null ? outcome.shardReport() + "\n" : "";
+        if (!outcome.completed()) {
+            return "Error: Test execution timed out after " + timeout + " seconds. Results of the " 
+                    + outcome.result().getTotalCount() + " tests finished so far:\n\n" + shardReport + outcome.result();
+        }
+        return shardReport + outcome.result();
+    }
+    
+    private static int shardCount(Integer shards) {
+        return shards != null && shards > 0 ? shards : DEFAULT_SHARDS;
+    }
+    
+    /**
+     * Runs the target, split into shards that run as concurrent launches when
+     * more than one shard is requested and the target has several test
+     * classes. The results of the shards are merged.
+     */
+    private TestRunOutcome runJUnitTests(IJavaProject javaProject, TestTarget target, int timeout, int shards, 
+                                         Consumer<TestResult> onResult) throws CoreException, InterruptedException {
+        ILaunchConfigurationWorkingCopy configuration = launchConfiguration(javaProject, 0);
+        if (shards <= 1 || target.testClass() != null) {
+            return runJUnitTests(configuration, target, timeout, onResult);
+        }
+        
+        List<IType> testClasses = target.testClasses() != null ? target.testClasses() : findTests(configuration, target);
+        List<List<IType>> partition = partition(testClasses, shards);
+        if (partition.size() <= 1) {
+            return runJUnitTests(configuration, target, timeout, onResult);
+        }
+        
+        long start = System.nanoTime();
+        List<CompletableFuture<ShardOutcome>> futures = new ArrayList<>();
+        for (int i = 0; i < partition.size(); i++) {
+            List<IType> shard = partition.get(i);
+            ILaunchConfigurationWorkingCopy shardConfiguration = launchConfiguration(javaProject, i + 1);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                long shardStart = System.nanoTime();
+                try {
+                    TestRunOutcome outcome = runJUnitTests(shardConfiguration, TestTarget.of(shard), timeout, onResult);
+                    return new ShardOutcome(shard.size(), outcome.result(), outcome.started(), outcome.completed(), 
+                            (System.nanoTime() - shardStart) / 1e9);
+                } catch (CoreException | InterruptedException e) {
+                    throw new CompletionException(e);
+                }
+            }, shardExecutor));
+        }
+        
+        List<ShardOutcome> outcomes = new ArrayList<>();
+        for (CompletableFuture<ShardOutcome> future : futures) {
+            try {
+                outcomes.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof CoreException coreException) {
+                    throw coreException;
+                }
+                if (e.getCause() instanceof InterruptedException interruptedException) {
+                    throw interruptedException;
+                }
+                throw e;
+            }
+        }
+        
+        return new TestRunOutcome(mergeShards(configuration.getName(), outcomes), 
+                outcomes.stream().allMatch(ShardOutcome::started), 
+                outcomes.stream().allMatch(ShardOutcome::completed), 
+                shardReport(outcomes, (System.nanoTime() - start) / 1e9));
+    }
+    
+    /**
+     * Merges the results of the shards of a run into one result.
+     */
+    public static TestRunResult mergeShards(String testRunName, List<ShardOutcome> shards) {
+        TestRunResult result = new TestRunResult(testRunName);
+        shards.forEach(shard -> result.addAll(shard.result()));
+        return result;
+    }
+    
+    /**
+     * Returns the report of a sharded run: the size and time of each shard,
+     * and which shards timed out.
+     * 
+     * @param wallTime seconds the whole run took
+     */
+    public static String shardReport(List<ShardOutcome> shards, double wallTime) {
+        StringBuilder report = new StringBuilder();
+        report.append("Shards: ").append(shards.size())
+              .append(", Wall time: ").append(String.format("%.2f", wallTime)).append("s\n");
+        for (int i = 0; i < shards.size(); i++) {
+            ShardOutcome shard = shards.get(i);
+            report.append("  Shard ").append(i + 1).append(": ")
+                  .append(shard.classCount()).append(" classes, ")
+                  .append(shard.result().getTotalCount()).append(" tests, ")
+                  .append(String.format("%.2f", shard.wallTime())).append("s");
+            if (!shard.completed()) {
+                report.append(" (timed out)");
+            }
+            report.append("\n");
+        }
+        return report.toString();
+    }
+    
+    /**
+     * Returns the test classes that a target selects, as the JUnit launcher
+     * finds them.
+     */
+    private List<IType> findTests(ILaunchConfigurationWorkingCopy configuration, TestTarget target) throws CoreException {
+        IMember[] tests;
+        synchronized (configuration) {
+            configure(configuration, target);
+            tests = new SelectedTestsLaunchDelegate(null).findTests(configuration, new NullProgressMonitor());
+        }
+        List<IType> testClasses = new ArrayList<>();
+        for (IMember test : tests) {
+            if (test instanceof IType type) {
+                testClasses.add(type);
+            }
+        }
+        return testClasses;
+    }
+    
+    /**
+     * Splits test classes into at most the given number of shards with similar
+     * expected run times, using the times recorded in earlier runs.
+     */
+    private List<List<IType>> partition(List<IType> testClasses, int shards) {
+        return partition(testClasses, type -> classTimes.get(type.getFullyQualifiedName()), shards);
+    }
+    
+    /**
+     * Splits items into at most the given number of shards with similar
+     * expected times (longest processing time first). The slowest items are
+     * placed first, each into the shard with the least time so far. Items
+     * without a recorded time count as an average item.
+     * 
+     * @param recordedTime Returns the recorded time of an item, or null if there is none
+     */
+    public static <T> List<List<T>> partition(List<T> items, Function<? super T, Double> recordedTime, int shards) {
+        Map<T, Double> recorded = new HashMap<>();
+        items.forEach(item -> {
+            Double time = recordedTime.apply(item);
+            if (time != null) {
+                recorded.put(item, time);
+            }
+        });
+        double average = recorded.values().stream()
+                .mapToDouble(Double::doubleValue)
+                .average()
+                .orElse(1.0);
+        Map<T, Double> estimates = new HashMap<>();
+        items.forEach(item -> estimates.put(item, recorded.getOrDefault(item, average)));
+        
+        List<T> slowestFirst = new ArrayList<>(items);
+        slowestFirst.sort(Comparator.comparing(estimates::get).reversed());
+        
+        int count = Math.min(shards, items.size());
+        List<List<T>> partition = new ArrayList<>();
+        double[] totals = new double[count];
+        for (int i = 0; i < count; i++) {
+            partition.add(new ArrayList<>());
+        }
+        for (T item : slowestFirst) {
+            int lightest = 0;
+            for (int i = 1; i < count; i++) {
+                if (totals[i] < totals[lightest]) {
+                    lightest = i;
                 }
-            };
+            }
+            partition.get(lightest).add(item);
+            totals[lightest] += estimates.get(item);
+        }
+        return partition;
+    }
+    
+    /**
+     * Launches the target through the launch configuration of the project and
+     * collects the results of its test session. Results are collected as each
+     * test finishes, so a run that times out still reports the finished tests.
+     */
+    private TestRunOutcome runJUnitTests(ILaunchConfigurationWorkingCopy configuration, TestTarget target, int timeout, 
+                                         Consumer<TestResult> onResult) throws CoreException, InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        final TestRunResult result = new TestRunResult(configuration.getName());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        
+        // Register a test run listener to collect results
+        TestRunListener listener = new TestRunListener() {
+            private volatile ITestRunSession session = null;
             
-            JUnitCore.addTestRunListener(listener);
+            @Override
+            public synchronized void sessionStarted(ITestRunSession session) {
+                if (this.session == null && configuration.getName().equals(session.getTestRunName())) {
+                    this.session = session;
+                    started.countDown();
+                }
+            }
             
-            try {
-                // Create and configure the launch
-                ILaunchManager launchManager = DebugPlugin.getDefault().getLaunchManager();
-                ILaunchConfigurationType type = launchManager.getLaunchConfigurationType(
-                        "org.eclipse.jdt.junit.launchconfig");
-                
-                // Create a temporary launch configuration
-                ILaunchConfigurationWorkingCopy workingCopy = type.newInstance(null, 
-                        "UnitTestService-" + System.currentTimeMillis());
-                
-                // Set the project name
-                workingCopy.setAttribute(IJavaLaunchConfigurationConstants.ATTR_PROJECT_NAME, 
-                        javaProject.getElementName());
+            @Override
+            public void sessionFinished(ITestRunSession session) {
+                if (session == this.session) {
+                    finished.countDown();
+                }
+            }
+            
+            @Override
+            public void testCaseFinished(ITestCaseElement testCaseElement) {
+                if (session == null || testCaseElement.getTestRunSession() != session) {
+                    return;
+                }
+                String className = testCaseElement.getTestClassName();
+                String testName = testCaseElement.getTestMethodName();
+                String status = testCaseElement.getTestResult(true).toString();
+                String message = testCaseElement.getFailureTrace() != null ? 
+                                 testCaseElement.getFailureTrace().getTrace() : "";
+                double time = testCaseElement.getElapsedTimeInSeconds();
                 
-                // Set the test target
-                if (testClass != null) {
-                    workingCopy.setAttribute(IJavaLaunchConfigurationConstants.ATTR_MAIN_TYPE_NAME, 
-                            testClass.getFullyQualifiedName());
-                    
-                    if (methodName != null && !methodName.isEmpty()) {
-                        workingCopy.setAttribute("org.eclipse.jdt.junit.TEST_METHOD", methodName);
+                TestResult testResult = new TestResult(className, testName, status, message, time);
+                result.addTestResult(testResult);
+                if (onResult != null) {
+                    try {
+                        onResult.accept(testResult);
+                    } catch (RuntimeException e) {
+                        logger.error("Error reporting test result", e);
                     }
-                } else if (packageFragment != null) {
-                    workingCopy.setAttribute(IJavaLaunchConfigurationConstants.ATTR_MAIN_TYPE_NAME, "");
-                    workingCopy.setAttribute("org.eclipse.jdt.junit.CONTAINER", 
-                            packageFragment.getPath().toString());
-                } else {
-                    workingCopy.setAttribute(IJavaLaunchConfigurationConstants.ATTR_MAIN_TYPE_NAME, "");
-                    workingCopy.setAttribute("org.eclipse.jdt.junit.CONTAINER", 
-                            javaProject.getPath().toString());
                 }
-                
-                // Set JUnit 5 as the test runner
-                workingCopy.setAttribute("org.eclipse.jdt.junit.TEST_KIND", "org.eclipse.jdt.junit.loader.junit5");
-                
-                // Create the actual configuration
-                ILaunchConfiguration configuration = workingCopy.doSave();
-                
-                // Launch the tests
+            }
+        };
+        
+        final ILaunch[] launched = new ILaunch[1];
+        JUnitCore.addTestRunListener(listener);
+        try {
+            // The launch below bypasses the build before launch of the debug framework
+            Job.getJobManager().join(ResourcesPlugin.FAMILY_AUTO_BUILD, null);
+            
+            // Launches of one configuration are started one at a time, so that
+            // each listener picks up the session of its own launch
+            synchronized (configuration) {
+                configure(configuration, target);
+                CoreException[] failure = new CoreException[1];
                 sync.syncExec(() -> {
                     try {
-                        configuration.launch(ILaunchManager.RUN_MODE, new NullProgressMonitor());
+                        launched[0] = launch(configuration, target.testClasses());
                     } catch (CoreException e) {
-                        logger.error("Error launching tests", e);
+                        failure[0] = e;
                     }
                 });
-                
-                // Wait for completion
-                boolean completed = latch.await(timeout, TimeUnit.SECONDS);
-                
-                if (!completed) {
-                    return "Error: Test execution timed out after " + timeout + " seconds.";
+                if (failure[0] != null) {
+                    throw failure[0];
                 }
-                
-                if (testRunResults[0] == null) {
-                    return "Error: No test results collected. The test run may have failed to start.";
+                if (!started.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    terminate(launched[0]);
+                    return new TestRunOutcome(result, false, false);
                 }
+            }
+            
+            // Wait for completion
+            boolean completed = finished.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (completed) {
+                classTimes.putAll(result.getClassTimes());
+            } else {
+                // a hanging test must not keep the VM of the launch running
+                terminate(launched[0]);
+            }
+            return new TestRunOutcome(result, true, completed);
+        } finally {
+            JUnitCore.removeTestRunListener(listener);
+        }
+    }
+    
+    /**
+     * Returns the launch configuration of a project, or of one shard of its
+     * runs. It is created once and kept in memory as a working copy, which
+     * can be launched without saving.
+     */
+    private ILaunchConfigurationWorkingCopy launchConfiguration(IJavaProject javaProject, int shard) throws CoreException {
+        String name = LAUNCH_CONFIGURATION_PREFIX + javaProject.getElementName() + (shard > 0 ? "-shard" + shard : "");
+        synchronized (launchConfigurations) {
+            ILaunchConfigurationWorkingCopy configuration = launchConfigurations.get(name);
+            if (configuration == null) {
+                ILaunchManager launchManager = DebugPlugin.getDefault().getLaunchManager();
+                ILaunchConfigurationType type = launchManager.getLaunchConfigurationType(JUNIT_LAUNCH_CONFIGURATION_TYPE);
+                configuration = type.newInstance(null, name);
+                
+                // Set the project name
+                configuration.setAttribute(IJavaLaunchConfigurationConstants.ATTR_PROJECT_NAME, 
+                        javaProject.getElementName());
                 
-                return testRunResults[0].toString();
+                // Set JUnit 5 as the test runner
+                configuration.setAttribute("org.eclipse.jdt.junit.TEST_KIND", "org.eclipse.jdt.junit.loader.junit5");
                 
-            } finally {
-                JUnitCore.removeTestRunListener(listener);
+                launchConfigurations.put(name, configuration);
             }
+            return configuration;
+        }
+    }
+    
+    /**
+     * Points the launch configuration at the test target.
+     */
+    private static void configure(ILaunchConfigurationWorkingCopy configuration, TestTarget target) {
+        configuration.removeAttribute("org.eclipse.jdt.junit.TEST_METHOD");
+        configuration.removeAttribute("org.eclipse.jdt.junit.CONTAINER");
+        
+        if (target.testClass() != null) {
+            configuration.setAttribute(IJavaLaunchConfigurationConstants.ATTR_MAIN_TYPE_NAME, 
+                    target.testClass().getFullyQualifiedName());
             
-        } catch (Exception e) {
-            logger.error("Error running tests", e);
-            return "Error running tests: " + e.getMessage();
+            if (target.methodName() != null && !target.methodName().isEmpty()) {
+                configuration.setAttribute("org.eclipse.jdt.junit.TEST_METHOD", target.methodName());
+            }
+        } else if (target.testClasses() != null) {
+            // The classes are passed to the launch delegate, the main type
+            // only names the run in the JUnit view
+            configuration.setAttribute(IJavaLaunchConfigurationConstants.ATTR_MAIN_TYPE_NAME, 
+                    target.testClasses().get(0).getFullyQualifiedName());
+        } else {
+            configuration.setAttribute(IJavaLaunchConfigurationConstants.ATTR_MAIN_TYPE_NAME, "");
+            configuration.setAttribute("org.eclipse.jdt.junit.CONTAINER", 
+                    target.container().getHandleIdentifier());
         }
     }
     
     /**
-     * Finds all test classes in a project.
+     * Launches a configuration in run mode the way the launch manager does,
+     * with a delegate that runs the given test classes.
+     */
+    private static ILaunch launch(ILaunchConfiguration configuration, List<IType> testClasses) throws CoreException {
+        ILaunchManager launchManager = DebugPlugin.getDefault().getLaunchManager();
+        ILaunch launch = new Launch(configuration, ILaunchManager.RUN_MODE, null);
+        launchManager.addLaunch(launch);
+        try {
+            new SelectedTestsLaunchDelegate(testClasses).launch(configuration, ILaunchManager.RUN_MODE, launch, 
+                    new NullProgressMonitor());
+        } catch (CoreException e) {
+            launchManager.removeLaunch(launch);
+            throw e;
+        }
+        return launch;
+    }
+    
+    /**
+     * Terminates the test VM of a launch that ran out of time.
+     */
+    private void terminate(ILaunch launch) {
+        if (launch == null || !launch.canTerminate()) {
+            return;
+        }
+        try {
+            launch.terminate();
+        } catch (DebugException e) {
+            logger.warn("Could not terminate test launch " + launch.getLaunchConfiguration().getName() + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Finds the test classes of a project that reference one of the given
+     * types, directly or through other types. References are followed through
+     * the sources of the project and of the projects it requires, using the
+     * JDT search index.
+     * 
+     * @param javaProject The project containing the tests
+     * @param typeNames Fully qualified names of the changed types
+     * @return The affected test classes, or null if more than {@link #MAX_AFFECTED_TYPES} types are affected
+     */
+    public List<IType> findAffectedTestClasses(IJavaProject javaProject, Collection<String> typeNames) throws CoreException {
+        IJavaSearchScope scope = SearchEngine.createJavaSearchScope(new IJavaElement[] { javaProject }, 
+                IJavaSearchScope.SOURCES | IJavaSearchScope.REFERENCED_PROJECTS);
+        SearchParticipant[] participants = { SearchEngine.getDefaultSearchParticipant() };
+        SearchEngine engine = new SearchEngine();
+        
+        Set<String> affected = new LinkedHashSet<>(typeNames);
+        Set<IType> reached = new LinkedHashSet<>();
+        for (String typeName : typeNames) {
+            IType type = javaProject.findType(typeName);
+            if (type != null) {
+                reached.add(type);
+            }
+        }
+        
+        // Follow the references one level at a time, searching for all types of a level at once
+        List<String> level = new ArrayList<>(affected);
+        while (!level.isEmpty()) {
+            SearchPattern pattern = null;
+            for (String typeName : level) {
+                SearchPattern typePattern = SearchPattern.createPattern(typeName, IJavaSearchConstants.TYPE, 
+                        IJavaSearchConstants.REFERENCES, SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE);
+                if (typePattern != null) {
+                    pattern = pattern == null ? typePattern : SearchPattern.createOrPattern(pattern, typePattern);
+                }
+            }
+            if (pattern == null) {
+                break;
+            }
+            
+            List<String> nextLevel = new ArrayList<>();
+            engine.search(pattern, participants, scope, new SearchRequestor() {
+                @Override
+                public void acceptSearchMatch(SearchMatch match) {
+                    IType type = topLevelType(match.getElement());
+                    if (type != null && reached.add(type) && affected.add(type.getFullyQualifiedName('.'))) {
+                        nextLevel.add(type.getFullyQualifiedName('.'));
+                    }
+                }
+            }, null);
+            
+            if (affected.size() > MAX_AFFECTED_TYPES) {
+                return null;
+            }
+            level = nextLevel;
+        }
+        
+        Set<String> testClassNames = new HashSet<>(testClassIndex.testClasses(javaProject));
+        List<IType> testClasses = new ArrayList<>();
+        for (IType type : reached) {
+            if (javaProject.equals(type.getJavaProject()) && testClassNames.contains(type.getFullyQualifiedName())) {
+                testClasses.add(type);
+            }
+        }
+        return testClasses;
+    }
+    
+    /**
+     * Returns the top level type enclosing a search match, or null if the
+     * match is not in a type.
+     */
+    private static IType topLevelType(Object element) {
+        if (!(element instanceof IJavaElement javaElement)) {
+            return null;
+        }
+        IType type = (IType) javaElement.getAncestor(IJavaElement.TYPE);
+        if (type == null && javaElement.getAncestor(IJavaElement.COMPILATION_UNIT) instanceof ICompilationUnit unit) {
+            // Import declarations are outside of any type
+            type = unit.findPrimaryType();
+        }
+        while (type != null && type.getDeclaringType() != null) {
+            type = type.getDeclaringType();
+        }
+        return type;
+    }
+    
+    /**
+     * Records the types declared in changed compilation units for the
+     * baselines of all projects. Changes that cannot be traced to types,
+     * like classpath changes, reset the baselines.
+     */
+    @Override
+    public void elementChanged(ElementChangedEvent event) {
+        Set<String> changedTypes = new HashSet<>();
+        boolean traced = collectChangedTypes(event.getDelta(), changedTypes);
+        if (traced && changedTypes.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (Baseline baseline : baselines.values()) {
+                if (traced) {
+                    baseline.typesChanged(changedTypes);
+                } else {
+                    baseline.reset();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Collects the names of the types of the compilation units whose content
+     * changed, and returns false if the delta contains a change that cannot
+     * be traced to types.
+     */
+    private static boolean collectChangedTypes(IJavaElementDelta delta, Set<String> changedTypes) {
+        int flags = IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+                | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED | IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED;
+        if ((delta.getFlags() & flags) != 0) {
+            return false;
+        }
+        IJavaElement element = delta.getElement();
+        if (element instanceof ICompilationUnit unit) {
+            boolean contentChanged = delta.getKind() != IJavaElementDelta.CHANGED
+                    || (delta.getFlags() & (IJavaElementDelta.F_CONTENT | IJavaElementDelta.F_PRIMARY_RESOURCE)) != 0;
+            if (contentChanged && unit.getPrimary() == unit) {
+                addTypeNames(unit, changedTypes);
+            }
+            return true;
+        }
+        int type = element.getElementType();
+        if ((type == IJavaElement.JAVA_PROJECT || type == IJavaElement.PACKAGE_FRAGMENT_ROOT) 
+                && delta.getKind() != IJavaElementDelta.CHANGED) {
+            return false;
+        }
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            if (!collectChangedTypes(child, changedTypes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static void addTypeNames(ICompilationUnit unit, Set<String> typeNames) {
+        String packageName = unit.getParent().getElementName();
+        String typeName = JavaCore.removeJavaLikeExtension(unit.getElementName());
+        typeNames.add(packageName.isEmpty() ? typeName : packageName + "." + typeName);
+        if (unit.exists()) {
+            try {
+                for (IType type : unit.getTypes()) {
+                    typeNames.add(type.getFullyQualifiedName());
+                }
+            } catch (JavaModelException e) {
+                // Secondary types are missed, the primary type is recorded above
+            }
+        }
+    }
+    
+    /**
+     * Finds all test classes in a project, using the {@link TestClassIndex}.
      * 
      * @param projectName The name of the project to search
      * @return A list of fully qualified class names of test classes
@@ -462,24 +1262,7 @@ public class UnitTestService {
             IJavaProject javaProject = getJavaProject( projectName );
             
             // Find test classes
-            List<String> testClasses = new ArrayList<>();
-            
-            for (IPackageFragmentRoot root : javaProject.getPackageFragmentRoots()) {
-                if (root.getKind() == IPackageFragmentRoot.K_SOURCE) {
-                    for (IJavaElement child : root.getChildren()) {
-                        if (child instanceof IPackageFragment) {
-                            IPackageFragment pkg = (IPackageFragment) child;
-                            for (ICompilationUnit unit : pkg.getCompilationUnits()) {
-                                for (IType type : unit.getAllTypes()) {
-                                    if (isTestClass(type)) {
-                                        testClasses.add(type.getFullyQualifiedName());
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+            List<String> testClasses = testClassIndex.testClasses(javaProject);
             
             if (testClasses.isEmpty()) {
                 return "No test classes found in project '" + projectName + "'.";
@@ -521,35 +1304,4 @@ public class UnitTestService {
         IJavaProject javaProject = JavaCore.create(project);
         return javaProject;
     }
-    
-    /**
-     * Determines if a class is a test class by checking for test annotations
-     * or methods following test naming conventions.
-     */
-    private boolean isTestClass(IType type) throws JavaModelException {
-        // Check if class name ends with Test
-        if (type.getElementName().endsWith("Test")) {
-            return true;
-        }
-        
-        // Check for test methods
-        for (IMethod method : type.getMethods()) {
-            String methodName = method.getElementName();
-            
-            // Check for JUnit 4/5 annotations
-            for (IAnnotation annotation : method.getAnnotations()) {
-                String annotationName = annotation.getElementName();
-                if (annotationName.contains("Test") || annotationName.contains("ParameterizedTest")) {
-                    return true;
-                }
-            }
-            
-            // Check for test naming convention (testXXX)
-            if (methodName.startsWith("test") && Character.isUpperCase(methodName.charAt(4))) {
-                return true;
-            }
-        }
-        
-        return false;
-    }
 }
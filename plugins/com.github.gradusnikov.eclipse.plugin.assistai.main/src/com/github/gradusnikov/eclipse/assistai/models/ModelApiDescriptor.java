@@ -1,7 +1,11 @@
 package com.github.gradusnikov.eclipse.assistai.models;
 
 /**
- * 
+ * Describes a configured model API endpoint.
+ * <p>
+ * {@code contextWindow} and {@code maxOutputTokens} are optional; a value of
+ * {@code 0} means "unknown" and the limits are inferred from the model name
+ * (see {@link ModelLimits}).
  */
 public record ModelApiDescriptor(
          String uid,
@@ -11,21 +15,37 @@ public record ModelApiDescriptor(
          String modelName,
          int temperature,
          boolean vision,
-         boolean functionCalling
+         boolean functionCalling,
+         int contextWindow,
+         int maxOutputTokens
          ) {
+    
+    public ModelApiDescriptor( String uid,
+                               String apiType,
+                               String apiUrl,
+                               String apiKey,
+                               String modelName,
+                               int temperature,
+                               boolean vision,
+                               boolean functionCalling )
+    {
+        this( uid, apiType, apiUrl, apiKey, modelName, temperature, vision, functionCalling, 0, 0 );
+    }
        
     public static ModelApiDescriptor copyWithUid( String uid, ModelApiDescriptor stub) {
-        return new ModelApiDescriptor(
-                    uid,
-                    stub.apiType(),
-                    stub.apiUrl(),
-                    stub.apiKey(),
-                    stub.modelName(),
-                    stub.temperature(),
-                    stub.vision(),
-                    stub.functionCalling()
-                );
+        return new ModelApiDescriptor(
+                    uid,
+                    stub.apiType(),
+                    stub.apiUrl(),
+                    stub.apiKey(),
+                    stub.modelName(),
+                    stub.temperature(),
+                    stub.vision(),
+                    stub.functionCalling(),
+                    stub.contextWindow(),
+                    stub.maxOutputTokens()
+                );
     };
             
     
-} 
\ No newline at end of file
+} 
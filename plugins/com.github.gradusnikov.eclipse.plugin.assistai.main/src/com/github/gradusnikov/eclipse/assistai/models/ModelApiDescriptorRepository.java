@@ -115,6 +115,14 @@ public class ModelApiDescriptorRepository
         String currentModel = getPreferenceStore().getString( PreferenceConstants.ASSISTAI_CHAT_MODEL );
         return findModelOrGetFirst( currentModel );
 		
+	}
+	/**
+	 * Returns the model with the given uid, or the chat model in use if the
+	 * uid is null or no longer defined.
+	 */
+	public ModelApiDescriptor getChatModel( String modelId )
+	{
+	    return Optional.ofNullable( modelId ).flatMap( this::findById ).orElseGet( this::getChatModelInUse );
 	}
 	public ModelApiDescriptor getCompletionsModelInUse()
     {
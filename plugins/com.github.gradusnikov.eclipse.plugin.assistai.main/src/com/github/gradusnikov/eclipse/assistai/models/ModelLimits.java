@@ -0,0 +1,71 @@
+package com.github.gradusnikov.eclipse.assistai.models;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Context window and output limits of a model, in tokens.
+ * <p>
+ * Explicit values configured on the {@link ModelApiDescriptor} always win. 
+ * Otherwise the limits are looked up by model name, falling back to 
+ * conservative defaults for unknown (e.g. self-hosted) models.
+ */
+public record ModelLimits( int contextWindow, int maxOutputTokens )
+{
+    public static final ModelLimits DEFAULT = new ModelLimits( 128_000, 4_096 );
+    
+    private record KnownModel( Pattern namePattern, ModelLimits limits ) {}
+    
+    // first match wins - keep more specific patterns first
+    private static final List<KnownModel> KNOWN_MODELS = List.of(
+            known( "^claude-.*",          200_000,  10_000 ),
+            known( "^gpt-5.*",            400_000,  32_000 ),
+            known( "^gpt-4\\.1.*",      1_047_576,  32_768 ),
+            known( "^gpt-4o.*",           128_000,  16_384 ),
+            known( "^gpt-4-turbo.*",      128_000,   4_096 ),
+            known( "^gpt-4.*",              8_192,   4_096 ),
+            known( "^gpt-3\\.5.*",         16_385,   4_096 ),
+            known( "^o\\d(-.*)?$",        200_000,  32_000 ),
+            known( "^gemini-.*",        1_048_576,   8_192 ),
+            known( "^deepseek-.*",         64_000,   4_096 ),
+            known( "^grok-4.*",           256_000,  10_000 ),
+            known( "^grok-.*",            131_072,  10_000 ),
+            known( "^qwen-qwq.*",         131_072,   8_192 ),
+            known( "^llama3-.*-8192$",      8_192,   2_048 )
+            );
+    
+    private static KnownModel known( String regex, int contextWindow, int maxOutputTokens )
+    {
+        return new KnownModel( Pattern.compile( regex ), new ModelLimits( contextWindow, maxOutputTokens ) );
+    }
+    
+    /**
+     * Resolves the limits for the given model descriptor.
+     */
+    public static ModelLimits of( ModelApiDescriptor model )
+    {
+        var inferred = forModelName( model.modelName() );
+        int contextWindow = model.contextWindow() > 0 ? model.contextWindow() : inferred.contextWindow();
+        int maxOutputTokens = model.maxOutputTokens() > 0 ? model.maxOutputTokens() : inferred.maxOutputTokens();
+        // never reserve more than half of the window for the answer
+        return new ModelLimits( contextWindow, Math.min( maxOutputTokens, contextWindow / 2 ) );
+    }
+    
+    /**
+     * Infers the limits from a model name, e.g. <i>claude-sonnet-4-5</i>.
+     */
+    public static ModelLimits forModelName( String modelName )
+    {
+        if ( modelName == null )
+        {
+            return DEFAULT;
+        }
+        var name = modelName.toLowerCase( Locale.ROOT );
+        return KNOWN_MODELS.stream()
+                           .filter( known -> known.namePattern().matcher( name ).matches() )
+                           .map( KnownModel::limits )
+                           .findFirst()
+                           .orElse( DEFAULT );
+    }
+}
@@ -3,14 +3,19 @@ package com.github.gradusnikov.eclipse.assistai.network.clients;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 import org.eclipse.core.runtime.ILog;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
 import com.github.gradusnikov.eclipse.assistai.chat.ConversationContext;
+import com.github.gradusnikov.eclipse.assistai.context.ContextBudgetPlanner;
+import com.github.gradusnikov.eclipse.assistai.context.ContextPlan;
 import com.github.gradusnikov.eclipse.assistai.mcp.local.InMemoryMcpClientRetistry;
 import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
 import com.github.gradusnikov.eclipse.assistai.prompt.PromptRepository;
+import com.github.gradusnikov.eclipse.assistai.prompt.Prompts;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 
 import io.modelcontextprotocol.spec.McpSchema.Tool;
@@ -31,6 +36,8 @@ public abstract class AbstractLanguageModelClient implements LanguageModelClient
     
     protected final PromptRepository promptRepository;
     
+    protected final ContextBudgetPlanner contextBudgetPlanner;
+    
     protected final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
@@ -51,13 +58,38 @@ public abstract class AbstractLanguageModelClient implements LanguageModelClient
                                         LanguageModelClientConfiguration configuration, 
                                         InMemoryMcpClientRetistry mcpClientRegistry, 
                                         ResourceCache resourceCache, 
-                                        PromptRepository promptRepository )
-    {
-        this.logger = Objects.requireNonNull( logger );
-        this.configuration = Objects.requireNonNull( configuration );
-        this.mcpClientRegistry = Objects.requireNonNull( mcpClientRegistry );
+                                        PromptRepository promptRepository,
+                                        ContextBudgetPlanner contextBudgetPlanner )
+    {
+        this.logger = Objects.requireNonNull( logger );
+        this.configuration = Objects.requireNonNull( configuration );
+        this.mcpClientRegistry = Objects.requireNonNull( mcpClientRegistry );
         this.resourceCache = Objects.requireNonNull( resourceCache );
-        this.promptRepository = Objects.requireNonNull( promptRepository );
+        this.promptRepository = Objects.requireNonNull( promptRepository );
+        this.contextBudgetPlanner = Objects.requireNonNull( contextBudgetPlanner );
+    }
+    
+    /**
+     * Plans the request for the given conversation so that the system prompt,
+     * cached resources, tool schemas and history fit the model's context window.
+     * 
+     * @param prompt the conversation to be sent
+     * @return the plan the request body should be built from
+     */
+    protected ContextPlan planContext( Conversation prompt )
+    {
+        String systemPrompt = promptRepository.getPrompt( Prompts.SYSTEM.name() );
+        Map<String, Tool> tools = model.functionCalling() ? listAvailableTools() : Map.of();
+        return contextBudgetPlanner.plan( model, systemPrompt, getResourceCache(), tools, prompt.snapshot() );
+    }
+    
+    /**
+     * Returns the resource cache of the conversation context, the shared one
+     * unless the context has its own.
+     */
+    protected ResourceCache getResourceCache()
+    {
+        return Optional.ofNullable( conversationContext ).map( ConversationContext::getResourceCache ).orElse( resourceCache );
     }
     
     /**
@@ -88,5 +120,5 @@ public abstract class AbstractLanguageModelClient implements LanguageModelClient
     {
         return clientName + "__" + tool.name();
     }
-    
+    
 }
@@ -34,10 +34,10 @@ import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
 import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
 import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
 import com.github.gradusnikov.eclipse.assistai.chat.Incoming;
+import com.github.gradusnikov.eclipse.assistai.context.ContextBudgetPlanner;
 import com.github.gradusnikov.eclipse.assistai.mcp.local.InMemoryMcpClientRetistry;
 import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
 import com.github.gradusnikov.eclipse.assistai.prompt.PromptRepository;
-import com.github.gradusnikov.eclipse.assistai.prompt.Prompts;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.tools.ImageUtilities;
 
@@ -63,10 +63,11 @@ public class AnthropicStreamJavaHttpClient extends AbstractLanguageModelClient
             LanguageModelClientConfiguration configuration, 
             InMemoryMcpClientRetistry mcpClientRegistry,
             ResourceCache resourceCache, 
-            PromptRepository promptRepository 
+            PromptRepository promptRepository,
+            ContextBudgetPlanner contextBudgetPlanner 
             )
     {
-        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository );
+        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository, contextBudgetPlanner );
     }
 
     @Override
@@ -125,20 +126,15 @@ public class AnthropicStreamJavaHttpClient extends AbstractLanguageModelClient
             var requestBody = new LinkedHashMap<String, Object>();
             var messages = new ArrayList<Map<String, Object>>();
 
-            // System message should be placed in system key, not in messages array for Anthropic
-            String systemPrompt =  promptRepository.getPrompt(  Prompts.SYSTEM.name() );
+            // Fit system prompt, cached resources, tools and history into the context window
+            var plan = planContext( prompt );
             
-            // Inject cached resources block at the beginning of system prompt
-            String resourcesBlock = resourceCache.toContextBlock();
-            if (!resourcesBlock.isEmpty()) 
-            {
-                systemPrompt = resourcesBlock + "\n\n" + systemPrompt;
-            }
-            
-            requestBody.put("system", systemPrompt);
+            // System message should be placed in system key, not in messages array for Anthropic
+            // (cached resources block is injected at the beginning of system prompt)
+            requestBody.put("system", plan.systemPrompt());
 
             // Add all messages from prompt
-            prompt.messages().stream()
+            plan.messages().stream()
                              .filter( Predicate.not(ChatMessage::isEmpty) )
                              .map(message -> toJsonPayload(message, model)).forEach(messages::add);
 
@@ -147,13 +143,13 @@ public class AnthropicStreamJavaHttpClient extends AbstractLanguageModelClient
             requestBody.put("messages", messages);
             requestBody.put("temperature", model.temperature() / 10.0);
             requestBody.put("stream", true);
-            requestBody.put("max_tokens", 10000); // Configurable limit
+            requestBody.put("max_tokens", plan.maxOutputTokens());
             
             // Add tools if function calling is enabled
             if (model.functionCalling())
             {
                 ArrayNode tools = objectMapper.createArrayNode();
-                for (var tool : listAvailableTools().entrySet() )
+                for (var tool : plan.tools().entrySet() )
                 {
                     tools.addAll(toolToJson(tool.getKey(), tool.getValue()));
                 }
@@ -12,6 +12,8 @@ import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptorReposito
 import com.github.gradusnikov.eclipse.assistai.network.subscribers.AppendMessageToViewSubscriber;
 import com.github.gradusnikov.eclipse.assistai.network.subscribers.FunctionCallSubscriber;
 import com.github.gradusnikov.eclipse.assistai.network.subscribers.PrintMessageSubscriber;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSession;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSessionManager;
 
 import io.modelcontextprotocol.client.McpSyncClient;
 import jakarta.inject.Inject;
@@ -27,9 +29,11 @@ public class ChatLanguageModelHttpClientProvider extends AbstractLanguageModelHt
     @Inject
     private Provider<FunctionCallSubscriber> functionCallSubscriberProvider;
     @Inject
-    private AppendMessageToViewSubscriber appendMessageToViewSubscriber;
+    private Provider<AppendMessageToViewSubscriber> appendMessageToViewSubscriberProvider;
     @Inject
     private ModelApiDescriptorRepository modelApiDescriptorRepository;
+    @Inject
+    private ChatSessionManager sessionManager;
 
     @Inject
     public ChatLanguageModelHttpClientProvider( 
@@ -63,10 +67,28 @@ public class ChatLanguageModelHttpClientProvider extends AbstractLanguageModelHt
     @Override
     public LanguageModelClient get( ConversationContext context, Runnable onContinue )
     {
-        var modelApiDescriptor = Optional.ofNullable( modelApiDescriptorRepository.getChatModelInUse() )
+        var session = sessionManager.findSession( context.getContextId() ).orElseGet( sessionManager::getDefaultSession );
+        return get( session, context, onContinue );
+    }
+    
+    /**
+     * Returns a client for a request of the given chat session, using the
+     * session's model. Streamed replies are shown in the session's conversation.
+     * 
+     * @param session The chat session the request belongs to
+     * @param context The conversation context for this request
+     * @param onContinue The continuation callback to invoke after function execution (can be null)
+     * @return A configured LanguageModelClient with proper function call handling
+     */
+    public LanguageModelClient get( ChatSession session, ConversationContext context, Runnable onContinue )
+    {
+        var modelApiDescriptor = Optional.ofNullable( modelApiDescriptorRepository.getChatModel( session.getModelUid() ) )
                 .orElseThrow( () -> new IllegalArgumentException("Model not selected") );
 
         LanguageModelClient client = createClient( modelApiDescriptor, context );
+        // a new subscriber per request, sessions may stream at the same time
+        AppendMessageToViewSubscriber appendMessageToViewSubscriber = appendMessageToViewSubscriberProvider.get();
+        appendMessageToViewSubscriber.setSession( session );
         client.subscribe( appendMessageToViewSubscriber );
         client.subscribe( printMessageSubscriber );
         
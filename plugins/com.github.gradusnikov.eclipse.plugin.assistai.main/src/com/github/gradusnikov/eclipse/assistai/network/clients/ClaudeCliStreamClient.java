@@ -22,6 +22,8 @@ import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
 import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
 import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
 import com.github.gradusnikov.eclipse.assistai.chat.Incoming;
+import com.github.gradusnikov.eclipse.assistai.context.ContextBudgetPlanner;
+import com.github.gradusnikov.eclipse.assistai.context.ContextPlan;
 import com.github.gradusnikov.eclipse.assistai.mcp.local.InMemoryMcpClientRetistry;
 import com.github.gradusnikov.eclipse.assistai.network.clients.claudecli.BlockType;
 import com.github.gradusnikov.eclipse.assistai.network.clients.claudecli.CliContentBlock;
@@ -29,7 +31,6 @@ import com.github.gradusnikov.eclipse.assistai.network.clients.claudecli.CliOutp
 import com.github.gradusnikov.eclipse.assistai.network.clients.claudecli.CliOutputLine;
 import com.github.gradusnikov.eclipse.assistai.network.clients.claudecli.ContentEventType;
 import com.github.gradusnikov.eclipse.assistai.prompt.PromptRepository;
-import com.github.gradusnikov.eclipse.assistai.prompt.Prompts;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 
 import jakarta.inject.Inject;
@@ -45,8 +46,9 @@ public class ClaudeCliStreamClient extends AbstractLanguageModelClient {
 	@Inject
 	public ClaudeCliStreamClient(ILog logger, LanguageModelClientConfiguration configuration,
 			InMemoryMcpClientRetistry mcpClientRegistry, ResourceCache resourceCache,
-			PromptRepository promptRepository) {
-		super(logger, configuration, mcpClientRegistry, resourceCache, promptRepository);
+			PromptRepository promptRepository,
+			ContextBudgetPlanner contextBudgetPlanner) {
+		super(logger, configuration, mcpClientRegistry, resourceCache, promptRepository, contextBudgetPlanner);
 	}
 
 	@Override
@@ -190,14 +192,10 @@ public class ClaudeCliStreamClient extends AbstractLanguageModelClient {
 
 	private String buildPrompt(Conversation conversation) {
 		StringBuilder sb = new StringBuilder();
-		String systemPrompt = promptRepository.getPrompt(Prompts.SYSTEM.name());
-		String resourcesBlock = resourceCache.toContextBlock();
-		if (!resourcesBlock.isEmpty()) {
-			systemPrompt = resourcesBlock + "\n\n" + systemPrompt;
-		}
-		sb.append("<system>\n").append(systemPrompt).append("\n</system>\n\n");
+		ContextPlan plan = planContext(conversation);
+		sb.append("<system>\n").append(plan.systemPrompt()).append("\n</system>\n\n");
 
-		conversation.messages().stream().filter(Predicate.not(ChatMessage::isEmpty)).forEach(message -> {
+		plan.messages().stream().filter(Predicate.not(ChatMessage::isEmpty)).forEach(message -> {
 			String role = message.getRole();
 			String content = message.getContent();
 			List<String> textParts = message.getAttachments().stream().map(Attachment::toChatMessageContent)
@@ -32,10 +32,10 @@ import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
 import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
 import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
 import com.github.gradusnikov.eclipse.assistai.chat.Incoming;
+import com.github.gradusnikov.eclipse.assistai.context.ContextBudgetPlanner;
 import com.github.gradusnikov.eclipse.assistai.mcp.local.InMemoryMcpClientRetistry;
 import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
 import com.github.gradusnikov.eclipse.assistai.prompt.PromptRepository;
-import com.github.gradusnikov.eclipse.assistai.prompt.Prompts;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.tools.ImageUtilities;
 
@@ -60,9 +60,10 @@ public class DeepSeekStreamJavaHttpClient extends AbstractLanguageModelClient
             LanguageModelClientConfiguration configuration, 
             InMemoryMcpClientRetistry mcpClientRegistry,
             ResourceCache resourceCache, 
-            PromptRepository promptRepository )
+            PromptRepository promptRepository,
+            ContextBudgetPlanner contextBudgetPlanner )
     {
-        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository );
+        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository, contextBudgetPlanner );
     }
     
     @Override
@@ -123,15 +124,11 @@ public class DeepSeekStreamJavaHttpClient extends AbstractLanguageModelClient
             var requestBody = new LinkedHashMap<String, Object>();
             var messages = new ArrayList<Map<String, Object>>();
 
-            // Add system message if provided
-            String systemPrompt = promptRepository.getPrompt( Prompts.SYSTEM.name() );
+            // Fit system prompt, cached resources, tools and history into the context window
+            var plan = planContext( prompt );
             
-            // Inject cached resources block at the beginning of system prompt
-            String resourcesBlock = resourceCache.toContextBlock();
-            if (!resourcesBlock.isEmpty()) 
-            {
-                systemPrompt = resourcesBlock + "\n\n" + systemPrompt;
-            }
+            // Add system message if provided (cached resources block is injected at the beginning)
+            String systemPrompt = plan.systemPrompt();
             
             if (systemPrompt != null && !systemPrompt.isEmpty()) {
                 var systemMessage = new LinkedHashMap<String, Object>();
@@ -141,7 +138,7 @@ public class DeepSeekStreamJavaHttpClient extends AbstractLanguageModelClient
             }
 
             // Add all messages from prompt
-            prompt.messages().stream()
+            plan.messages().stream()
                   .filter(Predicate.not(ChatMessage::isEmpty))
                   .map(message -> toJsonPayload(message, model))
                   .forEach(messages::add);
@@ -151,13 +148,13 @@ public class DeepSeekStreamJavaHttpClient extends AbstractLanguageModelClient
             requestBody.put("messages", messages);
             requestBody.put("temperature", model.temperature() / 10.0);
             requestBody.put("stream", true);
-            requestBody.put("max_tokens", 4096); // Configurable limit
+            requestBody.put("max_tokens", plan.maxOutputTokens());
             
             // Add tools if function calling is enabled
             if (model.functionCalling())
             {
                 ArrayNode tools = objectMapper.createArrayNode();
-                for (var tool : listAvailableTools().entrySet())
+                for (var tool : plan.tools().entrySet())
                 {
                     tools.addAll(toolToJson(tool.getKey(), tool.getValue()));
                 }
@@ -30,10 +30,10 @@ import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
 import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
 import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
 import com.github.gradusnikov.eclipse.assistai.chat.Incoming;
+import com.github.gradusnikov.eclipse.assistai.context.ContextBudgetPlanner;
 import com.github.gradusnikov.eclipse.assistai.mcp.local.InMemoryMcpClientRetistry;
 import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
 import com.github.gradusnikov.eclipse.assistai.prompt.PromptRepository;
-import com.github.gradusnikov.eclipse.assistai.prompt.Prompts;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.tools.ImageUtilities;
 
@@ -56,9 +56,10 @@ public class GeminiStreamJavaHttpClient extends AbstractLanguageModelClient
             LanguageModelClientConfiguration configuration, 
             InMemoryMcpClientRetistry mcpClientRegistry,
             ResourceCache resourceCache, 
-            PromptRepository promptRepository )
+            PromptRepository promptRepository,
+            ContextBudgetPlanner contextBudgetPlanner )
     {
-        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository );
+        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository, contextBudgetPlanner );
     }
     
     @Override
@@ -147,14 +148,9 @@ public class GeminiStreamJavaHttpClient extends AbstractLanguageModelClient
     
             // Add system message if provided
             // note gemini does not support system messages
-            String systemPrompt = promptRepository.getPrompt( Prompts.SYSTEM.name() );
-            
-            // Inject cached resources block at the beginning of system prompt
-            String resourcesBlock = resourceCache.toContextBlock();
-            if (!resourcesBlock.isEmpty()) 
-            {
-                systemPrompt = resourcesBlock + "\n\n" + systemPrompt;
-            }
+            // (cached resources block is injected at the beginning of system prompt)
+            var plan = planContext( prompt );
+            String systemPrompt = plan.systemPrompt();
             
             if (!systemPrompt.isEmpty()) {
                 ChatMessage systemMessage = new ChatMessage( UUID.randomUUID().toString(), "user");
@@ -163,7 +159,7 @@ public class GeminiStreamJavaHttpClient extends AbstractLanguageModelClient
             }
             
             // Add all messages from prompt
-            prompt.messages().stream()
+            plan.messages().stream()
                 .filter(Predicate.not(ChatMessage::isEmpty))
                 .map(message -> toJsonPayload(message, model))
                 .forEach(messages::add);
@@ -192,7 +188,7 @@ public class GeminiStreamJavaHttpClient extends AbstractLanguageModelClient
             {
                 List<Map<String, Object>> allFunctionDeclarations = new ArrayList<>();
                 
-                for (var tool : listAvailableTools().entrySet())
+                for (var tool : plan.tools().entrySet())
                 {
                     try {
                         var functionDeclarations = toolToJson(tool.getKey(), tool.getValue());
@@ -245,6 +241,11 @@ public class GeminiStreamJavaHttpClient extends AbstractLanguageModelClient
             {
                 role = "model";
             }
+            // contents only take user and model turns, e.g. summaries of compacted history are system notes
+            else if ( role.contentEquals( "system" ) )
+            {
+                role = "user";
+            }
             userMessage.put("role", role );
             
             // Handle function calls
@@ -34,10 +34,10 @@ import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
 import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
 import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
 import com.github.gradusnikov.eclipse.assistai.chat.Incoming;
+import com.github.gradusnikov.eclipse.assistai.context.ContextBudgetPlanner;
 import com.github.gradusnikov.eclipse.assistai.mcp.local.InMemoryMcpClientRetistry;
 import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
 import com.github.gradusnikov.eclipse.assistai.prompt.PromptRepository;
-import com.github.gradusnikov.eclipse.assistai.prompt.Prompts;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.tools.ImageUtilities;
 
@@ -58,9 +58,10 @@ public class GrokStreamJavaHttpClient extends AbstractLanguageModelClient
             LanguageModelClientConfiguration configuration, 
             InMemoryMcpClientRetistry mcpClientRegistry,
             ResourceCache resourceCache, 
-            PromptRepository promptRepository )
+            PromptRepository promptRepository,
+            ContextBudgetPlanner contextBudgetPlanner )
     {
-        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository );
+        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository, contextBudgetPlanner );
     }
 
     @Override
@@ -101,15 +102,11 @@ public class GrokStreamJavaHttpClient extends AbstractLanguageModelClient
             var requestBody = new LinkedHashMap<String, Object>();
             var messages = new ArrayList<Map<String, Object>>();
 
-            // System message
-            String systemPrompt = promptRepository.getPrompt( Prompts.SYSTEM.name() );
+            // Fit system prompt, cached resources, tools and history into the context window
+            var plan = planContext( prompt );
             
-            // Inject cached resources block at the beginning of system prompt
-            String resourcesBlock = resourceCache.toContextBlock();
-            if (!resourcesBlock.isEmpty()) 
-            {
-                systemPrompt = resourcesBlock + "\n\n" + systemPrompt;
-            }
+            // System message (cached resources block is injected at the beginning)
+            String systemPrompt = plan.systemPrompt();
             
             if (!systemPrompt.isBlank()) {
                 messages.add(Map.of(
@@ -119,7 +116,7 @@ public class GrokStreamJavaHttpClient extends AbstractLanguageModelClient
             }
 
             // Add user and assistant messages
-            prompt.messages().stream()
+            plan.messages().stream()
                 .filter(Predicate.not(ChatMessage::isEmpty))
                 .map(message -> toJsonPayload(message, model))
                 .forEach(messages::add);
@@ -128,12 +125,12 @@ public class GrokStreamJavaHttpClient extends AbstractLanguageModelClient
             requestBody.put("messages", messages);
             requestBody.put("temperature", model.temperature() / 10.0);
             requestBody.put("stream", true);
-            requestBody.put("max_tokens", 10000);
+            requestBody.put("max_tokens", plan.maxOutputTokens());
 
             // Add tools if function calling is enabled
             if (model.functionCalling()) {
                 ArrayNode tools = objectMapper.createArrayNode();
-                for (var tool : listAvailableTools().entrySet()) {
+                for (var tool : plan.tools().entrySet()) {
                     tools.addAll(toolToJson(tool.getKey(), tool.getValue()));
                 }
                 if (!tools.isEmpty()) {
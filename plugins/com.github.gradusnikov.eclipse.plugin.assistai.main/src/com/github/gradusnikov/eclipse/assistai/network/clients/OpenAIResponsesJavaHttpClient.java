@@ -29,10 +29,10 @@ import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
 import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
 import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
 import com.github.gradusnikov.eclipse.assistai.chat.Incoming;
+import com.github.gradusnikov.eclipse.assistai.context.ContextBudgetPlanner;
 import com.github.gradusnikov.eclipse.assistai.mcp.local.InMemoryMcpClientRetistry;
 import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
 import com.github.gradusnikov.eclipse.assistai.prompt.PromptRepository;
-import com.github.gradusnikov.eclipse.assistai.prompt.Prompts;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.tools.ImageUtilities;
 import com.github.gradusnikov.eclipse.assistai.tools.JsonUtils;
@@ -60,9 +60,10 @@ public class OpenAIResponsesJavaHttpClient extends AbstractLanguageModelClient
             LanguageModelClientConfiguration configuration, 
             InMemoryMcpClientRetistry mcpClientRegistry,
             ResourceCache resourceCache, 
-            PromptRepository promptRepository )
+            PromptRepository promptRepository,
+            ContextBudgetPlanner contextBudgetPlanner )
     {
-        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository );
+        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository, contextBudgetPlanner );
     }
     
     @Override
@@ -128,26 +129,22 @@ public class OpenAIResponsesJavaHttpClient extends AbstractLanguageModelClient
         // Basic parameters
         requestBody.put("model", model.modelName());
         
-        // Instructions (system prompt)
-        var systemPrompt = promptRepository.getPrompt( Prompts.SYSTEM.name() );
+        // Fit system prompt, cached resources, tools and history into the context window
+        var plan = planContext( prompt );
         
-        // Inject cached resources block at the beginning of system prompt
-        String resourcesBlock = resourceCache.toContextBlock();
-        if (!resourcesBlock.isEmpty()) 
-        {
-            systemPrompt = resourcesBlock + "\n\n" + systemPrompt;
-        }
+        // Instructions (system prompt with cached resources block at the beginning)
+        var systemPrompt = plan.systemPrompt();
         
         if (!systemPrompt.isBlank()) {
             requestBody.put("instructions", systemPrompt);
         }
         
         // Input - can be string or array of messages
-        var input = buildInput(prompt, model);
+        var input = buildInput(plan.messages(), model);
         requestBody.put("input", input);
         
         // Tools - both built-in and MCP tools
-        var tools = buildTools(model);
+        var tools = buildTools(plan.tools());
         if (!tools.isEmpty()) {
             requestBody.put("tools", tools);
             
@@ -177,9 +174,8 @@ public class OpenAIResponsesJavaHttpClient extends AbstractLanguageModelClient
     /**
      * Builds the input field - can be a string or array of messages
      */
-    private List<Map<String, Object>> buildInput(Conversation prompt, ModelApiDescriptor model)
+    private List<Map<String, Object>> buildInput(List<ChatMessage> messages, ModelApiDescriptor model)
     {
-        var messages = prompt.messages();
         if (messages.isEmpty()) {
             return new ArrayList<Map<String,Object>>();
         }
@@ -285,17 +281,14 @@ public class OpenAIResponsesJavaHttpClient extends AbstractLanguageModelClient
     /**
      * Builds tools array including built-in and MCP tools
      */
-    private List<Map<String, Object>> buildTools(ModelApiDescriptor model)
+    private List<Map<String, Object>> buildTools(Map<String, Tool> availableTools)
     {
         var tools = new ArrayList<Map<String, Object>>();
         
-        // Add MCP tools if function calling is enabled
-        if ( model.functionCalling() ) 
+        // Add MCP tools (the plan only contains tools if function calling is enabled)
+        for (var tool : availableTools.entrySet()) 
         {
-            for (var tool : listAvailableTools().entrySet()) 
-            {
-                tools.add(convertToolToResponses(tool.getKey(), tool.getValue()));
-            }
+            tools.add(convertToolToResponses(tool.getKey(), tool.getValue()));
         }
         
         return tools;
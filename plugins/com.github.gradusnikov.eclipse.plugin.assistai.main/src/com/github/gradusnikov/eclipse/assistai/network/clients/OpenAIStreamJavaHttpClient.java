@@ -30,10 +30,10 @@ import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
 import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
 import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
 import com.github.gradusnikov.eclipse.assistai.chat.Incoming;
+import com.github.gradusnikov.eclipse.assistai.context.ContextBudgetPlanner;
 import com.github.gradusnikov.eclipse.assistai.mcp.local.InMemoryMcpClientRetistry;
 import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
 import com.github.gradusnikov.eclipse.assistai.prompt.PromptRepository;
-import com.github.gradusnikov.eclipse.assistai.prompt.Prompts;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.tools.ImageUtilities;
 
@@ -58,9 +58,10 @@ public class OpenAIStreamJavaHttpClient extends AbstractLanguageModelClient
             LanguageModelClientConfiguration configuration, 
             InMemoryMcpClientRetistry mcpClientRegistry,
             ResourceCache resourceCache, 
-            PromptRepository promptRepository )
+            PromptRepository promptRepository,
+            ContextBudgetPlanner contextBudgetPlanner )
     {
-        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository );
+        super( logger, configuration, mcpClientRegistry, resourceCache, promptRepository, contextBudgetPlanner );
     }
     
     @Override
@@ -96,26 +97,21 @@ public class OpenAIStreamJavaHttpClient extends AbstractLanguageModelClient
 //            systemMessage.put("role", "system");
             systemMessage.put("role", "user");
             
-            String systemPrompt = promptRepository.getPrompt( Prompts.SYSTEM.name() );
+            // Fit system prompt, cached resources, tools and history into the context window
+            // (cached resources block is injected at the beginning of system prompt)
+            var plan = planContext( prompt );
             
-            // Inject cached resources block at the beginning of system prompt
-            String resourcesBlock = resourceCache.toContextBlock();
-            if (!resourcesBlock.isEmpty()) 
-            {
-                systemPrompt = resourcesBlock + "\n\n" + systemPrompt;
-            }
-            
-            systemMessage.put("content", systemPrompt);
+            systemMessage.put("content", plan.systemPrompt());
             messages.add(systemMessage);
             
             
-            prompt.messages().stream().map( message -> toJsonPayload(message, model) ).forEach( messages::add );
+            plan.messages().stream().map( message -> toJsonPayload(message, model) ).forEach( messages::add );
             
             requestBody.put("model", model.modelName() );
             if ( model.functionCalling() )
             {
                 ArrayNode functions = objectMapper.createArrayNode();
-                for ( var tool : listAvailableTools().entrySet() )
+                for ( var tool : plan.tools().entrySet() )
                 {
                     functions.addAll( toolToJson( tool.getKey(), tool.getValue() ) );
                 }                
@@ -5,27 +5,34 @@ import java.util.concurrent.Flow;
 import java.util.concurrent.Flow.Subscription;
 
 import jakarta.inject.Inject;
-import jakarta.inject.Singleton;
 
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.e4.core.di.annotations.Creatable;
 
 import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
-import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
 import com.github.gradusnikov.eclipse.assistai.chat.Incoming;
 import com.github.gradusnikov.eclipse.assistai.chat.Incoming.Type;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSession;
 import com.github.gradusnikov.eclipse.assistai.view.ChatViewPresenter;
 
+/**
+ * Subscriber that shows a streamed reply in the chat view.
+ * 
+ * This class is NOT a singleton - a new instance is created for each request,
+ * so replies of chat sessions streaming at the same time do not mix.
+ */
 @Creatable
-@Singleton
 public class AppendMessageToViewSubscriber implements Flow.Subscriber<Incoming>
 {
     @Inject
     private ILog logger;
     
+    @Inject
+    private ChatViewPresenter presenter;
+    
     private Flow.Subscription subscription;
     
-    private ChatViewPresenter presenter;
+    private ChatSession session;
     
     private ChatMessage currentMessage;
     
@@ -37,15 +44,19 @@ public class AppendMessageToViewSubscriber implements Flow.Subscriber<Incoming>
     {
     }
     
-    public void setPresenter(ChatViewPresenter presenter)
+    /**
+     * Sets the chat session the streamed reply belongs to.
+     * Must be called before the subscriber is used.
+     */
+    public void setSession(ChatSession session)
     {
-        this.presenter = presenter;
+        this.session = Objects.requireNonNull( session );
     }
 
     @Override
     public void onSubscribe(Subscription subscription)
     {
-        Objects.requireNonNull( presenter );
+        Objects.requireNonNull( session );
         this.subscription = subscription;
         this.lastType = null;
         this.currentMessage = null;
@@ -56,19 +67,19 @@ public class AppendMessageToViewSubscriber implements Flow.Subscriber<Incoming>
     @Override
     public void onNext(Incoming item)
     {
-        Objects.requireNonNull( presenter );
+        Objects.requireNonNull( session );
         Objects.requireNonNull( subscription );
         
         if ( item.type() != lastType )
         {
             if ( Objects.nonNull(currentMessage))
             {
-            	presenter.endMessageFromAssistant( currentMessage );
+            	presenter.endMessageFromAssistant( session, currentMessage );
             	currentMessage = null;
             }
             if ( Objects.nonNull(currentFunctionCallMessage) )
             {
-            	presenter.endMessageFromAssistant( currentFunctionCallMessage );
+            	presenter.endMessageFromAssistant( session, currentFunctionCallMessage );
             	currentMessage = null;
             }
             lastType = item.type();
@@ -86,12 +97,12 @@ public class AppendMessageToViewSubscriber implements Flow.Subscriber<Incoming>
     {
     	if ( Objects.isNull( currentMessage ) )
     	{
-			currentMessage = presenter.beginMessageFromAssistant();
+			currentMessage = presenter.beginMessageFromAssistant( session );
     	}
     	if ( Objects.nonNull( currentMessage) )
     	{
     		currentMessage.append( payload.toString() );
-    		presenter.updateMessageFromAssistant(currentMessage);
+    		presenter.updateMessageFromAssistant(session, currentMessage);
     	}
 	}
 
@@ -99,12 +110,12 @@ public class AppendMessageToViewSubscriber implements Flow.Subscriber<Incoming>
     {
 		if ( Objects.isNull(currentFunctionCallMessage) )
 		{
-			currentFunctionCallMessage = presenter.beginFunctionCallMessage();
+			currentFunctionCallMessage = presenter.beginFunctionCallMessage( session );
 		}
 		if ( Objects.nonNull(currentFunctionCallMessage))
 		{
 			currentFunctionCallMessage.append( payload.toString() );
-    		presenter.updateMessageFromAssistant(currentFunctionCallMessage);
+    		presenter.updateMessageFromAssistant(session, currentFunctionCallMessage);
 		}
 			
     }
@@ -118,15 +129,15 @@ public class AppendMessageToViewSubscriber implements Flow.Subscriber<Incoming>
     @Override
     public void onComplete()
     {
-        Objects.requireNonNull( presenter );
+        Objects.requireNonNull( session );
         if ( Objects.nonNull(currentMessage))
         {
-        	presenter.endMessageFromAssistant( currentMessage );
+        	presenter.endMessageFromAssistant( session, currentMessage );
         	currentMessage = null;
         }
         if ( Objects.nonNull(currentFunctionCallMessage) )
         {
-        	presenter.endMessageFromAssistant( currentFunctionCallMessage );
+        	presenter.endMessageFromAssistant( session, currentFunctionCallMessage );
         	currentMessage = null;
         }
     	subscription = null;
@@ -9,6 +9,8 @@ public class PreferenceConstants
     public static final String ASSISTAI_REQUEST_TIMEOUT_SECONDS = "AssistAIRequestTimeoutSeconds";
     public static final String ASSISTAI_CHAT_MODEL = "AssistaAISelectedModel";
     public static final String ASSISTAI_DEFINED_MODELS = "AssistAIDefinedModels";
+    public static final String ASSISTAI_RESOURCE_DELTAS = "AssistAIResourceDeltas";
+    public static final String ASSISTAI_SEARCH_INDEX = "AssistAISearchIndex";
     
     // MCP Server preferences
     public static final String ASSISTAI_DEFINED_MCP_SERVERS = "AssistAIDefinedMCPServers";
@@ -42,6 +42,8 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer
         IPreferenceStore store = Activator.getDefault().getPreferenceStore();
         store.setDefault( PreferenceConstants.ASSISTAI_CONNECTION_TIMEOUT_SECONDS, 10 );
         store.setDefault( PreferenceConstants.ASSISTAI_REQUEST_TIMEOUT_SECONDS, 30 );
+        store.setDefault( PreferenceConstants.ASSISTAI_RESOURCE_DELTAS, false );
+        store.setDefault( PreferenceConstants.ASSISTAI_SEARCH_INDEX, false );
 
         ModelApiDescriptor gpt4 = new ModelApiDescriptor( "5e8d3a9f-c5e2-4c1d-9f3b-a7e6b4d2c1e0", "openai", "https://api.openai.com/v1/chat/completions", "", "gpt-4o", 7, true, true );
         ModelApiDescriptor claude = new ModelApiDescriptor( "8d099c40-5a01-483b-878f-bfed8c0d1bbe", "claude", "https://api.anthropic.com/v1/messages", "", "claude-3-7-sonnet-20250219", 7, true, true );
@@ -53,6 +53,10 @@ public class ModelListPreferencePage extends PreferencePage implements IWorkbenc
 
     private Scale      withTemperature;
 
+    private Text       contextWindow;
+
+    private Text       maxOutputTokens;
+
     private Group      form;
 
     private Button     addButton;
@@ -129,11 +133,28 @@ public class ModelListPreferencePage extends PreferencePage implements IWorkbenc
                 modelName.getText(),
                 withTemperature.getSelection(), 
                 withVision.getSelection(), 
-                withFunctionCalls.getSelection() );
+                withFunctionCalls.getSelection(),
+                parseTokens( contextWindow.getText() ),
+                parseTokens( maxOutputTokens.getText() ) );
         presenter.saveModel( selectedIndex, updatedModel );
         super.performApply();
     }
 
+    /**
+     * Parses an optional token limit; blank or invalid input means "infer from model name".
+     */
+    private static int parseTokens( String text )
+    {
+        try
+        {
+            return text == null || text.isBlank() ? 0 : Math.max( 0, Integer.parseInt( text.trim().replace( "_", "" ) ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
     @Override
     protected void performDefaults()
     {
@@ -172,6 +193,10 @@ public class ModelListPreferencePage extends PreferencePage implements IWorkbenc
         withVision = addCheckField( form, "With Vision:");
         withFunctionCalls = addCheckField( form, "With Function Calls:");
         withTemperature = addScaleField( form, "Temperature");
+        contextWindow = addTextField( form, "Context Window (tokens):");
+        maxOutputTokens = addTextField( form, "Max Output (tokens):");
+        contextWindow.setMessage( "auto" );
+        maxOutputTokens.setMessage( "auto" );
 
         return form;
     }
@@ -258,6 +283,8 @@ public class ModelListPreferencePage extends PreferencePage implements IWorkbenc
             withTemperature.setSelection( modelApiDescriptor.temperature() );
             withVision.setSelection( modelApiDescriptor.vision() );
             withFunctionCalls.setSelection( modelApiDescriptor.functionCalling() );
+            contextWindow.setText( modelApiDescriptor.contextWindow() > 0 ? String.valueOf( modelApiDescriptor.contextWindow() ) : "" );
+            maxOutputTokens.setText( modelApiDescriptor.maxOutputTokens() > 0 ? String.valueOf( modelApiDescriptor.maxOutputTokens() ) : "" );
         } );
         setDetailsEditable( true );
     }
@@ -271,6 +298,8 @@ public class ModelListPreferencePage extends PreferencePage implements IWorkbenc
             withTemperature.setSelection( 0 );
             withVision.setSelection( false );
             withFunctionCalls.setSelection( false );
+            contextWindow.setText( "" );
+            maxOutputTokens.setText( "" );
         } );
         setDetailsEditable( false );
     }
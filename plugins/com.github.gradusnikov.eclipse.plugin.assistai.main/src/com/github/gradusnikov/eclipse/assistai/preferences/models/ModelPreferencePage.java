@@ -86,6 +86,20 @@ public class ModelPreferencePage extends FieldEditorPreferencePage implements IW
         );
         addField( modelSelector );
         
+        BooleanFieldEditor resourceDeltas = new BooleanFieldEditor(
+            PreferenceConstants.ASSISTAI_RESOURCE_DELTAS,
+            "Send &diffs of large edited resources instead of their full content",
+            chatComposite
+        );
+        addField( resourceDeltas );
+        
+        BooleanFieldEditor searchIndex = new BooleanFieldEditor(
+            PreferenceConstants.ASSISTAI_SEARCH_INDEX,
+            "&Index workspace text files for faster file search",
+            chatComposite
+        );
+        addField( searchIndex );
+        
         // --- Code Completion Section ---
         Group completionGroup = createGroup(parent, "Code Completion");
         Composite completionComposite = createGroupComposite(completionGroup);
@@ -13,8 +13,8 @@ import com.github.gradusnikov.eclipse.assistai.mcp.services.CodeAnalysisService;
 import com.github.gradusnikov.eclipse.assistai.mcp.services.ConsoleService;
 import com.github.gradusnikov.eclipse.assistai.mcp.services.EditorService;
 import com.github.gradusnikov.eclipse.assistai.mcp.services.GitService;
-import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceToolResult;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSessionManager;
 import com.github.gradusnikov.eclipse.assistai.tools.UISynchronizeCallable;
 
 import jakarta.inject.Inject;
@@ -52,7 +52,7 @@ public class PromptContextValueProvider
 	@Inject
 	private GitService gitService;
 	@Inject
-	private ResourceCache resourceCache;
+	private ChatSessionManager sessionManager;
 	
 	public String getContextValue( String key )
 	{
@@ -84,7 +84,7 @@ public class PromptContextValueProvider
 	{
 	    if ( resource.isCacheable() )
 	    {
-	        var cached = resourceCache.put( resource );
+	        var cached = sessionManager.getActiveSession().getResourceCache().put( resource );
             return String.format( 
                     "[Resource cached: %s (version %d, ~%d tokens)]\n" +
                     "Content available in <resources> block at top of context.",
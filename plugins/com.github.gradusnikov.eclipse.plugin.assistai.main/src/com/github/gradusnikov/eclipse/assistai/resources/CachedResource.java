@@ -1,52 +1,133 @@
 package com.github.gradusnikov.eclipse.assistai.resources;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounter;
 
 /**
  * A cached resource with its content and metadata.
  * Immutable record - updates create new instances.
+ * <p>
+ * A resource in delta mode has {@link #deltas()}: its context element is the
+ * element of an earlier base version followed by one diff per newer version,
+ * so the base part of the prompt stays the same while the file is edited.
+ * {@link #content()} is always the full current content.
  */
 public record CachedResource(
     ResourceDescriptor descriptor,
     String content,
     Instant cachedAt,
     int version,
-    long contentHash      // For change detection
+    long contentHash,     // For change detection
+    int tokenCount,       // Counted once, at creation
+    long modificationStamp, // Of the workspace file when cached, IResource.NULL_STAMP otherwise
+    String xmlHeader,     // Opening <resource> tag, rendered once, at creation
+    Deltas deltas         // Base version and diffs sent instead of the content, or null
 ) {
     
     /**
-     * Creates a new cached resource with version 1.
+     * The base version sent in full and the rendered &lt;resource-diff&gt;
+     * elements leading from it to the current version.
+     */
+    public record Deltas(CachedResource base, List<String> diffElements) {
+    }
+    
+    /** Unchanged lines shown around each change of a diff */
+    private static final int DIFF_CONTEXT_LINES = 3;
+    
+    private static final String XML_FOOTER = "\n</resource>";
+    
+    /**
+     * Creates a new cached resource with version 1, counting its tokens with the given counter.
      */
-    public static CachedResource create(ResourceDescriptor descriptor, String content) {
-        return create(descriptor, content, 1);
+    public static CachedResource create(ResourceDescriptor descriptor, String content, TokenCounter tokenCounter) {
+        return create(descriptor, content, 1, tokenCounter);
     }
     
     /**
-     * Creates a new cached resource with specified version.
+     * Creates a new cached resource with specified version, counting its tokens with the given counter.
      */
-    public static CachedResource create(ResourceDescriptor descriptor, String content, int version) {
+    public static CachedResource create(ResourceDescriptor descriptor, String content, int version, TokenCounter tokenCounter) {
+        long modificationStamp = descriptor.toWorkspaceFile()
+                                           .map(IFile::getModificationStamp)
+                                           .orElse(IResource.NULL_STAMP);
+        return create(descriptor, content, version, tokenCounter.count(content), modificationStamp);
+    }
+    
+    /**
+     * Creates a cached resource with a known token count and file modification
+     * stamp, e.g. when restoring it from an earlier session.
+     */
+    public static CachedResource create(ResourceDescriptor descriptor, String content, int version, int tokenCount, long modificationStamp) {
+        Instant cachedAt = Instant.now();
         return new CachedResource(
             descriptor,
             content,
-            Instant.now(),
+            cachedAt,
             version,
-            content != null ? content.hashCode() : 0
+            content != null ? content.hashCode() : 0,
+            tokenCount,
+            modificationStamp,
+            renderXmlHeader(descriptor, version, cachedAt),
+            null
         );
     }
     
     /**
-     * Creates an updated version of this resource with new content.
+     * Creates the next version of this resource in delta mode: the context
+     * keeps the current base and gets the diff from this version appended.
+     * 
+     * @param newContent The full new content
+     * @param newVersion The version of the new content
+     * @param tokenCounter Counts the tokens of the diff
      */
-    public CachedResource withUpdatedContent(String newContent) {
+    public CachedResource withDelta(String newContent, int newVersion, TokenCounter tokenCounter) {
+        String diff = UnifiedDiff.diff(content, newContent, DIFF_CONTEXT_LINES);
+        CachedResource base = deltas != null ? deltas.base() : this;
+        List<String> diffElements = new ArrayList<>(deltas != null ? deltas.diffElements() : List.of());
+        int tokens = tokenCount;
+        if (!diff.isEmpty()) {
+            String diffElement = renderDiffElement(descriptor, newVersion, diff);
+            diffElements.add(diffElement);
+            tokens += tokenCounter.count(diffElement);
+        }
+        long stamp = descriptor.toWorkspaceFile()
+                               .map(IFile::getModificationStamp)
+                               .orElse(IResource.NULL_STAMP);
+        Instant cachedAt = Instant.now();
         return new CachedResource(
             descriptor,
             newContent,
-            Instant.now(),
-            version + 1,
-            newContent != null ? newContent.hashCode() : 0
+            cachedAt,
+            newVersion,
+            newContent != null ? newContent.hashCode() : 0,
+            tokens,
+            stamp,
+            renderXmlHeader(descriptor, newVersion, cachedAt),
+            new Deltas(base, List.copyOf(diffElements))
         );
     }
     
+    /**
+     * Returns the number of diffs sent on top of the base version, 0 unless in delta mode.
+     */
+    public int deltaCount() {
+        return deltas != null ? deltas.diffElements().size() : 0;
+    }
+    
+    /**
+     * Creates an updated version of this resource with new content, counting
+     * its tokens with the given counter.
+     */
+    public CachedResource withUpdatedContent(String newContent, TokenCounter tokenCounter) {
+        return create(descriptor, newContent, version + 1, tokenCounter);
+    }
+    
     /**
      * Checks if content has changed compared to provided content.
      */
@@ -58,30 +139,69 @@ public record CachedResource(
     }
     
     /**
-     * Estimates token count (rough: ~4 chars per token).
+     * Returns the token count, as counted when this resource was cached.
      */
     public int estimateTokens() {
-        return content != null ? content.length() / 4 : 0;
+        return tokenCount;
     }
     
     /**
      * Formats this resource as an XML element for the context block.
      */
     public String toXmlElement() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(String.format(
-            "<resource uri=\"%s\" type=\"%s\" name=\"%s\" version=\"%d\" cached=\"%s\">\n",
-            escapeXml(descriptor.uri().toString()),
-            descriptor.type(),
-            escapeXml(descriptor.displayName()),
-            version,
-            cachedAt
-        ));
-        sb.append(content);
-        sb.append("\n</resource>");
+        StringBuilder sb = new StringBuilder(xmlElementLength());
+        appendXmlElement(sb);
         return sb.toString();
     }
     
+    /**
+     * Appends the XML element of this resource, without rendering it to an
+     * intermediate String.
+     */
+    public void appendXmlElement(StringBuilder sb) {
+        if (deltas != null) {
+            deltas.base().appendXmlElement(sb);
+            for (String diffElement : deltas.diffElements()) {
+                sb.append('\n').append(diffElement);
+            }
+            return;
+        }
+        sb.append(xmlHeader);
+        sb.append(content);
+        sb.append(XML_FOOTER);
+    }
+    
+    /**
+     * Returns the length of the XML element, for sizing buffers.
+     */
+    public int xmlElementLength() {
+        if (deltas != null) {
+            return deltas.base().xmlElementLength() + deltas.diffElements().stream().mapToInt(element -> element.length() + 1).sum();
+        }
+        return xmlHeader.length() + String.valueOf(content).length() + XML_FOOTER.length();
+    }
+    
+    private static String renderDiffElement(ResourceDescriptor descriptor, int version, String diff) {
+        return new StringBuilder()
+            .append("<resource-diff uri=\"").append(escapeXml(descriptor.uri().toString()))
+            .append("\" version=\"").append(version)
+            .append("\">\n")
+            .append(diff)
+            .append("</resource-diff>")
+            .toString();
+    }
+    
+    private static String renderXmlHeader(ResourceDescriptor descriptor, int version, Instant cachedAt) {
+        return new StringBuilder()
+            .append("<resource uri=\"").append(escapeXml(descriptor.uri().toString()))
+            .append("\" type=\"").append(descriptor.type())
+            .append("\" name=\"").append(escapeXml(descriptor.displayName()))
+            .append("\" version=\"").append(version)
+            .append("\" cached=\"").append(cachedAt)
+            .append("\">\n")
+            .toString();
+    }
+    
     /**
      * Returns a short summary for display.
      */
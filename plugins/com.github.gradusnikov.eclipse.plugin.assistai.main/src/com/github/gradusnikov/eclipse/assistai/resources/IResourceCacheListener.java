@@ -1,5 +1,7 @@
 package com.github.gradusnikov.eclipse.assistai.resources;
 
+import java.util.List;
+
 /**
  * Listener for cache events (resources added/removed).
  */
@@ -11,4 +13,15 @@ public interface IResourceCacheListener {
      * @param event The cache event
      */
     void cacheChanged(ResourceCacheEvent event);
+    
+    /**
+     * Called with the events of one batch, e.g. the resources refreshed after
+     * workspace changes. By default each event is passed to
+     * {@link #cacheChanged(ResourceCacheEvent)}.
+     * 
+     * @param events The cache events, in order
+     */
+    default void cacheChanged(List<ResourceCacheEvent> events) {
+        events.forEach(this::cacheChanged);
+    }
 }
@@ -1,12 +1,24 @@
 package com.github.gradusnikov.eclipse.assistai.resources;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceChangeEvent;
@@ -16,8 +28,19 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.util.IPropertyChangeListener;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.preferences.PreferenceConstants;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounter;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -26,7 +49,14 @@ import jakarta.inject.Singleton;
 
 /**
  * Cache for resources accessed during conversation.
- * 
+ * <p>
+ * Writes are serialized on the cache monitor. Reads use an immutable snapshot
+ * of the cache published through a volatile field. A write only drops the
+ * snapshot; the first read after it builds the next one on the monitor, so a
+ * burst of writes costs one copy and reads between writes do not lock.
+ * Reads are recorded in a bounded,
+ * lossy buffer that the writer replays into the LRU order before evicting,
+ * so the recency order is approximate.
  */
 @Creatable
 @Singleton
@@ -38,25 +68,89 @@ public class ResourceCache implements IResourceChangeListener {
     /** Maximum total tokens across all cached resources */
     private static final int MAX_TOTAL_TOKENS = 100_000;
     
+    /** Delay collecting workspace changes into one refresh */
+    private static final long REFRESH_DELAY_MS = 300;
+    
+    /** Reads recorded for the LRU order between writes; further reads are not recorded */
+    private static final int READ_BUFFER_LIMIT = 256;
+    
+    /** In delta mode, resources of at least this many characters are updated with diffs */
+    private static final int DELTA_MIN_CHARS = 8_000;
+    
+    /** Diffs sent on top of a base version before the resource is sent in full again */
+    private static final int MAX_DELTAS = 5;
+    
     private final ILog logger;
     
-    // LinkedHashMap with access-order for LRU behavior
+    private final TokenCounterRegistry tokenCounters;
+    
+    private final int maxResources;
+    
+    private final int maxTotalTokens;
+    
+    // LinkedHashMap with access-order for LRU behavior; guarded by this, like all writer state
     private final Map<URI, CachedResource> resources = new LinkedHashMap<>(16, 0.75f, true);
     
     // Track workspace paths for change detection
     private final Map<IPath, URI> workspacePathIndex = new LinkedHashMap<>();
     
+    // Running sum of the token counts in resources, kept by store() and discard()
+    private int totalTokens;
+    
+    // State seen by readers; null after a write until the next read builds it
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    
+    // URIs read since they were last replayed into the LRU order
+    private final Queue<URI> recentReads = new ConcurrentLinkedQueue<>();
+    
+    private final AtomicInteger recentReadCount = new AtomicInteger();
+    
+    // Last assembled context block; dropped with the snapshot
+    private volatile RenderedBlock renderedBlock;
+    
+    // Send diffs instead of the full content of large changed resources
+    private volatile boolean deltaMode;
+    
+    private final IPropertyChangeListener preferenceListener = event -> {
+        if (PreferenceConstants.ASSISTAI_RESOURCE_DELTAS.equals(event.getProperty())) {
+            setDeltaMode(Activator.getDefault().getPreferenceStore().getBoolean(PreferenceConstants.ASSISTAI_RESOURCE_DELTAS));
+        }
+    };
+    
     // Listeners for cache change events
     private final ListenerList<IResourceCacheListener> cacheListeners = new ListenerList<>();
     
     private boolean listenerRegistered;
     
+    // Workspace paths of cached files changed since the last refresh
+    private final Set<IPath> pendingRefresh = ConcurrentHashMap.newKeySet();
+    
+    // Re-reads changed files off the workspace notification thread
+    private final Job refresher;
+    
     
     @Inject
-    public ResourceCache(ILog logger ) 
+    public ResourceCache(ILog logger, TokenCounterRegistry tokenCounters ) 
+    {
+        this( logger, tokenCounters, MAX_RESOURCES, MAX_TOTAL_TOKENS );
+    }
+    
+    /**
+     * Creates a cache with custom limits.
+     * 
+     * @param maxResources Maximum number of resources to cache
+     * @param maxTotalTokens Maximum total tokens across all cached resources
+     */
+    public ResourceCache(ILog logger, TokenCounterRegistry tokenCounters, int maxResources, int maxTotalTokens ) 
     {
         Objects.requireNonNull( logger );
+        Objects.requireNonNull( tokenCounters );
         this.logger = logger;
+        this.tokenCounters = tokenCounters;
+        this.maxResources = maxResources;
+        this.maxTotalTokens = maxTotalTokens;
+        this.refresher = Job.create("Refreshing AI assistant resources", this::refreshPending);
+        this.refresher.setSystem(true);
         logger.info("ResourceCache created with instance ID: " + System.identityHashCode(this));
     }
     
@@ -64,6 +158,19 @@ public class ResourceCache implements IResourceChangeListener {
     public void init() 
     {
         registerWorkspaceListener();
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        setDeltaMode(preferences.getBoolean(PreferenceConstants.ASSISTAI_RESOURCE_DELTAS));
+        preferences.addPropertyChangeListener(preferenceListener);
+    }
+    
+    /**
+     * Enables or disables delta mode. In delta mode a large resource that
+     * changes keeps its earlier version in the context and gets a diff per
+     * newer version, until {@link #MAX_DELTAS} diffs are collected and it is
+     * sent in full again.
+     */
+    public void setDeltaMode(boolean deltaMode) {
+        this.deltaMode = deltaMode;
     }
     
     /**
@@ -87,6 +194,9 @@ public class ResourceCache implements IResourceChangeListener {
     public void dispose() 
     {
         unregisterWorkspaceListener();
+        Activator.getDefault().getPreferenceStore().removePropertyChangeListener(preferenceListener);
+        refresher.cancel();
+        pendingRefresh.clear();
     }
     
     /**
@@ -118,18 +228,18 @@ public class ResourceCache implements IResourceChangeListener {
         
         URI uri = descriptor.uri();
         
-        // Check if we're updating an existing resource
-        CachedResource existing = resources.get(uri);
+        // Check if we're updating an existing resource; it is replaced, so it does not count against the limits
+        CachedResource existing = discard(uri);
         int newVersion = existing != null ? existing.version() + 1 : 1;
         
         // Create new cached resource
-        CachedResource cached = CachedResource.create(descriptor, content, newVersion);
+        CachedResource cached = nextVersion(existing, descriptor, content, newVersion);
         
         // Evict if necessary before adding
         evictIfNecessary(cached.estimateTokens());
         
         // Store in cache
-        resources.put(uri, cached);
+        store(uri, cached);
         
         // Index by workspace path for change detection
         if (descriptor.workspacePath() != null) 
@@ -145,6 +255,42 @@ public class ResourceCache implements IResourceChangeListener {
         return cached;
     }
     
+    /**
+     * Puts back a resource cached in an earlier session, keeping its version.
+     * Workspace files that no longer exist are skipped. The stored content is
+     * used right away; files whose modification stamp differs from the stored
+     * one are re-read by the background refresh.
+     * 
+     * @param tokenCount The stored token count, or 0 to count the content again
+     * @param modificationStamp The stored stamp of the workspace file
+     * @return The restored resource, or null if it could not be restored
+     */
+    public synchronized CachedResource restore(ResourceDescriptor descriptor, String content, int version, int tokenCount, long modificationStamp) {
+        if (descriptor == null || !descriptor.isCacheable() || resources.containsKey(descriptor.uri())) {
+            return null;
+        }
+        boolean stale = false;
+        if (descriptor.type() == ResourceDescriptor.ResourceType.WORKSPACE_FILE) {
+            var file = descriptor.toWorkspaceFile();
+            if (file.isEmpty() || !file.get().exists()) {
+                return null;
+            }
+            stale = modificationStamp == IResource.NULL_STAMP || file.get().getModificationStamp() != modificationStamp;
+        }
+        int tokens = tokenCount > 0 ? tokenCount : tokenCounters.forChatModel().count(content);
+        CachedResource cached = CachedResource.create(descriptor, content, version, tokens, modificationStamp);
+        evictIfNecessary(cached.estimateTokens());
+        store(descriptor.uri(), cached);
+        if (descriptor.workspacePath() != null) {
+            workspacePathIndex.put(descriptor.workspacePath(), descriptor.uri());
+            if (stale && pendingRefresh.add(descriptor.workspacePath())) {
+                refresher.schedule(REFRESH_DELAY_MS);
+            }
+        }
+        fireCacheEvent(new ResourceCacheEvent(this, ResourceCacheEvent.Type.RESTORED, cached));
+        return cached;
+    }
+    
     /**
      * Convenience method to cache a ResourceToolResult.
      */
@@ -158,22 +304,31 @@ public class ResourceCache implements IResourceChangeListener {
     /**
      * Gets a cached resource by URI.
      */
-    public synchronized Optional<CachedResource> get(URI uri) {
-        return Optional.ofNullable(resources.get(uri));
+    public Optional<CachedResource> get(URI uri) {
+        return get(snapshot(), uri);
     }
     
     /**
      * Gets a cached resource by workspace path.
      */
-    public synchronized Optional<CachedResource> getByWorkspacePath(IPath path) {
-        URI uri = workspacePathIndex.get(path);
-        return uri != null ? get(uri) : Optional.empty();
+    public Optional<CachedResource> getByWorkspacePath(IPath path) {
+        Snapshot current = snapshot();
+        URI uri = current.workspacePaths().get(path);
+        return uri != null ? get(current, uri) : Optional.empty();
+    }
+    
+    private Optional<CachedResource> get(Snapshot current, URI uri) {
+        CachedResource cached = current.resources().get(uri);
+        if (cached != null) {
+            recordRead(uri);
+        }
+        return Optional.ofNullable(cached);
     }
     
     /**
      * Gets a cached resource by IFile.
      */
-    public synchronized Optional<CachedResource> get(IFile file) {
+    public Optional<CachedResource> get(IFile file) {
         if (file == null) {
             return Optional.empty();
         }
@@ -183,15 +338,15 @@ public class ResourceCache implements IResourceChangeListener {
     /**
      * Checks if a resource is cached.
      */
-    public synchronized boolean contains(URI uri) {
-        return resources.containsKey(uri);
+    public boolean contains(URI uri) {
+        return snapshot().resources().containsKey(uri);
     }
     
     /**
      * Removes a resource from cache by URI.
      */
     public synchronized void remove(URI uri) {
-        CachedResource removed = resources.remove(uri);
+        CachedResource removed = discard(uri);
         if (removed != null) {
             if (removed.descriptor().workspacePath() != null) {
                 workspacePathIndex.remove(removed.descriptor().workspacePath());
@@ -209,7 +364,7 @@ public class ResourceCache implements IResourceChangeListener {
         URI uri = workspacePathIndex.remove(workspacePath);
         if (uri != null) 
         {
-            CachedResource removed = resources.remove(uri);
+            CachedResource removed = discard(uri);
             if (removed != null) {
                 fireCacheEvent(new ResourceCacheEvent(this, ResourceCacheEvent.Type.INVALIDATED, removed));
             }
@@ -224,6 +379,8 @@ public class ResourceCache implements IResourceChangeListener {
         int count = resources.size();
         resources.clear();
         workspacePathIndex.clear();
+        totalTokens = 0;
+        invalidateSnapshot();
         fireCacheEvent(new ResourceCacheEvent(this, ResourceCacheEvent.Type.CLEARED, null));
         logger.info("ResourceCache: Cleared " + count + " resources");
     }
@@ -231,52 +388,82 @@ public class ResourceCache implements IResourceChangeListener {
     /**
      * Returns the number of cached resources.
      */
-    public synchronized int size() {
-        return resources.size();
+    public int size() {
+        return snapshot().resources().size();
     }
     
     /**
      * Checks if the cache is empty.
      */
-    public synchronized boolean isEmpty() {
-        return resources.isEmpty();
+    public boolean isEmpty() {
+        return snapshot().resources().isEmpty();
     }
     
     /**
-     * Returns all cached resources (copy).
+     * Returns all cached resources (unmodifiable snapshot, least recently used first).
      */
-    public synchronized Map<URI, CachedResource> getAll() {
-        logger.info("ResourceCache.getAll() called on instance " + System.identityHashCode(this) + ", returning " + resources.size() + " resources");
-        return new LinkedHashMap<>(resources);
+    public Map<URI, CachedResource> getAll() {
+        Map<URI, CachedResource> all = snapshot().resources();
+        logger.info("ResourceCache.getAll() called on instance " + System.identityHashCode(this) + ", returning " + all.size() + " resources");
+        return all;
     }
     
     /**
-     * Estimates total token count across all cached resources.
+     * Returns the total token count across all cached resources, kept up to
+     * date as resources are added, replaced and removed.
      */
-    public synchronized int estimateTotalTokens() {
-        return resources.values().stream()
-                       .mapToInt(CachedResource::estimateTokens)
-                       .sum();
+    public int estimateTotalTokens() {
+        return snapshot().totalTokens();
     }
     
     /**
      * Generates the &lt;resources&gt; block for LLM context injection.
      * This should be injected at the beginning of the system prompt.
      */
-    public synchronized String toContextBlock() {
-        if (resources.isEmpty()) {
+    public String toContextBlock() {
+        return renderContextBlock(List.copyOf(snapshot().resources().values()));
+    }
+    
+    /**
+     * Returns the &lt;resources&gt; block for the given cached resources, like
+     * {@link #toContextBlock(Collection)}. The block is memoized, so requests
+     * selecting the same resources reuse it until the next cache change.
+     */
+    public String renderContextBlock(List<CachedResource> selected) {
+        RenderedBlock memo = renderedBlock;
+        if (memo != null && memo.isFor(selected)) {
+            return memo.block();
+        }
+        String block = toContextBlock(selected);
+        renderedBlock = new RenderedBlock(List.copyOf(selected), block);
+        return block;
+    }
+    
+    /**
+     * Generates the &lt;resources&gt; block for the given subset of cached resources,
+     * e.g. the resources selected to fit a model's context window.
+     */
+    public static String toContextBlock(Collection<CachedResource> selected) {
+        if (selected.isEmpty()) {
             return "";
         }
         
-        StringBuilder sb = new StringBuilder();
+        int totalTokens = 0;
+        int capacity = 512;
+        for (CachedResource resource : selected) {
+            totalTokens += resource.estimateTokens();
+            capacity += resource.xmlElementLength() + 2;
+        }
+        
+        StringBuilder sb = new StringBuilder(capacity);
         sb.append("<resources>\n");
         sb.append("<!-- Currently cached resources. These are the CURRENT versions of files/data you have accessed. -->\n");
         sb.append("<!-- When you call tools that read these resources, the cache will be updated automatically. -->\n");
-        sb.append("<!-- Total: ").append(resources.size()).append(" resources, ~")
-          .append(estimateTotalTokens()).append(" tokens -->\n\n");
+        sb.append("<!-- Total: ").append(selected.size()).append(" resources, ~")
+          .append(totalTokens).append(" tokens -->\n\n");
         
-        for (CachedResource resource : resources.values()) {
-            sb.append(resource.toXmlElement());
+        for (CachedResource resource : selected) {
+            resource.appendXmlElement(sb);
             sb.append("\n\n");
         }
         
@@ -287,12 +474,13 @@ public class ResourceCache implements IResourceChangeListener {
     /**
      * Generates a short summary of cached resources (for UI display).
      */
-    public synchronized String toSummary() {
-        if (resources.isEmpty()) {
+    public String toSummary() {
+        Map<URI, CachedResource> all = snapshot().resources();
+        if (all.isEmpty()) {
             return "No resources cached";
         }
         
-        return resources.values().stream()
+        return all.values().stream()
             .map(CachedResource::toSummary)
             .collect(Collectors.joining("\nâ¢ ", "â¢ ", ""));
     }
@@ -300,10 +488,95 @@ public class ResourceCache implements IResourceChangeListener {
     /**
      * Gets cache statistics.
      */
-    public synchronized String getStats() {
+    public String getStats() {
+        Snapshot current = snapshot();
         return String.format("Resources: %d/%d, Tokens: ~%d/%d", 
-            resources.size(), MAX_RESOURCES,
-            estimateTotalTokens(), MAX_TOTAL_TOKENS);
+            current.resources().size(), maxResources,
+            current.totalTokens(), maxTotalTokens);
+    }
+    
+    // --- Snapshot ---
+    
+    /**
+     * Immutable view of the cache for lock-free reads.
+     */
+    private record Snapshot(Map<URI, CachedResource> resources, Map<IPath, URI> workspacePaths, int totalTokens) {
+        
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), 0);
+    }
+    
+    /**
+     * A context block with the resources it was rendered from.
+     */
+    private record RenderedBlock(List<CachedResource> resources, String block) {
+        
+        /**
+         * Resources are immutable per version, so the same instances render the same block.
+         */
+        boolean isFor(List<CachedResource> selected) {
+            if (resources.size() != selected.size()) {
+                return false;
+            }
+            for (int i = 0; i < resources.size(); i++) {
+                if (resources.get(i) != selected.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Drops the snapshot and the memoized context block after a change of the
+     * writer state. Events fired after the write see the change, since their
+     * reads build the snapshot from the writer state.
+     */
+    private void invalidateSnapshot() {
+        snapshot = null;
+        renderedBlock = null;
+    }
+    
+    /**
+     * Returns the snapshot, building it on the monitor if a write dropped it.
+     * Between writes this is a volatile read, no locking.
+     */
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null) {
+                current = new Snapshot(Collections.unmodifiableMap(new LinkedHashMap<>(resources)),
+                                       Map.copyOf(workspacePathIndex),
+                                       totalTokens);
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+    
+    /**
+     * Records a read for the LRU order. Once the buffer is full further reads
+     * are dropped until the writer replays it.
+     */
+    private void recordRead(URI uri) {
+        if (recentReadCount.get() < READ_BUFFER_LIMIT) {
+            recentReadCount.incrementAndGet();
+            recentReads.offer(uri);
+        }
+    }
+    
+    /**
+     * Replays the recorded reads into the access-ordered map. Called by the writer.
+     */
+    private void replayRecentReads() {
+        URI uri;
+        while ((uri = recentReads.poll()) != null) {
+            recentReadCount.decrementAndGet();
+            resources.get(uri);
+        }
     }
     
     // --- Eviction ---
@@ -315,75 +588,106 @@ public class ResourceCache implements IResourceChangeListener {
     private boolean evictIfNecessary(int newResourceTokens) {
         // If the new resource alone exceeds the limit, don't evict everything
         // Just log a warning and allow it (but don't evict other resources for it)
-        if (newResourceTokens > MAX_TOTAL_TOKENS) {
-            logger.warn("ResourceCache: New resource exceeds token limit (" + newResourceTokens + " > " + MAX_TOTAL_TOKENS + "), adding anyway without evicting others");
+        if (newResourceTokens > maxTotalTokens) {
+            logger.warn("ResourceCache: New resource exceeds token limit (" + newResourceTokens + " > " + maxTotalTokens + "), adding anyway without evicting others");
             return true;
         }
         
-        // Evict by count
-        while (resources.size() >= MAX_RESOURCES) {
-            evictOldest();
-        }
-        
-        // Evict by total tokens - but only if adding won't still exceed the limit
-        while (estimateTotalTokens() + newResourceTokens > MAX_TOTAL_TOKENS && !resources.isEmpty()) {
-            evictOldest();
-        }
-        
-        return true;
-    }
-    
-    private void evictOldest() {
+        // Evict by count and by total tokens in one pass over the LRU end;
         // LinkedHashMap with access-order: first entry is LRU
+        replayRecentReads();
         var iterator = resources.entrySet().iterator();
-        if (iterator.hasNext()) {
+        int evictedCount = 0;
+        while (iterator.hasNext() && (resources.size() >= maxResources || totalTokens + newResourceTokens > maxTotalTokens)) {
             var entry = iterator.next();
             iterator.remove();
             
             CachedResource evicted = entry.getValue();
+            totalTokens -= evicted.estimateTokens();
+            invalidateSnapshot();
             if (evicted.descriptor().workspacePath() != null) {
                 workspacePathIndex.remove(evicted.descriptor().workspacePath());
             }
-            
-            logger.info("ResourceCache: Evicted LRU resource " + entry.getKey());
+            evictedCount++;
+        }
+        if (evictedCount > 0) {
+            logger.info("ResourceCache: Evicted " + evictedCount + " LRU resources");
         }
+        
+        return true;
+    }
+    
+    /**
+     * Creates the cached resource for new content, as a diff on top of the
+     * previous version if delta mode applies.
+     * 
+     * @param existing The previous version, or null
+     */
+    private CachedResource nextVersion(CachedResource existing, ResourceDescriptor descriptor, String content, int newVersion) {
+        TokenCounter tokenCounter = tokenCounters.forChatModel();
+        if (deltaMode && existing != null && existing.content() != null && content != null
+                && existing.content().length() >= DELTA_MIN_CHARS
+                && existing.deltaCount() < MAX_DELTAS) {
+            CachedResource delta = existing.withDelta(content, newVersion, tokenCounter);
+            // A diff rewriting most of the file is not worth sending
+            if (delta.xmlElementLength() - existing.xmlElementLength() < content.length() / 2) {
+                return delta;
+            }
+        }
+        return CachedResource.create(descriptor, content, newVersion, tokenCounter);
+    }
+    
+    /**
+     * Stores a resource, replacing the entry with the same URI, and updates the token total.
+     * Every write goes through store(), discard(), clear() or eviction, which drop the snapshot.
+     */
+    private void store(URI uri, CachedResource cached) {
+        CachedResource previous = resources.put(uri, cached);
+        totalTokens += cached.estimateTokens() - (previous != null ? previous.estimateTokens() : 0);
+        invalidateSnapshot();
+    }
+    
+    /**
+     * Removes a resource and updates the token total.
+     * 
+     * @return The removed resource, or null if it was not cached
+     */
+    private CachedResource discard(URI uri) {
+        CachedResource removed = resources.remove(uri);
+        if (removed != null) {
+            totalTokens -= removed.estimateTokens();
+            invalidateSnapshot();
+        }
+        return removed;
     }
     
     /**
      * Called when a resource content has changed.
-     * Updates the cached resource with new content if it exists in the cache.
+     * Schedules a refresh of the cached resource if it exists in the cache.
      * 
      * @param path The workspace path of the changed resource
      */
     public void resourceChanged( IPath path )
     {
-        if ( workspacePathIndex.containsKey( path ) )
-        {
-            // Try to get the IFile from the workspace
-            IResource resource = ResourcesPlugin.getWorkspace().getRoot().findMember(path);
-            if (resource instanceof IFile) {
-                updateCachedResource((IFile) resource, path);
-            } else {
-                // Can't get the file, fall back to invalidation
-                invalidate(path);
-            }
-        }
+        scheduleRefresh( path );
     }
 
     /**
      * Called when a resource has been removed/deleted.
-     * Removes the resource from the cache.
+     * Schedules removal of the resource from the cache.
      * 
      * @param path The workspace path of the removed resource
      */
     public void resourceRemoved( IPath path )
     {
-        if ( workspacePathIndex.containsKey( path ) )
-        {
-            invalidate(path);
-        }
+        scheduleRefresh( path );
     }
     
+    /**
+     * Collects changed and removed cached files. The files are re-read by a
+     * background job once the changes settle, so a build or a checkout
+     * touching many files does not stall the workspace notification.
+     */
     @Override
     public void resourceChanged( IResourceChangeEvent event )
     {
@@ -403,18 +707,16 @@ public class ResourceCache implements IResourceChangeListener {
                         return true; // Continue visiting children
                     }
                     
-                    IPath path = resource.getFullPath();
-
                     switch (delta.getKind()) {
                         case IResourceDelta.CHANGED:
-                            // Content changed - update cache with new content
+                            // Content changed - refresh cache with new content
                             if ((delta.getFlags() & IResourceDelta.CONTENT) != 0) {
-                                updateCachedResource((IFile) resource, path);
+                                scheduleRefresh(resource.getFullPath());
                             }
                             break;
                         case IResourceDelta.REMOVED:
-                            // File deleted - remove from cache
-                            invalidate( path );
+                            // File deleted - the refresh removes it from cache
+                            scheduleRefresh(resource.getFullPath());
                             break;
                         default:
                             // ADDED - no action needed (not in cache yet)
@@ -430,65 +732,117 @@ public class ResourceCache implements IResourceChangeListener {
         }
     }
     
+    private void scheduleRefresh(IPath path) {
+        if (isCached(path) && pendingRefresh.add(path)) {
+            refresher.schedule(REFRESH_DELAY_MS);
+        }
+    }
+    
+    private boolean isCached(IPath path) {
+        return snapshot().workspacePaths().containsKey(path);
+    }
+    
     /**
-     * Updates a cached resource with new content from the file.
-     * If the file is in the cache, reads the new content and updates the cache entry.
-     * 
-     * @param file The changed file
-     * @param path The workspace path of the file
+     * Re-reads the pending files without holding the cache lock, then applies
+     * the new contents at once and notifies listeners with one batch.
      */
-    private synchronized void updateCachedResource(IFile file, IPath path) {
-        URI uri = workspacePathIndex.get(path);
-        if (uri == null) {
-            // Not in cache, nothing to update
-            return;
-        }
+    private IStatus refreshPending(IProgressMonitor monitor) {
+        List<IPath> paths = new ArrayList<>(pendingRefresh);
+        pendingRefresh.removeAll(paths);
         
-        CachedResource existing = resources.get(uri);
-        if (existing == null) {
-            // Not in cache, nothing to update
-            return;
+        // Read new contents; a null content means the file is gone
+        Map<IPath, String> contents = new LinkedHashMap<>();
+        for (IPath path : paths) {
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            if (!isCached(path)) {
+                continue;
+            }
+            IResource resource = ResourcesPlugin.getWorkspace().getRoot().findMember(path);
+            if (resource instanceof IFile file && file.exists()) {
+                try {
+                    contents.put(path, readFileContent(file));
+                } catch (Exception e) {
+                    logger.error("ResourceCache: Failed to update cached resource " + path + ", invalidating instead", e);
+                    contents.put(path, null);
+                }
+            } else {
+                contents.put(path, null);
+            }
         }
         
-        try {
-            // Read new content from file
-            String newContent = readFileContent(file);
+        fireCacheEvents(applyRefresh(contents));
+        return Status.OK_STATUS;
+    }
+    
+    /**
+     * Updates cached resources with the new contents read from their files,
+     * and removes the ones whose files are gone.
+     * 
+     * @param contents New content by workspace path, null for removed files
+     * @return The events to fire
+     */
+    private synchronized List<ResourceCacheEvent> applyRefresh(Map<IPath, String> contents) {
+        List<ResourceCacheEvent> events = new ArrayList<>();
+        for (var entry : contents.entrySet()) {
+            IPath path = entry.getKey();
+            String newContent = entry.getValue();
+            URI uri = workspacePathIndex.get(path);
+            if (uri == null) {
+                // Evicted or removed meanwhile, nothing to update
+                continue;
+            }
             
-            // Create updated cached resource with incremented version
-            ResourceDescriptor descriptor = existing.descriptor();
-            int newVersion = existing.version() + 1;
-            CachedResource updated = CachedResource.create(descriptor, newContent, newVersion);
+            if (newContent == null) {
+                workspacePathIndex.remove(path);
+                CachedResource removed = discard(uri);
+                if (removed != null) {
+                    events.add(new ResourceCacheEvent(this, ResourceCacheEvent.Type.INVALIDATED, removed));
+                }
+                logger.info("ResourceCache: Invalidated " + path);
+                continue;
+            }
             
-            // Replace in cache
-            resources.put(uri, updated);
+            CachedResource existing = resources.get(uri);
+            if (existing == null) {
+                continue;
+            }
+            if (!existing.hasContentChanged(newContent)) {
+                // e.g. a restored resource whose file was touched; remember the stamp so it is not re-read again
+                long stamp = existing.descriptor().toWorkspaceFile().map(IFile::getModificationStamp).orElse(IResource.NULL_STAMP);
+                if (stamp != existing.modificationStamp() && existing.deltas() == null) {
+                    store(uri, CachedResource.create(existing.descriptor(), existing.content(), existing.version(), existing.tokenCount(), stamp));
+                }
+                continue;
+            }
             
-            // Fire update event
-            fireCacheEvent(new ResourceCacheEvent(this, ResourceCacheEvent.Type.UPDATED, updated));
+            // Create updated cached resource with incremented version
+            int newVersion = existing.version() + 1;
+            CachedResource updated = nextVersion(existing, existing.descriptor(), newContent, newVersion);
+            store(uri, updated);
+            events.add(new ResourceCacheEvent(this, ResourceCacheEvent.Type.UPDATED, updated));
             
             logger.info("ResourceCache: Updated " + path + " (v" + newVersion + ", ~" + updated.estimateTokens() + " tokens)");
-            
-        } catch (Exception e) {
-            logger.error("ResourceCache: Failed to update cached resource " + path + ", invalidating instead", e);
-            // Fall back to invalidation if we can't read the file
-            invalidate(path);
         }
+        return events;
     }
     
     /**
-     * Reads the content of a file.
+     * Reads the content of a file, from the editor's buffer if the file is
+     * open, otherwise from disk. Line delimiters are normalized to '\n'.
      */
     private String readFileContent(IFile file) throws CoreException, java.io.IOException {
-        try (java.io.InputStream is = file.getContents();
-             java.io.InputStreamReader reader = new java.io.InputStreamReader(is, file.getCharset());
-             java.io.BufferedReader bufferedReader = new java.io.BufferedReader(reader)) {
-            
-            StringBuilder content = new StringBuilder();
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                content.append(line).append("\n");
+        String text;
+        ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+        if (buffer != null) {
+            text = buffer.getDocument().get();
+        } else {
+            try (java.io.InputStream is = file.getContents()) {
+                text = new String(is.readAllBytes(), file.getCharset());
             }
-            return content.toString();
         }
+        return text.lines().map(line -> line + "\n").collect(Collectors.joining());
     }
     
     /**
@@ -503,6 +857,22 @@ public class ResourceCache implements IResourceChangeListener {
             }
         }
     }
+    
+    /**
+     * Fires a batch of cache events to all registered listeners.
+     */
+    private void fireCacheEvents(List<ResourceCacheEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (IResourceCacheListener listener : cacheListeners) {
+            try {
+                listener.cacheChanged(events);
+            } catch (Exception e) {
+                logger.error("Error notifying cache listener", e);
+            }
+        }
+    }
 
     
     public void addCacheListener(IResourceCacheListener listener) {
@@ -14,7 +14,8 @@ public class ResourceCacheEvent extends EventObject {
         UPDATED,
         REMOVED,
         INVALIDATED,
-        CLEARED
+        CLEARED,
+        RESTORED
     }
     
     private final Type type;
@@ -0,0 +1,91 @@
+package com.github.gradusnikov.eclipse.assistai.resources;
+
+import org.eclipse.compare.rangedifferencer.IRangeComparator;
+import org.eclipse.compare.rangedifferencer.RangeDifference;
+import org.eclipse.compare.rangedifferencer.RangeDifferencer;
+
+/**
+ * Line-based unified diff of two texts, computed with the Eclipse compare
+ * {@link RangeDifferencer}.
+ */
+public final class UnifiedDiff {
+
+    private UnifiedDiff() {
+    }
+
+    /**
+     * Returns the hunks turning the old text into the new one, without file
+     * headers. Returns an empty string if the texts have the same lines.
+     *
+     * @param oldText The previous content
+     * @param newText The new content
+     * @param contextLines Unchanged lines shown around each change
+     */
+    public static String diff(String oldText, String newText, int contextLines) {
+        String[] a = lines(oldText);
+        String[] b = lines(newText);
+        RangeDifference[] differences = RangeDifferencer.findDifferences(new LineComparator(a), new LineComparator(b));
+
+        StringBuilder sb = new StringBuilder();
+        int first = 0;
+        while (first < differences.length) {
+            // Changes closer than twice the context share one hunk
+            int last = first;
+            while (last + 1 < differences.length
+                    && differences[last + 1].leftStart() - differences[last].leftEnd() <= 2 * contextLines) {
+                last++;
+            }
+            int aStart = Math.max(0, differences[first].leftStart() - contextLines);
+            int aEnd = Math.min(a.length, differences[last].leftEnd() + contextLines);
+            int bStart = Math.max(0, differences[first].rightStart() - contextLines);
+            int bEnd = Math.min(b.length, differences[last].rightEnd() + contextLines);
+            sb.append("@@ -").append(aStart + 1).append(',').append(aEnd - aStart)
+              .append(" +").append(bStart + 1).append(',').append(bEnd - bStart).append(" @@\n");
+
+            int ai = aStart;
+            for (int k = first; k <= last; k++) {
+                RangeDifference difference = differences[k];
+                for (; ai < difference.leftStart(); ai++) {
+                    sb.append(' ').append(a[ai]).append('\n');
+                }
+                for (int i = difference.leftStart(); i < difference.leftEnd(); i++) {
+                    sb.append('-').append(a[i]).append('\n');
+                }
+                for (int i = difference.rightStart(); i < difference.rightEnd(); i++) {
+                    sb.append('+').append(b[i]).append('\n');
+                }
+                ai = difference.leftEnd();
+            }
+            for (; ai < aEnd; ai++) {
+                sb.append(' ').append(a[ai]).append('\n');
+            }
+            first = last + 1;
+        }
+        return sb.toString();
+    }
+
+    private static String[] lines(String text) {
+        return text == null ? new String[0] : text.lines().toArray(String[]::new);
+    }
+
+    /**
+     * Compares texts line by line.
+     */
+    private record LineComparator(String[] lines) implements IRangeComparator {
+
+        @Override
+        public int getRangeCount() {
+            return lines.length;
+        }
+
+        @Override
+        public boolean rangesEqual(int thisIndex, IRangeComparator other, int otherIndex) {
+            return other instanceof LineComparator comparator && lines[thisIndex].equals(comparator.lines[otherIndex]);
+        }
+
+        @Override
+        public boolean skipRangeComparison(int length, int maxLength, IRangeComparator other) {
+            return false;
+        }
+    }
+}
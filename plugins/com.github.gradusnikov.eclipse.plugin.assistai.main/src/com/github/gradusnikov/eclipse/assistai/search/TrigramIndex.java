@@ -0,0 +1,512 @@
+package com.github.gradusnikov.eclipse.assistai.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index from trigrams to document ids.
+ * <p>
+ * Trigrams are hashed into {@link #BUCKETS} buckets. The postings of all
+ * documents live in a memory-mapped segment file, so they do not take heap.
+ * Documents changed since the segment was written are kept in a small
+ * in-heap overlay, and their postings in the segment are ignored, until
+ * {@link #compact(Path)} merges the overlay into a new segment.
+ * <p>
+ * A query returns the documents containing all buckets of the query text.
+ * Hash collisions only add false positives, so callers verify the candidates.
+ */
+public class TrigramIndex
+{
+    private static final int  BUCKET_BITS = 20;
+
+    static final int          BUCKETS     = 1 << BUCKET_BITS;
+
+    private static final int  MAGIC       = 0x41495449;
+
+    private static final int  VERSION     = 1;
+
+    private static final int  HEADER_INTS = 3;
+
+    private Segment           base        = Segment.EMPTY;
+
+    /** Sorted buckets of the documents changed since the segment was written */
+    private final Map<Integer, int[]> overlay = new HashMap<>();
+
+    /** Documents whose postings in the segment are outdated */
+    private BitSet            stale       = new BitSet();
+
+    /** Documents changed while a compaction runs, null otherwise */
+    private BitSet            changedDuringCompaction;
+
+    /**
+     * Returns the sorted, distinct buckets of all trigrams of the text.
+     */
+    public static int[] buckets( CharSequence text )
+    {
+        int count = text.length() - 2;
+        if ( count <= 0 )
+        {
+            return new int[0];
+        }
+        int[] buckets = new int[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            long trigram = ( (long) text.charAt( i ) << 32 ) | ( (long) text.charAt( i + 1 ) << 16 ) | text.charAt( i + 2 );
+            buckets[i] = (int) ( ( trigram * 0x9E3779B97F4A7C15L ) >>> ( 64 - BUCKET_BITS ) );
+        }
+        Arrays.sort( buckets );
+        int distinct = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( i == 0 || buckets[i] != buckets[i - 1] )
+            {
+                buckets[distinct++] = buckets[i];
+            }
+        }
+        return Arrays.copyOf( buckets, distinct );
+    }
+
+    /**
+     * Returns literal strings that every match of the regular expression
+     * contains. Only literals outside groups, classes and quantified atoms are
+     * collected; an expression with alternatives or inline flags yields none.
+     *
+     * @return the literals of at least three characters, possibly empty
+     */
+    public static List<String> literals( String regex )
+    {
+        List<String> literals = new ArrayList<>();
+        if ( regex.indexOf( '|' ) >= 0 || regex.contains( "(?" ) )
+        {
+            return literals;
+        }
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for ( int i = 0; i < regex.length(); i++ )
+        {
+            char c = regex.charAt( i );
+            if ( c == '\\' && i + 1 < regex.length() )
+            {
+                char next = regex.charAt( ++i );
+                if ( next == 'Q' )
+                {
+                    int end = regex.indexOf( "\\E", i + 1 );
+                    String quoted = regex.substring( i + 1, end < 0 ? regex.length() : end );
+                    if ( depth == 0 )
+                    {
+                        run.append( quoted );
+                    }
+                    i = end < 0 ? regex.length() : end + 1;
+                }
+                else if ( "dDwWsShHvVRXbBAzZG".indexOf( next ) >= 0 )
+                {
+                    // a predefined character class or a boundary
+                    flush( run, literals );
+                }
+                else if ( Character.isLetterOrDigit( next ) )
+                {
+                    // an escaped character or a back reference, not worth decoding
+                    return new ArrayList<>();
+                }
+                else if ( depth == 0 )
+                {
+                    run.append( next );
+                }
+            }
+            else if ( c == '[' )
+            {
+                flush( run, literals );
+                i = classEnd( regex, i );
+            }
+            else if ( c == '(' )
+            {
+                flush( run, literals );
+                depth++;
+            }
+            else if ( c == ')' )
+            {
+                depth--;
+            }
+            else if ( depth > 0 )
+            {
+                continue;
+            }
+            else if ( c == '*' || c == '?' || c == '{' )
+            {
+                // the preceding character is optional
+                if ( run.length() > 0 )
+                {
+                    run.setLength( run.length() - 1 );
+                }
+                flush( run, literals );
+                if ( c == '{' )
+                {
+                    int end = regex.indexOf( '}', i );
+                    i = end < 0 ? regex.length() : end;
+                }
+            }
+            else if ( c == '+' || c == '.' || c == '^' || c == '$' )
+            {
+                flush( run, literals );
+            }
+            else
+            {
+                run.append( c );
+            }
+        }
+        flush( run, literals );
+        return literals;
+    }
+
+    private static void flush( StringBuilder run, List<String> literals )
+    {
+        if ( run.length() >= 3 )
+        {
+            literals.add( run.toString() );
+        }
+        run.setLength( 0 );
+    }
+
+    private static int classEnd( String regex, int start )
+    {
+        int i = start + 1;
+        if ( i < regex.length() && regex.charAt( i ) == '^' )
+        {
+            i++;
+        }
+        if ( i < regex.length() && regex.charAt( i ) == ']' )
+        {
+            i++;
+        }
+        for ( ; i < regex.length(); i++ )
+        {
+            char c = regex.charAt( i );
+            if ( c == '\\' )
+            {
+                i++;
+            }
+            else if ( c == ']' )
+            {
+                return i;
+            }
+        }
+        return regex.length();
+    }
+
+    /**
+     * Opens the index on a segment written by {@link #compact(Path)}.
+     */
+    public synchronized void open( Path segmentFile ) throws IOException
+    {
+        base = Segment.open( segmentFile );
+        overlay.clear();
+        stale = new BitSet();
+    }
+
+    /**
+     * Removes all documents. The open segment file is left untouched.
+     */
+    public synchronized void clear()
+    {
+        base = Segment.EMPTY;
+        overlay.clear();
+        stale = new BitSet();
+    }
+
+    /**
+     * Indexes a document, replacing its earlier postings.
+     *
+     * @param id the document id
+     * @param buckets the document buckets, see {@link #buckets(CharSequence)}
+     */
+    public synchronized void put( int id, int[] buckets )
+    {
+        overlay.put( id, buckets );
+        markChanged( id );
+    }
+
+    /**
+     * Removes a document.
+     */
+    public synchronized void remove( int id )
+    {
+        overlay.remove( id );
+        markChanged( id );
+    }
+
+    private void markChanged( int id )
+    {
+        stale.set( id );
+        if ( changedDuringCompaction != null )
+        {
+            changedDuringCompaction.set( id );
+        }
+    }
+
+    /**
+     * Returns the number of documents waiting in the in-heap overlay.
+     */
+    public synchronized int overlaySize()
+    {
+        return overlay.size();
+    }
+
+    /**
+     * Returns the ids of the documents that may contain the text, ascending,
+     * or null if the text is too short to use the index.
+     */
+    public synchronized int[] candidates( CharSequence text )
+    {
+        int[] query = buckets( text );
+        if ( query.length == 0 )
+        {
+            return null;
+        }
+        // intersect the shortest posting lists first
+        Integer[] order = Arrays.stream( query ).boxed().toArray( Integer[]::new );
+        Arrays.sort( order, ( a, b ) -> Integer.compare( base.length( a ), base.length( b ) ) );
+        int[] result = base.postings( order[0] );
+        for ( int i = 1; i < order.length && result.length > 0; i++ )
+        {
+            result = base.intersect( result, order[i] );
+        }
+
+        List<Integer> matches = new ArrayList<>();
+        for ( int id : result )
+        {
+            if ( !stale.get( id ) )
+            {
+                matches.add( id );
+            }
+        }
+        overlay.forEach( ( id, buckets ) -> {
+            if ( containsAll( buckets, query ) )
+            {
+                matches.add( id );
+            }
+        } );
+        return matches.stream().mapToInt( Integer::intValue ).sorted().toArray();
+    }
+
+    private static boolean containsAll( int[] sorted, int[] query )
+    {
+        for ( int bucket : query )
+        {
+            if ( Arrays.binarySearch( sorted, bucket ) < 0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the segment and the overlay into a new segment file and opens
+     * it. Documents may be changed while the file is written; they stay in
+     * the overlay.
+     *
+     * @param target the new segment file, must differ from the open one
+     */
+    public void compact( Path target ) throws IOException
+    {
+        Segment from;
+        BitSet staleSnapshot;
+        Map<Integer, int[]> overlaySnapshot;
+        synchronized ( this )
+        {
+            if ( changedDuringCompaction != null )
+            {
+                throw new IllegalStateException( "Compaction already running" );
+            }
+            from = base;
+            staleSnapshot = (BitSet) stale.clone();
+            overlaySnapshot = new HashMap<>( overlay );
+            changedDuringCompaction = new BitSet();
+        }
+        try
+        {
+            Segment written = Segment.write( target, from, staleSnapshot, overlaySnapshot );
+            synchronized ( this )
+            {
+                base = written;
+                BitSet changed = changedDuringCompaction;
+                overlay.keySet().removeIf( id -> !changed.get( id ) );
+                stale = (BitSet) changed.clone();
+            }
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                changedDuringCompaction = null;
+            }
+        }
+    }
+
+    /**
+     * A read-only, memory-mapped segment: a header, the start offset of every
+     * bucket's postings and the postings, ascending per bucket.
+     */
+    private record Segment( IntBuffer data )
+    {
+        static final Segment EMPTY = new Segment( null );
+
+        static Segment open( Path file ) throws IOException
+        {
+            try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+            {
+                IntBuffer data = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ).asIntBuffer();
+                if ( data.limit() < HEADER_INTS + BUCKETS + 1 || data.get( 0 ) != MAGIC || data.get( 1 ) != VERSION
+                        || data.get( 2 ) != BUCKETS )
+                {
+                    throw new IOException( "Not a search index segment: " + file );
+                }
+                return new Segment( data );
+            }
+        }
+
+        int start( int bucket )
+        {
+            return data == null ? 0 : data.get( HEADER_INTS + bucket );
+        }
+
+        int end( int bucket )
+        {
+            return data == null ? 0 : data.get( HEADER_INTS + bucket + 1 );
+        }
+
+        int length( int bucket )
+        {
+            return end( bucket ) - start( bucket );
+        }
+
+        int posting( int index )
+        {
+            return data.get( HEADER_INTS + BUCKETS + 1 + index );
+        }
+
+        int[] postings( int bucket )
+        {
+            int[] postings = new int[length( bucket )];
+            for ( int i = 0; i < postings.length; i++ )
+            {
+                postings[i] = posting( start( bucket ) + i );
+            }
+            return postings;
+        }
+
+        int[] intersect( int[] ids, int bucket )
+        {
+            int[] result = new int[ids.length];
+            int count = 0;
+            int j = start( bucket );
+            int end = end( bucket );
+            for ( int i = 0; i < ids.length && j < end; )
+            {
+                int posting = posting( j );
+                if ( ids[i] == posting )
+                {
+                    result[count++] = ids[i++];
+                    j++;
+                }
+                else if ( ids[i] < posting )
+                {
+                    i++;
+                }
+                else
+                {
+                    j++;
+                }
+            }
+            return Arrays.copyOf( result, count );
+        }
+
+        static Segment write( Path target, Segment from, BitSet stale, Map<Integer, int[]> overlay ) throws IOException
+        {
+            // counting sort of the overlay postings by bucket, ids ascending within a bucket
+            int[] ranges = new int[BUCKETS + 1];
+            overlay.values().forEach( buckets -> {
+                for ( int bucket : buckets )
+                {
+                    ranges[bucket + 1]++;
+                }
+            } );
+            for ( int b = 0; b < BUCKETS; b++ )
+            {
+                ranges[b + 1] += ranges[b];
+            }
+            int[] ids = new int[ranges[BUCKETS]];
+            int[] fill = ranges.clone();
+            overlay.keySet().stream().sorted().forEach( id -> {
+                for ( int bucket : overlay.get( id ) )
+                {
+                    ids[fill[bucket]++] = id;
+                }
+            } );
+
+            // merge with the postings of the current segment, without the stale documents
+            int[] offsets = new int[BUCKETS + 1];
+            Path postingsFile = target.resolveSibling( target.getFileName() + ".postings" );
+            try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( postingsFile ) ) ) )
+            {
+                int position = 0;
+                for ( int b = 0; b < BUCKETS; b++ )
+                {
+                    offsets[b] = position;
+                    int i = from.start( b );
+                    int iEnd = from.end( b );
+                    int j = ranges[b];
+                    int jEnd = ranges[b + 1];
+                    while ( i < iEnd || j < jEnd )
+                    {
+                        int next;
+                        if ( j >= jEnd || ( i < iEnd && from.posting( i ) < ids[j] ) )
+                        {
+                            next = from.posting( i++ );
+                            if ( stale.get( next ) )
+                            {
+                                continue;
+                            }
+                        }
+                        else
+                        {
+                            next = ids[j++];
+                        }
+                        out.writeInt( next );
+                        position++;
+                    }
+                }
+                offsets[BUCKETS] = position;
+            }
+
+            try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( target ) ) ) )
+            {
+                out.writeInt( MAGIC );
+                out.writeInt( VERSION );
+                out.writeInt( BUCKETS );
+                for ( int offset : offsets )
+                {
+                    out.writeInt( offset );
+                }
+                Files.copy( postingsFile, out );
+            }
+            finally
+            {
+                Files.deleteIfExists( postingsFile );
+            }
+            return open( target );
+        }
+    }
+}
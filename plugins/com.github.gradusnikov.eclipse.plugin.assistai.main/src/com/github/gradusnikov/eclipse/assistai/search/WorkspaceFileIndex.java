@@ -0,0 +1,267 @@
+package com.github.gradusnikov.eclipse.assistai.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.e4.core.di.annotations.Creatable;
+
+import com.github.gradusnikov.eclipse.assistai.tools.ResourceUtilities;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Index of the workspace file names, answering glob queries without opening
+ * any file.
+ * <p>
+ * The index is built with a proxy visitor on the first query and then kept up
+ * to date from resource deltas. Derived and team private resources are left
+ * out. Names are kept sorted, and also reversed, so patterns with a literal
+ * prefix ({@code Foo*}) or suffix ({@code *.java}) read only the matching
+ * range; other patterns are matched against the distinct names.
+ */
+@Creatable
+@Singleton
+public class WorkspaceFileIndex implements IResourceChangeListener
+{
+    private final ILog logger;
+
+    // guarded by this; file name -> full paths of the files with that name
+    private final NavigableMap<String, NavigableSet<String>> byName = new TreeMap<>();
+
+    // guarded by this; reversed file name -> the same path sets
+    private final NavigableMap<String, NavigableSet<String>> byReversedName = new TreeMap<>();
+
+    private boolean built;
+
+    private boolean listenerRegistered;
+
+    @Inject
+    public WorkspaceFileIndex( ILog logger )
+    {
+        this.logger = Objects.requireNonNull( logger );
+    }
+
+    @PreDestroy
+    public synchronized void dispose()
+    {
+        if ( listenerRegistered )
+        {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener( this );
+            listenerRegistered = false;
+        }
+        clear();
+    }
+
+    /**
+     * Returns the full paths of the files whose name matches any of the glob
+     * patterns, grouped by file name, at most {@code maxResults} of them.
+     *
+     * @param fileNamePatterns glob patterns with '*' and '?', e.g. "*.java" or "pom.xml"; none means all files
+     */
+    public synchronized List<String> find( String[] fileNamePatterns, int maxResults )
+    {
+        ensureBuilt();
+        Set<String> result = new LinkedHashSet<>();
+        for ( String glob : ResourceUtilities.normalizeGlobPatterns( fileNamePatterns ) )
+        {
+            if ( result.size() >= maxResults )
+            {
+                break;
+            }
+            int wildcard = indexOfWildcard( glob, 0 );
+            if ( wildcard < 0 )
+            {
+                addAll( byName.getOrDefault( glob, new TreeSet<>() ), result, maxResults );
+            }
+            else if ( glob.charAt( 0 ) == '*' && indexOfWildcard( glob, 1 ) < 0 )
+            {
+                String reversedSuffix = reverse( glob.substring( 1 ) );
+                addMatching( range( byReversedName, reversedSuffix ), null, result, maxResults );
+            }
+            else
+            {
+                Pattern pattern = ResourceUtilities.globPatternsToRegex( glob );
+                addMatching( range( byName, glob.substring( 0, wildcard ) ), pattern, result, maxResults );
+            }
+        }
+        return new ArrayList<>( result );
+    }
+
+    private static int indexOfWildcard( String glob, int from )
+    {
+        for ( int i = from; i < glob.length(); i++ )
+        {
+            if ( glob.charAt( i ) == '*' || glob.charAt( i ) == '?' )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static NavigableMap<String, NavigableSet<String>> range( NavigableMap<String, NavigableSet<String>> names, String prefix )
+    {
+        return prefix.isEmpty() ? names : names.subMap( prefix, true, prefix + Character.MAX_VALUE, false );
+    }
+
+    private static void addMatching( Map<String, NavigableSet<String>> names, Pattern pattern, Set<String> result, int maxResults )
+    {
+        for ( Map.Entry<String, NavigableSet<String>> entry : names.entrySet() )
+        {
+            if ( result.size() >= maxResults )
+            {
+                return;
+            }
+            if ( pattern == null || pattern.matcher( entry.getKey() ).matches() )
+            {
+                addAll( entry.getValue(), result, maxResults );
+            }
+        }
+    }
+
+    private static void addAll( Collection<String> paths, Set<String> result, int maxResults )
+    {
+        for ( String path : paths )
+        {
+            if ( result.size() >= maxResults )
+            {
+                return;
+            }
+            result.add( path );
+        }
+    }
+
+    private void ensureBuilt()
+    {
+        if ( built )
+        {
+            return;
+        }
+        if ( !listenerRegistered )
+        {
+            ResourcesPlugin.getWorkspace().addResourceChangeListener( this, IResourceChangeEvent.POST_CHANGE );
+            listenerRegistered = true;
+        }
+        clear();
+        long start = System.currentTimeMillis();
+        try
+        {
+            ResourcesPlugin.getWorkspace().getRoot().accept( proxy -> {
+                if ( proxy.isDerived() )
+                {
+                    return false;
+                }
+                if ( proxy.getType() == IResource.FILE )
+                {
+                    add( proxy.getName(), proxy.requestFullPath().toString() );
+                }
+                return true;
+            }, IResource.NONE );
+            built = true;
+            logger.info( "WorkspaceFileIndex: Indexed " + byName.size() + " file names in "
+                    + ( System.currentTimeMillis() - start ) + " ms" );
+        }
+        catch ( CoreException e )
+        {
+            logger.error( e.getMessage(), e );
+            throw new RuntimeException( "Error indexing workspace files: " + ExceptionUtils.getRootCauseMessage( e ), e );
+        }
+    }
+
+    private void clear()
+    {
+        byName.clear();
+        byReversedName.clear();
+        built = false;
+    }
+
+    private void add( String name, String path )
+    {
+        NavigableSet<String> paths = byName.computeIfAbsent( name, key -> new TreeSet<>() );
+        paths.add( path );
+        byReversedName.putIfAbsent( reverse( name ), paths );
+    }
+
+    private void remove( String name, String path )
+    {
+        NavigableSet<String> paths = byName.get( name );
+        if ( paths != null && paths.remove( path ) && paths.isEmpty() )
+        {
+            byName.remove( name );
+            byReversedName.remove( reverse( name ) );
+        }
+    }
+
+    private static String reverse( String name )
+    {
+        return new StringBuilder( name ).reverse().toString();
+    }
+
+    /**
+     * Adds and removes files. Opening or closing a project, or changing the
+     * derived flag of a folder, drops the index; it is built again by the next
+     * query.
+     */
+    @Override
+    public synchronized void resourceChanged( IResourceChangeEvent event )
+    {
+        if ( !built || event.getDelta() == null )
+        {
+            return;
+        }
+        try
+        {
+            event.getDelta().accept( delta -> {
+                IResource resource = delta.getResource();
+                if ( ( resource.getType() == IResource.PROJECT && ( delta.getFlags() & IResourceDelta.OPEN ) != 0 )
+                        || ( resource.getType() == IResource.FOLDER && ( delta.getFlags() & IResourceDelta.DERIVED_CHANGED ) != 0 ) )
+                {
+                    clear();
+                }
+                if ( !built )
+                {
+                    return false;
+                }
+                if ( resource.getType() != IResource.FILE )
+                {
+                    return true;
+                }
+                String path = resource.getFullPath().toString();
+                if ( delta.getKind() == IResourceDelta.REMOVED || resource.isDerived( IResource.CHECK_ANCESTORS ) )
+                {
+                    remove( resource.getName(), path );
+                }
+                else
+                {
+                    add( resource.getName(), path );
+                }
+                return true;
+            } );
+        }
+        catch ( CoreException e )
+        {
+            logger.error( "WorkspaceFileIndex: Error processing resource change", e );
+            clear();
+        }
+    }
+}
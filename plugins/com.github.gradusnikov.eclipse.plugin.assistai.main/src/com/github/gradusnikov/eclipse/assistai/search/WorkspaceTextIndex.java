@@ -0,0 +1,642 @@
+package com.github.gradusnikov.eclipse.assistai.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.util.IPropertyChangeListener;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.preferences.PreferenceConstants;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Persistent trigram index of the workspace text files, used to narrow file
+ * searches to the files that may contain a match.
+ * <p>
+ * The index is built by a background job when it is enabled and saved in the
+ * plugin state location; on later starts only files whose modification stamp
+ * changed are read again. Workspace changes are applied incrementally from
+ * resource deltas. Files larger than {@link #MAX_INDEXED_BYTES} are not
+ * indexed and are always candidates; binary files never are.
+ */
+@Creatable
+@Singleton
+public class WorkspaceTextIndex implements IResourceChangeListener
+{
+    private static final String INDEX_FOLDER       = "search-index";
+
+    private static final Pattern SEGMENT_FILE      = Pattern.compile( "segment-(\\d+)\\.bin" );
+
+    private static final int    TABLE_VERSION      = 1;
+
+    /** Delay collecting workspace changes into one update */
+    private static final long   UPDATE_DELAY_MS    = 500;
+
+    private static final int    MAX_INDEXED_BYTES  = 1 << 20;
+
+    /** Bytes probed for a NUL character to tell binary files */
+    private static final int    BINARY_PROBE_BYTES = 8 * 1024;
+
+    /** Changed files kept in heap before they are merged into a new segment */
+    private static final int    MAX_OVERLAY_FILES  = 500;
+
+    private enum Kind
+    {
+        TEXT, LARGE, BINARY
+    }
+
+    /**
+     * An indexed file, with the modification stamp it had when it was read.
+     */
+    private record Entry( IPath path, long stamp, Kind kind )
+    {
+    }
+
+    private final ILog          logger;
+
+    private final Path          folder;
+
+    private final TrigramIndex  index = new TrigramIndex();
+
+    // file table, guarded by this; the id of a file is its position in entries
+    private final Map<IPath, Integer> ids = new HashMap<>();
+
+    private final List<Entry>   entries = new ArrayList<>();
+
+    // ids of removed files, given to the next new files; their stale postings are ignored until compacted away
+    private final BitSet        freeIds = new BitSet();
+
+    private final Set<IPath>    largeFiles = new HashSet<>();
+
+    private int                 generation;
+
+    // Workspace paths of files changed since the last update
+    private final Set<IPath>    pending = ConcurrentHashMap.newKeySet();
+
+    // Compare the whole workspace with the file table on the next update
+    private volatile boolean    reconcile;
+
+    // Open the saved index on the next update, before reconciling
+    private volatile boolean    unloaded = true;
+
+    // Reads changed files off the workspace notification thread
+    private final Job           updater;
+
+    private volatile boolean    enabled;
+
+    // The index has seen the whole workspace and can answer queries
+    private volatile boolean    ready;
+
+    private final IPropertyChangeListener preferenceListener = event -> {
+        if ( PreferenceConstants.ASSISTAI_SEARCH_INDEX.equals( event.getProperty() ) )
+        {
+            setEnabled( Activator.getDefault().getPreferenceStore().getBoolean( PreferenceConstants.ASSISTAI_SEARCH_INDEX ) );
+        }
+    };
+
+    @Inject
+    public WorkspaceTextIndex( ILog logger )
+    {
+        this( logger, Activator.getDefault().getStateLocation().append( INDEX_FOLDER ).toPath() );
+    }
+
+    public WorkspaceTextIndex( ILog logger, Path folder )
+    {
+        this.logger = Objects.requireNonNull( logger );
+        this.folder = Objects.requireNonNull( folder );
+        this.updater = Job.create( "Indexing workspace for AI assistant search", this::update );
+        this.updater.setSystem( true );
+        this.updater.setPriority( Job.DECORATE );
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        setEnabled( preferences.getBoolean( PreferenceConstants.ASSISTAI_SEARCH_INDEX ) );
+        preferences.addPropertyChangeListener( preferenceListener );
+    }
+
+    @PreDestroy
+    public void dispose()
+    {
+        Activator.getDefault().getPreferenceStore().removePropertyChangeListener( preferenceListener );
+        setEnabled( false );
+    }
+
+    /**
+     * Starts or stops maintaining the index. A started index loads the saved
+     * state and catches up with the workspace in the background; until then
+     * {@link #candidates(Collection)} does not narrow searches.
+     */
+    public synchronized void setEnabled( boolean enabled )
+    {
+        if ( this.enabled == enabled )
+        {
+            return;
+        }
+        this.enabled = enabled;
+        if ( enabled )
+        {
+            // called on the UI thread at startup, so the saved index is read by the job
+            unloaded = true;
+            ResourcesPlugin.getWorkspace().addResourceChangeListener( this, IResourceChangeEvent.POST_CHANGE );
+            reconcile = true;
+            updater.schedule();
+        }
+        else
+        {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener( this );
+            updater.cancel();
+            ready = false;
+            pending.clear();
+        }
+    }
+
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    /**
+     * Returns the files that may contain all the literals, or empty if the
+     * index cannot narrow the search: it is not ready or no literal is long
+     * enough. Files with unsaved editor changes and files not indexed yet are
+     * always included.
+     */
+    public Optional<List<IFile>> candidates( Collection<String> literals )
+    {
+        if ( !ready )
+        {
+            return Optional.empty();
+        }
+        int[] matches = null;
+        for ( String literal : literals )
+        {
+            int[] found = index.candidates( literal );
+            if ( found != null )
+            {
+                matches = matches == null ? found : intersect( matches, found );
+            }
+        }
+        if ( matches == null )
+        {
+            return Optional.empty();
+        }
+
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        Set<IFile> files = new LinkedHashSet<>();
+        synchronized ( this )
+        {
+            for ( int id : matches )
+            {
+                Entry entry = id < entries.size() ? entries.get( id ) : null;
+                if ( entry != null && entry.kind() == Kind.TEXT )
+                {
+                    files.add( root.getFile( entry.path() ) );
+                }
+            }
+            largeFiles.forEach( path -> files.add( root.getFile( path ) ) );
+        }
+        pending.forEach( path -> files.add( root.getFile( path ) ) );
+        // the search engine reads dirty files from their editor buffers
+        for ( IFileBuffer buffer : FileBuffers.getTextFileBufferManager().getFileBuffers() )
+        {
+            if ( buffer.isDirty() )
+            {
+                Optional.ofNullable( FileBuffers.getWorkspaceFileAtLocation( buffer.getLocation() ) ).ifPresent( files::add );
+            }
+        }
+        return Optional.of( new ArrayList<>( files ) );
+    }
+
+    private static int[] intersect( int[] a, int[] b )
+    {
+        return Arrays.stream( a ).filter( id -> Arrays.binarySearch( b, id ) >= 0 ).toArray();
+    }
+
+    /**
+     * Collects changed files, and schedules a comparison with the whole
+     * workspace when a project is opened or closed.
+     */
+    @Override
+    public void resourceChanged( IResourceChangeEvent event )
+    {
+        if ( event.getDelta() == null )
+        {
+            return;
+        }
+        try
+        {
+            event.getDelta().accept( delta -> {
+                IResource resource = delta.getResource();
+                if ( resource.getType() == IResource.PROJECT && ( delta.getFlags() & IResourceDelta.OPEN ) != 0 )
+                {
+                    reconcile = true;
+                    return false;
+                }
+                if ( resource.getType() == IResource.FILE
+                        && ( delta.getKind() != IResourceDelta.CHANGED || ( delta.getFlags() & IResourceDelta.CONTENT ) != 0 ) )
+                {
+                    pending.add( resource.getFullPath() );
+                }
+                return true;
+            } );
+        }
+        catch ( CoreException e )
+        {
+            logger.error( "WorkspaceTextIndex: Error processing resource change", e );
+        }
+        if ( reconcile || !pending.isEmpty() )
+        {
+            updater.schedule( UPDATE_DELAY_MS );
+        }
+    }
+
+    private IStatus update( IProgressMonitor monitor )
+    {
+        if ( !enabled )
+        {
+            return Status.OK_STATUS;
+        }
+        if ( unloaded )
+        {
+            synchronized ( this )
+            {
+                load();
+            }
+            unloaded = false;
+        }
+        try
+        {
+            boolean full = reconcile;
+            if ( full )
+            {
+                reconcile = false;
+                collectOutdated();
+            }
+            for ( IPath path : new ArrayList<>( pending ) )
+            {
+                if ( monitor.isCanceled() || !enabled )
+                {
+                    reconcile |= full;
+                    return Status.CANCEL_STATUS;
+                }
+                // taken off just before reading, so a change notified meanwhile queues the file again
+                pending.remove( path );
+                if ( !indexFile( path ) )
+                {
+                    pending.add( path );
+                }
+                if ( index.overlaySize() >= MAX_OVERLAY_FILES )
+                {
+                    compact();
+                }
+            }
+            if ( full && index.overlaySize() > 0 )
+            {
+                compact();
+            }
+            if ( full && !ready )
+            {
+                ready = true;
+                logger.info( "WorkspaceTextIndex: Indexed " + ids.size() + " files" );
+            }
+            if ( !pending.isEmpty() )
+            {
+                updater.schedule( UPDATE_DELAY_MS );
+            }
+        }
+        catch ( CoreException | IOException e )
+        {
+            logger.error( "WorkspaceTextIndex: Could not update the index, searches scan all files", e );
+            ready = false;
+        }
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Walks the workspace and queues the files that are new, changed since
+     * they were indexed, or gone.
+     */
+    private void collectOutdated() throws CoreException
+    {
+        Set<IPath> seen = new HashSet<>();
+        ResourcesPlugin.getWorkspace().getRoot().accept( proxy -> {
+            if ( proxy.getType() == IResource.FILE )
+            {
+                IPath path = proxy.requestFullPath();
+                seen.add( path );
+                Entry entry = entry( path );
+                if ( entry == null || entry.stamp() != proxy.getModificationStamp() )
+                {
+                    pending.add( path );
+                }
+            }
+            return true;
+        }, IResource.NONE );
+        synchronized ( this )
+        {
+            ids.keySet().stream().filter( path -> !seen.contains( path ) ).forEach( pending::add );
+        }
+    }
+
+    private synchronized Entry entry( IPath path )
+    {
+        Integer id = ids.get( path );
+        return id == null ? null : entries.get( id );
+    }
+
+    /**
+     * Reads a file into the index, or removes it if it is gone.
+     *
+     * @return false if the file changed while it was read and must be read again
+     */
+    private boolean indexFile( IPath path )
+    {
+        IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile( path );
+        if ( !file.isAccessible() )
+        {
+            synchronized ( this )
+            {
+                Integer id = ids.remove( path );
+                if ( id != null )
+                {
+                    entries.set( id, null );
+                    freeIds.set( id );
+                    largeFiles.remove( path );
+                    index.remove( id );
+                }
+            }
+            return true;
+        }
+
+        long stamp = file.getModificationStamp();
+        Kind kind;
+        int[] buckets = null;
+        try ( InputStream in = file.getContents( true ) )
+        {
+            byte[] bytes = in.readNBytes( MAX_INDEXED_BYTES + 1 );
+            if ( bytes.length > MAX_INDEXED_BYTES )
+            {
+                kind = Kind.LARGE;
+            }
+            else if ( isBinary( bytes ) )
+            {
+                kind = Kind.BINARY;
+            }
+            else
+            {
+                kind = Kind.TEXT;
+                buckets = TrigramIndex.buckets( new String( bytes, file.getCharset() ) );
+            }
+        }
+        catch ( CoreException | IOException e )
+        {
+            // keep the file a candidate, the search engine reports the error if it persists
+            kind = Kind.LARGE;
+        }
+        if ( file.getModificationStamp() != stamp )
+        {
+            return false;
+        }
+
+        synchronized ( this )
+        {
+            int id = ids.computeIfAbsent( path, p -> newId() );
+            entries.set( id, new Entry( path, stamp, kind ) );
+            if ( kind == Kind.LARGE )
+            {
+                largeFiles.add( path );
+            }
+            else
+            {
+                largeFiles.remove( path );
+            }
+            if ( buckets != null )
+            {
+                index.put( id, buckets );
+            }
+            else
+            {
+                index.remove( id );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the lowest free id, or a new one at the end of the file table.
+     */
+    private int newId()
+    {
+        int id = freeIds.nextSetBit( 0 );
+        if ( id >= 0 )
+        {
+            freeIds.clear( id );
+            return id;
+        }
+        entries.add( null );
+        return entries.size() - 1;
+    }
+
+    private static boolean isBinary( byte[] bytes )
+    {
+        for ( int i = 0; i < Math.min( bytes.length, BINARY_PROBE_BYTES ); i++ )
+        {
+            if ( bytes[i] == 0 )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges the changed files into a new segment and saves the file table
+     * next to it. Earlier generations are deleted; a file still mapped on
+     * some platforms is deleted on a later compaction or the next start.
+     */
+    private void compact() throws IOException
+    {
+        Files.createDirectories( folder );
+        int next = generation + 1;
+        index.compact( folder.resolve( "segment-" + next + ".bin" ) );
+        synchronized ( this )
+        {
+            writeTable( folder.resolve( "files-" + next + ".dat" ) );
+            generation = next;
+        }
+        deleteOtherGenerations( next );
+    }
+
+    /**
+     * Deletes the segments and file tables of other generations. A file that
+     * cannot be deleted, e.g. because it is still mapped, is logged and left
+     * for a later compaction or the next start.
+     */
+    private void deleteOtherGenerations( int kept ) throws IOException
+    {
+        try ( Stream<Path> files = Files.list( folder ) )
+        {
+            files.filter( file -> generationOf( file ) != kept ).forEach( file -> {
+                try
+                {
+                    Files.deleteIfExists( file );
+                }
+                catch ( IOException e )
+                {
+                    logger.warn( "WorkspaceTextIndex: Could not delete " + file.getFileName() + ", retried later: " + e.getMessage() );
+                }
+            } );
+        }
+    }
+
+    private static int generationOf( Path file )
+    {
+        String name = file.getFileName().toString();
+        Matcher matcher = SEGMENT_FILE.matcher( name );
+        if ( matcher.matches() )
+        {
+            return Integer.parseInt( matcher.group( 1 ) );
+        }
+        if ( name.startsWith( "files-" ) && name.endsWith( ".dat" ) )
+        {
+            return Integer.parseInt( name.substring( "files-".length(), name.length() - ".dat".length() ) );
+        }
+        return -1;
+    }
+
+    private void writeTable( Path file ) throws IOException
+    {
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( file ) ) ) )
+        {
+            out.writeInt( TABLE_VERSION );
+            out.writeInt( entries.size() );
+            for ( Entry entry : entries )
+            {
+                out.writeBoolean( entry != null );
+                if ( entry != null )
+                {
+                    out.writeUTF( entry.path().toPortableString() );
+                    out.writeLong( entry.stamp() );
+                    out.writeByte( entry.kind().ordinal() );
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the newest saved segment and its file table. If there is none or
+     * it cannot be read, the index is rebuilt from scratch.
+     */
+    private void load()
+    {
+        clear();
+        if ( !Files.isDirectory( folder ) )
+        {
+            return;
+        }
+        try ( Stream<Path> files = Files.list( folder ) )
+        {
+            generation = Math.max( 0, files.mapToInt( WorkspaceTextIndex::generationOf ).max().orElse( 0 ) );
+            Path table = folder.resolve( "files-" + generation + ".dat" );
+            if ( Files.exists( table ) )
+            {
+                // nothing older is mapped yet, so leftovers of earlier runs can be deleted now
+                deleteOtherGenerations( generation );
+                index.open( folder.resolve( "segment-" + generation + ".bin" ) );
+                readTable( table );
+                logger.info( "WorkspaceTextIndex: Loaded " + ids.size() + " indexed files" );
+            }
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            logger.warn( "WorkspaceTextIndex: Could not load the saved index, rebuilding it: " + e.getMessage() );
+            clear();
+        }
+    }
+
+    private void clear()
+    {
+        ids.clear();
+        entries.clear();
+        freeIds.clear();
+        largeFiles.clear();
+        index.clear();
+    }
+
+    private void readTable( Path file ) throws IOException
+    {
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file ) ) ) )
+        {
+            if ( in.readInt() != TABLE_VERSION )
+            {
+                throw new IOException( "Unsupported file table version" );
+            }
+            int count = in.readInt();
+            for ( int id = 0; id < count; id++ )
+            {
+                Entry entry = null;
+                if ( in.readBoolean() )
+                {
+                    entry = new Entry( IPath.fromPortableString( in.readUTF() ), in.readLong(), Kind.values()[in.readByte()] );
+                    ids.put( entry.path(), id );
+                    if ( entry.kind() == Kind.LARGE )
+                    {
+                        largeFiles.add( entry.path() );
+                    }
+                }
+                else
+                {
+                    freeIds.set( id );
+                }
+                entries.add( entry );
+            }
+        }
+    }
+}
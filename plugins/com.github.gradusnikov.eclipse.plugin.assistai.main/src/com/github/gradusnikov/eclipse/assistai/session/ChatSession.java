@@ -0,0 +1,99 @@
+package com.github.gradusnikov.eclipse.assistai.session;
+
+import java.util.Objects;
+
+import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
+import com.github.gradusnikov.eclipse.assistai.chat.ConversationContext;
+import com.github.gradusnikov.eclipse.assistai.jobs.AssistAIJobRule;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
+
+/**
+ * A chat session owns a conversation, the resources cached for it and the
+ * model it talks to. Jobs of a session are serialized by its
+ * {@link #getSchedulingRule() scheduling rule}, jobs of different sessions run
+ * in parallel.
+ */
+public class ChatSession
+{
+    private final String        id;
+
+    private final Conversation  conversation;
+
+    private final ResourceCache resourceCache;
+
+    private final AssistAIJobRule schedulingRule;
+
+    private volatile String     name;
+
+    /** Model uid, or null to use the model selected in the preferences */
+    private volatile String     modelUid;
+
+    public ChatSession( String id, String name, Conversation conversation, ResourceCache resourceCache )
+    {
+        this.id = Objects.requireNonNull( id );
+        this.name = Objects.requireNonNull( name );
+        this.conversation = Objects.requireNonNull( conversation );
+        this.resourceCache = Objects.requireNonNull( resourceCache );
+        this.schedulingRule = new AssistAIJobRule( id );
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName( String name )
+    {
+        this.name = Objects.requireNonNull( name );
+    }
+
+    public Conversation getConversation()
+    {
+        return conversation;
+    }
+
+    public ResourceCache getResourceCache()
+    {
+        return resourceCache;
+    }
+
+    public String getModelUid()
+    {
+        return modelUid;
+    }
+
+    public void setModelUid( String modelUid )
+    {
+        this.modelUid = modelUid;
+    }
+
+    public AssistAIJobRule getSchedulingRule()
+    {
+        return schedulingRule;
+    }
+
+    /**
+     * Creates the context a request of this session is sent with. All tools
+     * are allowed.
+     */
+    public ConversationContext createContext()
+    {
+        return ConversationContext.builder()
+                                  .contextId( id )
+                                  .conversation( conversation )
+                                  .resourceCache( resourceCache )
+                                  .allowedTools( null )
+                                  .build();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ChatSession[id=" + id + ", name=" + name + "]";
+    }
+}
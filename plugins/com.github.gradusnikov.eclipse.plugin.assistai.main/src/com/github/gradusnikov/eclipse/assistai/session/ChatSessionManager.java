@@ -0,0 +1,171 @@
+package com.github.gradusnikov.eclipse.assistai.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.SafeRunner;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.core.di.annotations.Creatable;
+
+import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
+import com.github.gradusnikov.eclipse.assistai.chat.MessageContentStore;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Keeps the open chat sessions and tracks the one shown in the chat view.
+ * <p>
+ * The default session uses the shared {@link Conversation} and
+ * {@link ResourceCache}, so it is the one persisted by the
+ * {@link ConversationJournal}. Further sessions get their own conversation
+ * and resource cache and live until they are closed or the workbench shuts
+ * down.
+ */
+@Creatable
+@Singleton
+public class ChatSessionManager
+{
+    /** Id of the default session, also the context id of its requests */
+    public static final String DEFAULT_SESSION_ID = "chat-view";
+
+    private final ILog                 logger;
+
+    private final TokenCounterRegistry tokenCounters;
+
+    private final MessageContentStore  contentStore;
+
+    private final ChatSession          defaultSession;
+
+    private final List<ChatSession>    sessions  = new CopyOnWriteArrayList<>();
+
+    private final ListenerList<IChatSessionListener> listeners = new ListenerList<>();
+
+    private volatile ChatSession       activeSession;
+
+    private int                        sessionCounter = 1;
+
+    @Inject
+    public ChatSessionManager( ILog logger, TokenCounterRegistry tokenCounters, MessageContentStore contentStore,
+            Conversation conversation, ResourceCache resourceCache )
+    {
+        this.logger = Objects.requireNonNull( logger );
+        this.tokenCounters = Objects.requireNonNull( tokenCounters );
+        this.contentStore = Objects.requireNonNull( contentStore );
+        this.defaultSession = new ChatSession( DEFAULT_SESSION_ID, "Chat 1", conversation, resourceCache );
+        this.sessions.add( defaultSession );
+        this.activeSession = defaultSession;
+    }
+
+    public ChatSession getDefaultSession()
+    {
+        return defaultSession;
+    }
+
+    public ChatSession getActiveSession()
+    {
+        return activeSession;
+    }
+
+    /**
+     * Returns the open sessions, in the order they were opened.
+     */
+    public List<ChatSession> getSessions()
+    {
+        return new ArrayList<>( sessions );
+    }
+
+    public Optional<ChatSession> findSession( String id )
+    {
+        return sessions.stream().filter( session -> session.getId().equals( id ) ).findFirst();
+    }
+
+    /**
+     * Opens a new session with an empty conversation and resource cache, and
+     * makes it the active one.
+     */
+    public ChatSession openSession()
+    {
+        String name;
+        synchronized ( this )
+        {
+            name = "Chat " + ( ++sessionCounter );
+        }
+        var resourceCache = new ResourceCache( logger, tokenCounters );
+        resourceCache.init();
+        var session = new ChatSession( UUID.randomUUID().toString(), name, new Conversation(), resourceCache );
+        sessions.add( session );
+        logger.info( "Opened chat session " + session );
+        fire( IChatSessionListener::sessionsChanged );
+        setActiveSession( session );
+        return session;
+    }
+
+    /**
+     * Closes the given session. The default session cannot be closed. Jobs
+     * of the session are canceled, its resource cache is disposed and its
+     * spilled message bodies are released. If the session was the active
+     * one, the default session becomes active.
+     */
+    public void closeSession( ChatSession session )
+    {
+        if ( session == defaultSession || !sessions.remove( session ) )
+        {
+            return;
+        }
+        // jobs of a session belong to its family
+        Job.getJobManager().cancel( session );
+        session.getResourceCache().dispose();
+        contentStore.reset( session.getId() );
+        logger.info( "Closed chat session " + session );
+        fire( IChatSessionListener::sessionsChanged );
+        if ( activeSession == session )
+        {
+            setActiveSession( defaultSession );
+        }
+    }
+
+    public void setActiveSession( ChatSession session )
+    {
+        if ( !sessions.contains( session ) || activeSession == session )
+        {
+            return;
+        }
+        activeSession = session;
+        fire( listener -> listener.activeSessionChanged( session ) );
+    }
+
+    public void addSessionListener( IChatSessionListener listener )
+    {
+        listeners.add( listener );
+    }
+
+    public void removeSessionListener( IChatSessionListener listener )
+    {
+        listeners.remove( listener );
+    }
+
+    private void fire( Consumer<IChatSessionListener> notification )
+    {
+        for ( IChatSessionListener listener : listeners )
+        {
+            SafeRunner.run( () -> notification.accept( listener ) );
+        }
+    }
+
+    @PreDestroy
+    public void dispose()
+    {
+        sessions.stream().filter( session -> session != defaultSession ).forEach( session -> session.getResourceCache().dispose() );
+    }
+}
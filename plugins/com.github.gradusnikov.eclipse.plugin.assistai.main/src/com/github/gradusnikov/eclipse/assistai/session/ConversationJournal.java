@@ -0,0 +1,620 @@
+package com.github.gradusnikov.eclipse.assistai.session;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.core.di.annotations.Creatable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
+import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
+import com.github.gradusnikov.eclipse.assistai.chat.ConversationEvent;
+import com.github.gradusnikov.eclipse.assistai.chat.IConversationListener;
+import com.github.gradusnikov.eclipse.assistai.chat.StoredMessage;
+import com.github.gradusnikov.eclipse.assistai.resources.IResourceCacheListener;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceCacheEvent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Persists the chat conversation and the resource cache in the workspace
+ * metadata area (the plug-in state location), so a session survives a
+ * restart.
+ * <p>
+ * Changes are appended to a journal of JSON lines by a background job, in
+ * batches. Once the journal grows past {@link #SNAPSHOT_INTERVAL} records, or
+ * the conversation is cleared, the current state is written to a compressed
+ * snapshot and the journal starts over. Restoring reads the snapshot and
+ * replays the journal.
+ * <p>
+ * Message bodies of {@link #BODY_THRESHOLD} characters or more are not kept in
+ * the journal lines or the snapshot, but appended to a bodies file next to
+ * them; records refer to them by offset, so a restore reads a body only when
+ * the message is rendered or sent. A body is written again only when it
+ * changed. Likewise a resource is journaled with its content only when that
+ * differs from the content last journaled for its URI, e.g. not when an
+ * unchanged file is read again; replay takes the content from the earlier
+ * record.
+ */
+@Creatable
+@Singleton
+public class ConversationJournal implements IConversationListener, IResourceCacheListener
+{
+    private static final String SESSION_FOLDER   = "session";
+
+    private static final String JOURNAL_FILE     = "journal.jsonl";
+
+    private static final String SNAPSHOT_FILE    = "snapshot.json.gz";
+
+    private static final String BODIES_PREFIX    = "bodies-";
+
+    private static final String BODIES_SUFFIX    = ".bin";
+
+    /** Message bodies with at least this many characters go to the bodies file */
+    public static final int     BODY_THRESHOLD   = 1024;
+
+    private static final int    PREVIEW_LENGTH   = 512;
+
+    /** Journal records after which a snapshot is taken */
+    private static final int    SNAPSHOT_INTERVAL = 2_000;
+
+    /** Delay collecting changes into one write */
+    private static final long   WRITE_DELAY_MS   = 500;
+
+    private final ILog          logger;
+
+    private final Conversation  conversation;
+
+    private final ResourceCache resourceCache;
+
+    private final Path          folder;
+
+    private final ObjectMapper  objectMapper     = new ObjectMapper();
+
+    /** Records are rendered when written, so streamed messages are stored with their latest content */
+    private final Queue<Supplier<JournalRecord>> pending = new ConcurrentLinkedQueue<>();
+
+    private final Job           writer;
+
+    private int                 recordsSinceSnapshot;
+
+    /** The bodies file written to, opened with the first large body */
+    private FileChannel         bodies;
+
+    private String              bodiesFile;
+
+    /** Bodies written to the current bodies file, by message id */
+    private final Map<String, WrittenBody> writtenBodies = new HashMap<>();
+
+    /** Digests of the resource contents in the snapshot or journal, by uri */
+    private final Map<String, byte[]> journaledResources = new HashMap<>();
+
+    /** Snapshots would overwrite the stored session until it has been restored */
+    private volatile boolean    restored;
+
+    @Inject
+    public ConversationJournal( ILog logger, Conversation conversation, ResourceCache resourceCache )
+    {
+        this( logger, conversation, resourceCache, Activator.getDefault().getStateLocation().append( SESSION_FOLDER ).toPath() );
+    }
+
+    public ConversationJournal( ILog logger, Conversation conversation, ResourceCache resourceCache, Path folder )
+    {
+        this.logger = Objects.requireNonNull( logger );
+        this.conversation = Objects.requireNonNull( conversation );
+        this.resourceCache = Objects.requireNonNull( resourceCache );
+        this.folder = Objects.requireNonNull( folder );
+        this.writer = Job.create( "Saving AI assistant conversation", this::writePending );
+        this.writer.setSystem( true );
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        conversation.addConversationListener( this );
+        resourceCache.addCacheListener( this );
+    }
+
+    @PreDestroy
+    public void dispose()
+    {
+        conversation.removeConversationListener( this );
+        resourceCache.removeCacheListener( this );
+        writer.cancel();
+        flush();
+        compact();
+        closeBodies();
+    }
+
+    @Override
+    public void conversationChanged( ConversationEvent event )
+    {
+        ChatMessage message = event.getMessage();
+        switch ( event.getType() )
+        {
+            case ADDED -> {
+                String before = event.getBefore() != null ? event.getBefore().getId() : null;
+                enqueue( () -> {
+                    var stored = StoredMessage.of( message );
+                    var body = writeBody( stored );
+                    return JournalRecord.add( body != null ? stored.withContent( null ) : stored, body, before );
+                } );
+            }
+            case UPDATED -> enqueue( () -> {
+                var stored = StoredMessage.of( message );
+                var body = writeBody( stored );
+                return JournalRecord.update( body != null ? stored.withContent( null ) : stored, body );
+            } );
+            case REMOVED -> enqueue( () -> {
+                writtenBodies.remove( message.getId() );
+                return JournalRecord.remove( message.getId() );
+            } );
+            case CLEARED -> enqueue( () -> {
+                writtenBodies.clear();
+                return JournalRecord.clear();
+            } );
+            case RESTORED -> {
+                // already stored
+            }
+        }
+    }
+
+    @Override
+    public void cacheChanged( ResourceCacheEvent event )
+    {
+        var resource = event.getResource();
+        switch ( event.getType() )
+        {
+            case ADDED, UPDATED -> enqueue( () -> {
+                var stored = StoredResource.of( resource );
+                byte[] digest = contentDigest( stored );
+                byte[] journaled = journaledResources.put( stored.uri(), digest );
+                // the content is replayed from the earlier record
+                return JournalRecord.resource( digest != null && Arrays.equals( journaled, digest ) ? stored.withContent( null ) : stored );
+            } );
+            case REMOVED, INVALIDATED -> enqueue( () -> {
+                String uri = resource.descriptor().uri().toString();
+                journaledResources.remove( uri );
+                return JournalRecord.removeResource( uri );
+            } );
+            case CLEARED -> enqueue( () -> {
+                journaledResources.clear();
+                return JournalRecord.clearResources();
+            } );
+            case RESTORED -> {
+                // already stored
+            }
+        }
+    }
+
+    /**
+     * Writes a large message body to the bodies file, unless the same body
+     * was written for the message before. Records are rendered by the writer,
+     * so this runs with the journal locked.
+     *
+     * @return the location of the body, or null if the body stays inline
+     */
+    private StoredBody writeBody( StoredMessage message )
+    {
+        String content = message.content();
+        if ( content == null || content.length() < BODY_THRESHOLD )
+        {
+            writtenBodies.remove( message.id() );
+            return null;
+        }
+        byte[] bytes = content.getBytes( StandardCharsets.UTF_8 );
+        byte[] digest = digest( bytes );
+        var written = writtenBodies.get( message.id() );
+        if ( written != null && Arrays.equals( written.digest(), digest ) )
+        {
+            return written.body();
+        }
+        long offset;
+        try
+        {
+            if ( bodies == null )
+            {
+                Files.createDirectories( folder );
+                bodiesFile = BODIES_PREFIX + UUID.randomUUID() + BODIES_SUFFIX;
+                bodies = FileChannel.open( folder.resolve( bodiesFile ), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE );
+            }
+            offset = bodies.size();
+            var buffer = ByteBuffer.wrap( bytes );
+            while ( buffer.hasRemaining() )
+            {
+                bodies.write( buffer, offset + buffer.position() );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+        var body = new StoredBody( bodiesFile, offset, bytes.length, content.length(),
+                content.length() > PREVIEW_LENGTH ? content.substring( 0, PREVIEW_LENGTH ) : content );
+        writtenBodies.put( message.id(), new WrittenBody( digest, body ) );
+        return body;
+    }
+
+    private void enqueue( Supplier<JournalRecord> record )
+    {
+        pending.add( record );
+        writer.schedule( WRITE_DELAY_MS );
+    }
+
+    /**
+     * Called once the stored session has been restored, or found empty.
+     * Enables snapshots.
+     */
+    public void markRestored()
+    {
+        restored = true;
+    }
+
+    /**
+     * Writes all pending records synchronously.
+     */
+    public synchronized void flush()
+    {
+        writePending( null );
+    }
+
+    /**
+     * Replaces snapshot and journal with the current state, so the next start
+     * reads a single compressed file. Called on shutdown.
+     */
+    public synchronized void compact()
+    {
+        if ( !restored || recordsSinceSnapshot == 0 )
+        {
+            return;
+        }
+        try
+        {
+            Files.createDirectories( folder );
+            writeSnapshot();
+        }
+        catch ( IOException e )
+        {
+            logger.error( "Could not write conversation snapshot: " + e.getMessage(), e );
+        }
+    }
+
+    private synchronized void writePending( IProgressMonitor monitor )
+    {
+        if ( pending.isEmpty() )
+        {
+            return;
+        }
+        boolean cleared = false;
+        try
+        {
+            Files.createDirectories( folder );
+            try ( var out = Files.newBufferedWriter( folder.resolve( JOURNAL_FILE ), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND ) )
+            {
+                Supplier<JournalRecord> next;
+                while ( ( next = pending.poll() ) != null )
+                {
+                    JournalRecord record = next.get();
+                    cleared |= record.op() == JournalRecord.Op.CLEAR;
+                    out.write( objectMapper.writeValueAsString( record ) );
+                    out.write( '\n' );
+                    recordsSinceSnapshot++;
+                }
+            }
+            if ( restored && ( cleared || recordsSinceSnapshot >= SNAPSHOT_INTERVAL ) )
+            {
+                writeSnapshot();
+            }
+        }
+        catch ( Exception e )
+        {
+            logger.error( "Could not write conversation journal: " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Replaces snapshot and journal with the current state.
+     */
+    private void writeSnapshot() throws IOException
+    {
+        // the large bodies still in the conversation move to a new bodies file
+        closeBodies();
+        writtenBodies.clear();
+        journaledResources.clear();
+        var messages = new ArrayList<StoredMessage>();
+        var messageBodies = new LinkedHashMap<String, StoredBody>();
+        try
+        {
+            for ( ChatMessage message : conversation.snapshot() )
+            {
+                var stored = StoredMessage.of( message );
+                var body = writeBody( stored );
+                if ( body != null )
+                {
+                    messageBodies.put( stored.id(), body );
+                    stored = stored.withContent( null );
+                }
+                messages.add( stored );
+            }
+            if ( bodies != null )
+            {
+                bodies.force( false );
+            }
+        }
+        catch ( UncheckedIOException e )
+        {
+            throw e.getCause();
+        }
+        var resources = resourceCache.getAll().values().stream().map( StoredResource::of ).toList();
+        resources.forEach( resource -> journaledResources.put( resource.uri(), contentDigest( resource ) ) );
+        Path temporary = folder.resolve( SNAPSHOT_FILE + ".tmp" );
+        try ( OutputStream out = new GZIPOutputStream( Files.newOutputStream( temporary ) ) )
+        {
+            objectMapper.writeValue( out, new SessionSnapshot( messages, messageBodies, resources ) );
+        }
+        Files.move( temporary, folder.resolve( SNAPSHOT_FILE ), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        // records written after the state was taken are replayed again; replay is idempotent
+        Files.deleteIfExists( folder.resolve( JOURNAL_FILE ) );
+        deleteOtherBodyFiles();
+        recordsSinceSnapshot = 0;
+        logger.info( "Conversation snapshot written: " + messages.size() + " messages, " + resources.size() + " resources" );
+    }
+
+    /**
+     * Deletes the bodies files no longer referenced by snapshot or journal.
+     */
+    private void deleteOtherBodyFiles() throws IOException
+    {
+        try ( var files = Files.list( folder ) )
+        {
+            files.filter( file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith( BODIES_PREFIX ) && name.endsWith( BODIES_SUFFIX ) && !name.equals( bodiesFile );
+            } ).forEach( file -> {
+                try
+                {
+                    Files.deleteIfExists( file );
+                }
+                catch ( IOException e )
+                {
+                    // on Windows a file stays locked while restored messages read from it; deleted with the next snapshot
+                }
+            } );
+        }
+    }
+
+    private void closeBodies()
+    {
+        if ( bodies == null )
+        {
+            return;
+        }
+        try
+        {
+            bodies.close();
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Could not close conversation bodies file: " + e.getMessage(), e );
+        }
+        bodies = null;
+        bodiesFile = null;
+    }
+
+    /**
+     * Returns the bodies file holding a message body.
+     */
+    public Path resolve( StoredBody body )
+    {
+        return folder.resolve( body.file() );
+    }
+
+    private static byte[] contentDigest( StoredResource resource )
+    {
+        return resource.content() != null ? digest( resource.content().getBytes( StandardCharsets.UTF_8 ) ) : null;
+    }
+
+    private static byte[] digest( byte[] bytes )
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-256" ).digest( bytes );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Reads the stored session: the snapshot with the journal replayed on top.
+     * A damaged last journal line (e.g. after a crash) is skipped.
+     */
+    public synchronized SessionSnapshot load()
+    {
+        var messages = new ArrayList<StoredMessage>();
+        var messageBodies = new HashMap<String, StoredBody>();
+        var resources = new LinkedHashMap<String, StoredResource>();
+        Path snapshotFile = folder.resolve( SNAPSHOT_FILE );
+        if ( Files.exists( snapshotFile ) )
+        {
+            try ( InputStream in = new GZIPInputStream( Files.newInputStream( snapshotFile ) ) )
+            {
+                var snapshot = objectMapper.readValue( in, SessionSnapshot.class );
+                messages.addAll( snapshot.messages() );
+                messageBodies.putAll( snapshot.bodies() );
+                snapshot.resources().forEach( resource -> resources.put( resource.uri(), resource ) );
+            }
+            catch ( IOException e )
+            {
+                logger.error( "Could not read conversation snapshot: " + e.getMessage(), e );
+            }
+        }
+        Path journalFile = folder.resolve( JOURNAL_FILE );
+        if ( Files.exists( journalFile ) )
+        {
+            var replay = new Replay( messages, messageBodies, resources );
+            try ( BufferedReader reader = Files.newBufferedReader( journalFile, StandardCharsets.UTF_8 ) )
+            {
+                String line;
+                int lineNumber = 0;
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    lineNumber++;
+                    if ( line.isBlank() )
+                    {
+                        continue;
+                    }
+                    try
+                    {
+                        replay.apply( objectMapper.readValue( line, JournalRecord.class ) );
+                    }
+                    catch ( IOException e )
+                    {
+                        logger.warn( "Skipping damaged conversation journal line " + lineNumber + ": " + e.getMessage() );
+                    }
+                }
+            }
+            catch ( IOException e )
+            {
+                logger.error( "Could not read conversation journal: " + e.getMessage(), e );
+            }
+            recordsSinceSnapshot = replay.records;
+        }
+        return new SessionSnapshot( messages, messageBodies, new ArrayList<>( resources.values() ) );
+    }
+
+    /**
+     * A body in the current bodies file and the digest of its content.
+     */
+    private record WrittenBody( byte[] digest, StoredBody body )
+    {
+    }
+
+    /**
+     * Applies journal records to the loaded state.
+     */
+    private static class Replay
+    {
+        private final List<StoredMessage>         messages;
+
+        private final Map<String, StoredBody>     bodies;
+
+        private final Map<String, StoredResource> resources;
+
+        private final Map<String, StoredMessage>  byId = new HashMap<>();
+
+        private int                               records;
+
+        Replay( List<StoredMessage> messages, Map<String, StoredBody> bodies, Map<String, StoredResource> resources )
+        {
+            this.messages = messages;
+            this.bodies = bodies;
+            this.resources = resources;
+            messages.forEach( message -> byId.put( message.id(), message ) );
+        }
+
+        void apply( JournalRecord record )
+        {
+            records++;
+            switch ( record.op() )
+            {
+                case ADD -> add( record.message(), record.body(), record.before() );
+                case UPDATE -> add( record.message(), record.body(), null );
+                case REMOVE -> {
+                    bodies.remove( record.id() );
+                    var removed = byId.remove( record.id() );
+                    if ( removed != null )
+                    {
+                        messages.remove( removed );
+                    }
+                }
+                case CLEAR -> {
+                    messages.clear();
+                    bodies.clear();
+                    byId.clear();
+                }
+                case RESOURCE -> {
+                    var resource = record.resource();
+                    // re-inserted to keep the least recently used order
+                    var previous = resources.remove( resource.uri() );
+                    if ( resource.content() == null )
+                    {
+                        if ( previous == null || previous.content() == null )
+                        {
+                            // the record that held the content is gone
+                            return;
+                        }
+                        resource = resource.withContent( previous.content() );
+                    }
+                    resources.put( resource.uri(), resource );
+                }
+                case RESOURCE_REMOVE -> resources.remove( record.uri() );
+                case RESOURCE_CLEAR -> resources.clear();
+            }
+        }
+
+        private void add( StoredMessage message, StoredBody body, String before )
+        {
+            if ( body != null )
+            {
+                bodies.put( message.id(), body );
+            }
+            else
+            {
+                bodies.remove( message.id() );
+            }
+            var existing = byId.put( message.id(), message );
+            if ( existing != null )
+            {
+                // known message, replace in place; usually the last one
+                int last = messages.size() - 1;
+                messages.set( last >= 0 && messages.get( last ) == existing ? last : messages.indexOf( existing ), message );
+                return;
+            }
+            var next = before != null ? byId.get( before ) : null;
+            if ( next != null )
+            {
+                messages.add( messages.indexOf( next ), message );
+            }
+            else
+            {
+                messages.add( message );
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.gradusnikov.eclipse.assistai.session;
+
+/**
+ * Listener interface for changes of the open chat sessions.
+ */
+public interface IChatSessionListener
+{
+    /**
+     * Called when a session was opened or closed.
+     */
+    default void sessionsChanged()
+    {
+    }
+
+    /**
+     * Called when another session became the active one.
+     *
+     * @param session the active session
+     */
+    void activeSessionChanged( ChatSession session );
+}
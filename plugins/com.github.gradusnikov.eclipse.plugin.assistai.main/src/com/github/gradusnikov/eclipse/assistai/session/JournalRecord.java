@@ -0,0 +1,63 @@
+package com.github.gradusnikov.eclipse.assistai.session;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.github.gradusnikov.eclipse.assistai.chat.StoredMessage;
+
+/**
+ * A single line of the conversation journal.
+ * <p>
+ * Replaying records is idempotent: adding a message with a known id replaces
+ * it, and removing an unknown message does nothing. A snapshot may therefore
+ * already contain the effect of records that follow it in the journal.
+ *
+ * @param op the operation
+ * @param message the added or updated message, without its content if that is in {@code body}
+ * @param body the location of a large message body, or null if it is inline
+ * @param id the id of the removed message
+ * @param before the id of the message the added message is inserted before, null to append
+ * @param resource the cached resource, without its content if it equals the content journaled before
+ * @param uri the uri of the removed resource
+ */
+@JsonInclude( JsonInclude.Include.NON_NULL )
+public record JournalRecord( Op op, StoredMessage message, StoredBody body, String id, String before, StoredResource resource, String uri )
+{
+    public enum Op
+    {
+        ADD, UPDATE, REMOVE, CLEAR, RESOURCE, RESOURCE_REMOVE, RESOURCE_CLEAR
+    }
+
+    public static JournalRecord add( StoredMessage message, StoredBody body, String before )
+    {
+        return new JournalRecord( Op.ADD, message, body, null, before, null, null );
+    }
+
+    public static JournalRecord update( StoredMessage message, StoredBody body )
+    {
+        return new JournalRecord( Op.UPDATE, message, body, null, null, null, null );
+    }
+
+    public static JournalRecord remove( String id )
+    {
+        return new JournalRecord( Op.REMOVE, null, null, id, null, null, null );
+    }
+
+    public static JournalRecord clear()
+    {
+        return new JournalRecord( Op.CLEAR, null, null, null, null, null, null );
+    }
+
+    public static JournalRecord resource( StoredResource resource )
+    {
+        return new JournalRecord( Op.RESOURCE, null, null, null, null, resource, null );
+    }
+
+    public static JournalRecord removeResource( String uri )
+    {
+        return new JournalRecord( Op.RESOURCE_REMOVE, null, null, null, null, null, uri );
+    }
+
+    public static JournalRecord clearResources()
+    {
+        return new JournalRecord( Op.RESOURCE_CLEAR, null, null, null, null, null, null );
+    }
+}
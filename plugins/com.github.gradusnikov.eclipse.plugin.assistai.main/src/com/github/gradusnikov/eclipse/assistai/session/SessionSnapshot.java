@@ -0,0 +1,24 @@
+package com.github.gradusnikov.eclipse.assistai.session;
+
+import java.util.List;
+import java.util.Map;
+
+import com.github.gradusnikov.eclipse.assistai.chat.StoredMessage;
+
+/**
+ * The state of a chat session at the time the journal was last compacted.
+ *
+ * @param messages the conversation, oldest first; large bodies are not inline
+ * @param bodies the large message bodies, by message id
+ * @param resources the cached resources, least recently used first
+ */
+public record SessionSnapshot( List<StoredMessage> messages, Map<String, StoredBody> bodies, List<StoredResource> resources )
+{
+    public static final SessionSnapshot EMPTY = new SessionSnapshot( List.of(), Map.of(), List.of() );
+
+    public SessionSnapshot
+    {
+        // snapshots written before bodies were kept apart have none
+        bodies = bodies != null ? bodies : Map.of();
+    }
+}
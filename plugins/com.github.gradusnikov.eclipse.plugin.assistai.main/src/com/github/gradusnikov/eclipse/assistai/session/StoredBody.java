@@ -0,0 +1,15 @@
+package com.github.gradusnikov.eclipse.assistai.session;
+
+/**
+ * A message body kept in a bodies file of the {@link ConversationJournal}
+ * instead of inline, so a restore can read it on demand.
+ *
+ * @param file the name of the bodies file in the session folder
+ * @param offset the position of the body in the file
+ * @param byteLength the length of the UTF-8 encoded body
+ * @param length the length of the body in characters
+ * @param preview the beginning of the body
+ */
+public record StoredBody( String file, long offset, int byteLength, int length, String preview )
+{
+}
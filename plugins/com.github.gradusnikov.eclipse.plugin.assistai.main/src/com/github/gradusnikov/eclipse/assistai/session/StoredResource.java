@@ -0,0 +1,58 @@
+package com.github.gradusnikov.eclipse.assistai.session;
+
+import java.net.URI;
+
+import org.eclipse.core.runtime.IPath;
+
+import com.github.gradusnikov.eclipse.assistai.resources.CachedResource;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor.ResourceType;
+
+/**
+ * Serializable form of a {@link CachedResource}. The modification stamp lets
+ * a restore tell whether a workspace file changed while the IDE was closed;
+ * records written before it was stored read as 0 and are re-validated.
+ */
+public record StoredResource( String uri, 
+                              ResourceType type, 
+                              String displayName, 
+                              String workspacePath, 
+                              String toolName, 
+                              String content, 
+                              int version,
+                              int tokenCount,
+                              long modificationStamp )
+{
+    public static StoredResource of( CachedResource resource )
+    {
+        var descriptor = resource.descriptor();
+        return new StoredResource( descriptor.uri().toString(), 
+                                   descriptor.type(), 
+                                   descriptor.displayName(), 
+                                   descriptor.workspacePath() != null ? descriptor.workspacePath().toString() : null, 
+                                   descriptor.toolName(), 
+                                   resource.content(), 
+                                   resource.version(),
+                                   // a resource in delta mode counts its diffs, the stored content is recounted
+                                   resource.deltas() != null ? 0 : resource.tokenCount(),
+                                   resource.modificationStamp() );
+    }
+
+    /**
+     * Returns this resource with the given content, e.g. without it when the
+     * journal holds the same content already.
+     */
+    public StoredResource withContent( String content )
+    {
+        return new StoredResource( uri, type, displayName, workspacePath, toolName, content, version, tokenCount, modificationStamp );
+    }
+
+    public ResourceDescriptor toDescriptor()
+    {
+        return new ResourceDescriptor( URI.create( uri ), 
+                                       type, 
+                                       displayName, 
+                                       workspacePath != null ? IPath.fromPortableString( workspacePath ) : null, 
+                                       toolName );
+    }
+}
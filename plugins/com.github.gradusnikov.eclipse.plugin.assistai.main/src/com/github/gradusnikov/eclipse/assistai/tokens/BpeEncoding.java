@@ -0,0 +1,57 @@
+package com.github.gradusnikov.eclipse.assistai.tokens;
+
+import java.util.regex.Pattern;
+
+/**
+ * Byte pair encodings with a vocabulary bundled in the <i>tokenizers</i>
+ * folder of the plugin, in the <i>.tiktoken</i> format 
+ * (one <code>base64(token) rank</code> pair per line).
+ */
+public enum BpeEncoding
+{
+    CL100K_BASE( "cl100k_base", 
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+" ),
+    
+    O200K_BASE( "o200k_base", 
+            "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+            + "|[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+            + "|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+" );
+    
+    private final String encodingName;
+    
+    private final Pattern pattern;
+    
+    private BpeEncoding( String encodingName, String regex )
+    {
+        this.encodingName = encodingName;
+        this.pattern = Pattern.compile( regex, Pattern.UNICODE_CHARACTER_CLASS );
+    }
+    
+    public String encodingName()
+    {
+        return encodingName;
+    }
+    
+    /**
+     * The pre-tokenization pattern splitting text into pieces before merging.
+     * Counting uses the equivalent {@link #pieceEnd(String, int)}.
+     */
+    public Pattern pattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * Returns the end of the piece starting at the given index, as matched by
+     * {@link #pattern()}.
+     */
+    public int pieceEnd( String text, int start )
+    {
+        return this == CL100K_BASE ? PieceSplitter.cl100kEnd( text, start ) : PieceSplitter.o200kEnd( text, start );
+    }
+    
+    public String fileName()
+    {
+        return encodingName + ".tiktoken";
+    }
+}
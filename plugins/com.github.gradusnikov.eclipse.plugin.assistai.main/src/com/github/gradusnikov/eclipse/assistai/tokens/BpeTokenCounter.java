@@ -0,0 +1,198 @@
+package com.github.gradusnikov.eclipse.assistai.tokens;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Counts tokens with a byte pair encoding (tiktoken compatible). 
+ * <p>
+ * Text is split into pieces with the encoding's pre-tokenization rules and
+ * each piece is merged by rank. Only counts are computed, no token ids are
+ * produced. Counts of recurring pieces (identifiers, keywords, indentation) are
+ * memoized, so code is counted mostly by lookup: about 100k tokens of code in
+ * a few milliseconds.
+ */
+public class BpeTokenCounter implements TokenCounter
+{
+    /** Slots of the piece memo, a power of two; a piece replaces the one in its slot */
+    private static final int MEMO_SLOTS = 1 << 18;
+    
+    /** Pieces longer than this are not memoized */
+    private static final int MAX_MEMOIZED_PIECE_LENGTH = 64;
+    
+    private final String name;
+    
+    /** Ranks keyed by token bytes, stored as ISO-8859-1 strings (one char per byte) */
+    private final Map<String, Integer> ranks;
+    
+    private final BpeEncoding encoding;
+    
+    /**
+     * Direct mapped memo of piece counts. Entries are immutable, so slots are
+     * read and replaced without locking; a lost update only costs a recount.
+     */
+    private final Piece[] pieceCounts = new Piece[MEMO_SLOTS];
+
+    private record Piece( String text, int count )
+    {
+    }
+    
+    /**
+     * @param encoding splits the text into pieces
+     */
+    public BpeTokenCounter( String name, Map<String, Integer> ranks, BpeEncoding encoding )
+    {
+        this.name = Objects.requireNonNull( name );
+        this.ranks = Objects.requireNonNull( ranks );
+        this.encoding = Objects.requireNonNull( encoding );
+    }
+    
+    /**
+     * Loads a vocabulary in the <i>.tiktoken</i> format.
+     */
+    public static BpeTokenCounter load( BpeEncoding encoding, InputStream in ) throws IOException
+    {
+        var decoder = Base64.getDecoder();
+        var ranks = new HashMap<String, Integer>( 256 * 1024 );
+        try ( var reader = new BufferedReader( new InputStreamReader( in, StandardCharsets.US_ASCII ) ) )
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                int space = line.indexOf( ' ' );
+                if ( space <= 0 )
+                {
+                    continue;
+                }
+                byte[] token = decoder.decode( line.substring( 0, space ) );
+                int rank = Integer.parseInt( line.substring( space + 1 ).trim() );
+                ranks.put( new String( token, StandardCharsets.ISO_8859_1 ), rank );
+            }
+        }
+        return new BpeTokenCounter( encoding.encodingName(), ranks, encoding );
+    }
+    
+    @Override
+    public String name()
+    {
+        return name;
+    }
+    
+    @Override
+    public int count( String text )
+    {
+        if ( text == null || text.isEmpty() )
+        {
+            return 0;
+        }
+        int count = 0;
+        for ( int start = 0, end; start < text.length(); start = end )
+        {
+            end = encoding.pieceEnd( text, start );
+            count += countPiece( text, start, end );
+        }
+        return count;
+    }
+    
+    /**
+     * Counts a piece of the text, looking it up in the memo without copying it.
+     */
+    private int countPiece( String text, int start, int end )
+    {
+        int length = end - start;
+        if ( length > MAX_MEMOIZED_PIECE_LENGTH )
+        {
+            return countBytes( text.substring( start, end ) );
+        }
+        int hash = 0;
+        for ( int i = start; i < end; i++ )
+        {
+            hash = 31 * hash + text.charAt( i );
+        }
+        int slot = ( hash ^ ( hash >>> 16 ) ) & ( MEMO_SLOTS - 1 );
+        Piece memoized = pieceCounts[slot];
+        if ( memoized != null && memoized.text().length() == length && text.regionMatches( start, memoized.text(), 0, length ) )
+        {
+            return memoized.count();
+        }
+        String piece = text.substring( start, end );
+        int count = countBytes( piece );
+        pieceCounts[slot] = new Piece( piece, count );
+        return count;
+    }
+    
+    private int countBytes( String piece )
+    {
+        String bytes = new String( piece.getBytes( StandardCharsets.UTF_8 ), StandardCharsets.ISO_8859_1 );
+        return ranks.containsKey( bytes ) ? 1 : mergeCount( bytes );
+    }
+    
+    /**
+     * Merges the lowest ranked adjacent pair until no pair is in the vocabulary
+     * and returns the number of remaining parts.
+     */
+    private int mergeCount( String bytes )
+    {
+        int length = bytes.length();
+        if ( length <= 1 )
+        {
+            return length;
+        }
+        // part boundaries: part i spans [starts[i], starts[i + 1])
+        int[] starts = new int[length + 1];
+        for ( int i = 0; i <= length; i++ )
+        {
+            starts[i] = i;
+        }
+        int parts = length;
+        // rank of merging part i with part i + 1
+        int[] pairRanks = new int[length];
+        for ( int i = 0; i < parts - 1; i++ )
+        {
+            pairRanks[i] = rankOf( bytes, starts[i], starts[i + 2] );
+        }
+        while ( parts > 1 )
+        {
+            int min = Integer.MAX_VALUE;
+            int minIndex = -1;
+            for ( int i = 0; i < parts - 1; i++ )
+            {
+                if ( pairRanks[i] < min )
+                {
+                    min = pairRanks[i];
+                    minIndex = i;
+                }
+            }
+            if ( minIndex < 0 )
+            {
+                break;
+            }
+            // merge part minIndex with minIndex + 1
+            System.arraycopy( starts, minIndex + 2, starts, minIndex + 1, parts - minIndex - 1 );
+            System.arraycopy( pairRanks, minIndex + 1, pairRanks, minIndex, parts - minIndex - 2 );
+            parts--;
+            if ( minIndex < parts - 1 )
+            {
+                pairRanks[minIndex] = rankOf( bytes, starts[minIndex], starts[minIndex + 2] );
+            }
+            if ( minIndex > 0 )
+            {
+                pairRanks[minIndex - 1] = rankOf( bytes, starts[minIndex - 1], starts[minIndex + 1] );
+            }
+        }
+        return parts;
+    }
+    
+    private int rankOf( String bytes, int start, int end )
+    {
+        Integer rank = ranks.get( bytes.substring( start, end ) );
+        return rank != null ? rank : Integer.MAX_VALUE;
+    }
+}
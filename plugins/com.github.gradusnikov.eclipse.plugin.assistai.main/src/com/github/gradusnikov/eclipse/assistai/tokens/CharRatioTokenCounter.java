@@ -0,0 +1,17 @@
+package com.github.gradusnikov.eclipse.assistai.tokens;
+
+/**
+ * Estimates tokens from the text length. Used for models without a known
+ * vocabulary and when no vocabulary is bundled.
+ */
+public record CharRatioTokenCounter( String name, double charsPerToken ) implements TokenCounter
+{
+    /** The classic rough estimate: ~4 chars per token */
+    public static final CharRatioTokenCounter DEFAULT = new CharRatioTokenCounter( "chars/4", 4.0 );
+    
+    @Override
+    public int count( String text )
+    {
+        return text != null ? (int) ( text.length() / charsPerToken ) : 0;
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.gradusnikov.eclipse.assistai.tokens;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Memoizes counts of large texts, so that resources and messages which are 
+ * re-sent on every request are counted only once.
+ * <p>
+ * Entries are found by length and hash code and hold the counted text weakly:
+ * a hit is confirmed against the text, so a hash collision is a miss rather 
+ * than a wrong count, and the memo does not keep texts alive.
+ */
+public class MemoizingTokenCounter implements TokenCounter
+{
+    /** Texts shorter than this are cheaper to count than to look up */
+    private static final int MIN_MEMOIZED_LENGTH = 1024;
+    
+    private static final int MAX_ENTRIES = 2048;
+    
+    private record ContentKey( int length, int hash ) {}
+    
+    private record Count( WeakReference<String> text, int count ) {}
+    
+    private final TokenCounter delegate;
+    
+    private final Map<ContentKey, Count> counts = new LinkedHashMap<>( 256, 0.75f, true ) 
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<ContentKey, Count> eldest )
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    
+    public MemoizingTokenCounter( TokenCounter delegate )
+    {
+        this.delegate = Objects.requireNonNull( delegate );
+    }
+    
+    @Override
+    public String name()
+    {
+        return delegate.name();
+    }
+    
+    @Override
+    public int count( String text )
+    {
+        if ( text == null || text.length() < MIN_MEMOIZED_LENGTH )
+        {
+            return delegate.count( text );
+        }
+        // String caches its hash code, so repeated lookups of the same content are O(1)
+        var key = new ContentKey( text.length(), text.hashCode() );
+        Count memo;
+        synchronized ( counts )
+        {
+            memo = counts.get( key );
+        }
+        if ( memo != null )
+        {
+            // usually the same instance; otherwise comparing is still cheaper than counting
+            String counted = memo.text().get();
+            if ( counted == text || text.equals( counted ) )
+            {
+                return memo.count();
+            }
+        }
+        int count = delegate.count( text );
+        synchronized ( counts )
+        {
+            counts.put( key, new Count( new WeakReference<>( text ), count ) );
+        }
+        return count;
+    }
+}
@@ -0,0 +1,353 @@
+package com.github.gradusnikov.eclipse.assistai.tokens;
+
+/**
+ * Hand written matchers of the pre-tokenization patterns of
+ * {@link BpeEncoding}. Each method returns the end of the piece the pattern
+ * would match at a position, i.e. the same pieces as
+ * {@link java.util.regex.Matcher#find()} with {@link BpeEncoding#pattern()},
+ * but several times faster, which is most of the cost of counting code.
+ */
+final class PieceSplitter
+{
+    private PieceSplitter()
+    {
+    }
+
+    /**
+     * <code>(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\r\n\p{L}\p{N}]?\p{L}+|\p{N}{1,3}| ?[^\s\p{L}\p{N}]+[\r\n]*|\s*[\r\n]+|\s+(?!\S)|\s+</code>
+     */
+    static int cl100kEnd( String text, int start )
+    {
+        int length = text.length();
+        int c = text.codePointAt( start );
+        int next = start + Character.charCount( c );
+
+        int contraction = contractionEnd( text, start );
+        if ( contraction > 0 )
+        {
+            return contraction;
+        }
+        // [^\r\n\p{L}\p{N}]?\p{L}+
+        if ( !isNewline( c ) && !isLetter( c ) && !isNumber( c ) && next < length && isLetter( text.codePointAt( next ) ) )
+        {
+            return letterRunEnd( text, next );
+        }
+        if ( isLetter( c ) )
+        {
+            return letterRunEnd( text, start );
+        }
+        if ( isNumber( c ) )
+        {
+            return numberRunEnd( text, start );
+        }
+        int punctuation = punctuationEnd( text, start, false );
+        if ( punctuation > 0 )
+        {
+            return punctuation;
+        }
+        return whitespaceEnd( text, start );
+    }
+
+    /**
+     * <code>[^\r\n\p{L}\p{N}]?[\p{Lu}\p{Lt}\p{Lm}\p{Lo}\p{M}]*[\p{Ll}\p{Lm}\p{Lo}\p{M}]+(?i:'s|'t|'re|'ve|'m|'ll|'d)?
+     * |[^\r\n\p{L}\p{N}]?[\p{Lu}\p{Lt}\p{Lm}\p{Lo}\p{M}]+[\p{Ll}\p{Lm}\p{Lo}\p{M}]*(?i:'s|'t|'re|'ve|'m|'ll|'d)?
+     * |\p{N}{1,3}| ?[^\s\p{L}\p{N}]+[\r\n/]*|\s*[\r\n]+|\s+(?!\S)|\s+</code>
+     */
+    static int o200kEnd( String text, int start )
+    {
+        int c = text.codePointAt( start );
+        int next = start + Character.charCount( c );
+        boolean prefix = !isNewline( c ) && !isLetter( c ) && !isNumber( c );
+
+        int word = prefix && next < text.length() ? lowerWordEnd( text, next ) : -1;
+        if ( word < 0 )
+        {
+            word = lowerWordEnd( text, start );
+        }
+        if ( word < 0 && prefix && next < text.length() )
+        {
+            word = upperWordEnd( text, next );
+        }
+        if ( word < 0 )
+        {
+            word = upperWordEnd( text, start );
+        }
+        if ( word >= 0 )
+        {
+            int contraction = word < text.length() ? contractionEnd( text, word ) : -1;
+            return contraction > 0 ? contraction : word;
+        }
+        if ( isNumber( c ) )
+        {
+            return numberRunEnd( text, start );
+        }
+        int punctuation = punctuationEnd( text, start, true );
+        if ( punctuation > 0 )
+        {
+            return punctuation;
+        }
+        return whitespaceEnd( text, start );
+    }
+
+    /**
+     * <code>[\p{Lu}\p{Lt}\p{Lm}\p{Lo}\p{M}]*[\p{Ll}\p{Lm}\p{Lo}\p{M}]+</code>,
+     * or -1. The greedy upper case run gives back characters until one can
+     * start the lower case run.
+     */
+    private static int lowerWordEnd( String text, int start )
+    {
+        int length = text.length();
+        int upperEnd = start;
+        while ( upperEnd < length )
+        {
+            int c = text.codePointAt( upperEnd );
+            if ( !isUpperClass( c ) )
+            {
+                break;
+            }
+            upperEnd += Character.charCount( c );
+        }
+        int lowerStart = upperEnd;
+        while ( true )
+        {
+            if ( lowerStart < length && isLowerClass( text.codePointAt( lowerStart ) ) )
+            {
+                int end = lowerStart;
+                while ( end < length )
+                {
+                    int c = text.codePointAt( end );
+                    if ( !isLowerClass( c ) )
+                    {
+                        break;
+                    }
+                    end += Character.charCount( c );
+                }
+                return end;
+            }
+            if ( lowerStart == start )
+            {
+                return -1;
+            }
+            lowerStart = text.offsetByCodePoints( lowerStart, -1 );
+        }
+    }
+
+    /**
+     * <code>[\p{Lu}\p{Lt}\p{Lm}\p{Lo}\p{M}]+[\p{Ll}\p{Lm}\p{Lo}\p{M}]*</code>, or -1.
+     */
+    private static int upperWordEnd( String text, int start )
+    {
+        int length = text.length();
+        int end = start;
+        while ( end < length )
+        {
+            int c = text.codePointAt( end );
+            if ( !isUpperClass( c ) )
+            {
+                break;
+            }
+            end += Character.charCount( c );
+        }
+        if ( end == start )
+        {
+            return -1;
+        }
+        while ( end < length )
+        {
+            int c = text.codePointAt( end );
+            if ( !isLowerClass( c ) )
+            {
+                break;
+            }
+            end += Character.charCount( c );
+        }
+        return end;
+    }
+
+    /**
+     * <code>(?i:'s|'t|'re|'ve|'m|'ll|'d)</code>, or -1.
+     */
+    private static int contractionEnd( String text, int start )
+    {
+        if ( text.charAt( start ) != '\'' || start + 1 >= text.length() )
+        {
+            return -1;
+        }
+        char first = text.charAt( start + 1 );
+        if ( is( first, 's' ) || is( first, 't' ) || is( first, 'm' ) || is( first, 'd' ) )
+        {
+            return start + 2;
+        }
+        if ( start + 2 < text.length() )
+        {
+            char second = text.charAt( start + 2 );
+            if ( ( is( first, 'r' ) || is( first, 'v' ) ) && is( second, 'e' ) || is( first, 'l' ) && is( second, 'l' ) )
+            {
+                return start + 3;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Case insensitive match of an ASCII letter; the long s folds to s.
+     */
+    private static boolean is( char c, char lower )
+    {
+        return c == lower || c == Character.toUpperCase( lower ) || ( lower == 's' && c == '\u017F' );
+    }
+
+    private static int letterRunEnd( String text, int start )
+    {
+        int end = start;
+        while ( end < text.length() )
+        {
+            int c = text.codePointAt( end );
+            if ( !isLetter( c ) )
+            {
+                break;
+            }
+            end += Character.charCount( c );
+        }
+        return end;
+    }
+
+    /** <code>\p{N}{1,3}</code> */
+    private static int numberRunEnd( String text, int start )
+    {
+        int end = start;
+        for ( int i = 0; i < 3 && end < text.length() && isNumber( text.codePointAt( end ) ); i++ )
+        {
+            end += Character.charCount( text.codePointAt( end ) );
+        }
+        return end;
+    }
+
+    /**
+     * <code> ?[^\s\p{L}\p{N}]+[\r\n]*</code>, with a slash in the trailing
+     * run for o200k, or -1.
+     */
+    private static int punctuationEnd( String text, int start, boolean slash )
+    {
+        int length = text.length();
+        int end = start;
+        if ( text.charAt( end ) == ' ' && end + 1 < length && isPunctuation( text.codePointAt( end + 1 ) ) )
+        {
+            end++;
+        }
+        if ( !isPunctuation( text.codePointAt( end ) ) )
+        {
+            return -1;
+        }
+        while ( end < length )
+        {
+            int c = text.codePointAt( end );
+            if ( !isPunctuation( c ) )
+            {
+                break;
+            }
+            end += Character.charCount( c );
+        }
+        while ( end < length && ( isNewline( text.charAt( end ) ) || ( slash && text.charAt( end ) == '/' ) ) )
+        {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * <code>\s*[\r\n]+|\s+(?!\S)|\s+</code>, for a whitespace character at
+     * the start.
+     */
+    private static int whitespaceEnd( String text, int start )
+    {
+        int length = text.length();
+        int end = start;
+        int lastNewline = -1;
+        while ( end < length && isWhitespace( text.charAt( end ) ) )
+        {
+            if ( isNewline( text.charAt( end ) ) )
+            {
+                lastNewline = end;
+            }
+            end++;
+        }
+        if ( lastNewline >= 0 )
+        {
+            return lastNewline + 1;
+        }
+        if ( end < length && end - start > 1 )
+        {
+            // leave the last space to the following word
+            return end - 1;
+        }
+        return end;
+    }
+
+    private static boolean isNewline( int c )
+    {
+        return c == '\r' || c == '\n';
+    }
+
+    private static boolean isLetter( int c )
+    {
+        return c < 0x80 ? ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) : Character.isLetter( c );
+    }
+
+    private static boolean isNumber( int c )
+    {
+        if ( c < 0x80 )
+        {
+            return c >= '0' && c <= '9';
+        }
+        int type = Character.getType( c );
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER || type == Character.OTHER_NUMBER;
+    }
+
+    private static boolean isPunctuation( int c )
+    {
+        return !isWhitespace( c ) && !isLetter( c ) && !isNumber( c );
+    }
+
+    /**
+     * <code>\s</code> of a pattern with {@link java.util.regex.Pattern#UNICODE_CHARACTER_CLASS}:
+     * the Unicode White_Space property.
+     */
+    private static boolean isWhitespace( int c )
+    {
+        if ( c < 0x80 )
+        {
+            return c == ' ' || ( c >= '\t' && c <= '\r' );
+        }
+        return c == 0x85 || c == 0xA0 || c == 0x1680 || ( c >= 0x2000 && c <= 0x200A ) || c == 0x2028 || c == 0x2029 || c == 0x202F
+                || c == 0x205F || c == 0x3000;
+    }
+
+    /** <code>[\p{Lu}\p{Lt}\p{Lm}\p{Lo}\p{M}]</code> */
+    private static boolean isUpperClass( int c )
+    {
+        if ( c < 0x80 )
+        {
+            return c >= 'A' && c <= 'Z';
+        }
+        int type = Character.getType( c );
+        return type == Character.UPPERCASE_LETTER || type == Character.TITLECASE_LETTER || type == Character.MODIFIER_LETTER
+                || type == Character.OTHER_LETTER || isMark( type );
+    }
+
+    /** <code>[\p{Ll}\p{Lm}\p{Lo}\p{M}]</code> */
+    private static boolean isLowerClass( int c )
+    {
+        if ( c < 0x80 )
+        {
+            return c >= 'a' && c <= 'z';
+        }
+        int type = Character.getType( c );
+        return type == Character.LOWERCASE_LETTER || type == Character.MODIFIER_LETTER || type == Character.OTHER_LETTER || isMark( type );
+    }
+
+    private static boolean isMark( int type )
+    {
+        return type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.gradusnikov.eclipse.assistai.tokens;
+
+/**
+ * Counts the tokens a model would see for a given text.
+ */
+public interface TokenCounter
+{
+    /**
+     * Returns a short name of the counting scheme, e.g. <i>cl100k_base</i>.
+     */
+    String name();
+    
+    /**
+     * Counts the tokens of the given text.
+     * 
+     * @param text the text, may be null
+     * @return the number of tokens, 0 for null or empty text
+     */
+    int count( String text );
+}
@@ -0,0 +1,140 @@
+package com.github.gradusnikov.eclipse.assistai.tokens;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.e4.core.di.annotations.Creatable;
+
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptorRepository;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Selects the {@link TokenCounter} for a model.
+ * <p>
+ * OpenAI models are counted with their own encoding. Other well known model
+ * families use <i>cl100k_base</i> as an approximation, which is considerably
+ * closer for code than a character ratio. Unknown models, and any model whose
+ * vocabulary is not bundled, fall back to {@link CharRatioTokenCounter#DEFAULT}.
+ * The vocabularies are fetched into the <i>tokenizers</i> folder before the
+ * build, so a bundle built without them is expected and only logged once.
+ * Vocabularies are loaded lazily, once.
+ */
+@Creatable
+@Singleton
+public class TokenCounterRegistry
+{
+    private static final String BASE_URL = "platform:/plugin/com.github.gradusnikov.eclipse.plugin.assistai.main/tokenizers/";
+    
+    private static final Pattern O200K_MODELS = Pattern.compile( "^(gpt-4o|gpt-4\\.1|gpt-5|o\\d).*" );
+    
+    private static final Pattern CL100K_MODELS = Pattern.compile( "^(gpt-4|gpt-3\\.5|text-embedding|claude|deepseek|grok|qwen|llama|mistral|gemini).*" );
+    
+    private final ILog logger;
+    
+    private final String baseUrl;
+    
+    private final ModelApiDescriptorRepository modelApiDescriptorRepository;
+    
+    private final TokenCounter fallback = new MemoizingTokenCounter( CharRatioTokenCounter.DEFAULT );
+    
+    /** Loaded counters; an empty value marks a vocabulary that could not be loaded */
+    private final Map<BpeEncoding, Optional<TokenCounter>> counters = new EnumMap<>( BpeEncoding.class );
+    
+    @Inject
+    public TokenCounterRegistry( ILog logger, ModelApiDescriptorRepository modelApiDescriptorRepository )
+    {
+        this( logger, modelApiDescriptorRepository, BASE_URL );
+    }
+    
+    /**
+     * @param baseUrl the folder URL the vocabularies are read from, ending with a slash
+     */
+    TokenCounterRegistry( ILog logger, ModelApiDescriptorRepository modelApiDescriptorRepository, String baseUrl )
+    {
+        this.logger = Objects.requireNonNull( logger );
+        this.modelApiDescriptorRepository = Objects.requireNonNull( modelApiDescriptorRepository );
+        this.baseUrl = Objects.requireNonNull( baseUrl );
+    }
+    
+    /**
+     * Returns the counter for the chat model currently in use.
+     */
+    public TokenCounter forChatModel()
+    {
+        return forModel( modelApiDescriptorRepository.getChatModelInUse() );
+    }
+    
+    /**
+     * Returns the counter for the given model, or the character ratio fallback.
+     */
+    public TokenCounter forModel( ModelApiDescriptor model )
+    {
+        if ( model == null || model.modelName() == null )
+        {
+            return fallback;
+        }
+        return encodingOf( model.modelName() ).flatMap( this::forEncoding ).orElse( fallback );
+    }
+    
+    /**
+     * Tells whether the vocabulary of an encoding is bundled and readable.
+     */
+    public boolean isAvailable( BpeEncoding encoding )
+    {
+        return forEncoding( encoding ).isPresent();
+    }
+    
+    /**
+     * Returns the fallback counter used for unknown models.
+     */
+    public TokenCounter fallback()
+    {
+        return fallback;
+    }
+    
+    static Optional<BpeEncoding> encodingOf( String modelName )
+    {
+        var name = modelName.toLowerCase( Locale.ROOT );
+        if ( O200K_MODELS.matcher( name ).matches() )
+        {
+            return Optional.of( BpeEncoding.O200K_BASE );
+        }
+        if ( CL100K_MODELS.matcher( name ).matches() )
+        {
+            return Optional.of( BpeEncoding.CL100K_BASE );
+        }
+        return Optional.empty();
+    }
+    
+    private synchronized Optional<TokenCounter> forEncoding( BpeEncoding encoding )
+    {
+        return counters.computeIfAbsent( encoding, this::load );
+    }
+    
+    private Optional<TokenCounter> load( BpeEncoding encoding )
+    {
+        long start = System.currentTimeMillis();
+        try ( var in = new URL( baseUrl + encoding.fileName() ).openStream() )
+        {
+            TokenCounter counter = new MemoizingTokenCounter( BpeTokenCounter.load( encoding, in ) );
+            logger.info( "Loaded " + encoding.encodingName() + " vocabulary in " + ( System.currentTimeMillis() - start ) + " ms" );
+            return Optional.of( counter );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            logger.info( "Vocabulary " + encoding.fileName() + " is not bundled, counting tokens with " + fallback.name()
+                    + "; run tokenizers/fetch-vocabularies.sh before building to bundle it (" + e.getMessage() + ")" );
+            return Optional.empty();
+        }
+    }
+}
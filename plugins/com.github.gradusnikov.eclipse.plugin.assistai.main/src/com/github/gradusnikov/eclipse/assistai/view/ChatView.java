@@ -64,6 +64,7 @@ import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
 import com.github.gradusnikov.eclipse.assistai.chat.Attachment.UiVisitor;
 import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
 import com.github.gradusnikov.eclipse.assistai.prompt.MarkdownParser;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSession;
 import com.github.gradusnikov.eclipse.assistai.tools.AssistaiSharedFiles;
 import com.github.gradusnikov.eclipse.assistai.tools.AssistaiSharedFonts;
 import com.github.gradusnikov.eclipse.assistai.tools.AssistaiSharedImages;
@@ -111,6 +112,12 @@ public class ChatView
 
 	private Menu modelMenu;
 	
+	private ToolItem sessionDropdownItem;
+	
+	private List<ChatSession> sessions = List.of();
+	
+	private ChatSession activeSession;
+	
 	private Map<String, String> autocompleteModel;
 	
 	private boolean autoScrollEnabled = true;
@@ -204,6 +211,7 @@ public class ChatView
         actionToolBar.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, true, false));
         
         // Add toolbar items instead of buttons
+        sessionDropdownItem = createSessionSelectorToolItem(actionToolBar);
         modelDropdownItem = createModelSelectorComposite(actionToolBar);
         createAttachmentToolItem(actionToolBar);
         createReplayToolItem(actionToolBar);
@@ -522,6 +530,46 @@ public class ChatView
     }
     
     
+    /**
+     * Creates a dropdown toolbar item that switches between chat sessions and
+     * opens or closes them.
+     * 
+     * @param toolbar The parent toolbar
+     * @return The created toolbar item
+     */
+    private ToolItem createSessionSelectorToolItem(ToolBar toolbar) {
+        ToolItem item = new ToolItem(toolbar, SWT.DROP_DOWN);
+        item.setText("Chat 1");
+        item.setToolTipText("Switch, open or close chat sessions");
+        Menu sessionMenu = new Menu(toolbar.getShell(), SWT.POP_UP);
+        item.addListener(SWT.Selection, event -> {
+            // Rebuild the menu each time to ensure it reflects current state
+            for (MenuItem menuItem : sessionMenu.getItems()) {
+                menuItem.dispose();
+            }
+            for (ChatSession session : sessions) {
+                MenuItem menuItem = new MenuItem(sessionMenu, SWT.RADIO);
+                menuItem.setText(session.getName());
+                menuItem.setSelection(session == activeSession);
+                menuItem.addListener(SWT.Selection, e -> presenter.onSessionSelected(session.getId()));
+            }
+            new MenuItem(sessionMenu, SWT.SEPARATOR);
+            MenuItem newItem = new MenuItem(sessionMenu, SWT.PUSH);
+            newItem.setText("New Chat");
+            newItem.addListener(SWT.Selection, e -> presenter.onNewSession());
+            MenuItem closeItem = new MenuItem(sessionMenu, SWT.PUSH);
+            closeItem.setText("Close Chat");
+            closeItem.setEnabled(sessions.indexOf(activeSession) > 0);
+            closeItem.addListener(SWT.Selection, e -> presenter.onCloseSession());
+
+            Rectangle rect = item.getBounds();
+            Point pt = toolbar.toDisplay(new Point(rect.x, rect.y + rect.height));
+            sessionMenu.setLocation(pt.x, pt.y);
+            sessionMenu.setVisible(true);
+        });
+        return item;
+    }
+    
     /**
      * Creates a model selector composite with model icon, name, and dropdown button
      * 
@@ -658,6 +706,8 @@ public class ChatView
         new NewFileFunction( browser, "eclipseNewFile" );
         new ScrollInteractionFunction( browser, "eclipseScrollInteraction" );
         new RemoveMessageFunction( browser, "eclipseRemoveMessage" );
+        new ExpandMessageFunction( browser, "eclipseExpandMessage" );
+        new LoadOlderMessagesFunction( browser, "eclipseLoadOlderMessages" );
     }
 
     private void initializeChatView( Browser browser )
@@ -772,7 +822,20 @@ public class ChatView
 
     public void appendMessage( String messageId, String role )
     {
-        //
+        insertMessage( messageId, role, false );
+    }
+
+    /**
+     * Inserts a message above all messages shown, used when older messages
+     * of a restored session are paged in.
+     */
+    public void prependMessage( String messageId, String role )
+    {
+        insertMessage( messageId, role, true );
+    }
+
+    private void insertMessage( String messageId, String role, boolean prepend )
+    {
         String cssClass = "user".equals( role ) ? "chat-bubble me" : "chat-bubble you";
         uiSync.asyncExec( () -> {
             browser.execute( """
@@ -795,10 +858,15 @@ public class ChatView
                     node.appendChild(toolbar);
                     node.appendChild(content);
                     
-                    document.getElementById("content").appendChild(node);
-                    	""".replace( "${id}", messageId ).replace( "${cssClass}", cssClass ) );
+                    var container = document.getElementById("content");
+                    if (${prepend}) {
+                        container.insertBefore(node, container.firstChild);
+                    } else {
+                        container.appendChild(node);
+                    }
+                    	""".replace( "${id}", messageId ).replace( "${cssClass}", cssClass ).replace( "${prepend}", Boolean.toString( prepend ) ) );
             // Scroll down only if auto-scroll is enabled
-            if ( autoScrollEnabled )
+            if ( !prepend && autoScrollEnabled )
             {
                 browser.execute( "window.scrollTo(0, document.body.scrollHeight);" );
             }
@@ -807,6 +875,15 @@ public class ChatView
 
 	
 	// Add a method to hide the tool use message
+	/**
+	 * Removes all messages shown, keeping the page, its scripts and
+	 * notifications.
+	 */
+	public void clearMessages()
+	{
+	    uiSync.asyncExec(() -> browser.execute( "document.getElementById(\"content\").innerHTML = \"\";" ));
+	}
+
 	public void hideMessage(String messageId) 
 	{
 	    uiSync.asyncExec(() -> {
@@ -820,6 +897,27 @@ public class ChatView
 	}
 
 
+	/**
+	 * Adds an icon to the message toolbar that restores the messages
+	 * summarized by the message.
+	 */
+	public void addExpandAction( String messageId )
+	{
+	    uiSync.asyncExec(() -> {
+	        browser.execute("""
+	                var node = document.getElementById("message-${id}");
+	                if(node) {
+	                    var toolbar = node.querySelector('.message-toolbar');
+	                    var expand = document.createElement('i');
+	                    expand.setAttribute('class', 'fa-solid fa-up-right-and-down-left-from-center');
+	                    expand.setAttribute('title', 'Restore compacted messages');
+	                    expand.onclick = function() { window.eclipseExpandMessage('${id}'); };
+	                    toolbar.insertBefore(expand, toolbar.firstChild);
+	                }
+	                """.replace("${id}", messageId));
+	    });
+	}
+
 	public void removeMessage( String messageId )
     {
 	    uiSync.asyncExec(() -> {
@@ -892,6 +990,19 @@ public class ChatView
         } );
     }
 
+    /**
+     * Shows the open chat sessions in the session selector.
+     */
+    public void setSessions( List<ChatSession> sessions, ChatSession active )
+    {
+        uiSync.asyncExec( () -> {
+            this.sessions = List.copyOf( sessions );
+            this.activeSession = active;
+            sessionDropdownItem.setText( active.getName() );
+            updateLayout( actionToolBar );
+        } );
+    }
+
     public void setAvailableModels(List<ModelApiDescriptor> availableModels, String selected ) 
     {
     	uiSync.asyncExec( () -> {
@@ -1292,6 +1403,38 @@ public class ChatView
         }
     }
     
+    private class ExpandMessageFunction extends BrowserFunction
+    {
+        public ExpandMessageFunction( Browser browser, String name )
+        {
+            super( browser, name );
+        }
+        @Override
+        public Object function( Object[] arguments )
+        {
+            if ( arguments.length > 0 && arguments[0] instanceof String )
+            {
+                String messageId = (String) arguments[0];
+                presenter.onExpandMessage( messageId );
+            }
+            return null;
+        }
+    }
+
+    private class LoadOlderMessagesFunction extends BrowserFunction
+    {
+        public LoadOlderMessagesFunction( Browser browser, String name )
+        {
+            super( browser, name );
+        }
+        @Override
+        public Object function( Object[] arguments )
+        {
+            presenter.onLoadOlderMessages();
+            return null;
+        }
+    }
+
     private class ScrollInteractionFunction extends BrowserFunction
     {
         public ScrollInteractionFunction( Browser browser, String name )
@@ -53,11 +53,14 @@ import com.github.gradusnikov.eclipse.assistai.chat.Attachment;
 import com.github.gradusnikov.eclipse.assistai.chat.Attachment.FileContentAttachment;
 import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
 import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
+import com.github.gradusnikov.eclipse.assistai.chat.ConversationArchive;
+import com.github.gradusnikov.eclipse.assistai.chat.MessageContentStore;
 import com.github.gradusnikov.eclipse.assistai.jobs.AssistAIJobConstants;
+import com.github.gradusnikov.eclipse.assistai.jobs.AssistAIJobRule;
+import com.github.gradusnikov.eclipse.assistai.jobs.RestoreSessionJob;
 import com.github.gradusnikov.eclipse.assistai.jobs.SendConversationJob;
 import com.github.gradusnikov.eclipse.assistai.mcp.services.CodeEditingService;
 import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptorRepository;
-import com.github.gradusnikov.eclipse.assistai.network.subscribers.AppendMessageToViewSubscriber;
 import com.github.gradusnikov.eclipse.assistai.prompt.ChatMessageFactory;
 import com.github.gradusnikov.eclipse.assistai.prompt.ChatMessageUtilities;
 import com.github.gradusnikov.eclipse.assistai.prompt.PromptRepository;
@@ -65,6 +68,9 @@ import com.github.gradusnikov.eclipse.assistai.prompt.Prompts;
 import com.github.gradusnikov.eclipse.assistai.resources.IResourceCacheListener;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCacheEvent;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSession;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSessionManager;
+import com.github.gradusnikov.eclipse.assistai.session.IChatSessionListener;
 import com.github.gradusnikov.eclipse.assistai.tools.ResourceUtilities;
 import com.github.gradusnikov.eclipse.assistai.view.ChatView.NotificationType;
 
@@ -75,7 +81,7 @@ import jakarta.inject.Singleton;
 
 @Creatable
 @Singleton
-public class ChatViewPresenter implements IResourceCacheListener
+public class ChatViewPresenter implements IResourceCacheListener, IChatSessionListener
 {
     @Inject
     private ILog                          logger;
@@ -84,7 +90,7 @@ public class ChatViewPresenter implements IResourceCacheListener
     private PartAccessor                  partAccessor;
 
     @Inject
-    private Conversation                  conversation;
+    private ChatSessionManager            sessionManager;
 
     @Inject
     private ChatMessageFactory            chatMessageFactory;
@@ -96,8 +102,8 @@ public class ChatViewPresenter implements IResourceCacheListener
     private Provider<SendConversationJob> sendConversationJobProvider;
 
     @Inject
-    private AppendMessageToViewSubscriber appendMessageToViewSubscriber;
-    
+    private Provider<RestoreSessionJob>   restoreSessionJobProvider;
+
     @Inject
     private ApplyPatchWizardHelper        applyPatchWizzardHelper;
     
@@ -114,23 +120,55 @@ public class ChatViewPresenter implements IResourceCacheListener
     private UISynchronize uiSync;
     
     @Inject
-    private ResourceCache resourceCache;
+    private ConversationArchive conversationArchive;
+    
+    @Inject
+    private MessageContentStore messageContentStore;
     
     
     private IPreferenceStore preferences;
     
     private static final String           LAST_SELECTED_DIR_KEY = "lastSelectedDirectory";
 
+    /** Restored messages rendered at a time */
+    private static final int              RESTORED_PAGE_SIZE    = 30;
+
+    /** Resource cache of the active session, observed for notifications */
+    private ResourceCache                 observedCache;
+
+    /** Restored messages not rendered yet, oldest first */
+    private final List<ChatMessage>       olderMessages         = new ArrayList<>();
+
     private final List<Attachment>        attachments           = new ArrayList<>();
 
     @PostConstruct
     public void init()
     {
         preferences = Activator.getDefault().getPreferenceStore();
-    	appendMessageToViewSubscriber.setPresenter( this );
-        resourceCache.addCacheListener(this);
+        observedCache = sessionManager.getActiveSession().getResourceCache();
+        observedCache.addCacheListener(this);
+        sessionManager.addSessionListener( this );
         
         initializeAvailableModels();
+        initializeSessions();
+        restoreSessionJobProvider.get().schedule();
+    }
+    
+    private Conversation activeConversation()
+    {
+        return sessionManager.getActiveSession().getConversation();
+    }
+    
+    /**
+     * Applies the given action to the chat view if the session is the one
+     * shown.
+     */
+    private void applyToSessionView( ChatSession session, Consumer<? super ChatView> consumer )
+    {
+        if ( sessionManager.getActiveSession() == session )
+        {
+            applyToView( consumer );
+        }
     }
     
     @Override
@@ -151,7 +189,7 @@ public class ChatViewPresenter implements IResourceCacheListener
 
 	private void initializeAvailableModels() {
 		// Initialize model from preferences if available
-        var selectedModel = modelReposotiry.getChatModelInUse();
+        var selectedModel = modelReposotiry.getChatModel( sessionManager.getActiveSession().getModelUid() );
         var models = modelReposotiry.listModelApiDescriptors();
         applyToView( view -> {
         	view.setAvailableModels( models, Optional.ofNullable( selectedModel.uid() ).orElse("" ) );
@@ -161,9 +199,28 @@ public class ChatViewPresenter implements IResourceCacheListener
     public void onClear()
     {
         onStop();
+        var session = sessionManager.getActiveSession();
+        var conversation = session.getConversation();
+        messageContentStore.reset( session.getId() );
+        if ( sessionManager.getSessions().size() == 1 )
+        {
+            conversationArchive.clear();
+        }
+        else
+        {
+            // archives of the other sessions are kept
+            conversation.snapshot()
+                        .stream()
+                        .filter( ChatMessage::isCompactionSummary )
+                        .forEach( summary -> conversationArchive.delete( summary.getArchiveId() ) );
+        }
         conversation.clear();
+        synchronized ( olderMessages )
+        {
+            olderMessages.clear();
+        }
         attachments.clear();
-        resourceCache.clear();
+        session.getResourceCache().clear();
         applyToView( view -> {
             view.clearChatView();
             view.clearUserInput();
@@ -174,7 +231,8 @@ public class ChatViewPresenter implements IResourceCacheListener
     public void onSendUserMessage( String text )
     {
         ChatMessage message = createUserMessage( text );
-        conversation.add( message );
+        var session = sessionManager.getActiveSession();
+        session.getConversation().add( message );
         ChatMessage displayedMessage = createUserMessage( "" );
         displayedMessage.setContent( text );
         applyToView( part -> {
@@ -185,7 +243,14 @@ public class ChatViewPresenter implements IResourceCacheListener
             part.setMessageHtml( message.getId(), content );
             attachments.clear();
         } );
-        sendConversationJobProvider.get().schedule();
+        scheduleSend( session );
+    }
+    
+    private void scheduleSend( ChatSession session )
+    {
+        var job = sendConversationJobProvider.get();
+        job.setSession( session );
+        job.schedule();
     }
 
     private ChatMessage createUserMessage( String userMessage )
@@ -207,42 +272,48 @@ public class ChatViewPresenter implements IResourceCacheListener
     }
 
 
-	public ChatMessage beginFunctionCallMessage() {
+	public ChatMessage beginFunctionCallMessage( ChatSession session ) {
         ChatMessage message = chatMessageFactory.createAssistantChatMessage( "" );
         // DO NOT ADD IT TO CONVERSATION
-        applyToView( messageView -> {
+        applyToSessionView( session, messageView -> {
             messageView.appendMessage( message.getId(), message.getRole() );
             messageView.setInputEnabled( false );
         } );
         return message;
 	}
 
-	public ChatMessage beginMessageFromAssistant()
+	public ChatMessage beginMessageFromAssistant( ChatSession session )
     {
         ChatMessage message = chatMessageFactory.createAssistantChatMessage( "" );
-        conversation.add( message );
-        applyToView( messageView -> {
+        session.getConversation().add( message );
+        applyToSessionView( session, messageView -> {
             messageView.appendMessage( message.getId(), message.getRole() );
             messageView.setInputEnabled( false );
         } );
         return message;
     }
 
-    public void updateMessageFromAssistant( ChatMessage message )
+    public void updateMessageFromAssistant( ChatSession session, ChatMessage message )
     {
-        applyToView( messageView -> {
+        applyToSessionView( session, messageView -> {
             messageView.setMessageHtml( message.getId(), message.getContent() );
         } );
     }
 
-    public void endMessageFromAssistant( ChatMessage message )
+    public void endMessageFromAssistant( ChatSession session, ChatMessage message )
     {
-    	applyToView( messageView -> {
+        var conversation = session.getConversation();
+        conversation.messageUpdated( message );
+        boolean blank = message.getContent().isBlank();
+        if ( blank )
+        {
+            conversation.removeMessageById( message.getId() );
+        }
+    	applyToSessionView( session, messageView -> {
             messageView.setInputEnabled( true );
             messageView.setFocus();
-            if ( message.getContent().isBlank() )
+            if ( blank )
             {
-            	conversation.removeLastMessage();
             	messageView.removeMessage(message.getId());
             }
         } );
@@ -258,13 +329,16 @@ public class ChatViewPresenter implements IResourceCacheListener
     
     
     /**
-     * Cancels all running ChatGPT jobs
+     * Cancels all running ChatGPT jobs, except the ones of chat sessions in
+     * the background
      */
     public void onStop()
     {
+        var session = sessionManager.getActiveSession();
         var jobs = jobManager.find( null );
         Arrays.stream( jobs )
         	  .filter( job -> job.getName().startsWith( AssistAIJobConstants.JOB_PREFIX ) )
+        	  .filter( job -> !belongsToOtherSession( job, session ) )
         	  .forEach( Job::cancel );
 
         applyToView( messageView -> {
@@ -272,6 +346,15 @@ public class ChatViewPresenter implements IResourceCacheListener
         } );
     }
 
+    private boolean belongsToOtherSession( Job job, ChatSession session )
+    {
+        if ( job.getRule() instanceof AssistAIJobRule rule )
+        {
+            return !rule.getKey().equals( session.getId() );
+        }
+        return sessionManager.getSessions().stream().anyMatch( other -> other != session && job.belongsTo( other ) );
+    }
+
     /**
      * Copies the given code block to the system clipboard.
      *
@@ -294,7 +377,8 @@ public class ChatViewPresenter implements IResourceCacheListener
 
     public void onSendPredefinedPrompt( Prompts type, ChatMessage message )
     {
-        conversation.add( message );
+        var session = sessionManager.getActiveSession();
+        session.getConversation().add( message );
 
         // update view
         applyToView( messageView -> {
@@ -303,7 +387,7 @@ public class ChatViewPresenter implements IResourceCacheListener
         } );
 
         // schedule message
-        sendConversationJobProvider.get().schedule();
+        scheduleSend( session );
     }
 
     public void onAddAttachment()
@@ -556,6 +640,8 @@ public class ChatViewPresenter implements IResourceCacheListener
     {
         logger.info("Model selected: " + modelId);
         
+        // the session keeps its model, new sessions start with the last one selected
+        sessionManager.getActiveSession().setModelUid( modelId );
         modelReposotiry.setChatModelInUse( modelId );
         initializeAvailableModels();
     }
@@ -570,17 +656,20 @@ public class ChatViewPresenter implements IResourceCacheListener
     public void onReplayLastMessage() {
         logger.info("Replaying last message with current model");
         
+        var session = sessionManager.getActiveSession();
+        var conversation = session.getConversation();
         // Check if there's a conversation with at least one message
-        if (conversation.messages().isEmpty()) 
+        var last = conversation.lastMessage();
+        if (last.isEmpty()) 
         {
             return;
         }
         // If the last message is from the assistant, remove it
         // (We want to regenerate the assistant's response)
-        List<ChatMessage> messages = conversation.messages();
-        if (!messages.isEmpty() && "assistant".equals(messages.get(messages.size() - 1).getRole())) {
-            ChatMessage lastMessage = messages.get(messages.size() - 1);
-            conversation.removeLastMessage();
+        if ("assistant".equals(last.get().getRole())) {
+            ChatMessage lastMessage = last.get();
+            // by id, a compaction running meanwhile may have moved it
+            conversation.removeMessageById(lastMessage.getId());
             
             // Remove the message from the UI
             applyToView(view -> {
@@ -588,23 +677,209 @@ public class ChatViewPresenter implements IResourceCacheListener
             });
         }
         // Send the conversation for processing to generate a new response
-    	sendConversationJobProvider.get().schedule();
+    	scheduleSend( session );
     }
 
 	public void onViewVisible() 
 	{
 		initializeAvailableModels();
+		initializeSessions();
 		updateAutocomplete();
 	}
 	
 	public void onRemoveMessage(String messageId )
 	{
-	    this.conversation.removeMessageById( messageId );
+	    activeConversation().removeMessageById( messageId );
 	    applyToView( view -> {
 	        view.removeMessage( messageId );
 	    } );
 	}
 	
+	/**
+	 * Shows a marker for compacted history. The marker offers to restore the
+	 * archived messages.
+	 */
+	public void onConversationCompacted( ChatSession session, ChatMessage summary, int compactedMessages, int compactedTokens )
+	{
+	    String text = String.format( "*Compacted %d earlier messages (~%,d tokens) into a summary to keep the conversation "
+	            + "within the model's context window. Use the expand icon to restore them.*", compactedMessages, compactedTokens );
+	    applyToSessionView( session, view -> {
+	        view.appendMessage( summary.getId(), "assistant" );
+	        view.setMessageHtml( summary.getId(), text );
+	        view.addExpandAction( summary.getId() );
+	    } );
+	}
+	
+	/**
+	 * Restores the archived messages of a compaction summary. Automatic
+	 * compaction stays paused until the conversation is cleared, so restored
+	 * messages are not compacted again right away.
+	 */
+	public void onExpandMessage( String messageId )
+	{
+	    var conversation = activeConversation();
+	    var summary = conversation.snapshot()
+	                              .stream()
+	                              .filter( message -> messageId.equals( message.getId() ) && message.isCompactionSummary() )
+	                              .findFirst();
+	    if ( summary.isEmpty() )
+	    {
+	        return;
+	    }
+	    Job.create( AssistAIJobConstants.JOB_PREFIX + " restoring compacted messages", monitor -> {
+	        String archiveId = summary.get().getArchiveId();
+	        try
+	        {
+	            var archived = conversationArchive.load( archiveId );
+	            if ( conversation.expand( summary.get(), archived ) )
+	            {
+	                conversation.setAutoCompaction( false );
+	                conversationArchive.delete( archiveId );
+	                applyToView( view -> view.setMessageHtml( messageId, String.format( 
+	                        "*Restored %d compacted messages. Automatic compaction is paused until the chat is cleared.*", archived.size() ) ) );
+	            }
+	        }
+	        catch ( IOException e )
+	        {
+	            logger.error( "Could not restore compacted messages from archive " + archiveId, e );
+	            applyToView( view -> view.showNotification( "Could not restore compacted messages", Duration.ofSeconds( 3 ), NotificationType.ERROR ) );
+	        }
+	    } ).schedule();
+	}
+	
+	/**
+	 * Renders the newest messages of a restored session. Older messages are
+	 * rendered page by page, when the user scrolls to the top of the chat.
+	 */
+	public void onSessionRestored( List<ChatMessage> messages )
+	{
+	    if ( sessionManager.getActiveSession() == sessionManager.getDefaultSession() )
+	    {
+	        showMessages( messages );
+	    }
+	}
+	
+	private void showMessages( List<ChatMessage> messages )
+	{
+	    synchronized ( olderMessages )
+	    {
+	        olderMessages.clear();
+	        messages.stream().filter( this::isDisplayed ).forEach( olderMessages::add );
+	    }
+	    onLoadOlderMessages();
+	}
+	
+	/**
+	 * Renders the next page of restored messages above the ones shown.
+	 */
+	public void onLoadOlderMessages()
+	{
+	    List<ChatMessage> page;
+	    synchronized ( olderMessages )
+	    {
+	        var next = olderMessages.subList( Math.max( 0, olderMessages.size() - RESTORED_PAGE_SIZE ), olderMessages.size() );
+	        page = new ArrayList<>( next );
+	        next.clear();
+	    }
+	    if ( page.isEmpty() )
+	    {
+	        return;
+	    }
+	    applyToView( view -> {
+	        // prepended newest first, so the page ends up in order
+	        for ( int i = page.size() - 1; i >= 0; i-- )
+	        {
+	            ChatMessage message = page.get( i );
+	            view.prependMessage( message.getId(), message.getRole() );
+	            if ( message.isCompactionSummary() )
+	            {
+	                view.setMessageHtml( message.getId(), "*Earlier messages were compacted into a summary. Use the expand icon to restore them.*" );
+	                view.addExpandAction( message.getId() );
+	            }
+	            else if ( "user".equals( message.getRole() ) )
+	            {
+	                view.setMessageHtml( message.getId(), ChatMessageUtilities.toMarkdownContent( message ) );
+	            }
+	            else
+	            {
+	                view.setMessageHtml( message.getId(), message.getContent() );
+	            }
+	        }
+	    } );
+	}
+	
+	private boolean isDisplayed( ChatMessage message )
+	{
+	    return switch ( message.getRole() )
+	    {
+	        case "user" -> true;
+	        // replies being streamed are shown, function calls are not
+	        case "assistant" -> message.isCompactionSummary() || Objects.isNull( message.getFunctionCall() );
+	        case "system" -> message.isCompactionSummary();
+	        default -> false;
+	    };
+	}
+	
+	private void initializeSessions()
+	{
+	    var sessions = sessionManager.getSessions();
+	    var active = sessionManager.getActiveSession();
+	    applyToView( view -> view.setSessions( sessions, active ) );
+	}
+	
+	/**
+	 * Opens a new chat session next to the current one.
+	 */
+	public void onNewSession()
+	{
+	    sessionManager.openSession();
+	}
+	
+	/**
+	 * Closes the chat session shown, cancelling its jobs.
+	 */
+	public void onCloseSession()
+	{
+	    var session = sessionManager.getActiveSession();
+	    if ( session == sessionManager.getDefaultSession() )
+	    {
+	        return;
+	    }
+	    onStop();
+	    sessionManager.closeSession( session );
+	}
+	
+	public void onSessionSelected( String sessionId )
+	{
+	    sessionManager.findSession( sessionId ).ifPresent( sessionManager::setActiveSession );
+	}
+	
+	@Override
+	public void sessionsChanged()
+	{
+	    initializeSessions();
+	}
+	
+	/**
+	 * Shows the conversation of the session that became active.
+	 */
+	@Override
+	public void activeSessionChanged( ChatSession session )
+	{
+	    observedCache.removeCacheListener( this );
+	    observedCache = session.getResourceCache();
+	    observedCache.addCacheListener( this );
+	    attachments.clear();
+	    applyToView( view -> {
+	        view.clearMessages();
+	        view.clearAttachments();
+	        view.setInputEnabled( true );
+	    } );
+	    initializeSessions();
+	    initializeAvailableModels();
+	    showMessages( session.getConversation().snapshot() );
+	}
+	
 	public void onRemoveAttachment( int index )
 	{
 	    if ( index >= 0 && index < attachments.size() )
@@ -26,20 +26,23 @@ import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCacheEvent;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor.ResourceType;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSession;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSessionManager;
+import com.github.gradusnikov.eclipse.assistai.session.IChatSessionListener;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
 /**
  * Presenter for the ResourcesView following the MVP pattern.
- * Observes the ResourceCache and transforms cache data into a tree structure
- * organized by ResourceType for display in the view.
+ * Observes the ResourceCache of the active chat session and transforms cache
+ * data into a tree structure organized by ResourceType for display in the view.
  * 
  * The view is kept passive - all actions and data transformations are handled here.
  */
 @Creatable
 @Singleton
-public class ResourcesPresenter implements IResourceCacheListener
+public class ResourcesPresenter implements IResourceCacheListener, IChatSessionListener
 {
     /**
      * Represents a node in the tree structure.
@@ -57,24 +60,37 @@ public class ResourcesPresenter implements IResourceCacheListener
      */
     public static record ResourceNode(URI uri, String displayName, String tooltip, int tokens, int version) implements TreeNode {}
 
-    private final ResourceCache resourceCache;
+    private volatile ResourceCache resourceCache;
     private final ILog logger;
     private final UISynchronize uiSync;
     
     private ResourcesView view;
     
     @Inject
-    public ResourcesPresenter(ResourceCache resourceCache, ILog logger, UISynchronize uiSync)
+    public ResourcesPresenter(ChatSessionManager sessionManager, ILog logger, UISynchronize uiSync)
     {
-        Objects.requireNonNull(resourceCache);
+        Objects.requireNonNull(sessionManager);
         Objects.requireNonNull(logger);
         Objects.requireNonNull(uiSync);
-        this.resourceCache = resourceCache;
+        this.resourceCache = sessionManager.getActiveSession().getResourceCache();
         this.logger = logger;
         this.uiSync = uiSync;
         
         logger.info("ResourcesPresenter initialized with ResourceCache instance: " + System.identityHashCode(resourceCache));
         resourceCache.addCacheListener(this);
+        sessionManager.addSessionListener(this);
+    }
+    
+    /**
+     * Shows the resources of the session that became active.
+     */
+    @Override
+    public void activeSessionChanged(ChatSession session)
+    {
+        resourceCache.removeCacheListener(this);
+        resourceCache = session.getResourceCache();
+        resourceCache.addCacheListener(this);
+        refreshView();
     }
 
     /**
@@ -103,6 +119,13 @@ public class ResourcesPresenter implements IResourceCacheListener
         refreshView();
     }
     
+    @Override
+    public void cacheChanged(List<ResourceCacheEvent> events)
+    {
+        logger.info("ResourcesPresenter: Cache changed - " + events.size() + " events");
+        refreshView();
+    }
+    
     /**
      * Refreshes the view with current cache data.
      * Builds the tree model and updates the view on the UI thread.
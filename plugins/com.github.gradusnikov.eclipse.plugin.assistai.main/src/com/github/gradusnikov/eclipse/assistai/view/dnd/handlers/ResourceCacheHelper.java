@@ -22,11 +22,11 @@ import org.eclipse.swt.graphics.ImageData;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor.ResourceType;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSessionManager;
 import com.github.gradusnikov.eclipse.assistai.tools.ContentTypeDetector;
 import com.github.gradusnikov.eclipse.assistai.view.ChatViewPresenter;
 import com.google.common.collect.Sets;
 
-import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
@@ -43,7 +43,7 @@ public class ResourceCacheHelper
     private static final String TOOL_NAME = "dnd";
     
     @Inject
-    private ResourceCache resourceCache;
+    private ChatSessionManager sessionManager;
     
     @Inject
     private ContentTypeDetector contentTypeDetector;
@@ -54,10 +54,12 @@ public class ResourceCacheHelper
     @Inject
     private ILog logger;
     
-    @PostConstruct
-    public void init()
+    /**
+     * Returns the resource cache of the chat session shown.
+     */
+    private ResourceCache resourceCache()
     {
-        logger.info("ResourceCacheHelper initialized with ResourceCache instance: " + System.identityHashCode(resourceCache));
+        return sessionManager.getActiveSession().getResourceCache();
     }
     
     /**
@@ -73,7 +75,7 @@ public class ResourceCacheHelper
                 String content = readWorkspaceFileContent(file);
                 String formattedContent = formatFileContent(file.getFullPath().toString(), content);
                 ResourceDescriptor descriptor = ResourceDescriptor.fromWorkspaceFile(file, TOOL_NAME);
-                resourceCache.put(descriptor, formattedContent);
+                resourceCache().put(descriptor, formattedContent);
                 logger.info("Added workspace file to cache: " + file.getFullPath());
             }
             else if (isImageFile(file))
@@ -111,7 +113,7 @@ public class ResourceCacheHelper
                 container.getFullPath(),
                 TOOL_NAME
             );
-            resourceCache.put(descriptor, content);
+            resourceCache().put(descriptor, content);
             logger.info("Added workspace directory to cache: " + container.getFullPath());
         }
         catch (CoreException e)
@@ -138,7 +140,7 @@ public class ResourceCacheHelper
                 null, // No workspace path for external files
                 TOOL_NAME
             );
-            resourceCache.put(descriptor, formattedContent);
+            resourceCache().put(descriptor, formattedContent);
             logger.info("Added external file to cache: " + file.getAbsolutePath());
         }
         catch (IOException e)
@@ -163,7 +165,7 @@ public class ResourceCacheHelper
                 null,
                 TOOL_NAME
             );
-            resourceCache.put(descriptor, content);
+            resourceCache().put(descriptor, content);
             logger.info("Added external directory to cache: " + directory.getAbsolutePath());
         }
         catch (IOException e)
@@ -186,7 +188,7 @@ public class ResourceCacheHelper
             null,
             TOOL_NAME
         );
-        resourceCache.put(descriptor, formattedContent);
+        resourceCache().put(descriptor, formattedContent);
         logger.info("Added text content to cache: " + name);
     }
     
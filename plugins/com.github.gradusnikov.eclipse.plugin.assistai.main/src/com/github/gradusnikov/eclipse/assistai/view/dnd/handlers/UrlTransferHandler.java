@@ -16,9 +16,9 @@ import org.eclipse.swt.dnd.Transfer;
 import org.eclipse.swt.dnd.URLTransfer;
 import org.eclipse.swt.graphics.ImageData;
 
-import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor;
 import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor.ResourceType;
+import com.github.gradusnikov.eclipse.assistai.session.ChatSessionManager;
 import com.github.gradusnikov.eclipse.assistai.tools.ContentTypeDetector;
 import com.github.gradusnikov.eclipse.assistai.view.ChatViewPresenter;
 
@@ -38,7 +38,7 @@ public class UrlTransferHandler implements ITransferHandler
     private static final String TOOL_NAME = "dnd";
 
     @Inject
-    private ResourceCache resourceCache;
+    private ChatSessionManager sessionManager;
     
     @Inject
     private ContentTypeDetector contentTypeDetector;
@@ -111,7 +111,7 @@ public class UrlTransferHandler implements ITransferHandler
             null,
             TOOL_NAME
         );
-        resourceCache.put(descriptor, formattedContent);
+        sessionManager.getActiveSession().getResourceCache().put(descriptor, formattedContent);
         logger.info("Added URL content to cache: " + url);
     }
 
@@ -0,0 +1,19 @@
+#!/bin/sh
+# Downloads the tiktoken vocabularies bundled with the plug-in into this
+# folder and verifies them against the hashes published with tiktoken.
+set -e
+cd "$(dirname "$0")"
+BASE_URL=https://openaipublic.blob.core.windows.net/encodings
+
+fetch() {
+    name=$1
+    hash=$2
+    if [ ! -f "$name.tiktoken" ]; then
+        curl -fsSL -o "$name.tiktoken.part" "$BASE_URL/$name.tiktoken"
+        mv "$name.tiktoken.part" "$name.tiktoken"
+    fi
+    echo "$hash  $name.tiktoken" | sha256sum -c -
+}
+
+fetch cl100k_base 223921b76ee99bde995b7ff738513eef100fb51d18c93597a113bcffe865b2a7
+fetch o200k_base 446a9538cb6c348e3516120d7c08b09f57c36495e2acfffe59a5bf8b0cfb1a2d
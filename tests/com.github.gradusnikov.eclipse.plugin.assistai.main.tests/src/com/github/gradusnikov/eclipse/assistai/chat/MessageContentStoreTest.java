@@ -0,0 +1,135 @@
+package com.github.gradusnikov.eclipse.assistai.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+
+/**
+ * Unit tests for {@link MessageContentStore}.
+ */
+public class MessageContentStoreTest {
+  private static final String SESSION = "session";
+
+  @TempDir
+  Path folder;
+
+  private MessageContentStore store;
+
+  @BeforeEach
+  public void setUp() {
+    store = new MessageContentStore(Activator.getDefault().getLog(), folder);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    store.dispose();
+  }
+
+  private static ChatMessage message(String content) {
+    ChatMessage message = new ChatMessage("id", "eclipse-ide__getConsoleOutput", "function");
+    message.setContent(content);
+    return message;
+  }
+
+  @Test
+  public void testSmallBodyStaysInMemory() {
+    ChatMessage message = message("short output");
+
+    store.offload(SESSION, message);
+
+    assertFalse(message.isSpilled());
+    assertEquals("short output", message.getContent());
+  }
+
+  @Test
+  public void testLargeBodyIsSpilledAndLoadedLazily() {
+    String first = "line äöü\n".repeat(MessageContentStore.SPILL_THRESHOLD / 4);
+    String second = "other\n".repeat(MessageContentStore.SPILL_THRESHOLD / 2);
+    ChatMessage firstMessage = message(first);
+    ChatMessage secondMessage = message(second);
+
+    store.offload(SESSION, firstMessage);
+    store.offload(SESSION, secondMessage);
+
+    assertTrue(firstMessage.isSpilled());
+    assertTrue(secondMessage.isSpilled());
+    assertEquals(first, firstMessage.getContent());
+    assertEquals(second, secondMessage.getContent());
+    assertEquals(first.substring(0, 100), firstMessage.getContentPreview(100));
+    assertFalse(firstMessage.isEmpty());
+  }
+
+  @Test
+  public void testAppendLoadsSpilledBody() {
+    String body = "x".repeat(MessageContentStore.SPILL_THRESHOLD);
+    ChatMessage message = message(body);
+    store.offload(SESSION, message);
+
+    message.append("y");
+
+    assertFalse(message.isSpilled());
+    assertEquals(body + "y", message.getContent());
+  }
+
+  @Test
+  public void testResetKeepsReferencedBodiesReadable() throws Exception {
+    String body = "spilled\n".repeat(MessageContentStore.SPILL_THRESHOLD / 4);
+    ChatMessage message = message(body);
+    store.offload(SESSION, message);
+
+    store.reset(SESSION);
+
+    assertEquals(body, message.getContent());
+    ChatMessage next = message(body + "next");
+    store.offload(SESSION, next);
+    assertEquals(body + "next", next.getContent());
+    try (var files = Files.list(folder)) {
+      assertEquals(2, files.count());
+    }
+    // the old segment stays while the message references it
+    assertEquals(body, message.getContent());
+  }
+
+  @Test
+  public void testResetOfOneSessionKeepsOthers() {
+    String body = "other session\n".repeat(MessageContentStore.SPILL_THRESHOLD / 8);
+    ChatMessage other = message(body);
+    store.offload("other", other);
+    store.offload(SESSION, message(body));
+
+    store.reset(SESSION);
+
+    assertEquals(body, other.getContent());
+  }
+
+  @Test
+  public void testDisposedBodyIsReportedMissing() {
+    ChatMessage message = message("x".repeat(MessageContentStore.SPILL_THRESHOLD));
+    store.offload(SESSION, message);
+
+    store.dispose();
+
+    assertThrows(IllegalStateException.class, message::getContent);
+  }
+
+  @Test
+  public void testReadsBodiesAppendedAfterMapping() {
+    for (int i = 0; i < 40; i++) {
+      String body = Integer.toString(i).repeat(MessageContentStore.SPILL_THRESHOLD);
+      ChatMessage message = message(body);
+      store.offload(SESSION, message);
+      assertEquals(body, message.getContent());
+    }
+  }
+}
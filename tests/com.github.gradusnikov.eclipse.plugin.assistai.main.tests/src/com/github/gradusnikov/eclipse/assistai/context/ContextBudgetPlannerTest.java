@@ -0,0 +1,96 @@
+package com.github.gradusnikov.eclipse.assistai.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.ILog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
+import com.github.gradusnikov.eclipse.assistai.chat.FunctionCall;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptorRepository;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
+
+/**
+ * Unit tests for {@link ContextBudgetPlanner}.
+ */
+public class ContextBudgetPlannerTest {
+  private ContextBudgetPlanner planner;
+
+  @BeforeEach
+  public void setUp() {
+    ILog log = Activator.getDefault().getLog();
+    planner = new ContextBudgetPlanner(log, new TokenCounterRegistry(log, new ModelApiDescriptorRepository(log)));
+  }
+
+  private static ModelApiDescriptor model(int contextWindow, int maxOutputTokens) {
+    return new ModelApiDescriptor("test", "openai", "http://localhost", "", "test-model", 7, false, true,
+        contextWindow, maxOutputTokens);
+  }
+
+  private static ChatMessage message(String role, String content) {
+    ChatMessage message = new ChatMessage(role + "-" + content.hashCode(), role);
+    message.setContent(content);
+    return message;
+  }
+
+  @Test
+  public void testEverythingFitsIsSentUnchanged() {
+    List<ChatMessage> history = List.of(message("user", "Hello"), message("assistant", "Hi there"));
+
+    ContextPlan plan = planner.plan(model(100_000, 1_000), "system", List.of(), Map.of(), history);
+
+    assertFalse(plan.isTrimmed());
+    assertEquals(history, plan.messages());
+    assertEquals("system", plan.systemPrompt());
+    assertEquals(1_000, plan.maxOutputTokens());
+  }
+
+  @Test
+  public void testOldestMessagesAreReplacedByNote() {
+    List<ChatMessage> history = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      history.add(message("user", i + " question " + "x".repeat(400)));
+      history.add(message("assistant", i + " answer " + "y".repeat(400)));
+    }
+    history.add(message("user", "the latest question"));
+
+    ContextPlan plan = planner.plan(model(8_000, 1_000), "system", List.of(), Map.of(), history);
+
+    assertTrue(plan.isTrimmed());
+    assertTrue(plan.droppedMessages() > 0);
+    assertTrue(plan.messages().get(0).getContent().startsWith("[Context note:"));
+    assertSame(history.get(history.size() - 1), plan.messages().get(plan.messages().size() - 1));
+    assertEquals(history.size() - plan.droppedMessages() + 1, plan.messages().size());
+  }
+
+  @Test
+  public void testToolResultIsNotSeparatedFromItsCall() {
+    FunctionCall call = new FunctionCall("call-1", "eclipse-ide__readFile", Map.of(), null);
+    List<ChatMessage> history = new ArrayList<>();
+    history.add(message("user", "read a file"));
+    for (int i = 0; i < 20; i++) {
+      ChatMessage assistant = message("assistant", "");
+      assistant.setFunctionCall(call);
+      ChatMessage result = message("function", i + " " + "z".repeat(2_000));
+      result.setFunctionCall(call);
+      history.add(assistant);
+      history.add(result);
+    }
+
+    ContextPlan plan = planner.plan(model(6_000, 500), "system", List.of(), Map.of(), history);
+
+    assertTrue(plan.isTrimmed());
+    assertNotEquals("function", plan.messages().get(1).getRole());
+  }
+}
@@ -0,0 +1,108 @@
+package com.github.gradusnikov.eclipse.assistai.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.ILog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
+import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
+import com.github.gradusnikov.eclipse.assistai.chat.FunctionCall;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptorRepository;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
+
+/**
+ * Unit tests for {@link ConversationCompactor}.
+ */
+public class ConversationCompactorTest {
+  private ConversationCompactor compactor;
+
+  @BeforeEach
+  public void setUp() {
+    ILog log = Activator.getDefault().getLog();
+    compactor = new ConversationCompactor(new TokenCounterRegistry(log, new ModelApiDescriptorRepository(log)));
+  }
+
+  private static ModelApiDescriptor model(int contextWindow, int maxOutputTokens) {
+    return new ModelApiDescriptor("test", "openai", "http://localhost", "", "test-model", 7, false, true,
+        contextWindow, maxOutputTokens);
+  }
+
+  private static ChatMessage message(String role, String content) {
+    ChatMessage message = new ChatMessage(role + "-" + content.hashCode(), role);
+    message.setContent(content);
+    return message;
+  }
+
+  private static List<ChatMessage> agentSession(int turns) {
+    FunctionCall call = new FunctionCall("call-1", "eclipse-ide__readFile", Map.of("path", "A.java"), null);
+    List<ChatMessage> history = new ArrayList<>();
+    for (int turn = 0; turn < turns; turn++) {
+      history.add(message("user", turn + " fix the build"));
+      for (int i = 0; i < 3; i++) {
+        ChatMessage assistant = message("assistant", "");
+        assistant.setFunctionCall(call);
+        ChatMessage result = message("function", turn + "/" + i + " " + "z".repeat(2_000));
+        result.setFunctionCall(call);
+        history.add(assistant);
+        history.add(result);
+      }
+      history.add(message("assistant", turn + " done"));
+    }
+    return history;
+  }
+
+  @Test
+  public void testSmallHistoryIsNotCompacted() {
+    assertTrue(compactor.select(model(100_000, 1_000), agentSession(2)).isEmpty());
+  }
+
+  @Test
+  public void testCompactsWholeTurnsAndKeepsTail() {
+    List<ChatMessage> history = agentSession(10);
+
+    var compaction = compactor.select(model(16_000, 1_000), history).orElseThrow();
+
+    assertEquals(0, compaction.from());
+    int boundary = compaction.messages().size();
+    assertTrue(boundary < history.size());
+    assertEquals("user", history.get(boundary).getRole());
+
+    ChatMessage summary = compactor.createSummary(compaction, "archive-1");
+    assertTrue(summary.isCompactionSummary());
+    assertEquals("system", summary.getRole());
+    assertTrue(summary.getContent().startsWith("[Compacted history:"));
+    assertTrue(summary.getContent().contains("- User: 0 fix the build"));
+  }
+
+  @Test
+  public void testExistingSummariesStayInPlace() {
+    List<ChatMessage> history = agentSession(10);
+    Conversation conversation = new Conversation();
+    history.forEach(conversation::add);
+    ModelApiDescriptor model = model(16_000, 1_000);
+
+    var first = compactor.select(model, conversation.snapshot()).orElseThrow();
+    ChatMessage firstSummary = compactor.createSummary(first, "archive-1");
+    assertTrue(conversation.compact(first.from(), first.messages(), firstSummary));
+
+    for (ChatMessage message : agentSession(10)) {
+      conversation.add(message);
+    }
+    var second = compactor.select(model, conversation.snapshot()).orElseThrow();
+
+    assertEquals(1, second.from());
+    assertNotEquals("function", conversation.snapshot().get(second.from() + second.messages().size()).getRole());
+    assertTrue(conversation.compact(second.from(), second.messages(), compactor.createSummary(second, "archive-2")));
+    assertEquals(firstSummary, conversation.snapshot().get(0));
+  }
+}
@@ -0,0 +1,108 @@
+package com.github.gradusnikov.eclipse.assistai.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptorRepository;
+import com.github.gradusnikov.eclipse.assistai.resources.CachedResource;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
+
+/**
+ * Unit tests for {@link JavaResourceSlicer}.
+ */
+public class JavaResourceSlicerTest {
+  private JavaResourceSlicer slicer;
+
+  private TokenCounterRegistry tokenCounters;
+
+  @BeforeEach
+  public void setUp() {
+    ILog log = Activator.getDefault().getLog();
+    tokenCounters = new TokenCounterRegistry(log, new ModelApiDescriptorRepository(log));
+    slicer = new JavaResourceSlicer(log, tokenCounters);
+  }
+
+  private static String largeClass() {
+    StringBuilder sb = new StringBuilder("package com.example;\n\nimport java.util.List;\n\npublic class Large {\n");
+    sb.append("  private int counter;\n\n");
+    for (int i = 0; i < 60; i++) {
+      sb.append("  public int method").append(i).append("(List<String> values) {\n");
+      for (int line = 0; line < 8; line++) {
+        sb.append("    counter += values.size() * ").append(line).append(";\n");
+      }
+      sb.append("    return counter;\n  }\n\n");
+    }
+    return sb.append("}\n").toString();
+  }
+
+  private CachedResource resource(String content) {
+    ResourceDescriptor descriptor = ResourceDescriptor.fromClassName("com.example.Large",
+        IPath.fromPortableString("/p/src/com/example/Large.java"), "test");
+    return CachedResource.create(descriptor, content, tokenCounters.forChatModel());
+  }
+
+  private static ChatMessage message(String role, String content) {
+    ChatMessage message = new ChatMessage(role + "-" + content.hashCode(), role);
+    message.setContent(content);
+    return message;
+  }
+
+  @Test
+  public void testExpandsOnlyReferencedMethods() {
+    CachedResource resource = resource(largeClass());
+    List<ChatMessage> history = List.of(message("user", "Why does method7 return the counter?"));
+
+    CachedResource sliced = slicer.slice(List.of(resource), history).get(0);
+
+    String content = sliced.content();
+    assertTrue(content.length() < resource.content().length() / 3);
+    assertTrue(content.contains("import java.util.List;"));
+    assertTrue(content.contains("private int counter;"));
+    assertTrue(content.contains("public int method3(List<String> values) { /* 11 lines elided */ }"));
+    assertFalse(content.contains("public int method7(List<String> values) { /*"));
+    assertEquals(resource.version(), sliced.version());
+    assertSame(sliced, slicer.slice(List.of(resource), history).get(0));
+  }
+
+  @Test
+  public void testPlainWordsAreNotReferences() {
+    List<ChatMessage> history = List.of(message("user", "Please run the tests and check the size of the result."),
+        message("assistant", "The `process` method calls Helper.format and parseLine(), see method7 or toString()."));
+
+    Set<String> names = JavaResourceSlicer.referencedNames(history);
+
+    assertTrue(names.containsAll(Set.of("process", "Helper", "format", "parseLine", "method7")), names.toString());
+    for (String word : List.of("run", "tests", "check", "size", "result", "method", "toString")) {
+      assertFalse(names.contains(word), word);
+    }
+  }
+
+  @Test
+  public void testSmallResourcesAreNotSliced() {
+    CachedResource resource = resource("package com.example;\n\npublic class Large {\n  void run() {\n  }\n}\n");
+
+    assertSame(resource, slicer.slice(List.of(resource), List.of()).get(0));
+  }
+
+  @Test
+  public void testFindsElidedMember() {
+    var members = JavaResourceSlicer.findMembers(largeClass(), "method3");
+
+    assertEquals(1, members.size());
+    assertTrue(members.get(0).source().startsWith("public int method3(List<String> values) {"));
+    assertEquals(11, members.get(0).endLine() - members.get(0).startLine() + 1);
+  }
+}
@@ -0,0 +1,181 @@
+package com.github.gradusnikov.eclipse.assistai.resources;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.ILog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptorRepository;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
+
+/**
+ * Unit tests for {@link ResourceCache} token accounting and eviction.
+ */
+public class ResourceCacheTest {
+  private ILog log;
+
+  private TokenCounterRegistry tokenCounters;
+
+  @BeforeEach
+  public void setUp() {
+    log = Activator.getDefault().getLog();
+    tokenCounters = new TokenCounterRegistry(log, new ModelApiDescriptorRepository(log));
+  }
+
+  private static ResourceDescriptor descriptor(int i) {
+    return ResourceDescriptor.forConsole("c" + i, "test");
+  }
+
+  private static int sumOfCachedTokens(ResourceCache cache) {
+    return cache.getAll().values().stream().mapToInt(CachedResource::estimateTokens).sum();
+  }
+
+  @Test
+  public void testRunningTotalFollowsPutReplaceAndRemove() {
+    ResourceCache cache = new ResourceCache(log, tokenCounters, 100, 1_000_000);
+    for (int i = 0; i < 50; i++) {
+      cache.put(descriptor(i), "resource number " + i);
+    }
+    cache.put(descriptor(7), "a much longer replacement of resource seven ".repeat(20));
+    cache.remove(descriptor(3).uri());
+
+    assertEquals(49, cache.size());
+    assertEquals(sumOfCachedTokens(cache), cache.estimateTotalTokens());
+
+    cache.clear();
+    assertEquals(0, cache.estimateTotalTokens());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedByCountAndTokens() {
+    ResourceCache cache = new ResourceCache(log, tokenCounters, 10, 1_000_000);
+    for (int i = 0; i < 25; i++) {
+      cache.put(descriptor(i), "resource number " + i);
+    }
+    assertEquals(10, cache.size());
+    assertTrue(cache.contains(descriptor(24).uri()));
+    assertEquals(sumOfCachedTokens(cache), cache.estimateTotalTokens());
+
+    int tokenLimit = cache.estimateTotalTokens();
+    ResourceCache bounded = new ResourceCache(log, tokenCounters, 1000, tokenLimit);
+    for (int i = 0; i < 25; i++) {
+      bounded.put(descriptor(i), "resource number " + i);
+    }
+    assertTrue(bounded.estimateTotalTokens() <= tokenLimit);
+    assertTrue(bounded.contains(descriptor(24).uri()));
+    assertEquals(sumOfCachedTokens(bounded), bounded.estimateTotalTokens());
+  }
+
+  @Test
+  public void testReadsKeepResourcesFromEviction() {
+    ResourceCache cache = new ResourceCache(log, tokenCounters, 3, 1_000_000);
+    for (int i = 0; i < 3; i++) {
+      cache.put(descriptor(i), "resource number " + i);
+    }
+    assertTrue(cache.get(descriptor(0).uri()).isPresent());
+    cache.put(descriptor(3), "resource number 3");
+
+    assertTrue(cache.contains(descriptor(0).uri()));
+    assertFalse(cache.contains(descriptor(1).uri()));
+  }
+
+  @Test
+  public void testContextBlockIsMemoizedUntilNextChange() {
+    ResourceCache cache = new ResourceCache(log, tokenCounters, 10, 1_000_000);
+    cache.put(descriptor(0), "first");
+    cache.put(descriptor(1), "second");
+
+    String block = cache.toContextBlock();
+    assertSame(block, cache.toContextBlock());
+    assertEquals(ResourceCache.toContextBlock(cache.getAll().values()), block);
+    assertTrue(block.contains("name=\"c0\" version=\"1\""));
+
+    cache.put(descriptor(1), "second, changed");
+    String changed = cache.toContextBlock();
+    assertNotSame(block, changed);
+    assertTrue(changed.contains("second, changed\n</resource>"));
+  }
+
+  @Test
+  public void testWritesPublishSnapshotBeforeEvents() {
+    ResourceCache cache = new ResourceCache(log, tokenCounters, 10, 1_000_000);
+    cache.put(descriptor(0), "first");
+    var before = cache.getAll();
+    List<Integer> seen = new ArrayList<>();
+    cache.addCacheListener(event -> seen.add(cache.getAll().size()));
+
+    cache.put(descriptor(1), "second");
+    cache.remove(descriptor(0).uri());
+
+    assertEquals(List.of(2, 1), seen);
+    assertEquals(1, before.size());
+    assertTrue(cache.contains(descriptor(1).uri()));
+  }
+
+  private static String largeFile(int changedLine) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      sb.append(i == changedLine ? "changed line " : "line number ").append(i).append(" of a large file\n");
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void testDeltaModeSendsDiffsUntilCompacted() {
+    ResourceCache cache = new ResourceCache(log, tokenCounters, 10, 1_000_000);
+    cache.setDeltaMode(true);
+    cache.put(descriptor(0), largeFile(-1));
+    String base = cache.get(descriptor(0).uri()).orElseThrow().toXmlElement();
+
+    CachedResource second = cache.put(descriptor(0), largeFile(10));
+    assertEquals(largeFile(10), second.content());
+    assertEquals(1, second.deltaCount());
+    String element = second.toXmlElement();
+    assertTrue(element.startsWith(base));
+    assertTrue(element.contains("-line number 10 of a large file\n+changed line 10 of a large file\n"));
+    assertTrue(element.length() < base.length() + 1_000);
+    assertEquals(sumOfCachedTokens(cache), cache.estimateTotalTokens());
+
+    CachedResource last = second;
+    for (int i = 0; i < 5; i++) {
+      last = cache.put(descriptor(0), largeFile(20 + i));
+    }
+    assertEquals(0, last.deltaCount());
+    assertEquals(largeFile(24), last.content());
+  }
+
+  private long millisToPut(ResourceCache cache, int count) {
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      cache.put(descriptor(i), "small resource " + i);
+    }
+    cache.estimateTotalTokens();
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  @Test
+  public void testManySmallResources() {
+    int count = 20_000;
+    millisToPut(new ResourceCache(log, tokenCounters, 10, Integer.MAX_VALUE), count);
+
+    // the same writes into a cache of 10 and of 10 000 resources: a write must not copy the cache
+    long small = millisToPut(new ResourceCache(log, tokenCounters, 10, Integer.MAX_VALUE), count);
+    ResourceCache cache = new ResourceCache(log, tokenCounters, count / 2, Integer.MAX_VALUE);
+    long large = millisToPut(cache, count);
+    log.info("ResourceCacheTest: " + count + " puts took " + small + " ms with 10 and " + large + " ms with " + (count / 2) + " resources");
+
+    assertTrue(large <= 3 * small + 100, "puts into a large cache took " + large + " ms, into a small one " + small + " ms");
+    assertEquals(count / 2, cache.size());
+    assertEquals(sumOfCachedTokens(cache), cache.estimateTotalTokens());
+  }
+}
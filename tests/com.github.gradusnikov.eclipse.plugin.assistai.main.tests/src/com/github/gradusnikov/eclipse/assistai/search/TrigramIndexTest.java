@@ -0,0 +1,116 @@
+package com.github.gradusnikov.eclipse.assistai.search;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for {@link TrigramIndex}.
+ */
+public class TrigramIndexTest {
+  @TempDir
+  Path folder;
+
+  private static TrigramIndex index(String... documents) {
+    TrigramIndex index = new TrigramIndex();
+    for (int id = 0; id < documents.length; id++) {
+      index.put(id, TrigramIndex.buckets(documents[id]));
+    }
+    return index;
+  }
+
+  @Test
+  public void testCandidatesContainAllTrigrams() {
+    TrigramIndex index = index("class SearchService {}", "class ResourceService {}", "interface Search {}");
+
+    assertArrayEquals(new int[] { 0, 1 }, index.candidates("Service"));
+    assertArrayEquals(new int[] { 0, 2 }, index.candidates("Search"));
+    assertArrayEquals(new int[0], index.candidates("Missing"));
+    assertNull(index.candidates("ab"));
+  }
+
+  @Test
+  public void testCompactionKeepsResultsAndLaterChanges() throws Exception {
+    TrigramIndex index = index("alpha beta", "beta gamma", "gamma delta");
+    index.compact(folder.resolve("segment-1.bin"));
+    assertEquals(0, index.overlaySize());
+    assertArrayEquals(new int[] { 0, 1 }, index.candidates("beta"));
+
+    index.put(0, TrigramIndex.buckets("alpha only"));
+    index.remove(2);
+    index.put(3, TrigramIndex.buckets("beta again"));
+    assertArrayEquals(new int[] { 1, 3 }, index.candidates("beta"));
+    assertArrayEquals(new int[] { 1 }, index.candidates("gamma"));
+
+    index.compact(folder.resolve("segment-2.bin"));
+    assertEquals(0, index.overlaySize());
+    assertArrayEquals(new int[] { 1, 3 }, index.candidates("beta"));
+    assertArrayEquals(new int[] { 1 }, index.candidates("gamma"));
+  }
+
+  @Test
+  public void testRemovedIdCanBeReused() throws Exception {
+    TrigramIndex index = index("alpha beta", "beta gamma");
+    index.compact(folder.resolve("segment-1.bin"));
+
+    index.remove(0);
+    index.put(0, TrigramIndex.buckets("delta epsilon"));
+    assertArrayEquals(new int[0], index.candidates("alpha"));
+    assertArrayEquals(new int[] { 1 }, index.candidates("beta"));
+    assertArrayEquals(new int[] { 0 }, index.candidates("delta"));
+
+    index.compact(folder.resolve("segment-2.bin"));
+    assertArrayEquals(new int[0], index.candidates("alpha"));
+    assertArrayEquals(new int[] { 0 }, index.candidates("delta"));
+  }
+
+  @Test
+  public void testOpenReadsSavedSegment() throws Exception {
+    Path segment = folder.resolve("segment-1.bin");
+    index("first document", "second document").compact(segment);
+
+    TrigramIndex reopened = new TrigramIndex();
+    reopened.open(segment);
+    assertArrayEquals(new int[] { 0, 1 }, reopened.candidates("document"));
+    assertArrayEquals(new int[] { 1 }, reopened.candidates("second"));
+  }
+
+  @Test
+  public void testLiteralsOfRegularExpressions() {
+    assertEquals(List.of("public", "void", "search("), TrigramIndex.literals("public\\s+void\\s+search\\("));
+    assertEquals(List.of("getLine", "Info"), TrigramIndex.literals("getLine(s)?Info"));
+    assertEquals(List.of("colo"), TrigramIndex.literals("colou?r"));
+    assertEquals(List.of("a.b.c"), TrigramIndex.literals("\\Qa.b.c\\E"));
+    assertEquals(List.of("Test"), TrigramIndex.literals("[A-Z]\\w*Test"));
+    assertTrue(TrigramIndex.literals("foo|bar").isEmpty());
+    assertTrue(TrigramIndex.literals("(?i)search").isEmpty());
+    assertTrue(TrigramIndex.literals("\\x41bc").isEmpty());
+  }
+
+  /**
+   * Not a strict performance test: a query over many documents stays fast
+   * and returns only the matching ones.
+   */
+  @Test
+  public void testQueryOverManyDocuments() throws Exception {
+    TrigramIndex index = new TrigramIndex();
+    for (int id = 0; id < 20_000; id++) {
+      index.put(id, TrigramIndex.buckets("public class Generated" + id + " { int value" + (id % 100) + "; }"));
+    }
+    index.compact(folder.resolve("segment-1.bin"));
+
+    long start = System.nanoTime();
+    int[] found = index.candidates("Generated12345 ");
+    long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+    assertArrayEquals(new int[] { 12345 }, found);
+    assertTrue(elapsedMs < 1_000, "query took " + elapsedMs + " ms");
+  }
+}
@@ -0,0 +1,135 @@
+package com.github.gradusnikov.eclipse.assistai.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+
+/**
+ * Tests for {@link WorkspaceFileIndex} on a generated workspace project.
+ */
+public class WorkspaceFileIndexTest {
+  private static final String PROJECT_NAME = "WorkspaceFileIndexTestProject";
+  private static final int GENERATED_FILES = 2_000;
+
+  private final NullProgressMonitor monitor = new NullProgressMonitor();
+  private IProject project;
+  private WorkspaceFileIndex index;
+
+  @BeforeEach
+  public void setUp() throws CoreException {
+    project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME);
+    if (project.exists()) {
+      project.delete(true, true, monitor);
+    }
+    ResourcesPlugin.getWorkspace().run(m -> {
+      project.create(m);
+      project.open(m);
+      IFolder src = project.getFolder("src");
+      src.create(true, true, m);
+      for (int i = 0; i < GENERATED_FILES; i++) {
+        createFile(src.getFile("Generated" + i + (i % 2 == 0 ? ".java" : ".xml")));
+      }
+      createFile(project.getFile("pom.xml"));
+      IFolder target = project.getFolder("target");
+      target.create(true, true, m);
+      target.setDerived(true, m);
+      createFile(target.getFile("Compiled.java"));
+    }, monitor);
+    index = new WorkspaceFileIndex(Activator.getDefault().getLog());
+  }
+
+  @AfterEach
+  public void tearDown() throws CoreException {
+    index.dispose();
+    if (project.exists()) {
+      project.delete(true, true, monitor);
+    }
+  }
+
+  private void createFile(IFile file) throws CoreException {
+    file.create(new ByteArrayInputStream(new byte[0]), true, monitor);
+  }
+
+  private List<String> find(String... patterns) {
+    return index.find(patterns, Integer.MAX_VALUE).stream().filter(path -> path.startsWith("/" + PROJECT_NAME + "/")).toList();
+  }
+
+  @Test
+  public void testExactPrefixSuffixAndWildcardPatterns() {
+    assertEquals(List.of("/" + PROJECT_NAME + "/pom.xml"), find("pom.xml"));
+    assertEquals(GENERATED_FILES / 2, find("*.java").size());
+    assertEquals(GENERATED_FILES / 2 + 1, find("*.xml").size());
+    assertEquals(List.of("/" + PROJECT_NAME + "/src/Generated7.xml"), find("Generated7.*"));
+    assertEquals(10, find("Generated1?.*").size());
+    assertEquals(11, find("Gen*ted1?.*", "pom.xml").size());
+  }
+
+  @Test
+  public void testSkipsDerivedFiles() {
+    assertTrue(find("Compiled.java").isEmpty());
+  }
+
+  @Test
+  public void testFollowsWorkspaceChanges() throws CoreException {
+    assertTrue(find("Added.java").isEmpty());
+
+    IFile added = project.getFile("Added.java");
+    createFile(added);
+    assertEquals(List.of(added.getFullPath().toString()), find("Added.java"));
+
+    added.delete(true, monitor);
+    assertTrue(find("Added.java").isEmpty());
+  }
+
+  @Test
+  public void testMaxResultsShortCircuits() {
+    assertEquals(5, index.find(new String[] { "*.java" }, 5).size());
+  }
+
+  /**
+   * Compares indexed queries with walking the project for every query, the
+   * cheapest way to list files by name without an index.
+   */
+  @Test
+  public void testQueriesAfterBuildBeatWalkingTheProject() throws CoreException {
+    find("*.java");
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 10; i++) {
+      String name = "Generated" + i + ".java";
+      List<String> walked = new ArrayList<>();
+      project.accept(proxy -> {
+        if (proxy.getType() == IResource.FILE && proxy.getName().equals(name)) {
+          walked.add(proxy.requestFullPath().toString());
+        }
+        return true;
+      }, IResource.NONE);
+      assertEquals(i % 2 == 0 ? 1 : 0, walked.size());
+    }
+    long walkMs = (System.nanoTime() - start) / 1_000_000;
+
+    start = System.nanoTime();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i % 2 == 0 ? 1 : 0, find("Generated" + i + ".java").size());
+    }
+    long queryMs = (System.nanoTime() - start) / 1_000_000;
+
+    assertTrue(queryMs <= walkMs, "100 indexed queries took " + queryMs + " ms, 10 walks of the project " + walkMs + " ms");
+  }
+}
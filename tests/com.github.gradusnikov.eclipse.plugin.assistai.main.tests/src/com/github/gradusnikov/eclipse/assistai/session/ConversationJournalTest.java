@@ -0,0 +1,202 @@
+package com.github.gradusnikov.eclipse.assistai.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.ILog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.chat.ChatMessage;
+import com.github.gradusnikov.eclipse.assistai.chat.Conversation;
+import com.github.gradusnikov.eclipse.assistai.chat.StoredMessage;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptorRepository;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceCache;
+import com.github.gradusnikov.eclipse.assistai.resources.ResourceDescriptor;
+import com.github.gradusnikov.eclipse.assistai.tokens.TokenCounterRegistry;
+
+/**
+ * Unit tests for {@link ConversationJournal}.
+ */
+public class ConversationJournalTest {
+  @TempDir
+  Path folder;
+
+  private ILog log;
+
+  private Conversation conversation;
+
+  private ResourceCache resourceCache;
+
+  private ConversationJournal journal;
+
+  @BeforeEach
+  public void setUp() {
+    log = Activator.getDefault().getLog();
+    conversation = new Conversation();
+    resourceCache = new ResourceCache(log, new TokenCounterRegistry(log, new ModelApiDescriptorRepository(log)));
+    journal = new ConversationJournal(log, conversation, resourceCache, folder);
+    journal.init();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    journal.dispose();
+  }
+
+  private static ChatMessage message(String id, String role, String content) {
+    ChatMessage message = new ChatMessage(id, role);
+    message.setContent(content);
+    return message;
+  }
+
+  private List<String> loadedIds() {
+    return journal.load().messages().stream().map(StoredMessage::id).toList();
+  }
+
+  @Test
+  public void testReplaysAddedUpdatedAndRemovedMessages() {
+    conversation.add(message("1", "user", "hello"));
+    ChatMessage answer = message("2", "assistant", "");
+    conversation.add(answer);
+    conversation.add(message("3", "user", "again"));
+    answer.setContent("hi there");
+    conversation.messageUpdated(answer);
+    conversation.removeMessageById("3");
+    journal.flush();
+
+    var loaded = journal.load().messages();
+
+    assertEquals(List.of("1", "2"), loaded.stream().map(StoredMessage::id).toList());
+    assertEquals("hi there", loaded.get(1).content());
+  }
+
+  @Test
+  public void testSnapshotAfterClearReplacesJournal() {
+    journal.markRestored();
+    conversation.add(message("1", "user", "old"));
+    conversation.clear();
+    conversation.add(message("2", "user", "new"));
+    journal.flush();
+
+    assertTrue(Files.exists(folder.resolve("snapshot.json.gz")));
+    assertEquals(List.of("2"), loadedIds());
+  }
+
+  @Test
+  public void testResourcesKeepTokenCountAndStamp() {
+    resourceCache.put(ResourceDescriptor.forConsole("build", "test"), "BUILD SUCCESS");
+    journal.flush();
+
+    var stored = journal.load().resources();
+
+    assertEquals(1, stored.size());
+    assertEquals(resourceCache.estimateTotalTokens(), stored.get(0).tokenCount());
+    assertEquals(IResource.NULL_STAMP, stored.get(0).modificationStamp());
+  }
+
+  @Test
+  public void testDisposeWritesSnapshot() {
+    journal.markRestored();
+    conversation.add(message("1", "user", "hello"));
+    journal.dispose();
+
+    assertTrue(Files.exists(folder.resolve("snapshot.json.gz")));
+    assertFalse(Files.exists(folder.resolve("journal.jsonl")));
+    assertEquals(List.of("1"), loadedIds());
+  }
+
+  private String readBody(StoredBody body) throws Exception {
+    try (var channel = FileChannel.open(journal.resolve(body))) {
+      var buffer = ByteBuffer.allocate(body.byteLength());
+      channel.read(buffer, body.offset());
+      return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static int occurrences(String text, String part) {
+    int count = 0;
+    for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+      count++;
+    }
+    return count;
+  }
+
+  @Test
+  public void testLargeBodyIsStoredOutOfLine() throws Exception {
+    String content = "x".repeat(ConversationJournal.BODY_THRESHOLD) + "ü";
+    ChatMessage answer = message("1", "assistant", content);
+    conversation.add(answer);
+    conversation.messageUpdated(answer);
+    journal.flush();
+
+    var session = journal.load();
+
+    assertNull(session.messages().get(0).content());
+    StoredBody body = session.bodies().get("1");
+    assertNotNull(body);
+    assertEquals(content.length(), body.length());
+    assertEquals(content, readBody(body));
+    // the unchanged body is written once, and not into the journal lines
+    assertEquals(body.byteLength(), Files.size(journal.resolve(body)));
+    assertFalse(Files.readString(folder.resolve("journal.jsonl")).contains(content));
+  }
+
+  @Test
+  public void testLargeBodiesMoveWithSnapshot() throws Exception {
+    journal.markRestored();
+    String content = "y".repeat(ConversationJournal.BODY_THRESHOLD * 2);
+    conversation.add(message("1", "user", "old"));
+    conversation.clear();
+    conversation.add(message("2", "assistant", content));
+    journal.dispose();
+
+    var session = journal.load();
+
+    assertEquals(List.of("2"), session.messages().stream().map(StoredMessage::id).toList());
+    assertEquals(content, readBody(session.bodies().get("2")));
+    try (var files = Files.list(folder)) {
+      assertEquals(1, files.filter(file -> file.getFileName().toString().startsWith("bodies-")).count());
+    }
+  }
+
+  @Test
+  public void testUnchangedResourceContentIsJournaledOnce() throws Exception {
+    var descriptor = ResourceDescriptor.forConsole("build", "test");
+    resourceCache.put(descriptor, "BUILD SUCCESS in 12 modules");
+    resourceCache.put(descriptor, "BUILD SUCCESS in 12 modules");
+    journal.flush();
+
+    var stored = journal.load().resources();
+
+    assertEquals(1, occurrences(Files.readString(folder.resolve("journal.jsonl")), "BUILD SUCCESS in 12 modules"));
+    assertEquals(1, stored.size());
+    assertEquals(2, stored.get(0).version());
+    assertEquals("BUILD SUCCESS in 12 modules", stored.get(0).content());
+  }
+
+  @Test
+  public void testDamagedLineIsSkipped() throws Exception {
+    conversation.add(message("1", "user", "hello"));
+    journal.flush();
+    Files.writeString(folder.resolve("journal.jsonl"), "{\"op\":\"ADD\",\"mess", StandardCharsets.UTF_8,
+        StandardOpenOption.APPEND);
+
+    assertEquals(List.of("1"), loadedIds());
+  }
+}
@@ -0,0 +1,160 @@
+package com.github.gradusnikov.eclipse.assistai.tokens;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link BpeTokenCounter} using a tiny vocabulary.
+ */
+public class BpeTokenCounterTest {
+  private BpeTokenCounter counter;
+
+  @BeforeEach
+  public void setUp() {
+    Map<String, Integer> ranks = new HashMap<>();
+    for (int i = 0; i < 256; i++) {
+      ranks.put(String.valueOf((char) i), i);
+    }
+    ranks.put("ab", 256);
+    ranks.put("abab", 257);
+    ranks.put(" a", 258);
+    counter = new BpeTokenCounter("test", ranks, BpeEncoding.CL100K_BASE);
+  }
+
+  @Test
+  public void testWholePieceInVocabularyIsOneToken() {
+    assertEquals(1, counter.count("abab"));
+  }
+
+  @Test
+  public void testMergesByLowestRank() {
+    // "ababc" -> "ab" "ab" "c" -> "abab" "c"
+    assertEquals(2, counter.count("ababc"));
+    // " abab" merges "ab" (256) before " a" (258) -> " " "abab"
+    assertEquals(4, counter.count("abc abab"));
+  }
+
+  @Test
+  public void testNonAsciiIsCountedByUtf8Bytes() {
+    assertEquals(2, counter.count("ä"));
+  }
+
+  @Test
+  public void testPiecesMatchPattern() {
+    int[] alphabet = {'a', 'b', 's', 'r', 'e', 'l', 'S', 'L', '0', '7', ' ', ' ', '\t', '\n', '\r', '\'', '.', '/', '(', '_',
+        0x17F, 0x301, 0x2B0, 0x5D0, 0xA0, 0x2028, 0x1F600, 0x663, 0x2160, 0xB2, 0x1C5, 0x4E2D, 0xE9, 0xC9, 0x3000};
+    Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      StringBuilder text = new StringBuilder();
+      for (int length = 1 + random.nextInt(24); length > 0; length--) {
+        text.appendCodePoint(alphabet[random.nextInt(alphabet.length)]);
+      }
+      for (BpeEncoding encoding : BpeEncoding.values()) {
+        assertEquals(patternPieces(encoding, text.toString()), pieces(encoding, text.toString()), encoding + ": " + text);
+      }
+    }
+  }
+
+  private static List<String> patternPieces(BpeEncoding encoding, String text) {
+    List<String> pieces = new ArrayList<>();
+    Matcher matcher = encoding.pattern().matcher(text);
+    while (matcher.find()) {
+      pieces.add(matcher.group());
+    }
+    return pieces;
+  }
+
+  private static List<String> pieces(BpeEncoding encoding, String text) {
+    List<String> pieces = new ArrayList<>();
+    for (int start = 0, end; start < text.length(); start = end) {
+      end = encoding.pieceEnd(text, start);
+      pieces.add(text.substring(start, end));
+    }
+    return pieces;
+  }
+
+  /**
+   * About 100k tokens of code, 400 KB, must be counted in a few milliseconds.
+   * The best of several runs is measured, as the first ones include JIT
+   * compilation.
+   */
+  @Test
+  public void testCounts100kTokensOfCodeInAFewMilliseconds() {
+    StringBuilder code = new StringBuilder();
+    for (int line = 0; code.length() < 400_000; line++) {
+      code.append("        int value").append(line % 500).append(" = compute(value").append(line % 499)
+          .append(", \"text\") + ").append(line).append(";\n");
+    }
+    String text = code.toString();
+
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run < 30; run++) {
+      long start = System.nanoTime();
+      counter.count(text);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+
+    assertTrue(best < 10_000_000, "counting took " + best / 1_000_000 + " ms");
+  }
+
+  @Test
+  public void testEmptyText() {
+    assertEquals(0, counter.count(""));
+    assertEquals(0, counter.count(null));
+  }
+
+  @Test
+  public void testLoadTiktokenFormat() throws Exception {
+    Base64.Encoder encoder = Base64.getEncoder();
+    StringBuilder vocabulary = new StringBuilder();
+    for (int i = 0; i < 256; i++) {
+      vocabulary.append(encoder.encodeToString(new byte[] {(byte) i})).append(' ').append(i).append('\n');
+    }
+    vocabulary.append(encoder.encodeToString("hello".getBytes(StandardCharsets.UTF_8))).append(" 256\n");
+
+    BpeTokenCounter loaded = BpeTokenCounter.load(BpeEncoding.CL100K_BASE,
+        new ByteArrayInputStream(vocabulary.toString().getBytes(StandardCharsets.US_ASCII)));
+
+    assertEquals("cl100k_base", loaded.name());
+    assertEquals(1, loaded.count("hello"));
+    assertEquals(2, loaded.count("hello!"));
+  }
+
+  @Test
+  public void testMemoizedCountsMatch() {
+    MemoizingTokenCounter memoizing = new MemoizingTokenCounter(counter);
+    String text = "abab ".repeat(1_000);
+    int expected = counter.count(text);
+
+    assertEquals(expected, memoizing.count(text));
+    assertEquals(expected, memoizing.count(text));
+  }
+
+  @Test
+  public void testMemoizedCountsOfCollidingTextsDoNotMix() {
+    MemoizingTokenCounter memoizing = new MemoizingTokenCounter(counter);
+    // "ab" and "bC" have the same hash code, so do these texts of equal length
+    String first = "ab".repeat(1_000);
+    String second = "bC".repeat(1_000);
+    assertEquals(first.hashCode(), second.hashCode());
+    assertNotEquals(counter.count(first), counter.count(second));
+
+    assertEquals(counter.count(first), memoizing.count(first));
+    assertEquals(counter.count(second), memoizing.count(second));
+    assertEquals(counter.count(first), memoizing.count(new String(first)));
+  }
+}
@@ -0,0 +1,76 @@
+package com.github.gradusnikov.eclipse.assistai.tokens;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Path;
+
+import org.eclipse.core.runtime.ILog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptor;
+import com.github.gradusnikov.eclipse.assistai.models.ModelApiDescriptorRepository;
+
+/**
+ * Tests {@link TokenCounterRegistry} with the vocabularies bundled in the
+ * <i>tokenizers</i> folder of the plugin. The vocabularies are fetched before
+ * the build; the tests that need them are skipped when they were not.
+ */
+public class TokenCounterRegistryTest {
+  private ILog log;
+
+  private TokenCounterRegistry registry;
+
+  @TempDir
+  Path emptyFolder;
+
+  @BeforeEach
+  public void setUp() {
+    log = Activator.getDefault().getLog();
+    registry = new TokenCounterRegistry(log, new ModelApiDescriptorRepository(log));
+  }
+
+  private static ModelApiDescriptor model(String modelName) {
+    return new ModelApiDescriptor("test", "openai", "http://localhost", "", modelName, 7, false, true);
+  }
+
+  @Test
+  public void testCountsWithBundledCl100kVocabulary() {
+    assumeTrue(registry.isAvailable(BpeEncoding.CL100K_BASE), "run tokenizers/fetch-vocabularies.sh to bundle cl100k_base");
+    TokenCounter counter = registry.forModel(model("gpt-4-turbo"));
+
+    assertEquals("cl100k_base", counter.name());
+    assertEquals(2, counter.count("hello world"));
+    // [83, 1609, 5963, 374, 2294, 0]
+    assertEquals(6, counter.count("tiktoken is great!"));
+  }
+
+  @Test
+  public void testCountsWithBundledO200kVocabulary() {
+    assumeTrue(registry.isAvailable(BpeEncoding.O200K_BASE), "run tokenizers/fetch-vocabularies.sh to bundle o200k_base");
+    TokenCounter counter = registry.forModel(model("gpt-4o"));
+
+    assertEquals("o200k_base", counter.name());
+    assertEquals(2, counter.count("hello world"));
+  }
+
+  @Test
+  public void testMissingVocabularyFallsBack() {
+    TokenCounterRegistry withoutVocabularies = new TokenCounterRegistry(log, new ModelApiDescriptorRepository(log),
+        emptyFolder.toUri().toString());
+
+    assertFalse(withoutVocabularies.isAvailable(BpeEncoding.CL100K_BASE));
+    assertSame(withoutVocabularies.fallback(), withoutVocabularies.forModel(model("gpt-4-turbo")));
+    assertEquals(3, withoutVocabularies.forModel(model("gpt-4o")).count("hello world!"));
+  }
+
+  @Test
+  public void testUnknownModelFallsBack() {
+    assertSame(registry.fallback(), registry.forModel(model("test-model")));
+  }
+}
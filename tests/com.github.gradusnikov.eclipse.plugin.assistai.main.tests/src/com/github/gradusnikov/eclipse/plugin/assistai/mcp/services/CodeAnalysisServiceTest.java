@@ -2,6 +2,9 @@
 package com.github.gradusnikov.eclipse.plugin.assistai.mcp.services;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -26,6 +29,7 @@ import org.eclipse.e4.core.contexts.ContextInjectionFactory;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.launching.JavaRuntime;
 import org.junit.jupiter.api.AfterEach;
@@ -36,6 +40,7 @@ import org.osgi.framework.FrameworkUtil;
 import org.osgi.util.tracker.ServiceTracker;
 
 import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.CallHierarchyService;
 import com.github.gradusnikov.eclipse.assistai.mcp.services.CodeAnalysisService;
 
 public class CodeAnalysisServiceTest {
@@ -44,6 +49,7 @@ public class CodeAnalysisServiceTest {
     private IProject project;
     private IJavaProject javaProject;
     private CodeAnalysisService service;
+    private CallHierarchyService callHierarchyService;
     private NullProgressMonitor monitor = new NullProgressMonitor();
     
     @BeforeEach
@@ -111,10 +117,12 @@ public class CodeAnalysisServiceTest {
         IEclipseContext context = EclipseContextFactory.create();
         context.set(ILog.class, Activator.getDefault().getLog());
         service = ContextInjectionFactory.make(CodeAnalysisService.class, context);
+        callHierarchyService = ContextInjectionFactory.make(CallHierarchyService.class, context);
     }
     
     @AfterEach
     public void afterEach() throws CoreException {
+        callHierarchyService.dispose();
         // Clean up the test project
         if (project != null && project.exists()) {
             project.delete(true, true, monitor);
@@ -147,6 +155,40 @@ public class CodeAnalysisServiceTest {
         // assertTrue(result.contains("callerMethod") && result.contains("Caller"));
     }
     
+    @Test
+    public void testCallHierarchyIsCachedUntilSourceChanges() throws CoreException, InterruptedException {
+        IMethod calleeMethod = callHierarchyService.findMethod("com.example.Callee", "calleeMethod", "");
+        assertNotNull(calleeMethod);
+        
+        String first = callHierarchyService.getCallHierarchy(calleeMethod, 3, 0, monitor);
+        assertSame(first, callHierarchyService.getCallHierarchy(calleeMethod, 3, 0, monitor));
+        
+        // Changing a compilation unit drops the remembered hierarchies
+        createFile("src/com/example/Caller.java", 
+                "package com.example;\n\n" +
+                "public class Caller {\n" +
+                "    public void callerMethod() {\n" +
+                "        new Callee().calleeMethod();\n" +
+                "        new Callee().calleeMethod();\n" +
+                "    }\n" +
+                "}\n");
+        Thread.sleep(1000);
+        
+        assertNotSame(first, callHierarchyService.getCallHierarchy(calleeMethod, 3, 0, monitor));
+    }
+    
+    @Test
+    public void testCanceledCallHierarchySearchIsNotCached() throws CoreException {
+        IMethod calleeMethod = callHierarchyService.findMethod("com.example.Callee", "calleeMethod", "");
+        NullProgressMonitor canceled = new NullProgressMonitor();
+        canceled.setCanceled(true);
+        
+        String partial = callHierarchyService.getCallHierarchy(calleeMethod, 3, 0, canceled);
+        
+        assertTrue(partial.contains("search canceled"), partial);
+        assertNotSame(partial, callHierarchyService.getCallHierarchy(calleeMethod, 3, 0, monitor));
+    }
+    
     @Test
     public void testGetCompilationErrors() throws CoreException, InterruptedException {
         // Create a class with compilation errors
@@ -0,0 +1,134 @@
+package com.github.gradusnikov.eclipse.plugin.assistai.mcp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.launching.JavaRuntime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.JavaDocService;
+
+public class JavaDocServiceTest {
+
+    private static final String TEST_PROJECT_NAME = "JavaDocServiceTestProject";
+
+    private final NullProgressMonitor monitor = new NullProgressMonitor();
+    private IProject project;
+    private IJavaProject javaProject;
+    private IEclipseContext context;
+    private JavaDocService service;
+
+    @BeforeEach
+    public void beforeEach() throws CoreException {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject(TEST_PROJECT_NAME);
+        if (project.exists()) {
+            project.delete(true, true, monitor);
+        }
+        IProjectDescription description = ResourcesPlugin.getWorkspace().newProjectDescription(TEST_PROJECT_NAME);
+        description.setNatureIds(new String[] { JavaCore.NATURE_ID });
+        project.create(description, monitor);
+        project.open(monitor);
+
+        javaProject = JavaCore.create(project);
+        IFolder src = project.getFolder("src");
+        src.create(true, true, monitor);
+        project.getFolder("src/com").create(true, true, monitor);
+        project.getFolder("src/com/example").create(true, true, monitor);
+        javaProject.setRawClasspath(new IClasspathEntry[] {
+                JavaCore.newSourceEntry(src.getFullPath()),
+                JavaRuntime.getDefaultJREContainerEntry() }, monitor);
+        writeGreeter("Says hello.");
+
+        context = EclipseContextFactory.create();
+        context.set(ILog.class, Activator.getDefault().getLog());
+        service = ContextInjectionFactory.make(JavaDocService.class, context);
+    }
+
+    @AfterEach
+    public void afterEach() throws CoreException {
+        service.dispose();
+        context.dispose();
+        if (project != null && project.exists()) {
+            project.delete(true, true, monitor);
+        }
+    }
+
+    private void writeGreeter(String doc) throws CoreException {
+        String source = "package com.example;\n\n"
+                + "/** " + doc + " */\n"
+                + "public class Greeter {\n"
+                + "    /** Returns the greeting. */\n"
+                + "    public String greet() { return \"hello\"; }\n"
+                + "}\n";
+        IFile file = project.getFile("src/com/example/Greeter.java");
+        ByteArrayInputStream content = new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+        if (file.exists()) {
+            file.setContents(content, true, false, monitor);
+        } else {
+            file.create(content, true, monitor);
+        }
+    }
+
+    @Test
+    public void testResolvedTypeIsRemembered() throws Exception {
+        IType type = service.findType("com.example.Greeter");
+
+        assertNotNull(type);
+        assertSame(type, service.findType("com.example.Greeter"));
+    }
+
+    @Test
+    public void testJavaDocFollowsSourceChanges() throws CoreException {
+        String javaDoc = service.getJavaDoc("com.example.Greeter");
+        assertTrue(javaDoc.contains("Says hello."), javaDoc);
+        assertTrue(javaDoc.contains("Returns the greeting."), javaDoc);
+        assertEquals(javaDoc, service.getJavaDoc("com.example.Greeter"));
+
+        writeGreeter("Says goodbye.");
+
+        String changed = service.getJavaDoc("com.example.Greeter");
+        assertTrue(changed.contains("Says goodbye."), changed);
+        assertFalse(changed.contains("Says hello."), changed);
+    }
+
+    @Test
+    public void testClasspathChangeDropsResolvedTypes() throws Exception {
+        IType type = service.findType("com.example.Greeter");
+
+        IClasspathEntry[] classpath = javaProject.getRawClasspath();
+        javaProject.setRawClasspath(new IClasspathEntry[] { classpath[1], classpath[0] }, monitor);
+
+        assertNotSame(type, service.findType("com.example.Greeter"));
+    }
+
+    @Test
+    public void testSourceOfWorkspaceType() {
+        assertTrue(service.getSource("com.example.Greeter").contains("public class Greeter"));
+        assertEquals("Source is not available for com.example.Missing", service.getSource("com.example.Missing"));
+    }
+}
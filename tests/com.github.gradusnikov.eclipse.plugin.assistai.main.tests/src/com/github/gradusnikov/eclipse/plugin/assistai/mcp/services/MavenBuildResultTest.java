@@ -0,0 +1,135 @@
+package com.github.gradusnikov.eclipse.plugin.assistai.mcp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.gradusnikov.eclipse.assistai.mcp.services.MavenBuildResult;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.MavenBuildResult.CompilerError;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.MavenBuildResult.Status;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.MavenBuildResult.TestFailure;
+
+public class MavenBuildResultTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testParsesCompilerMessages() {
+        File baseDirectory = tempDir.toFile();
+        String source = new File(baseDirectory, "src/main/java/com/example/App.java").getAbsolutePath();
+        String longMessage = "Compilation failure\n"
+                + source + ":[12,5] cannot find symbol\n"
+                + "  symbol:   class Repository\n"
+                + "  location: class com.example.App\n"
+                + source + ":[20] ';' expected\n";
+        String message = "Compilation failure\n" + source + ":[12,5] cannot find symbol\n";
+
+        MavenBuildResult result = new MavenBuildResult();
+        result.addCompilerMessages("app", baseDirectory, longMessage + message);
+
+        String file = "src/main/java/com/example/App.java".replace('/', File.separatorChar);
+        assertEquals(List.of(
+                new CompilerError("app", file, 12, 5, "cannot find symbol\nsymbol:   class Repository\nlocation: class com.example.App"),
+                new CompilerError("app", file, 20, -1, "';' expected")),
+                result.getCompilerErrors());
+    }
+
+    @Test
+    public void testReadsTestReportsOfThisBuild() throws IOException {
+        Path reports = Files.createDirectory(tempDir.resolve("surefire-reports"));
+        Path stale = reports.resolve("TEST-com.example.StaleTest.xml");
+        Files.writeString(stale, suite("com.example.StaleTest", 1, 1, 0, 0,
+                "<testcase classname=\"com.example.StaleTest\" name=\"old\"><failure message=\"old failure\"/></testcase>"));
+        stale.toFile().setLastModified(System.currentTimeMillis() - 60_000);
+
+        MavenBuildResult result = new MavenBuildResult();
+        Path report = reports.resolve("TEST-com.example.AppTest.xml");
+        Files.writeString(report, suite("com.example.AppTest", 4, 1, 1, 1,
+                "<testcase classname=\"com.example.AppTest\" name=\"passes\"/>"
+                + "<testcase classname=\"com.example.AppTest\" name=\"adds\"><failure message=\"expected: &lt;2&gt; but was: &lt;3&gt;\" type=\"org.opentest4j.AssertionFailedError\">trace</failure></testcase>"
+                + "<testcase classname=\"com.example.AppTest\" name=\"loads\"><error type=\"java.lang.NullPointerException\">trace</error></testcase>"
+                + "<testcase classname=\"com.example.AppTest\" name=\"skipped\"><skipped/></testcase>"), StandardCharsets.UTF_8);
+        report.toFile().setLastModified(System.currentTimeMillis() + 1_000);
+
+        assertTrue(result.addTestReports("app", reports.toFile()));
+        assertEquals(List.of(
+                new TestFailure("app", "com.example.AppTest", "adds", false, "expected: <2> but was: <3>"),
+                new TestFailure("app", "com.example.AppTest", "loads", true, "java.lang.NullPointerException")),
+                result.getTestFailures());
+        assertTrue(result.toString().contains("Tests: 4 run, 1 failed, 1 errors, 1 skipped"), result.toString());
+    }
+
+    @Test
+    public void testReportsAreReadOncePerExecution() throws IOException {
+        Path reports = Files.createDirectory(tempDir.resolve("surefire-reports"));
+        MavenBuildResult result = new MavenBuildResult();
+        Path unit = reports.resolve("TEST-com.example.UnitTest.xml");
+        Files.writeString(unit, suite("com.example.UnitTest", 2, 1, 0, 0,
+                "<testcase classname=\"com.example.UnitTest\" name=\"fails\"><failure message=\"unit\"/></testcase>"));
+        unit.toFile().setLastModified(System.currentTimeMillis() + 1_000);
+        assertTrue(result.addTestReports("app", reports.toFile()));
+
+        // a second execution in the same module writes its own report next to the first
+        Path slow = reports.resolve("TEST-com.example.SlowTest.xml");
+        Files.writeString(slow, suite("com.example.SlowTest", 3, 0, 0, 0, ""));
+        slow.toFile().setLastModified(System.currentTimeMillis() + 2_000);
+        assertTrue(result.addTestReports("app", reports.toFile()));
+
+        assertEquals(1, result.getTestFailures().size());
+        assertTrue(result.toString().contains("Tests: 5 run, 1 failed, 0 errors, 0 skipped"), result.toString());
+    }
+
+    @Test
+    public void testUnreadableReportIsAnError() throws IOException {
+        Path reports = Files.createDirectory(tempDir.resolve("failsafe-reports"));
+        Path report = reports.resolve("TEST-com.example.BrokenIT.xml");
+        Files.writeString(report, "<testsuite name=\"com.example.BrokenIT\" tests=\"1\">");
+        report.toFile().setLastModified(System.currentTimeMillis() + 1_000);
+
+        MavenBuildResult result = new MavenBuildResult();
+        assertFalse(result.addTestReports("app", reports.toFile()));
+        result.finished();
+
+        assertFalse(result.isSuccessful());
+        assertTrue(result.toString().contains("- Could not read test report " + report.toFile()), result.toString());
+    }
+
+    @Test
+    public void testSummary() {
+        MavenBuildResult result = new MavenBuildResult();
+        result.moduleStarted("com.example:core:jar:1.0", "core");
+        result.moduleFinished("com.example:core:jar:1.0", "core", Status.SUCCESS, null);
+        result.moduleStarted("com.example:web:jar:1.0", "web");
+        assertFalse(result.isFinished());
+        assertTrue(result.toString().contains("- web: RUNNING"), result.toString());
+
+        result.moduleFinished("com.example:web:jar:1.0", "web", Status.FAILED, "Compilation failure\nmore details");
+        result.moduleFinished("com.example:app:jar:1.0", "app", Status.SKIPPED, null);
+        result.finished();
+
+        String summary = result.toString();
+        assertFalse(result.isSuccessful());
+        assertTrue(summary.startsWith("Result: FAILED"), summary);
+        assertTrue(summary.contains("- core: SUCCESS ("), summary);
+        assertTrue(summary.contains("- web: FAILED (") && summary.contains(") - Compilation failure\n"), summary);
+        assertTrue(summary.contains("- app: SKIPPED\n"), summary);
+        assertFalse(summary.contains("more details"), summary);
+    }
+
+    private static String suite(String name, int tests, int failures, int errors, int skipped, String testCases) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<testsuite name=\"" + name + "\" tests=\"" + tests + "\" failures=\"" + failures
+                + "\" errors=\"" + errors + "\" skipped=\"" + skipped + "\">" + testCases + "</testsuite>\n";
+    }
+}
@@ -184,8 +184,9 @@ public class MavenServiceTest {
             String result = service.runMavenBuild(TEST_PROJECT_NAME, "clean install", "", 0);
             
             // Verify result contains expected information
-            assertTrue(result.contains("Maven build started for project"));
+            assertTrue(result.contains("Maven build finished for project '" + TEST_PROJECT_NAME + "'"));
             assertTrue(result.contains("with goals: clean install"));
+            assertTrue(result.contains("Result: "));
             assertTrue(result.contains("To view build output"));
         } catch (RuntimeException e) {
             if (e.getMessage().contains("Could not find Maven configuration")) {
@@ -0,0 +1,139 @@
+package com.github.gradusnikov.eclipse.plugin.assistai.mcp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.ProblemMarkerIndex;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.ProblemMarkerIndex.Changes;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.ProblemMarkerIndex.Problem;
+
+public class ProblemMarkerIndexTest {
+
+    private static final String TEST_PROJECT_NAME = "ProblemMarkerIndexTestProject";
+
+    private final NullProgressMonitor monitor = new NullProgressMonitor();
+    private IProject project;
+    private IFile first;
+    private IFile second;
+    private ProblemMarkerIndex index;
+
+    @BeforeEach
+    public void beforeEach() throws CoreException {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject(TEST_PROJECT_NAME);
+        if (project.exists()) {
+            project.delete(true, true, monitor);
+        }
+        project.create(monitor);
+        project.open(monitor);
+        first = createFile("First.txt");
+        second = createFile("Second.txt");
+        createProblem(first, IMarker.SEVERITY_WARNING, 3, "unused value");
+        createProblem(second, IMarker.SEVERITY_ERROR, 7, "missing type");
+        createProblem(first, IMarker.SEVERITY_ERROR, 5, "missing method");
+        index = new ProblemMarkerIndex(Activator.getDefault().getLog());
+    }
+
+    @AfterEach
+    public void afterEach() throws CoreException {
+        index.dispose();
+        if (project != null && project.exists()) {
+            project.delete(true, true, monitor);
+        }
+    }
+
+    private IFile createFile(String name) throws CoreException {
+        IFile file = project.getFile(name);
+        file.create(new ByteArrayInputStream(new byte[0]), true, monitor);
+        return file;
+    }
+
+    private IMarker createProblem(IFile file, int severity, int line, String message) throws CoreException {
+        IMarker marker = file.createMarker(IMarker.PROBLEM);
+        marker.setAttributes(new String[] { IMarker.SEVERITY, IMarker.LINE_NUMBER, IMarker.MESSAGE },
+                new Object[] { severity, line, message });
+        return marker;
+    }
+
+    private static List<String> messages(List<Problem> problems) {
+        return problems.stream().map(Problem::message).toList();
+    }
+
+    @Test
+    public void testProblemsSortedBySeverityAndLocation() {
+        List<Problem> problems = index.problems(TEST_PROJECT_NAME, ProblemMarkerIndex.ANY_SEVERITY);
+
+        assertEquals(List.of("missing method", "missing type", "unused value"), messages(problems));
+        assertEquals(List.of("unused value"), messages(index.problems(TEST_PROJECT_NAME, IMarker.SEVERITY_WARNING)));
+        assertEquals(2, index.count(TEST_PROJECT_NAME, IMarker.SEVERITY_ERROR));
+        assertEquals(1, index.count(TEST_PROJECT_NAME, IMarker.SEVERITY_WARNING));
+        assertEquals(0, index.count(TEST_PROJECT_NAME, IMarker.SEVERITY_INFO));
+    }
+
+    @Test
+    public void testFollowsMarkerChanges() throws CoreException {
+        index.problems(TEST_PROJECT_NAME, ProblemMarkerIndex.ANY_SEVERITY);
+
+        IMarker added = createProblem(second, IMarker.SEVERITY_ERROR, 1, "syntax error");
+        assertEquals(3, index.count(TEST_PROJECT_NAME, IMarker.SEVERITY_ERROR));
+
+        added.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
+        assertEquals(2, index.count(TEST_PROJECT_NAME, IMarker.SEVERITY_ERROR));
+        assertEquals(2, index.count(TEST_PROJECT_NAME, IMarker.SEVERITY_WARNING));
+
+        first.delete(true, monitor);
+        assertEquals(List.of("missing type", "syntax error"),
+                messages(index.problems(TEST_PROJECT_NAME, ProblemMarkerIndex.ANY_SEVERITY)));
+    }
+
+    @Test
+    public void testChangesSinceToken() throws CoreException {
+        String token = index.token();
+        Changes none = index.changesSince(token, TEST_PROJECT_NAME, ProblemMarkerIndex.ANY_SEVERITY);
+        assertTrue(none.added().isEmpty());
+        assertTrue(none.resolved().isEmpty());
+
+        IMarker fixed = createProblem(first, IMarker.SEVERITY_ERROR, 9, "fixed right away");
+        createProblem(second, IMarker.SEVERITY_ERROR, 2, "new problem");
+        fixed.delete();
+        second.deleteMarkers(IMarker.PROBLEM, true, 0);
+        createProblem(second, IMarker.SEVERITY_ERROR, 2, "new problem");
+
+        Changes changes = index.changesSince(token, TEST_PROJECT_NAME, ProblemMarkerIndex.ANY_SEVERITY);
+        assertEquals(List.of("new problem"), messages(changes.added()));
+        assertEquals(List.of("missing type"), messages(changes.resolved()));
+
+        Changes next = index.changesSince(changes.token(), TEST_PROJECT_NAME, ProblemMarkerIndex.ANY_SEVERITY);
+        assertTrue(next.added().isEmpty());
+        assertTrue(next.resolved().isEmpty());
+    }
+
+    @Test
+    public void testUnknownTokenIsRejected() {
+        assertNull(index.changesSince("0-0", null, ProblemMarkerIndex.ANY_SEVERITY));
+        assertNull(index.changesSince("not a token", null, ProblemMarkerIndex.ANY_SEVERITY));
+    }
+
+    @Test
+    public void testClosingProjectDropsItsProblems() throws CoreException {
+        assertEquals(3, index.problems(TEST_PROJECT_NAME, ProblemMarkerIndex.ANY_SEVERITY).size());
+
+        project.close(monitor);
+        assertTrue(index.problems(TEST_PROJECT_NAME, ProblemMarkerIndex.ANY_SEVERITY).isEmpty());
+        assertEquals(0, index.count(TEST_PROJECT_NAME, IMarker.SEVERITY_ERROR));
+    }
+}
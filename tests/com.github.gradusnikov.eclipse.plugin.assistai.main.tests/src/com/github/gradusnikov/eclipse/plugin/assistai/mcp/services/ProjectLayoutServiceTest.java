@@ -0,0 +1,161 @@
+package com.github.gradusnikov.eclipse.plugin.assistai.mcp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.ProjectLayoutService;
+import com.github.gradusnikov.eclipse.assistai.tokens.CharRatioTokenCounter;
+
+public class ProjectLayoutServiceTest {
+
+    private static final String TEST_PROJECT_NAME = "ProjectLayoutServiceTestProject";
+
+    private final NullProgressMonitor monitor = new NullProgressMonitor();
+    private IProject project;
+    private ProjectLayoutService service;
+
+    @BeforeEach
+    public void beforeEach() throws CoreException {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject(TEST_PROJECT_NAME);
+        if (project.exists()) {
+            project.delete(true, true, monitor);
+        }
+        ResourcesPlugin.getWorkspace().run(m -> {
+            project.create(m);
+            project.open(m);
+            IFolder src = project.getFolder("src");
+            src.create(true, true, m);
+            createFile(src.getFile("A.java"));
+            createFile(src.getFile("B.java"));
+            createFile(project.getFile("pom.xml"));
+            IFolder target = project.getFolder("target");
+            target.create(true, true, m);
+            target.setDerived(true, m);
+            createFile(target.getFile("A.class"));
+            IFolder nodeModules = project.getFolder("node_modules");
+            nodeModules.create(true, true, m);
+            createFile(nodeModules.getFile("index.js"));
+        }, monitor);
+        service = new ProjectLayoutService(Activator.getDefault().getLog());
+    }
+
+    @AfterEach
+    public void afterEach() throws CoreException {
+        service.dispose();
+        if (project != null && project.exists()) {
+            project.delete(true, true, monitor);
+        }
+    }
+
+    private void createFile(IFile file) throws CoreException {
+        file.create(new ByteArrayInputStream(new byte[0]), true, monitor);
+    }
+
+    private String layout(int maxDepth, int maxEntries) {
+        return service.getLayout(project, maxDepth, maxEntries, 0, CharRatioTokenCounter.DEFAULT);
+    }
+
+    @Test
+    public void testPrunesDerivedAndIgnoredFolders() {
+        String expected = "# Project Structure: " + TEST_PROJECT_NAME + "\n\n"
+                + "- " + TEST_PROJECT_NAME + "/\n"
+                + "  - node_modules/ (ignored, not listed)\n"
+                + "  - src/\n"
+                + "    - A.java\n"
+                + "    - B.java\n"
+                + "  - target/ (derived, not listed)\n"
+                + "  - .project\n"
+                + "  - pom.xml\n";
+        assertEquals(expected, layout(0, 0));
+    }
+
+    @Test
+    public void testCollapsesFoldersBeyondDepth() {
+        String layout = layout(1, 0);
+
+        assertTrue(layout.contains("  - src/ (2 files)\n"), layout);
+        assertFalse(layout.contains("A.java"), layout);
+    }
+
+    @Test
+    public void testSummarizesLargeFolders() throws CoreException {
+        ResourcesPlugin.getWorkspace().run(m -> {
+            IFolder many = project.getFolder("src/many");
+            many.create(true, true, m);
+            for (int i = 0; i < 390; i++) {
+                createFile(many.getFile(String.format("File%03d.txt", i)));
+            }
+        }, monitor);
+
+        String layout = layout(0, 0);
+        assertTrue(layout.contains("      - File049.txt\n"), layout);
+        assertFalse(layout.contains("File050.txt"), layout);
+        assertTrue(layout.contains("      - …and 340 more files\n"), layout);
+
+        String bounded = layout(0, 6);
+        assertTrue(bounded.contains("    - many/ (390 files)\n"), bounded);
+        assertTrue(bounded.contains("shortened to fit 6 entries"), bounded);
+    }
+
+    @Test
+    public void testFollowsWorkspaceChanges() throws CoreException {
+        String before = layout(0, 0);
+        assertSame(before, layout(0, 0));
+
+        IFile added = project.getFile("src/C.java");
+        createFile(added);
+        assertTrue(layout(0, 0).contains("    - C.java\n"));
+
+        project.getFolder("src").delete(true, monitor);
+        String after = layout(0, 0);
+        assertFalse(after.contains("src/"), after);
+        assertFalse(after.contains("A.java"), after);
+    }
+
+    @Test
+    public void testListsPackagesNamedLikeIgnoredFolders() throws CoreException {
+        ResourcesPlugin.getWorkspace().run(m -> {
+            IProjectDescription description = project.getDescription();
+            description.setNatureIds(new String[] { JavaCore.NATURE_ID });
+            project.setDescription(description, m);
+            IFolder pkg = project.getFolder("src/com");
+            pkg.create(true, true, m);
+            project.getFolder("src/com/build").create(true, true, m);
+            createFile(project.getFile("src/com/build/Builder.java"));
+            project.getFolder("build").create(true, true, m);
+            createFile(project.getFile("build/output.txt"));
+            project.getFolder("web").create(true, true, m);
+            project.getFolder("web/node_modules").create(true, true, m);
+            createFile(project.getFile("web/node_modules/index.js"));
+        }, monitor);
+        IJavaProject javaProject = JavaCore.create(project);
+        javaProject.setRawClasspath(new IClasspathEntry[] {
+                JavaCore.newSourceEntry(project.getFolder("src").getFullPath()) }, monitor);
+
+        String layout = layout(0, 0);
+        assertTrue(layout.contains("    - com/\n      - build/\n        - Builder.java\n"), layout);
+        assertTrue(layout.contains("  - build/ (ignored, not listed)\n"), layout);
+        assertTrue(layout.contains("    - node_modules/ (ignored, not listed)\n"), layout);
+        assertFalse(layout.contains("output.txt"), layout);
+        assertFalse(layout.contains("index.js"), layout);
+    }
+}
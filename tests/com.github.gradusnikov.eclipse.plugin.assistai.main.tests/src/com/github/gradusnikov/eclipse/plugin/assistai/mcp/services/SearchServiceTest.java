@@ -0,0 +1,191 @@
+package com.github.gradusnikov.eclipse.plugin.assistai.mcp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.SearchService;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.SearchService.SearchAndReplaceResult;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.SearchService.SearchResult;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.SearchService.SearchResults;
+import com.github.gradusnikov.eclipse.assistai.search.WorkspaceTextIndex;
+import com.github.gradusnikov.eclipse.assistai.tools.ResourceUtilities;
+
+public class SearchServiceTest {
+
+    private static final String TEST_PROJECT_NAME = "SearchServiceTestProject";
+    private static final int FILES = 40;
+    private static final int LINES = 2_000;
+
+    @TempDir
+    Path indexFolder;
+
+    private IProject project;
+    private SearchService service;
+    private NullProgressMonitor monitor = new NullProgressMonitor();
+
+    @BeforeEach
+    public void beforeEach() throws CoreException {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject(TEST_PROJECT_NAME);
+        if (project.exists()) {
+            project.delete(true, true, monitor);
+        }
+        project.create(monitor);
+        project.open(monitor);
+
+        // every fourth line contains the needle
+        for (int f = 0; f < FILES; f++) {
+            StringBuilder sb = new StringBuilder();
+            for (int line = 1; line <= LINES; line++) {
+                sb.append(line % 4 == 0 ? "int needle" + line + " = " + line + ";" : "// filler line " + line).append('\n');
+            }
+            createFile("File" + f + ".txt", sb.toString());
+        }
+
+        ILog log = Activator.getDefault().getLog();
+        service = new SearchService(log, new WorkspaceTextIndex(log, indexFolder));
+    }
+
+    @AfterEach
+    public void afterEach() throws CoreException {
+        if (project != null && project.exists()) {
+            project.delete(true, true, monitor);
+        }
+    }
+
+    private IFile createFile(String name, String content) throws CoreException {
+        IFile file = project.getFile(name);
+        file.create(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), true, monitor);
+        return file;
+    }
+
+    @Test
+    public void testReportsLineNumberAndContent() throws CoreException {
+        createFile("crlf.txt", "first\r\nsecond\r\nthird unique-marker here\r\nfourth");
+
+        List<SearchResult> results = service.fileSearch("unique-marker", 0);
+
+        assertEquals(1, results.size());
+        assertEquals(3, results.get(0).lineNumber());
+        assertEquals("third unique-marker here", results.get(0).lineContent());
+    }
+
+    @Test
+    public void testStopsAtMaxResults() {
+        SearchResults results = service.fileSearch("needle", null);
+
+        assertEquals(SearchService.DEFAULT_MAX_RESULTS, results.size());
+        assertTrue(results.isLimited());
+        assertTrue(results.toString().endsWith("(results limited to " + SearchService.DEFAULT_MAX_RESULTS + ")"));
+        assertEquals(25, service.fileSearchRegExp("needle\\d+", 25, "*.txt").size());
+    }
+
+    @Test
+    public void testSearchStoppedAtLimitKeepsItsResults() {
+        SearchResults results = service.fileSearchRegExp("needle\\d+", 25, "*.txt");
+
+        assertEquals(25, results.size());
+        assertTrue(results.isLimited());
+        assertEquals(25, results.getLimit());
+        for (SearchResult result : results) {
+            assertEquals("int needle" + result.lineNumber() + " = " + result.lineNumber() + ";", result.lineContent());
+        }
+        assertTrue(results.toString().endsWith("\n(results limited to 25)"), results.toString());
+    }
+
+    @Test
+    public void testCompleteResultsAreNotLimited() {
+        SearchResults results = service.fileSearch("needle", FILES * LINES, "File0.txt");
+
+        assertFalse(results.isLimited());
+        assertFalse(results.toString().contains("results limited"));
+    }
+
+    @Test
+    public void testLineNumbersOfManyMatches() {
+        List<SearchResult> results = service.fileSearch("needle", FILES * LINES, "File0.txt");
+
+        assertEquals(LINES / 4, results.size());
+        for (SearchResult result : results) {
+            assertEquals("int needle" + result.lineNumber() + " = " + result.lineNumber() + ";", result.lineContent());
+        }
+    }
+
+    /**
+     * Compares the search with the earlier approach, which ran the same
+     * search and then read the whole file again for every match. The best of
+     * three runs is taken, so the first run's warm-up does not count.
+     */
+    @Test
+    public void testFasterThanRereadingPerMatch() throws Exception {
+        int expected = FILES * LINES / 4;
+        long searchMs = Long.MAX_VALUE;
+        long baselineMs = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            List<SearchResult> results = service.fileSearch("needle", expected);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            assertEquals(expected, results.size());
+
+            start = System.nanoTime();
+            for (SearchResult result : results) {
+                ResourceUtilities.readFileLines(result.file());
+            }
+            long rereadMs = (System.nanoTime() - start) / 1_000_000;
+
+            searchMs = Math.min(searchMs, elapsedMs);
+            baselineMs = Math.min(baselineMs, elapsedMs + rereadMs);
+        }
+        assertTrue(2 * searchMs < baselineMs,
+                "search of " + expected + " matches took " + searchMs + " ms, searching and re-reading per match " + baselineMs + " ms");
+    }
+
+    @Test
+    public void testReplacesAllFilesInOneWorkspaceChange() throws Exception {
+        AtomicInteger changeEvents = new AtomicInteger();
+        IResourceChangeListener listener = event -> changeEvents.incrementAndGet();
+        ResourcesPlugin.getWorkspace().addResourceChangeListener(listener, IResourceChangeEvent.POST_CHANGE);
+        try {
+            List<SearchAndReplaceResult> results = service.searchAndReplace("needle", "pin", false, "*.txt");
+
+            assertEquals(FILES, results.size());
+            assertEquals(LINES / 4, results.get(0).replacementsMade());
+            assertEquals(1, changeEvents.get());
+        } finally {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(listener);
+        }
+        assertTrue(service.fileSearch("needle", 0).isEmpty());
+        String content = ResourceUtilities.readFileContent(project.getFile("File0.txt"));
+        assertTrue(content.contains("int pin4 = 4;"));
+    }
+
+    @Test
+    public void testReturnsDiffWhenRequested() throws CoreException {
+        createFile("small.txt", "keep\nold value\nkeep\n");
+
+        List<SearchAndReplaceResult> results = service.searchAndReplace("old value", "new value", true, "small.txt");
+
+        assertEquals(1, results.size());
+        assertEquals("@@ -1,3 +1,3 @@\n keep\n-old value\n+new value\n keep\n", results.get(0).diff());
+    }
+}
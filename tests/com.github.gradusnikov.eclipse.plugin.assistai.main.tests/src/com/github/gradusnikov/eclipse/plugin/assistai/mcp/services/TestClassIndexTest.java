@@ -0,0 +1,116 @@
+package com.github.gradusnikov.eclipse.plugin.assistai.mcp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.launching.JavaRuntime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.TestClassIndex;
+
+public class TestClassIndexTest {
+
+    private static final String TEST_PROJECT_NAME = "TestClassIndexTestProject";
+
+    private final NullProgressMonitor monitor = new NullProgressMonitor();
+    private IProject project;
+    private IJavaProject javaProject;
+    private TestClassIndex index;
+
+    @BeforeEach
+    public void beforeEach() throws CoreException {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject(TEST_PROJECT_NAME);
+        if (project.exists()) {
+            project.delete(true, true, monitor);
+        }
+        IProjectDescription description = ResourcesPlugin.getWorkspace().newProjectDescription(TEST_PROJECT_NAME);
+        description.setNatureIds(new String[] { JavaCore.NATURE_ID });
+        project.create(description, monitor);
+        project.open(monitor);
+
+        javaProject = JavaCore.create(project);
+        IFolder src = project.getFolder("src");
+        src.create(true, true, monitor);
+        for (String folder : List.of("com", "com/example", "junit", "junit/framework",
+                "org", "org/junit", "org/junit/jupiter", "org/junit/jupiter/api")) {
+            project.getFolder("src/" + folder).create(true, true, monitor);
+        }
+        javaProject.setRawClasspath(new IClasspathEntry[] {
+                JavaCore.newSourceEntry(src.getFullPath()),
+                JavaRuntime.getDefaultJREContainerEntry() }, monitor);
+
+        // Stand-ins for the JUnit types, so the references resolve
+        writeFile("src/org/junit/jupiter/api/Test.java", "package org.junit.jupiter.api;\n\npublic @interface Test {\n}\n");
+        writeFile("src/junit/framework/TestCase.java", "package junit.framework;\n\npublic abstract class TestCase {\n}\n");
+
+        writeType("CalculatorTest", "import org.junit.jupiter.api.Test;\n\n"
+                + "public class CalculatorTest {\n    @Test\n    public void adds() {}\n}\n");
+        writeType("AbstractServiceTest", "public abstract class AbstractServiceTest {\n"
+                + "    @org.junit.jupiter.api.Test\n    public void starts() {}\n}\n");
+        writeType("CachedServiceTest", "public class CachedServiceTest extends AbstractServiceTest {\n}\n");
+        writeType("LegacyTest", "public class LegacyTest extends junit.framework.TestCase {\n"
+                + "    public void testLegacy() {}\n}\n");
+        writeType("Helper", "public class Helper {\n}\n");
+        writeType("NamedLikeATest", "public class NamedLikeATest {\n    public void testNothing() {}\n}\n");
+
+        index = new TestClassIndex(Activator.getDefault().getLog());
+        index.init();
+    }
+
+    @AfterEach
+    public void afterEach() throws CoreException {
+        index.dispose();
+        if (project != null && project.exists()) {
+            project.delete(true, true, monitor);
+        }
+    }
+
+    private void writeType(String name, String body) throws CoreException {
+        writeFile("src/com/example/" + name + ".java", "package com.example;\n\n" + body);
+    }
+
+    private void writeFile(String path, String source) throws CoreException {
+        IFile file = project.getFile(path);
+        ByteArrayInputStream content = new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+        if (file.exists()) {
+            file.setContents(content, true, false, monitor);
+        } else {
+            file.create(content, true, monitor);
+        }
+    }
+
+    @Test
+    public void testFindsAnnotatedAndInheritedTestClasses() {
+        assertEquals(List.of("com.example.CachedServiceTest", "com.example.CalculatorTest", "com.example.LegacyTest"),
+                index.testClasses(javaProject));
+    }
+
+    @Test
+    public void testFollowsSourceChanges() throws CoreException {
+        index.testClasses(javaProject);
+
+        writeType("Helper", "public class Helper {\n    @org.junit.jupiter.api.Test\n    public void helps() {}\n}\n");
+        assertEquals(List.of("com.example.CachedServiceTest", "com.example.CalculatorTest", "com.example.Helper",
+                "com.example.LegacyTest"), index.testClasses(javaProject));
+
+        project.getFile("src/com/example/CalculatorTest.java").delete(true, monitor);
+        writeType("AbstractServiceTest", "public abstract class AbstractServiceTest {\n}\n");
+        assertEquals(List.of("com.example.Helper", "com.example.LegacyTest"), index.testClasses(javaProject));
+    }
+}
@@ -0,0 +1,218 @@
+package com.github.gradusnikov.eclipse.plugin.assistai.mcp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.ui.di.UISynchronize;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.junit.model.ITestElement.Result;
+import org.eclipse.jdt.launching.JavaRuntime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.gradusnikov.eclipse.assistai.Activator;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.UnitTestService;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.UnitTestService.ShardOutcome;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.UnitTestService.TestResult;
+import com.github.gradusnikov.eclipse.assistai.mcp.services.UnitTestService.TestRunResult;
+
+public class UnitTestServiceTest {
+
+    private static final String TEST_PROJECT_NAME = "UnitTestServiceTestProject";
+
+    private final NullProgressMonitor monitor = new NullProgressMonitor();
+    private IProject project;
+    private IJavaProject javaProject;
+    private IEclipseContext context;
+    private UnitTestService service;
+
+    @BeforeEach
+    public void beforeEach() throws CoreException {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject(TEST_PROJECT_NAME);
+        if (project.exists()) {
+            project.delete(true, true, monitor);
+        }
+        IProjectDescription description = ResourcesPlugin.getWorkspace().newProjectDescription(TEST_PROJECT_NAME);
+        description.setNatureIds(new String[] { JavaCore.NATURE_ID });
+        project.create(description, monitor);
+        project.open(monitor);
+
+        javaProject = JavaCore.create(project);
+        IFolder src = project.getFolder("src");
+        src.create(true, true, monitor);
+        project.getFolder("src/com").create(true, true, monitor);
+        project.getFolder("src/com/example").create(true, true, monitor);
+        project.getFolder("src/org").create(true, true, monitor);
+        project.getFolder("src/org/junit").create(true, true, monitor);
+        project.getFolder("src/org/junit/jupiter").create(true, true, monitor);
+        project.getFolder("src/org/junit/jupiter/api").create(true, true, monitor);
+        javaProject.setRawClasspath(new IClasspathEntry[] {
+                JavaCore.newSourceEntry(src.getFullPath()),
+                JavaRuntime.getDefaultJREContainerEntry() }, monitor);
+
+        writeFile("src/org/junit/jupiter/api/Test.java", "package org.junit.jupiter.api;\n\npublic @interface Test {\n}\n");
+        writeType("Repository", "public class Repository {\n    public String load() { return \"\"; }\n}\n");
+        writeType("Service", "public class Service {\n    private final Repository repository = new Repository();\n}\n");
+        writeType("Unrelated", "public class Unrelated {\n}\n");
+        writeType("ServiceTest", "import org.junit.jupiter.api.Test;\n\n"
+                + "public class ServiceTest {\n    @Test\n    public void testService() { new Service(); }\n}\n");
+        writeType("RepositoryTest", "import org.junit.jupiter.api.Test;\n\n"
+                + "public class RepositoryTest {\n    @Test\n    public void testLoad() { Repository.class.getName(); }\n}\n");
+        writeType("UnrelatedTest", "import org.junit.jupiter.api.Test;\n\n"
+                + "public class UnrelatedTest {\n    @Test\n    public void testUnrelated() { new Unrelated(); }\n}\n");
+
+        context = EclipseContextFactory.create();
+        context.set(ILog.class, Activator.getDefault().getLog());
+        context.set(UISynchronize.class, new UISynchronize() {
+            @Override
+            public void syncExec(Runnable runnable) {
+                runnable.run();
+            }
+
+            @Override
+            public void asyncExec(Runnable runnable) {
+                runnable.run();
+            }
+
+            @Override
+            protected boolean isUIThread(Thread thread) {
+                return true;
+            }
+
+            @Override
+            protected void showBusyWhile(Runnable runnable) {
+                runnable.run();
+            }
+
+            @Override
+            protected boolean dispatchEvents() {
+                return false;
+            }
+        });
+        service = ContextInjectionFactory.make(UnitTestService.class, context);
+    }
+
+    @AfterEach
+    public void afterEach() throws CoreException {
+        service.dispose();
+        context.dispose();
+        if (project != null && project.exists()) {
+            project.delete(true, true, monitor);
+        }
+    }
+
+    private void writeType(String name, String body) throws CoreException {
+        writeFile("src/com/example/" + name + ".java", "package com.example;\n\n" + body);
+    }
+
+    private void writeFile(String path, String source) throws CoreException {
+        project.getFile(path).create(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), true, monitor);
+    }
+
+    private static Set<String> names(List<IType> types) {
+        return Set.copyOf(types.stream().map(IType::getFullyQualifiedName).toList());
+    }
+
+    @Test
+    public void testFindsTestsReachingChangedTypeThroughReferences() throws CoreException {
+        List<IType> affected = service.findAffectedTestClasses(javaProject, List.of("com.example.Repository"));
+
+        assertNotNull(affected);
+        assertEquals(Set.of("com.example.ServiceTest", "com.example.RepositoryTest"), names(affected));
+    }
+
+    @Test
+    public void testChangedTestClassIsAffected() throws CoreException {
+        List<IType> affected = service.findAffectedTestClasses(javaProject, List.of("com.example.UnrelatedTest"));
+
+        assertEquals(Set.of("com.example.UnrelatedTest"), names(affected));
+    }
+
+    @Test
+    public void testUnreferencedTypeAffectsNoTests() throws CoreException {
+        writeType("Orphan", "public class Orphan {\n}\n");
+
+        assertTrue(service.findAffectedTestClasses(javaProject, List.of("com.example.Orphan")).isEmpty());
+        assertTrue(service.findAffectedTestClasses(javaProject, List.of("com.example.Deleted")).isEmpty());
+    }
+
+    @Test
+    public void testPartitionPlacesSlowestClassesFirst() {
+        Map<String, Double> times = Map.of("a", 5.0, "b", 4.0, "c", 3.0, "d", 3.0, "e", 2.0, "f", 1.0);
+
+        List<List<String>> shards = UnitTestService.partition(List.of("f", "e", "d", "c", "b", "a"), times::get, 2);
+
+        // 9 seconds each, where splitting the list in halves gives 6 and 12
+        assertEquals(List.of(List.of("a", "c", "f"), List.of("b", "d", "e")), shards);
+    }
+
+    @Test
+    public void testPartitionCountsUnknownClassesAsAverage() {
+        Map<String, Double> times = Map.of("a", 6.0, "b", 2.0);
+
+        List<List<String>> shards = UnitTestService.partition(List.of("a", "b", "x", "y"), times::get, 2);
+
+        // x and y count 4 seconds each, the average of the recorded times
+        assertEquals(List.of(List.of("a", "b"), List.of("x", "y")), shards);
+    }
+
+    @Test
+    public void testPartitionWithoutTimesSpreadsEvenly() {
+        List<List<String>> shards = UnitTestService.partition(List.of("a", "b", "c", "d", "e"), name -> null, 2);
+
+        assertEquals(List.of(List.of("a", "c", "e"), List.of("b", "d")), shards);
+        assertEquals(3, UnitTestService.partition(List.of("a", "b", "c"), name -> null, 8).size());
+    }
+
+    private static TestRunResult run(String name, TestResult... results) {
+        TestRunResult run = new TestRunResult(name);
+        for (TestResult result : results) {
+            run.addTestResult(result);
+        }
+        return run;
+    }
+
+    @Test
+    public void testMergesShardResultsAndReportsEachShard() {
+        ShardOutcome first = new ShardOutcome(2, run("shard1",
+                new TestResult("com.example.ServiceTest", "testService", Result.OK.toString(), "", 0.5),
+                new TestResult("com.example.RepositoryTest", "testLoad", Result.FAILURE.toString(), "expected", 0.25)),
+                true, true, 1.5);
+        ShardOutcome second = new ShardOutcome(1, run("shard2",
+                new TestResult("com.example.UnrelatedTest", "testUnrelated", Result.OK.toString(), "", 1.0)),
+                true, false, 3.0);
+
+        TestRunResult merged = UnitTestService.mergeShards("all", List.of(first, second));
+        String report = UnitTestService.shardReport(List.of(first, second), 3.25);
+
+        assertEquals(3, merged.getTotalCount());
+        assertFalse(merged.isGreen());
+        assertEquals(Set.of("com.example.RepositoryTest"), merged.getFailedClassNames());
+        assertEquals(1.0, merged.getClassTimes().get("com.example.UnrelatedTest"));
+        // formatted like the report, in the default locale
+        assertEquals(String.format("Shards: 2, Wall time: %.2fs\n  Shard 1: 2 classes, 2 tests, %.2fs\n"
+                + "  Shard 2: 1 classes, 1 tests, %.2fs (timed out)\n", 3.25, 1.5, 3.0), report);
+    }
+}